@@ -0,0 +1,284 @@
+package application;
+
+import backend.*;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p> Title: AuthManagerBenchmark Class. </p>
+ *
+ * <p> Description: Measures the throughput of the AuthManager hot paths (login, findUserByUsername,
+ * userExistsForEmail, isUserInvited, findRequestByEmail and deleteUser) for a range of user counts and thread
+ * counts. Every combination is warmed up first and then measured over several timed iterations, and the
+ * results are printed as a table of operations per second and nanoseconds per operation. </p>
+ *
+ * <p> Options, all optional:
+ * <ul>
+ *   <li> {@code --users=10,1000,100000,1000000} - user counts to populate </li>
+ *   <li> {@code --threads=1,4} - numbers of threads calling concurrently </li>
+ *   <li> {@code --ops=login,findUserByUsername,...} - operations to measure </li>
+ *   <li> {@code --warmup=2 --iterations=3 --time=1000} - warmup and measured iterations, milliseconds each </li>
+ *   <li> {@code --hash-iterations=1} - PBKDF2 cost, 1 keeps login about the lookup path rather than hashing </li>
+ * </ul>
+ * A million users needs a few gigabytes of heap, for example {@code -Xmx4g}. </p>
+ *
+ * @author Zeel Tejashkumar Shah
+ *
+ * @version 1.0	2024-10-17	Initial implementation
+ */
+
+public class AuthManagerBenchmark {
+    private static final String[] ALL_OPERATIONS = { "login", "findUserByUsername", "userExistsForEmail",
+            "isUserInvited", "findRequestByEmail", "deleteUser" };
+
+    private static final Object MARKER = new Object(); // Never returned, comparing against it consumes a result
+    private static volatile long sink; // Per-thread tallies end up here once, so results cannot be dropped
+
+    /**
+     * One measured operation. Each call performs a single operation chosen by the random index.
+     */
+    private interface Operation {
+        Object run(int index);
+    }
+
+    /**
+     * The AuthManager under test and the keys operations pick from.
+     */
+    private static class Fixture {
+        AuthManager authManager;
+        String[] usernames;
+        String[] emails;
+        String[] invitationCodes;
+        String[] resetEmails;
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> options = parseOptions(args);
+        int[] userCounts = parseInts(options.getOrDefault("users", "10,1000,100000,1000000"));
+        int[] threadCounts = parseInts(options.getOrDefault("threads", "1,4"));
+        List<String> operations = Arrays.asList(options.getOrDefault("ops", String.join(",", ALL_OPERATIONS)).split(","));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "2"));
+        int iterations = Integer.parseInt(options.getOrDefault("iterations", "3"));
+        long timeMillis = Long.parseLong(options.getOrDefault("time", "1000"));
+        int hashIterations = Integer.parseInt(options.getOrDefault("hash-iterations", "1"));
+
+        System.out.printf("%-20s %10s %8s %16s %12s%n", "Benchmark", "users", "threads", "ops/s", "ns/op");
+        for (int userCount : userCounts) {
+            Fixture fixture = populate(userCount, hashIterations);
+            for (String name : operations) {
+                for (int threads : threadCounts) {
+                    if (name.equals("deleteUser")) {
+                        runDeleteBenchmark(fixture, userCount, threads, warmup, iterations);
+                    } else {
+                        Operation operation = operation(name, fixture);
+                        double opsPerSecond = measure(operation, fixture.usernames.length, threads, warmup,
+                                iterations, timeMillis);
+                        print(name, userCount, threads, opsPerSecond);
+                    }
+                }
+            }
+            fixture.authManager.shutdown();
+        }
+    }
+
+    /**
+     * Create an AuthManager with the given number of set-up users, plus invitations and reset requests for
+     * a tenth as many.
+     */
+    private static Fixture populate(int userCount, int hashIterations) {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // The AuthManager logs every request
+        try {
+            Fixture fixture = new Fixture();
+            fixture.authManager = new AuthManager(new InMemoryAuthStorage(), new PasswordHasher(hashIterations));
+            fixture.usernames = new String[userCount];
+            fixture.emails = new String[userCount];
+            fixture.authManager.createFirstUser("admin", "adminpass");
+            for (int i = 0; i < userCount; i++) {
+                fixture.usernames[i] = "user" + i;
+                fixture.emails[i] = "user" + i + "@example.com";
+                User user = fixture.authManager.createUser(fixture.usernames[i], "pass" + i, EnumSet.of(Role.STUDENT));
+                fixture.authManager.completeAccountSetup(user, "First", "", "Last", "", fixture.emails[i]);
+            }
+
+            int side = Math.max(1, userCount / 10);
+            List<InviteSpec> specs = new ArrayList<>(side);
+            for (int i = 0; i < side; i++) {
+                specs.add(new InviteSpec("invited" + i, "invited" + i + "@example.com", EnumSet.of(Role.STUDENT)));
+            }
+            List<Invitation> invitations = fixture.authManager.inviteUsers(specs).getInvitations();
+            fixture.invitationCodes = new String[invitations.size()];
+            for (int i = 0; i < invitations.size(); i++) {
+                fixture.invitationCodes[i] = invitations.get(i).getInvitationCode();
+            }
+            fixture.resetEmails = new String[side];
+            for (int i = 0; i < side; i++) {
+                fixture.resetEmails[i] = fixture.emails[i];
+                fixture.authManager.requestPasswordReset(fixture.emails[i]);
+            }
+            return fixture;
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    private static Operation operation(String name, Fixture fixture) {
+        AuthManager authManager = fixture.authManager;
+        switch (name) {
+        case "login":
+            return i -> authManager.login(fixture.usernames[i], "pass" + i);
+        case "findUserByUsername":
+            return i -> authManager.findUserByUsername(fixture.usernames[i]);
+        case "userExistsForEmail":
+            return i -> authManager.userExistsForEmail(fixture.emails[i]);
+        case "isUserInvited":
+            return i -> authManager.isUserInvited(fixture.invitationCodes[i % fixture.invitationCodes.length]);
+        case "findRequestByEmail":
+            return i -> authManager.findRequestByEmail(fixture.resetEmails[i % fixture.resetEmails.length]);
+        default:
+            throw new IllegalArgumentException("Unknown operation " + name);
+        }
+    }
+
+    /**
+     * Run an operation on the given number of threads for timed iterations.
+     *
+     * @return The average operations per second over the measured iterations
+     */
+    private static double measure(Operation operation, int keyCount, int threads, int warmup, int iterations,
+            long timeMillis) {
+        double total = 0;
+        for (int iteration = 0; iteration < warmup + iterations; iteration++) {
+            AtomicBoolean running = new AtomicBoolean(true);
+            long[] counts = new long[threads];
+            CountDownLatch ready = new CountDownLatch(threads);
+            CountDownLatch start = new CountDownLatch(1);
+            Thread[] workers = new Thread[threads];
+            for (int t = 0; t < threads; t++) {
+                int slot = t;
+                workers[t] = new Thread(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    long count = 0;
+                    long matches = 0;
+                    ready.countDown();
+                    awaitQuietly(start);
+                    while (running.get()) {
+                        if (operation.run(random.nextInt(keyCount)) == MARKER) {
+                            matches++;
+                        }
+                        count++;
+                    }
+                    counts[slot] = count;
+                    sink += matches; // Written once per thread to avoid sharing a cache line in the loop
+                });
+                workers[t].start();
+            }
+            awaitQuietly(ready);
+            long begin = System.nanoTime();
+            start.countDown();
+            sleepQuietly(timeMillis);
+            running.set(false);
+            joinAll(workers);
+            long elapsed = System.nanoTime() - begin;
+            if (iteration >= warmup) {
+                long operations = 0;
+                for (long count : counts) {
+                    operations += count;
+                }
+                total += operations * 1e9 / elapsed;
+            }
+        }
+        return total / iterations;
+    }
+
+    /**
+     * Measure deleteUser. Deletes cannot be repeated, so each iteration first creates fresh victims without
+     * timing it and then times the threads deleting all of them.
+     */
+    private static void runDeleteBenchmark(Fixture fixture, int userCount, int threads, int warmup, int iterations) {
+        AuthManager authManager = fixture.authManager;
+        int victimsPerIteration = Math.max(threads, Math.min(userCount, 10_000));
+        double total = 0;
+        for (int iteration = 0; iteration < warmup + iterations; iteration++) {
+            List<User> victims = new ArrayList<>(victimsPerIteration);
+            for (int i = 0; i < victimsPerIteration; i++) {
+                victims.add(authManager.createUser("victim" + iteration + "-" + threads + "-" + i, "pass",
+                        EnumSet.of(Role.STUDENT)));
+            }
+            CountDownLatch start = new CountDownLatch(1);
+            Thread[] workers = new Thread[threads];
+            for (int t = 0; t < threads; t++) {
+                int first = t;
+                workers[t] = new Thread(() -> {
+                    awaitQuietly(start);
+                    long deleted = 0;
+                    for (int i = first; i < victims.size(); i += threads) {
+                        if (authManager.deleteUser(victims.get(i))) {
+                            deleted++;
+                        }
+                    }
+                    sink += deleted;
+                });
+                workers[t].start();
+            }
+            long begin = System.nanoTime();
+            start.countDown();
+            joinAll(workers);
+            long elapsed = System.nanoTime() - begin;
+            if (iteration >= warmup) {
+                total += victims.size() * 1e9 / elapsed;
+            }
+        }
+        print("deleteUser", userCount, threads, total / iterations);
+    }
+
+    private static void print(String name, int userCount, int threads, double opsPerSecond) {
+        System.out.printf("%-20s %10d %8d %16.0f %12.1f%n", name, userCount, threads, opsPerSecond,
+                threads * 1e9 / opsPerSecond);
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Options look like --name=value, got " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        return options;
+    }
+
+    private static int[] parseInts(String list) {
+        return Arrays.stream(list.split(",")).mapToInt(Integer::parseInt).toArray();
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void joinAll(Thread[] threads) {
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -1,15 +1,27 @@
 package application;
 
 import backend.*;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 public class AuthManagerConsoleTest {
+    private static final PasswordHasher HASHER = new PasswordHasher(1_000); // Cheap cost keeps the tests fast
     private AuthManager authManager;
     private User admin;
 
     public AuthManagerConsoleTest() {
-        authManager = new AuthManager();
+        authManager = new AuthManager(new InMemoryAuthStorage(), HASHER);
         admin = authManager.createFirstUser("admin", "adminpass"); // Create the first user as admin
     }
 
@@ -29,10 +41,33 @@ public class AuthManagerConsoleTest {
         testDeleteInvitation();
         testListUsers();
         testListInvitations();
+        testUserIndexes();
+        testInvitationPartitions();
+        testResetRequestStore();
+        testConcurrentAccess();
+        testFileStorage();
+        testMappedSnapshot();
+        testPasswordHashing();
+        testAsyncAuthManager();
+        testBulkInvites();
+        testUserPaging();
+        testUserSearch();
+        testRoleIndex();
+        testCompactUsers();
+        testSessions();
+        testLoginRateLimiting();
+        testAuditLog();
+        testNotifications();
+        testMetrics();
+        testOtpGenerator();
+        testBulkPurge();
+        testInvitationExpiry();
+        testUserListVersions();
+        testTransactions();
     }
 
     private void reinitializeAuthManager() {
-        authManager = new AuthManager();
+        authManager = new AuthManager(new InMemoryAuthStorage(), HASHER);
         admin = authManager.createFirstUser("admin", "adminpass"); // Create the first user as admin
     }
 
@@ -289,6 +324,1583 @@ public class AuthManagerConsoleTest {
         authManager.listInvitations();
     }
 
+    private void testUserIndexes() {
+        reinitializeAuthManager(); // Reinitialize for fresh tests
+        System.out.println("\n=====Test 16: Testing user indexes=====\n");
+        User newUser = authManager.createUser("indexuser", "userpass", new HashSet<>(Set.of(Role.STUDENT)));
+        authManager.completeAccountSetup(newUser, "Ann", "", "Lee", "", "Ann.Lee@Example.com");
+
+        if (authManager.userExistsForEmail("ann.lee@example.com")) {
+            System.out.println("SUCCESS: Email lookup ignores case.\n");
+        } else {
+            System.out.println("FAILURE: Email lookup should ignore case.\n");
+        }
+
+        authManager.completeAccountSetup(newUser, "Ann", "", "Lee", "", "ann@example.com");
+        if (!authManager.userExistsForEmail("Ann.Lee@Example.com") && authManager.userExistsForEmail("ann@example.com")) {
+            System.out.println("SUCCESS: Email index follows the changed email.\n");
+        } else {
+            System.out.println("FAILURE: Email index should follow the changed email.\n");
+        }
+
+        authManager.deleteUser(newUser);
+        if (authManager.findUserByUsername("indexuser") == null && !authManager.userExistsForEmail("ann@example.com")) {
+            System.out.println("SUCCESS: Deleted user is no longer indexed.\n");
+        } else {
+            System.out.println("FAILURE: Deleted user should no longer be indexed.\n");
+        }
+
+        User first = authManager.createUser("dupuser", "userpass", new HashSet<>(Set.of(Role.STUDENT)));
+        authManager.completeAccountSetup(first, "Dan", "", "Poe", "", "dup@example.com");
+        User other = authManager.createUser("dupother", "userpass", new HashSet<>(Set.of(Role.STUDENT)));
+        if (authManager.createUser("dupuser", "otherpass", new HashSet<>(Set.of(Role.STUDENT))) == null
+                && !authManager.completeAccountSetup(other, "Ola", "", "Poe", "", "DUP@example.com")
+                && other.getEmail() == null && !other.isSetupComplete()) {
+            System.out.println("SUCCESS: Taken usernames and emails are refused.\n");
+        } else {
+            System.out.println("FAILURE: Taken usernames and emails should be refused.\n");
+        }
+
+        authManager.deleteUser(first);
+        User second = authManager.createUser("dupuser", "otherpass", new HashSet<>(Set.of(Role.STUDENT)));
+        boolean emailTaken = authManager.completeAccountSetup(other, "Ola", "", "Poe", "", "DUP@example.com");
+        if (second != null && authManager.findUserByUsername("dupuser") == second && emailTaken
+                && authManager.userExistsForEmail("dup@example.com")) {
+            System.out.println("SUCCESS: Username and email are found again after the first owner is deleted.\n");
+        } else {
+            System.out.println("FAILURE: Username and email should be found again after the first owner is deleted.\n");
+        }
+    }
+
+    private void testInvitationPartitions() {
+        reinitializeAuthManager(); // Reinitialize for fresh tests
+        System.out.println("\n=====Test 17: Testing invitation partitions=====\n");
+        String firstCode = authManager.inviteUser("pending1", "pending1@example.com", new HashSet<>(Set.of(Role.STUDENT)));
+        String secondCode = authManager.inviteUser("pending2", "pending2@example.com", new HashSet<>(Set.of(Role.STUDENT)));
+        authManager.markInvitationAsUsed(firstCode);
+
+        if (!authManager.isUserInvited(firstCode) && authManager.getInvitationFromInvitationCode(firstCode) != null) {
+            System.out.println("SUCCESS: Used invitation can no longer be redeemed but is still found.\n");
+        } else {
+            System.out.println("FAILURE: Used invitation should be found but not redeemable.\n");
+        }
+
+        if (authManager.getPendingInvitations().size() == 1 && authManager.isUserInvited(secondCode)) {
+            System.out.println("SUCCESS: Only the unused invitation is pending.\n");
+        } else {
+            System.out.println("FAILURE: Only the unused invitation should be pending.\n");
+        }
+    }
+
+    private void testResetRequestStore() {
+        reinitializeAuthManager(); // Reinitialize for fresh tests
+        System.out.println("\n=====Test 18: Testing reset request store=====\n");
+        authManager.requestPasswordReset("reset@example.com");
+        ResetRequest first = authManager.findRequestByEmail("reset@example.com");
+        authManager.requestPasswordReset("reset@example.com");
+        ResetRequest latest = authManager.findRequestByEmail("RESET@example.com");
+
+        if (latest != null && latest != first && authManager.getPendingResetRequestCount() == 1) {
+            System.out.println("SUCCESS: A new request replaces the earlier one for the same email.\n");
+        } else {
+            System.out.println("FAILURE: A new request should replace the earlier one for the same email.\n");
+        }
+
+        if (authManager.purgeExpiredResetRequests() == 0 && authManager.findRequestByEmail("reset@example.com") == latest) {
+            System.out.println("SUCCESS: Unexpired request survives a purge.\n");
+        } else {
+            System.out.println("FAILURE: Unexpired request should survive a purge.\n");
+        }
+
+        ResetRequestStore store = new ResetRequestStore();
+        store.add(new ResetRequest("old@example.com", "123456", java.time.Instant.now().minusSeconds(60)));
+        if (store.purgeExpired(java.time.Instant.now()) == 1 && store.size() == 0) {
+            System.out.println("SUCCESS: Expired request is purged.\n");
+        } else {
+            System.out.println("FAILURE: Expired request should be purged.\n");
+        }
+    }
+
+    private void testConcurrentAccess() {
+        reinitializeAuthManager(); // Reinitialize for fresh tests
+        System.out.println("\n=====Test 19: Testing concurrent access=====\n");
+        String invitationCode = authManager.inviteUser("racer", "racer@example.com", new HashSet<>(Set.of(Role.STUDENT)));
+        java.util.concurrent.atomic.AtomicInteger redemptions = new java.util.concurrent.atomic.AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int threadNumber = t;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 500; i++) {
+                    User user = authManager.createUser("t" + threadNumber + "u" + i, "pass", new HashSet<>(Set.of(Role.STUDENT)));
+                    authManager.addRole(user, Role.INSTRUCTOR);
+                    authManager.login("admin", "adminpass");
+                }
+                if (authManager.markInvitationAsUsed(invitationCode)) {
+                    redemptions.incrementAndGet();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (authManager.getAllUsers().size() == 4001 && authManager.findUserByUsername("t7u499") != null) {
+            System.out.println("SUCCESS: All concurrently created users are registered.\n");
+        } else {
+            System.out.println("FAILURE: Concurrently created users are missing.\n");
+        }
+
+        if (redemptions.get() == 1) {
+            System.out.println("SUCCESS: Invitation was redeemed exactly once.\n");
+        } else {
+            System.out.println("FAILURE: Invitation should be redeemed exactly once.\n");
+        }
+
+        // A first admin racing a user with the same name: whoever is registered can be found by name
+        int unreachable = 0;
+        for (int round = 0; round < 2000; round++) {
+            UserStore store = new UserStore();
+            User firstAdmin = new User("admin", "hash", Set.of(Role.ADMIN));
+            User sameName = new User("admin", "hash", Set.of(Role.STUDENT));
+            java.util.concurrent.CyclicBarrier start = new java.util.concurrent.CyclicBarrier(2);
+            Thread first = new Thread(() -> awaitThen(start, () -> store.addIfEmpty(firstAdmin)));
+            Thread second = new Thread(() -> awaitThen(start, () -> store.add(sameName)));
+            first.start();
+            second.start();
+            joinAll(List.of(first, second));
+            if (store.size() != 1 || !store.contains(store.findByUsername("admin"))) {
+                unreachable++;
+            }
+        }
+        if (unreachable == 0) {
+            System.out.println("SUCCESS: A racing first admin never leaves an unreachable user.\n");
+        } else {
+            System.out.println("FAILURE: A racing first admin left an unreachable user " + unreachable + " times.\n");
+        }
+    }
+
+    private static void awaitThen(java.util.concurrent.CyclicBarrier barrier, Runnable body) {
+        try {
+            barrier.await();
+        } catch (InterruptedException | java.util.concurrent.BrokenBarrierException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        body.run();
+    }
+
+    private void testFileStorage() {
+        System.out.println("\n=====Test 20: Testing file storage=====\n");
+        withTempDirectory("authdata", directory -> {
+            AuthManager stored = new AuthManager(new FileAuthStorage(directory), HASHER);
+            User storedAdmin = stored.createFirstUser("admin", "adminpass");
+            stored.completeAccountSetup(storedAdmin, "John", "M", "Doe", "Johnny", "john.doe@example.com");
+            User student = stored.createUser("student", "studentpass", new HashSet<>(Set.of(Role.STUDENT)));
+            stored.addRole(student, Role.INSTRUCTOR);
+            User removed = stored.createUser("removed", "pass", new HashSet<>(Set.of(Role.STUDENT)));
+            stored.deleteUser(removed);
+            String invitationCode = stored.inviteUser("invited", "invited@example.com", new HashSet<>(Set.of(Role.STUDENT)));
+            stored.requestPasswordReset("john.doe@example.com");
+
+            // Replays the log written so far, no snapshot exists yet
+            AuthManager replayed = new AuthManager(new FileAuthStorage(directory), HASHER);
+            User replayedStudent = replayed.findUserByUsername("student");
+            if (replayed.getAllUsers().size() == 2 && replayedStudent != null
+                    && replayedStudent.getRoles().contains(Role.INSTRUCTOR) && replayed.findUserByUsername("removed") == null
+                    && replayed.userExistsForEmail("john.doe@example.com") && replayed.isUserInvited(invitationCode)
+                    && replayed.findRequestByEmail("john.doe@example.com") != null) {
+                System.out.println("SUCCESS: State is restored from the log.\n");
+            } else {
+                System.out.println("FAILURE: State should be restored from the log.\n");
+            }
+
+            // Shutdown writes a snapshot, the next startup reads it back
+            replayed.createUser("late", "latepass", new HashSet<>(Set.of(Role.STUDENT)));
+            replayed.shutdown();
+            AuthManager restarted = new AuthManager(new FileAuthStorage(directory), HASHER);
+            if (restarted.getAllUsers().size() == 3 && restarted.login("late", "latepass") != null
+                    && restarted.isUserInvited(invitationCode)) {
+                System.out.println("SUCCESS: State is restored from the snapshot.\n");
+            } else {
+                System.out.println("FAILURE: State should be restored from the snapshot.\n");
+            }
+            restarted.shutdown();
+        });
+    }
+
+    private void testMappedSnapshot() {
+        System.out.println("\n=====Test 21: Testing mapped snapshot=====\n");
+        withTempDirectory("authdata", directory -> {
+            AuthManager stored = new AuthManager(new FileAuthStorage(directory), HASHER);
+            stored.createFirstUser("admin", "adminpass");
+            for (int i = 0; i < 100; i++) {
+                User user = stored.createUser("user" + i, "pass" + i, new HashSet<>(Set.of(Role.STUDENT)));
+                stored.completeAccountSetup(user, "First" + i, "", "Last" + i, "", "user" + i + "@example.com");
+            }
+            stored.shutdown();
+
+            // Users stay in the mapped file until they are looked up
+            AuthManager mapped = new AuthManager(new FileAuthStorage(directory), HASHER);
+            User found = mapped.login("user42", "pass42");
+            if (mapped.getUserCount() == 101 && found != null && mapped.findUserByUsername("user42") == found
+                    && mapped.userExistsForEmail("USER7@example.com") && mapped.login("user42", "wrong") == null) {
+                System.out.println("SUCCESS: Users are served from the mapped snapshot.\n");
+            } else {
+                System.out.println("FAILURE: Users should be served from the mapped snapshot.\n");
+            }
+
+            // Changes made after the restart survive the next snapshot, untouched users are copied over
+            User moved = mapped.findUserByUsername("user3");
+            mapped.completeAccountSetup(moved, "First3", "", "Last3", "", "moved@example.com");
+            mapped.deleteUser(mapped.findUserByUsername("user5"));
+            mapped.createUser("late", "latepass", new HashSet<>(Set.of(Role.STUDENT)));
+            mapped.checkpoint();
+            mapped.deleteUser(mapped.findUserByUsername("user6")); // Only in the log after the snapshot
+            mapped.shutdown();
+
+            AuthManager restarted = new AuthManager(new FileAuthStorage(directory), HASHER);
+            if (restarted.getUserCount() == 100 && restarted.findUserByUsername("user5") == null
+                    && restarted.findUserByUsername("user6") == null && restarted.login("late", "latepass") != null
+                    && restarted.userExistsForEmail("moved@example.com") && !restarted.userExistsForEmail("user3@example.com")
+                    && restarted.login("user99", "pass99") != null && restarted.getAllUsers().size() == 100) {
+                System.out.println("SUCCESS: Snapshot changes survive a restart.\n");
+            } else {
+                System.out.println("FAILURE: Snapshot changes should survive a restart.\n");
+            }
+            restarted.shutdown();
+        });
+    }
+
+    private void testPasswordHashing() {
+        System.out.println("\n=====Test 22: Testing password hashing=====\n");
+        reinitializeAuthManager();
+
+        User user = authManager.createUser("hashed", "secret", new HashSet<>(Set.of(Role.STUDENT)));
+        if (!user.getPassword().contains("secret") && user.getPassword().startsWith("pbkdf2-sha256$1000$")
+                && authManager.login("hashed", "secret") == user && authManager.login("hashed", "Secret") == null) {
+            System.out.println("SUCCESS: Passwords are stored salted and hashed.\n");
+        } else {
+            System.out.println("FAILURE: Passwords should be stored salted and hashed.\n");
+        }
+
+        // Plain text passwords from older data are upgraded on the next login
+        user.setPassword("legacy");
+        if (authManager.login("hashed", "legacy") == user && user.getPassword().startsWith("pbkdf2-sha256$1000$")
+                && authManager.login("hashed", "legacy") == user) {
+            System.out.println("SUCCESS: Plain text password is rehashed on login.\n");
+        } else {
+            System.out.println("FAILURE: Plain text password should be rehashed on login.\n");
+        }
+
+        // A manager with a higher cost rehashes passwords hashed with the old one
+        AuthManager stronger = new AuthManager(new InMemoryAuthStorage(), new PasswordHasher(2_000));
+        User migrated = stronger.createUser("migrated", "pass", new HashSet<>(Set.of(Role.STUDENT)));
+        migrated.setPassword(HASHER.hash("pass"));
+        if (stronger.login("migrated", "pass") == migrated && migrated.getPassword().startsWith("pbkdf2-sha256$2000$")) {
+            System.out.println("SUCCESS: Password is rehashed when the cost changes.\n");
+        } else {
+            System.out.println("FAILURE: Password should be rehashed when the cost changes.\n");
+        }
+
+        // An unknown username costs a full hash, like a wrong password, so timing does not reveal it
+        long hashesBefore = stronger.getPasswordHasher().getHashCount();
+        long failuresBefore = stronger.getPasswordHasher().getVerifyFailures();
+        if (stronger.login("nobody", "pass") == null && stronger.getPasswordHasher().getHashCount() == hashesBefore + 1
+                && stronger.getPasswordHasher().getVerifyFailures() == failuresBefore + 1) {
+            System.out.println("SUCCESS: Unknown username is checked against a dummy hash.\n");
+        } else {
+            System.out.println("FAILURE: Unknown username should be checked against a dummy hash.\n");
+        }
+
+        // A null password is refused up front and a damaged stored hash fails verification without throwing
+        boolean nullRejected;
+        try {
+            HASHER.hash(null);
+            nullRejected = false;
+        } catch (IllegalArgumentException e) {
+            nullRejected = true;
+        }
+        User damaged = authManager.createUser("damaged", "pass", new HashSet<>(Set.of(Role.STUDENT)));
+        damaged.setPassword("pbkdf2-sha256$1000$!!not-base64!!$AAAA");
+        boolean damagedFails = authManager.login("damaged", "pass") == null
+                && !HASHER.verify("pass", "pbkdf2-sha256$0$AAAA$AAAA")
+                && !HASHER.verify("pbkdf2-sha256$1000$", "pbkdf2-sha256$1000$");
+        if (nullRejected && damagedFails) {
+            System.out.println("SUCCESS: Null passwords and damaged hashes are handled.\n");
+        } else {
+            System.out.println("FAILURE: Null passwords should be refused and damaged hashes should fail.\n");
+        }
+
+        // A full queue rejects new work instead of letting it pile up
+        PasswordHasher small = new PasswordHasher(200_000, 1, 1);
+        int rejected = 0;
+        for (int i = 0; i < 5; i++) {
+            try {
+                small.hashAsync("flood" + i, 200_000);
+            } catch (java.util.concurrent.RejectedExecutionException e) {
+                rejected++;
+            }
+        }
+        small.shutdown();
+        if (rejected >= 3 && small.getRejectedCount() == rejected) {
+            System.out.println("SUCCESS: Overloaded hasher rejects requests.\n");
+        } else {
+            System.out.println("FAILURE: Overloaded hasher should reject requests.\n");
+        }
+    }
+
+    private void testAsyncAuthManager() {
+        System.out.println("\n=====Test 23: Testing async auth manager=====\n");
+        reinitializeAuthManager();
+
+        // A single thread stands in for the JavaFX application thread
+        java.util.concurrent.ExecutorService uiThread = java.util.concurrent.Executors.newSingleThreadExecutor(
+                task -> new Thread(task, "ui"));
+        AsyncAuthManager async = new AsyncAuthManager(authManager, uiThread);
+        try {
+            String[] workerThread = new String[1];
+            String[] callbackThread = new String[1];
+            java.util.concurrent.CountDownLatch attached = new java.util.concurrent.CountDownLatch(1);
+            java.util.concurrent.CompletableFuture<User> login = async.call(manager -> {
+                workerThread[0] = Thread.currentThread().getName();
+                try {
+                    attached.await(); // A stage attached after completion would run on this thread instead
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return manager.login("admin", "adminpass");
+            }).thenApply(result -> {
+                callbackThread[0] = Thread.currentThread().getName();
+                return result;
+            });
+            attached.countDown();
+            User user = login.get();
+            if (user == admin && !"ui".equals(workerThread[0])
+                    && "ui".equals(callbackThread[0])) {
+                System.out.println("SUCCESS: Work runs in the background and completes on the callback thread.\n");
+            } else {
+                System.out.println("FAILURE: Work should run in the background and complete on the callback thread.\n");
+            }
+
+            String code = async.inviteUserAsync("asyncuser", "async@example.com", new HashSet<>(Set.of(Role.STUDENT))).get();
+            if (code != null && async.isUserInvitedAsync(code).get() && async.loginAsync("admin", "wrong").get() == null) {
+                System.out.println("SUCCESS: Async operations return the AuthManager results.\n");
+            } else {
+                System.out.println("FAILURE: Async operations should return the AuthManager results.\n");
+            }
+
+            try {
+                async.call(manager -> {
+                    throw new IllegalStateException("boom");
+                }).get();
+                System.out.println("FAILURE: Failed operation should complete exceptionally.\n");
+            } catch (java.util.concurrent.ExecutionException e) {
+                System.out.println("SUCCESS: Failed operation completes exceptionally.\n");
+            }
+        } catch (InterruptedException | java.util.concurrent.ExecutionException e) {
+            System.out.println("FAILURE: Async operation failed: " + e + "\n");
+        } finally {
+            uiThread.shutdown();
+        }
+    }
+
+    private void testBulkInvites() {
+        System.out.println("\n=====Test 24: Testing bulk invites=====\n");
+        reinitializeAuthManager();
+        authManager.createUser("taken", "pass", new HashSet<>(Set.of(Role.STUDENT)));
+        String pendingCode = authManager.inviteUser("pending", "pending@example.com", new HashSet<>(Set.of(Role.STUDENT)));
+
+        List<InviteSpec> specs = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            specs.add(new InviteSpec("student" + i, "student" + i + "@asu.edu", Set.of(Role.STUDENT)));
+        }
+        specs.add(new InviteSpec("taken", "taken@asu.edu", Set.of(Role.STUDENT))); // Registered username
+        specs.add(new InviteSpec("other", "PENDING@example.com", Set.of(Role.STUDENT))); // Pending email
+        specs.add(new InviteSpec("student1", "again@asu.edu", Set.of(Role.STUDENT))); // Duplicate in batch
+        specs.add(new InviteSpec("noroles", "noroles@asu.edu", Set.of())); // No roles
+
+        long start = System.nanoTime();
+        BulkInviteResult result = authManager.inviteUsers(specs);
+        long elapsedMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        Set<String> codes = new HashSet<>();
+        for (Invitation invitation : result.getInvitations()) {
+            codes.add(invitation.getInvitationCode());
+        }
+        if (result.getInvitedCount() == 5000 && result.getRejectedCount() == 4 && codes.size() == 5000
+                && !codes.contains(pendingCode) && authManager.isUserInvited(result.getInvitations().get(4999).getInvitationCode())
+                && authManager.getPendingInvitations().size() == 5001) {
+            System.out.println("SUCCESS: Bulk invite created " + result.getInvitedCount() + " invitations ("
+                    + (result.getInvitedCount() / elapsedMillis) + " per ms) and rejected the duplicates.\n");
+        } else {
+            System.out.println("FAILURE: Bulk invite should create 5000 invitations and reject 4.\n");
+        }
+
+        // A second run finds every student already invited
+        if (authManager.inviteUsers(specs.subList(0, 10)).getRejectedCount() == 10) {
+            System.out.println("SUCCESS: Pending invitations are detected as duplicates.\n");
+        } else {
+            System.out.println("FAILURE: Pending invitations should be detected as duplicates.\n");
+        }
+
+        String csv = "username,email,roles\nalice,alice@asu.edu,student\n\n\"bob\",bob@asu.edu,STUDENT;Instructor\n";
+        BulkInviteResult imported = authManager.importInvitations(new StringReader(csv));
+        boolean rejectedBadRole;
+        try {
+            authManager.importInvitations(new StringReader("carol,carol@asu.edu,TEACHER\n"));
+            rejectedBadRole = false;
+        } catch (IllegalArgumentException e) {
+            rejectedBadRole = e.getMessage().startsWith("Line 1");
+        }
+        if (imported.getInvitedCount() == 2
+                && imported.getInvitations().get(1).getRoles().equals(Set.of(Role.STUDENT, Role.INSTRUCTOR))
+                && rejectedBadRole) {
+            System.out.println("SUCCESS: Invitations are imported from CSV.\n");
+        } else {
+            System.out.println("FAILURE: Invitations should be imported from CSV.\n");
+        }
+
+        // A batch the storage fails to record is not left registered
+        AuthManager failing = new AuthManager(new InMemoryAuthStorage() {
+            @Override
+            public void saveInvitations(java.util.Collection<Invitation> batch) {
+                throw new UncheckedIOException(new IOException("Disk full"));
+            }
+        }, HASHER);
+        boolean thrown;
+        try {
+            failing.inviteUsers(specs.subList(0, 10));
+            thrown = false;
+        } catch (UncheckedIOException e) {
+            thrown = true;
+        }
+        if (thrown && failing.getPendingInvitations().isEmpty()) {
+            System.out.println("SUCCESS: A batch that was not recorded is not registered.\n");
+        } else {
+            System.out.println("FAILURE: A batch that was not recorded should not be registered.\n");
+        }
+        failing.shutdown();
+
+        // The batch is stored as one log record and replayed on restart
+        withTempDirectory("authdata", directory -> {
+            AuthManager stored = new AuthManager(new FileAuthStorage(directory), HASHER);
+            stored.inviteUsers(specs.subList(0, 100));
+            AuthManager replayed = new AuthManager(new FileAuthStorage(directory), HASHER);
+            if (replayed.getPendingInvitations().size() == 100) {
+                System.out.println("SUCCESS: Bulk invitations survive a restart.\n");
+            } else {
+                System.out.println("FAILURE: Bulk invitations should survive a restart.\n");
+            }
+            replayed.shutdown();
+        });
+    }
+
+    private void testUserPaging() {
+        System.out.println("\n=====Test 25: Testing user paging=====\n");
+        reinitializeAuthManager();
+        for (int i = 0; i < 250; i++) {
+            authManager.createUser("user" + i, "pass" + i, new HashSet<>(Set.of(Role.STUDENT)));
+        }
+        authManager.deleteUser(authManager.findUserByUsername("user10"));
+
+        // Walking the cursor visits every user once, in registration order
+        List<String> seen = new ArrayList<>();
+        UserPage page = authManager.getUsersPage(0, 100);
+        int pageCount = 1;
+        seen.addAll(page.getUsers().stream().map(User::getUsername).toList());
+        while (!page.isLastPage()) {
+            page = authManager.getUsersPage(page.getNextCursor(), 100);
+            seen.addAll(page.getUsers().stream().map(User::getUsername).toList());
+            pageCount++;
+        }
+        if (seen.size() == 250 && pageCount == 3 && seen.get(0).equals("admin") && !seen.contains("user10")
+                && seen.get(249).equals("user249")) {
+            System.out.println("SUCCESS: Cursor paging visits every user once.\n");
+        } else {
+            System.out.println("FAILURE: Cursor paging should visit every user once.\n");
+        }
+
+        long cursor = authManager.skipUsers(0, 100);
+        if (authManager.getUsersPage(cursor, 100).getUsers().get(0).getUsername().equals(seen.get(100))) {
+            System.out.println("SUCCESS: Skipping ahead lands on the next page.\n");
+        } else {
+            System.out.println("FAILURE: Skipping ahead should land on the next page.\n");
+        }
+
+        // Pages read from a mapped snapshot only load the users on the page
+        withTempDirectory("authdata", directory -> {
+            AuthManager stored = new AuthManager(new FileAuthStorage(directory), HASHER);
+            stored.createFirstUser("admin", "adminpass");
+            for (int i = 0; i < 300; i++) {
+                stored.createUser("user" + i, "pass" + i, new HashSet<>(Set.of(Role.STUDENT)));
+            }
+            stored.shutdown();
+
+            AuthManager mapped = new AuthManager(new FileAuthStorage(directory), HASHER);
+            mapped.findUserByUsername("user150"); // Already loaded before paging
+            mapped.deleteUser(mapped.findUserByUsername("user151"));
+            mapped.createUser("late", "latepass", new HashSet<>(Set.of(Role.STUDENT)));
+            long middle = mapped.skipUsers(0, 150);
+            UserPage mappedPage = mapped.getUsersPage(middle, 50);
+            List<String> names = mappedPage.getUsers().stream().map(User::getUsername).toList();
+            UserPage tail = mapped.getUsersPage(mapped.skipUsers(0, 290), 50);
+            if (names.size() == 50 && names.get(0).equals("user149") && names.get(1).equals("user150")
+                    && !names.contains("user151") && names.get(2).equals("user152")
+                    && tail.isLastPage() && tail.getUsers().get(tail.getUsers().size() - 1).getUsername().equals("late")) {
+                System.out.println("SUCCESS: Paging merges loaded and mapped users.\n");
+            } else {
+                System.out.println("FAILURE: Paging should merge loaded and mapped users.\n");
+            }
+            mapped.shutdown();
+        });
+    }
+
+    private void testUserSearch() {
+        System.out.println("\n=====Test 26: Testing user search=====\n");
+        reinitializeAuthManager();
+        for (int i = 0; i < 20000; i++) {
+            User user = authManager.createUser("user" + i, "pass", new HashSet<>(Set.of(i % 2 == 0 ? Role.STUDENT : Role.INSTRUCTOR)));
+            if (i % 4 == 0) {
+                authManager.completeAccountSetup(user, "First" + i, "", "Last" + i, "", "mail" + i + "@asu.edu");
+            }
+        }
+        User smith = authManager.createUser("jdoe", "pass", new HashSet<>(Set.of(Role.STUDENT)));
+        authManager.completeAccountSetup(smith, "Jane", "", "Smithers", "Janie", "jane.smithers@asu.edu");
+
+        // Prefix matches usernames, emails, full names and name words, ignoring case
+        if (authManager.searchUsers(new UserQuery().setText("JDO")).equals(List.of(smith))
+                && authManager.searchUsers(new UserQuery().setText("jane.s")).equals(List.of(smith))
+                && authManager.searchUsers(new UserQuery().setText("smith")).equals(List.of(smith))
+                && authManager.searchUsers(new UserQuery().setText("janie")).equals(List.of(smith))
+                && authManager.searchUsers(new UserQuery().setText("mithers")).isEmpty()) {
+            System.out.println("SUCCESS: Prefix search matches username, email and name.\n");
+        } else {
+            System.out.println("FAILURE: Prefix search should match username, email and name.\n");
+        }
+
+        long start = System.nanoTime();
+        List<User> contains = authManager.searchUsers(new UserQuery().setText("mithers").setMatchMode(UserQuery.MatchMode.CONTAINS));
+        List<User> ranged = authManager.searchUsers(new UserQuery().setText("user1999").setLimit(100));
+        long micros = (System.nanoTime() - start) / 1000;
+        List<User> common = authManager.searchUsers(new UserQuery().setText("ser1999").setMatchMode(UserQuery.MatchMode.CONTAINS)
+                .setLimit(100)); // Runs through sequences shared by every user as well as rare ones
+        if (contains.equals(List.of(smith)) && ranged.size() == 11 && ranged.get(0).getUsername().equals("user1999")
+                && ranged.get(1).getUsername().equals("user19990") && common.size() == 11) {
+            System.out.println("SUCCESS: Substring and prefix search over 20000 users took " + micros + " microseconds.\n");
+        } else {
+            System.out.println("FAILURE: Substring and prefix search should find the matching users.\n");
+        }
+
+        // Filters and sort order, including changes made after the users were indexed
+        User changed = authManager.findUserByUsername("user1");
+        authManager.addRole(changed, Role.ADMIN);
+        List<User> admins = authManager.searchUsers(new UserQuery().setRole(Role.ADMIN).setSortKey(UserQuery.SortKey.ID));
+        List<User> setUp = authManager.searchUsers(new UserQuery().setRole(Role.STUDENT).setSetupComplete(true).setLimit(10000));
+        List<User> byEmail = authManager.searchUsers(new UserQuery().setSetupComplete(true)
+                .setSortKey(UserQuery.SortKey.EMAIL).setDescending(true).setLimit(3));
+        authManager.deleteUser(smith);
+        if (admins.size() == 2 && admins.get(1) == changed && setUp.size() == 5001
+                && byEmail.get(0).getEmail().equals("mail9996@asu.edu") && byEmail.get(1).getEmail().equals("mail9992@asu.edu")
+                && authManager.searchUsers(new UserQuery().setText("jdoe")).isEmpty()
+                && authManager.searchUsers(new UserQuery().setText("mithers").setMatchMode(UserQuery.MatchMode.CONTAINS)).isEmpty()) {
+            System.out.println("SUCCESS: Role and setup filters and sort order are applied.\n");
+        } else {
+            System.out.println("FAILURE: Role and setup filters and sort order should be applied.\n");
+        }
+
+        // Users still in a mapped snapshot are searchable without listing them all
+        withTempDirectory("authdata", directory -> {
+            AuthManager stored = new AuthManager(new FileAuthStorage(directory), HASHER);
+            stored.createFirstUser("admin", "adminpass");
+            for (int i = 0; i < 100; i++) {
+                User user = stored.createUser("user" + i, "pass", new HashSet<>(Set.of(Role.STUDENT)));
+                stored.completeAccountSetup(user, "First" + i, "", "Last" + i, "", "user" + i + "@example.com");
+            }
+            stored.shutdown();
+            AuthManager mapped = new AuthManager(new FileAuthStorage(directory), HASHER);
+            mapped.completeAccountSetup(mapped.findUserByUsername("user42"), "Renamed", "", "Person", "", "renamed@example.com");
+            List<User> found = mapped.searchUsers(new UserQuery().setText("last4").setSortKey(UserQuery.SortKey.ID));
+            if (found.size() == 10 && found.get(0).getUsername().equals("user4")
+                    && mapped.searchUsers(new UserQuery().setText("renamed")).size() == 1
+                    && mapped.searchUsers(new UserQuery().setText("user42@")).isEmpty()) {
+                System.out.println("SUCCESS: Snapshot users are searchable.\n");
+            } else {
+                System.out.println("FAILURE: Snapshot users should be searchable.\n");
+            }
+            mapped.shutdown();
+        });
+    }
+
+    private void testRoleIndex() {
+        System.out.println("\n=====Test 27: Testing role index=====\n");
+        reinitializeAuthManager();
+        List<User> instructors = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            User user = authManager.createUser("user" + i, "pass", new HashSet<>(Set.of(Role.STUDENT)));
+            if (i % 100 == 0) {
+                authManager.addRole(user, Role.INSTRUCTOR);
+                instructors.add(user);
+            }
+        }
+
+        if (authManager.getUsersWithRole(Role.INSTRUCTOR).equals(instructors)
+                && authManager.countUsersWithRole(Role.STUDENT) == 1000
+                && authManager.countUsersWithRole(Role.ADMIN) == 1
+                && authManager.getUsersWithRole(Role.ADMIN).get(0) == admin) {
+            System.out.println("SUCCESS: Users are listed and counted by role.\n");
+        } else {
+            System.out.println("FAILURE: Users should be listed and counted by role.\n");
+        }
+
+        authManager.removeRole(instructors.get(0), Role.INSTRUCTOR);
+        authManager.deleteUser(instructors.get(1));
+        authManager.addRole(authManager.findUserByUsername("user7"), Role.ADMIN);
+        if (authManager.countUsersWithRole(Role.INSTRUCTOR) == 8 && authManager.countUsersWithRole(Role.STUDENT) == 999
+                && authManager.getUsersWithRole(Role.ADMIN).get(1).getUsername().equals("user7")
+                && authManager.searchUsers(new UserQuery().setRole(Role.INSTRUCTOR).setSortKey(UserQuery.SortKey.ID)).size() == 8) {
+            System.out.println("SUCCESS: Role changes and deletions update the role index.\n");
+        } else {
+            System.out.println("FAILURE: Role changes and deletions should update the role index.\n");
+        }
+
+        // Users with the same roles share one read-only role set
+        User first = authManager.findUserByUsername("user1");
+        User second = authManager.findUserByUsername("user2");
+        boolean readOnly;
+        try {
+            first.getRoles().add(Role.ADMIN);
+            readOnly = false;
+        } catch (UnsupportedOperationException e) {
+            readOnly = true;
+        }
+        if (first.getRoles() == second.getRoles() && readOnly && first.hasRole(Role.STUDENT) && !first.hasRole(Role.ADMIN)) {
+            System.out.println("SUCCESS: Role sets are shared and read-only.\n");
+        } else {
+            System.out.println("FAILURE: Role sets should be shared and read-only.\n");
+        }
+
+        // Roles of users still in a mapped snapshot are indexed without loading them
+        withTempDirectory("authdata", directory -> {
+            AuthManager stored = new AuthManager(new FileAuthStorage(directory), HASHER);
+            stored.createFirstUser("admin", "adminpass");
+            for (int i = 0; i < 50; i++) {
+                stored.createUser("user" + i, "pass", new HashSet<>(Set.of(i < 5 ? Role.INSTRUCTOR : Role.STUDENT)));
+            }
+            stored.shutdown();
+            AuthManager mapped = new AuthManager(new FileAuthStorage(directory), HASHER);
+            mapped.addRole(mapped.findUserByUsername("user10"), Role.INSTRUCTOR);
+            if (mapped.countUsersWithRole(Role.INSTRUCTOR) == 6 && mapped.countUsersWithRole(Role.STUDENT) == 45
+                    && mapped.getUsersWithRole(Role.INSTRUCTOR).get(5).getUsername().equals("user10")) {
+                System.out.println("SUCCESS: Snapshot users are indexed by role.\n");
+            } else {
+                System.out.println("FAILURE: Snapshot users should be indexed by role.\n");
+            }
+            mapped.shutdown();
+        });
+    }
+
+    private void testCompactUsers() {
+        System.out.println("\n=====Test 28: Testing compact user layout=====\n");
+        reinitializeAuthManager();
+        User first = authManager.createUser("first", "pass", new HashSet<>(Set.of(Role.STUDENT)));
+        User second = authManager.createUser("second", "pass", new HashSet<>(Set.of(Role.STUDENT, Role.INSTRUCTOR)));
+        authManager.completeAccountSetup(first, new String("Alex"), "", new String("Shah"), "", "first@asu.edu");
+        authManager.completeAccountSetup(second, new String("Alex"), "", new String("Shah"), "Al", "second@asu.edu");
+        if (first.getFirstName() == second.getFirstName() && first.getLastName() == second.getLastName()) {
+            System.out.println("SUCCESS: Equal names share one string.\n");
+        } else {
+            System.out.println("FAILURE: Equal names should share one string.\n");
+        }
+
+        // Roles and the setup flag share one field without disturbing each other
+        authManager.removeRole(second, Role.STUDENT);
+        second.setSetupComplete(false);
+        second.setSetupComplete(true);
+        if (second.isSetupComplete() && second.getRoles().equals(Set.of(Role.INSTRUCTOR)) && first.isSetupComplete()
+                && first.getRoleBits() == Role.STUDENT.bit()) {
+            System.out.println("SUCCESS: Roles and setup flag are packed together.\n");
+        } else {
+            System.out.println("FAILURE: Roles and setup flag should be packed together.\n");
+        }
+
+        // The columnar table holds the same values and shares the email domain
+        UserTable table = UserTable.of(authManager.getAllUsers());
+        User copy = table.toUser(2);
+        if (table.size() == 3 && copy.getId() == second.getId() && copy.getUsername().equals("second")
+                && copy.getEmail().equals("second@asu.edu") && copy.getPreferredName().equals("Al")
+                && copy.getRoles().equals(Set.of(Role.INSTRUCTOR)) && copy.isSetupComplete()
+                && table.getEmail(0) == null && !table.isSetupComplete(0)
+                && table.getDictionarySize() == 5) { // Alex, "", Shah, @asu.edu, Al
+            System.out.println("SUCCESS: User table holds the users column by column.\n");
+        } else {
+            System.out.println("FAILURE: User table should hold the users column by column.\n");
+        }
+    }
+
+    private void testSessions() {
+        System.out.println("\n=====Test 29: Testing sessions=====\n");
+        reinitializeAuthManager();
+        User student = authManager.createUser("student", "pass", new HashSet<>(Set.of(Role.STUDENT, Role.INSTRUCTOR)));
+        authManager.completeAccountSetup(student, "Stu", "", "Dent", "", "student@asu.edu");
+
+        Session session = authManager.startSession(student, Role.STUDENT);
+        long verifications = HASHER.getVerifyCount();
+        boolean valid = true;
+        for (int i = 0; i < 1000; i++) {
+            valid &= authManager.validateSession(session.getToken()) == session;
+        }
+        if (valid && session.getToken().length() >= 43 && HASHER.getVerifyCount() == verifications
+                && authManager.startSession(student, Role.ADMIN) == null
+                && authManager.validateSession("not-a-token") == null) {
+            System.out.println("SUCCESS: Session tokens are validated without checking the password.\n");
+        } else {
+            System.out.println("FAILURE: Session tokens should be validated without checking the password.\n");
+        }
+
+        // Logging out, losing the role, a new password and deletion all end sessions
+        Session instructor = authManager.startSession(student, Role.INSTRUCTOR);
+        Session other = authManager.startSession(student, Role.STUDENT);
+        authManager.endSession(session.getToken());
+        authManager.removeRole(student, Role.INSTRUCTOR);
+        boolean afterRoleChange = authManager.validateSession(instructor.getToken()) == null
+                && authManager.validateSession(other.getToken()) == other;
+        authManager.updateUserPassword("student@asu.edu", "newpass");
+        boolean afterPasswordChange = authManager.validateSession(other.getToken()) == null;
+        Session last = authManager.startSession(student, Role.STUDENT);
+        authManager.deleteUser(student);
+        if (authManager.validateSession(session.getToken()) == null && afterRoleChange && afterPasswordChange
+                && authManager.validateSession(last.getToken()) == null) {
+            System.out.println("SUCCESS: Sessions end on logout, role removal, password change and deletion.\n");
+        } else {
+            System.out.println("FAILURE: Sessions should end on logout, role removal, password change and deletion.\n");
+        }
+
+        // The cache drops the least recently used session and expires idle ones
+        SessionManager bounded = new SessionManager(3, java.time.Duration.ofMillis(200));
+        Session first = bounded.create(admin, Role.ADMIN);
+        Session second = bounded.create(admin, Role.ADMIN);
+        Session third = bounded.create(admin, Role.ADMIN);
+        bounded.validate(first.getToken()); // Second is now the least recently used
+        Session fourth = bounded.create(admin, Role.ADMIN);
+        boolean lru = bounded.size() == 3 && bounded.validate(second.getToken()) == null
+                && bounded.validate(first.getToken()) == first && bounded.getEvictedCount() == 1;
+        int purged = bounded.purgeExpired(java.time.Instant.now().plusSeconds(1));
+        if (lru && purged == 3 && bounded.size() == 0 && bounded.validate(third.getToken()) == null
+                && bounded.validate(fourth.getToken()) == null) {
+            System.out.println("SUCCESS: Session cache is bounded and expires idle sessions.\n");
+        } else {
+            System.out.println("FAILURE: Session cache should be bounded and expire idle sessions.\n");
+        }
+
+        // Logging a user out only touches that user's sessions, and evicted sessions are not counted again
+        SessionManager perUser = new SessionManager(3, SessionManager.DEFAULT_IDLE_TIMEOUT);
+        User sessionUser = authManager.createUser("sessionother", "pass", new HashSet<>(Set.of(Role.STUDENT)));
+        Session evicted = perUser.create(admin, Role.ADMIN);
+        Session kept = perUser.create(admin, Role.ADMIN);
+        Session others = perUser.create(sessionUser, Role.STUDENT);
+        perUser.create(sessionUser, Role.STUDENT); // Evicts the first admin session
+        if (perUser.invalidateUser(admin) == 1 && perUser.validate(kept.getToken()) == null
+                && perUser.validate(evicted.getToken()) == null && perUser.validate(others.getToken()) == others
+                && perUser.invalidateUsers(List.of(admin, sessionUser)) == 2 && perUser.size() == 0) {
+            System.out.println("SUCCESS: Sessions are ended per user without touching other users' sessions.\n");
+        } else {
+            System.out.println("FAILURE: Sessions should be ended per user without touching other users' sessions.\n");
+        }
+    }
+
+    private void testLoginRateLimiting() {
+        System.out.println("\n=====Test 30: Testing login rate limiting=====\n");
+        reinitializeAuthManager();
+        authManager.createUser("student", "pass", new HashSet<>(Set.of(Role.STUDENT)));
+
+        // Failed attempts at one username lock it, even for the right password, without hashing anything
+        for (int i = 0; i < LoginRateLimiter.DEFAULT_MAX_FAILURES_PER_USERNAME; i++) {
+            authManager.login("student", "wrong" + i);
+        }
+        long verifications = HASHER.getVerifyCount();
+        boolean rejected = authManager.login("student", "pass") == null && authManager.isLoginLimited("student", null);
+        if (rejected && HASHER.getVerifyCount() == verifications && authManager.login("admin", "adminpass") != null) {
+            System.out.println("SUCCESS: Failed logins lock only their username and rejections skip hashing.\n");
+        } else {
+            System.out.println("FAILURE: Failed logins should lock only their username and rejections should skip hashing.\n");
+        }
+
+        // A source is limited across usernames, and a success clears the username's failures
+        LoginRateLimiter limiter = new LoginRateLimiter(3, 5, java.time.Duration.ofMinutes(1));
+        java.time.Instant start = java.time.Instant.parse("2024-10-17T00:00:00Z");
+        boolean allowed = true;
+        for (int i = 0; i < 5; i++) {
+            allowed &= limiter.tryAcquire("user" + i, "10.0.0.1", start);
+        }
+        boolean flooded = !limiter.tryAcquire("user9", "10.0.0.1", start) && limiter.tryAcquire("user9", "10.0.0.2", start);
+        limiter.recordFailure("user1", start);
+        limiter.recordFailure("user1", start);
+        limiter.recordSuccess("user1");
+        limiter.recordFailure("user1", start);
+        limiter.recordFailure("user1", start);
+        boolean cleared = limiter.tryAcquire("user1", null, start);
+        limiter.recordFailure("user1", start);
+        boolean locked = !limiter.tryAcquire("user1", null, start);
+        if (allowed && flooded && cleared && locked) {
+            System.out.println("SUCCESS: Sources are limited across usernames and successes clear failures.\n");
+        } else {
+            System.out.println("FAILURE: Sources should be limited across usernames and successes should clear failures.\n");
+        }
+
+        // The window slides: old attempts fade out and idle counters are dropped
+        limiter.recordFailure("user1", start.plusSeconds(70));
+        boolean sliding = !limiter.tryAcquire("user1", null, start.plusSeconds(70)) // 3 * 5/6 + 1 failures
+                && limiter.tryAcquire("user1", null, start.plusSeconds(110)); // 3 * 1/6 + 1 failures
+        int purged = limiter.purgeExpired(start.plusSeconds(180));
+        if (sliding && purged > 0 && limiter.size() == 0) {
+            System.out.println("SUCCESS: Rate limit windows slide and idle counters expire.\n");
+        } else {
+            System.out.println("FAILURE: Rate limit windows should slide and idle counters should expire.\n");
+        }
+
+        // Made-up usernames get no counters, and a flood of new sources stays within the bound
+        int tracked = authManager.getLoginRateLimiter().size();
+        for (int i = 0; i < 50; i++) {
+            authManager.login("ghost" + i, "pass");
+        }
+        LoginRateLimiter floodedLimiter = new LoginRateLimiter();
+        for (int i = 0; i < 100_000; i++) {
+            floodedLimiter.tryAcquire("user", "10." + (i >> 16) + "." + ((i >> 8) & 255) + "." + (i & 255), start);
+        }
+        if (authManager.getLoginRateLimiter().size() == tracked && floodedLimiter.size() <= 16 * 4096
+                && floodedLimiter.getEvictedCount() == 100_000 - floodedLimiter.size()) {
+            System.out.println("SUCCESS: Rate limit counters are bounded and unknown usernames are not tracked.\n");
+        } else {
+            System.out.println("FAILURE: Rate limit counters should be bounded and unknown usernames should not be tracked.\n");
+        }
+    }
+
+    private void testAuditLog() {
+        System.out.println("\n=====Test 31: Testing the audit log=====\n");
+        withTempDirectory("authdata", directory -> {
+            Path file = directory.resolve("audit.log");
+            AuthManager audited = new AuthManager(new InMemoryAuthStorage(), HASHER, new AuditLog(file));
+            java.time.Instant start = java.time.Instant.now();
+            audited.createFirstUser("admin", "adminpass");
+            User student = audited.createUser("student", "pass", new HashSet<>(Set.of(Role.STUDENT)));
+            audited.completeAccountSetup(student, "Stu", "", "Dent", "", "student@asu.edu");
+            audited.addRole(student, Role.INSTRUCTOR);
+            audited.removeRole(student, Role.STUDENT);
+            audited.updateUserPassword("student@asu.edu", "newpass");
+            String code = audited.inviteUser("invitee", "invitee@asu.edu", new HashSet<>(Set.of(Role.STUDENT)));
+            audited.markInvitationAsUsed(code);
+            audited.deleteUser(student);
+
+            List<AuditEvent.Type> types = new ArrayList<>();
+            for (AuditEvent event : audited.getAuditLog().query("student", start, null)) {
+                types.add(event.getType());
+            }
+            List<AuditEvent.Type> expected = List.of(AuditEvent.Type.USER_CREATED, AuditEvent.Type.ACCOUNT_SETUP_COMPLETED,
+                    AuditEvent.Type.ROLE_ADDED, AuditEvent.Type.ROLE_REMOVED, AuditEvent.Type.PASSWORD_CHANGED,
+                    AuditEvent.Type.USER_DELETED);
+            List<AuditEvent> invitee = audited.getAuditLog().query("invitee", null, null);
+            if (types.equals(expected) && invitee.size() == 2
+                    && invitee.get(1).getType() == AuditEvent.Type.INVITATION_REDEEMED
+                    && audited.getAuditLog().query(null, java.time.Instant.now().plusSeconds(60), null).isEmpty()) {
+                System.out.println("SUCCESS: Changes are audited and queried by user and time.\n");
+            } else {
+                System.out.println("FAILURE: Changes should be audited and queried by user and time, got " + types + ".\n");
+            }
+
+            // Many threads recording at once only hand events to the background writer
+            AuditLog log = audited.getAuditLog();
+            int threads = 4;
+            int perThread = 50_000;
+            Thread[] workers = new Thread[threads];
+            long begin = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                String name = "load" + t;
+                workers[t] = new Thread(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        log.record(AuditEvent.Type.ROLE_ADDED, AuditEvent.NO_USER, name, null);
+                    }
+                });
+                workers[t].start();
+            }
+            for (Thread worker : workers) {
+                try {
+                    worker.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            long nanosPerEvent = (System.nanoTime() - begin) / perThread; // Each thread records perThread events
+            List<AuditEvent> all = log.query(null, null, null);
+            boolean ordered = true;
+            for (int i = 1; i < all.size(); i++) {
+                ordered &= all.get(i).getSequence() == all.get(i - 1).getSequence() + 1;
+            }
+            if (all.size() == 9 + threads * perThread && ordered && log.query("load0", null, null).size() == perThread) {
+                System.out.println("SUCCESS: Concurrent events are all written in order (" + nanosPerEvent + " ns per event).\n");
+            } else {
+                System.out.println("FAILURE: Concurrent events should all be written in order, got " + all.size() + ".\n");
+            }
+
+            // A torn record at the end is dropped and numbering continues after the last complete one
+            audited.shutdown();
+            long last = all.get(all.size() - 1).getSequence();
+            Files.write(file, new byte[] { 0, 0, 0, 40, 1, 2 }, StandardOpenOption.APPEND);
+            AuditLog reopened = new AuditLog(file);
+            reopened.record(AuditEvent.Type.USER_DELETED, AuditEvent.NO_USER, "after", null);
+            List<AuditEvent> after = reopened.query("after", null, null);
+            if (after.size() == 1 && after.get(0).getSequence() == last + 1
+                    && reopened.query(null, null, null).size() == all.size() + 1) {
+                System.out.println("SUCCESS: The audit log recovers from a torn record.\n");
+            } else {
+                System.out.println("FAILURE: The audit log should recover from a torn record.\n");
+            }
+            reopened.close();
+        });
+    }
+
+    private void testNotifications() {
+        System.out.println("\n=====Test 32: Testing notifications=====\n");
+        reinitializeAuthManager();
+        User student = authManager.createUser("student", "pass", new HashSet<>(Set.of(Role.STUDENT)));
+        authManager.completeAccountSetup(student, "Stu", "", "Dent", "", "student@asu.edu");
+
+        // Codes reach the default in-memory sink instead of the console
+        String code = authManager.inviteUser("invitee", "invitee@asu.edu", new HashSet<>(Set.of(Role.STUDENT)));
+        authManager.requestPasswordReset("student@asu.edu");
+        authManager.getNotifications().flush();
+        InMemoryNotificationSink mailbox = (InMemoryNotificationSink) authManager.getNotifications().getSink();
+        AuthNotification invitation = mailbox.getLatest(AuthNotification.Type.INVITATION_CODE, "invitee@asu.edu");
+        AuthNotification otp = mailbox.take(AuthNotification.Type.PASSWORD_RESET_OTP, "student@asu.edu");
+        ByteArrayOutputStream listing = new ByteArrayOutputStream();
+        authManager.listInvitations(new PrintStream(listing));
+        if (invitation != null && code.equals(invitation.getCode()) && otp != null
+                && otp.getCode().equals(authManager.findRequestByEmail("student@asu.edu").getOneTimePassword())
+                && !otp.toString().contains(otp.getCode()) && !listing.toString().contains(code)) {
+            System.out.println("SUCCESS: Codes are delivered to the sink and kept out of listings.\n");
+        } else {
+            System.out.println("FAILURE: Codes should be delivered to the sink and kept out of listings.\n");
+        }
+
+        // Codes leave the sink once they are used, deleted or expired
+        String deleted = authManager.inviteUser("deleted", "deleted@asu.edu", new HashSet<>(Set.of(Role.STUDENT)));
+        authManager.deleteInvitation(deleted);
+        authManager.markInvitationAsUsed(code);
+        authManager.requestPasswordReset("student@asu.edu");
+        authManager.removeRequest(authManager.findRequestByEmail("student@asu.edu"));
+        authManager.getNotifications().flush();
+        java.time.Instant now = java.time.Instant.now();
+        InMemoryNotificationSink expiring = new InMemoryNotificationSink();
+        expiring.deliver(new AuthNotification(AuthNotification.Type.INVITATION_CODE, "late", "late@asu.edu", "old",
+                now.minusSeconds(1)));
+        expiring.deliver(new AuthNotification(AuthNotification.Type.INVITATION_CODE, "soon", "soon@asu.edu", "new",
+                now.plusSeconds(60)));
+        boolean heldUntilExpiry = expiring.size() == 1 && expiring.getLatest(AuthNotification.Type.INVITATION_CODE,
+                "soon@asu.edu") != null;
+        expiring.purgeExpired(now.plusSeconds(61));
+        if (mailbox.size() == 0 && heldUntilExpiry && expiring.size() == 0) {
+            System.out.println("SUCCESS: Used, deleted and expired codes are dropped from the sink.\n");
+        } else {
+            System.out.println("FAILURE: Used, deleted and expired codes should be dropped from the sink, "
+                    + mailbox.size() + " still held.\n");
+        }
+
+        // A slow sink does not hold up requests, a full queue drops and a failing sink is counted
+        java.util.concurrent.CountDownLatch release = new java.util.concurrent.CountDownLatch(1);
+        NotificationDispatcher slow = new NotificationDispatcher(notification -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (notification.getEmail().startsWith("bad")) {
+                throw new IllegalStateException("Mail server down");
+            }
+        }, 4);
+        long begin = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            slow.dispatch(new AuthNotification(AuthNotification.Type.INVITATION_CODE, "user" + i,
+                    (i == 0 ? "bad" : "user") + i + "@asu.edu", "code" + i, null));
+        }
+        long elapsedMillis = (System.nanoTime() - begin) / 1_000_000;
+        release.countDown();
+        slow.flush();
+        if (elapsedMillis < 1000 && slow.getDroppedCount() == 5 && slow.getFailedCount() == 1
+                && slow.getDeliveredCount() == 4) {
+            System.out.println("SUCCESS: Dispatching never waits for the sink.\n");
+        } else {
+            System.out.println("FAILURE: Dispatching should never wait for the sink, got " + slow.getDeliveredCount()
+                    + " delivered, " + slow.getDroppedCount() + " dropped and " + slow.getFailedCount() + " failed.\n");
+        }
+        slow.shutdown();
+
+        // Revocations that find the queue full wait instead of being dropped with the notifications
+        java.util.concurrent.CountDownLatch unblock = new java.util.concurrent.CountDownLatch(1);
+        InMemoryNotificationSink held = new InMemoryNotificationSink();
+        NotificationDispatcher busy = new NotificationDispatcher(new NotificationSink() {
+            @Override
+            public void deliver(AuthNotification notification) {
+                try {
+                    unblock.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                held.deliver(notification);
+            }
+
+            @Override
+            public void revoke(AuthNotification.Type type, String email, String code) {
+                held.revoke(type, email, code);
+            }
+        }, 4);
+        java.time.Instant later = java.time.Instant.now().plusSeconds(60);
+        for (int i = 0; i < 4; i++) {
+            busy.dispatch(new AuthNotification(AuthNotification.Type.INVITATION_CODE, "user" + i, "user" + i + "@asu.edu",
+                    "code" + i, later));
+        }
+        for (int i = 0; i < 4; i++) {
+            busy.revoke(AuthNotification.Type.INVITATION_CODE, "user" + i + "@asu.edu", "code" + i);
+        }
+        long deferred = busy.getDeferredCount();
+        unblock.countDown();
+        busy.flush();
+        if (deferred > 0 && busy.getDroppedCount() == 0 && held.size() == 0) {
+            System.out.println("SUCCESS: Revocations are kept when the queue is full.\n");
+        } else {
+            System.out.println("FAILURE: Revocations should be kept when the queue is full, " + held.size()
+                    + " codes still held.\n");
+        }
+        busy.shutdown();
+    }
+
+    private void testMetrics() {
+        System.out.println("\n=====Test 33: Testing metrics=====\n");
+        reinitializeAuthManager();
+        User student = authManager.createUser("student", "pass", new HashSet<>(Set.of(Role.STUDENT)));
+        authManager.completeAccountSetup(student, "Stu", "", "Dent", "", "student@asu.edu");
+        authManager.login("student", "pass");
+        authManager.login("student", "wrong");
+        authManager.login("nobody", "pass");
+        authManager.inviteUser("invitee", "invitee@asu.edu", new HashSet<>(Set.of(Role.STUDENT)));
+        authManager.requestPasswordReset("student@asu.edu");
+        authManager.deleteUser(student);
+        authManager.deleteUser(student);
+
+        MetricsRegistry metrics = authManager.getMetrics();
+        OperationMetrics login = metrics.operation("login");
+        OperationMetrics delete = metrics.operation("deleteUser");
+        if (login.getSuccessCount() == 1 && login.getFailureCount() == 2 && delete.getSuccessCount() == 1
+                && delete.getFailureCount() == 1 && login.getLatency().getCount() == 3
+                && login.getLatency().getValueAtQuantile(0.5) > 0 && Math.abs(login.getFailureRate() - 2.0 / 3) < 1e-9) {
+            System.out.println("SUCCESS: Operations are counted by outcome and timed.\n");
+        } else {
+            System.out.println("FAILURE: Operations should be counted by outcome and timed.\n");
+        }
+
+        // Log-linear buckets keep percentiles within an eighth of the true value
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long nanos = 1; nanos <= 100_000; nanos++) {
+            histogram.record(nanos * 1000);
+        }
+        long p50 = histogram.getValueAtQuantile(0.5);
+        long p99 = histogram.getValueAtQuantile(0.99);
+        if (Math.abs(p50 - 50_000_000) <= 50_000_000 / 8 && Math.abs(p99 - 99_000_000) <= 99_000_000 / 8
+                && histogram.getValueAtQuantile(1.0) == 100_000_000 && histogram.getCount() == 100_000) {
+            System.out.println("SUCCESS: Latency percentiles are accurate to a bucket.\n");
+        } else {
+            System.out.println("FAILURE: Latency percentiles should be accurate to a bucket, got p50 " + p50 + " and p99 " + p99 + ".\n");
+        }
+
+        // The text export has counters, summaries and gauges, and is written as a whole file
+        String export = metrics.export();
+        boolean exported = export.contains("auth_operation_total{operation=\"login\",outcome=\"failure\"} 2")
+                && export.contains("auth_operation_latency_seconds{operation=\"inviteUser\",quantile=\"0.99\"}")
+                && export.contains("auth_users 1\n") && export.contains("auth_pending_invitations 1\n")
+                && export.contains("auth_pending_reset_requests 1\n");
+        java.util.concurrent.atomic.AtomicBoolean written = new java.util.concurrent.atomic.AtomicBoolean();
+        withTempDirectory("metrics", directory -> {
+            Path file = directory.resolve("auth.prom");
+            metrics.writeTo(file);
+            written.set(Files.readString(file).startsWith("# TYPE auth_operation_total counter"));
+        });
+        if (exported && written.get()) {
+            System.out.println("SUCCESS: Metrics are exported as text.\n");
+        } else {
+            System.out.println("FAILURE: Metrics should be exported as text:\n" + export);
+        }
+    }
+
+    private void testOtpGenerator() {
+        System.out.println("\n=====Test 34: Testing one-time password generation=====\n");
+        OtpGenerator generator = new OtpGenerator();
+        int threads = 8;
+        int perThread = 10_000;
+        Set<String> codes = java.util.concurrent.ConcurrentHashMap.newKeySet();
+        java.util.concurrent.atomic.AtomicBoolean wellFormed = new java.util.concurrent.atomic.AtomicBoolean(true);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = Thread.ofVirtual().start(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    String code = generator.next();
+                    if (code.length() != OtpGenerator.DIGITS || !code.chars().allMatch(Character::isDigit)) {
+                        wellFormed.set(false);
+                    }
+                    codes.add(code);
+                }
+            });
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        boolean padded = codes.stream().anyMatch(code -> code.startsWith("0"));
+        // 80,000 draws from a million codes repeat about 3,100 times, far fewer unless codes are skewed
+        if (wellFormed.get() && padded && codes.size() > 75_000 && generator.getCodesPerSecond() > 0
+                && generator.getGeneratedCount() >= threads * perThread) {
+            System.out.println("SUCCESS: Codes are six zero-padded digits, spread evenly (" + (long) generator.getCodesPerSecond() + " codes/s).\n");
+        } else {
+            System.out.println("FAILURE: Codes should be six zero-padded digits spread evenly, got " + codes.size() + " distinct.\n");
+        }
+        generator.shutdown();
+
+        // A code held by another live request is refused, an expired or replaced one may be reused
+        ResetRequestStore store = new ResetRequestStore();
+        store.add(new ResetRequest("a@asu.edu", "123456", java.time.Instant.now().plusSeconds(60)));
+        store.add(new ResetRequest("old@asu.edu", "654321", java.time.Instant.now().minusSeconds(1)));
+        boolean refused = !store.addWithUniqueOtp(new ResetRequest("b@asu.edu", "123456", java.time.Instant.now().plusSeconds(60)));
+        boolean expiredReused = store.addWithUniqueOtp(new ResetRequest("b@asu.edu", "654321", java.time.Instant.now().plusSeconds(60)));
+        boolean replaced = store.addWithUniqueOtp(new ResetRequest("a@asu.edu", "123456", java.time.Instant.now().plusSeconds(60)));
+
+        reinitializeAuthManager();
+        Set<String> live = new HashSet<>();
+        for (int i = 0; i < 2000; i++) {
+            authManager.requestPasswordReset("user" + i + "@asu.edu");
+        }
+        for (int i = 0; i < 2000; i++) {
+            live.add(authManager.findRequestByEmail("user" + i + "@asu.edu").getOneTimePassword());
+        }
+        if (refused && expiredReused && replaced && live.size() == 2000) {
+            System.out.println("SUCCESS: Live reset requests never share a one-time password.\n");
+        } else {
+            System.out.println("FAILURE: Live reset requests should never share a one-time password.\n");
+        }
+    }
+
+    private void testBulkPurge() {
+        System.out.println("\n=====Test 35: Testing bulk user purge=====\n");
+        reinitializeAuthManager();
+        List<User> instructors = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            User user = authManager.createUser("student" + i, "pass", new HashSet<>(Set.of(Role.STUDENT)));
+            authManager.completeAccountSetup(user, "Stu" + i, "", "Dent", "", "student" + i + "@asu.edu");
+        }
+        for (int i = 0; i < 10; i++) {
+            instructors.add(authManager.createUser("instructor" + i, "pass", new HashSet<>(Set.of(Role.INSTRUCTOR))));
+        }
+        Session session = authManager.startSession(authManager.findUserByUsername("student7"), Role.STUDENT);
+
+        // Matching users vanish from lookups and searches at once, their search keys are cleaned later
+        long begin = System.nanoTime();
+        int purged = authManager.purgeUsers(user -> user.hasRole(Role.STUDENT));
+        long purgeMillis = (System.nanoTime() - begin) / 1_000_000;
+        boolean gone = purged == 3000 && authManager.getUserCount() == 11
+                && authManager.findUserByUsername("student42") == null && !authManager.userExistsForEmail("student42@asu.edu")
+                && authManager.searchUsers(new UserQuery().setText("stud")).isEmpty()
+                && authManager.countUsersWithRole(Role.STUDENT) == 0
+                && authManager.validateSession(session.getToken()) == null;
+        boolean tombstoned = authManager.getMetrics().export().contains("auth_search_tombstones 3000\n");
+        int cleaned = authManager.compactDeletedUsers();
+        if (gone && tombstoned && cleaned == 3000 && authManager.compactDeletedUsers() == 0
+                && authManager.searchUsers(new UserQuery().setText("instr")).size() == 10) {
+            System.out.println("SUCCESS: Purged users are gone at once and compacted later (" + purgeMillis + " ms for 3000).\n");
+        } else {
+            System.out.println("FAILURE: Purged users should be gone at once and compacted later.\n");
+        }
+
+        // Purging by id ignores unknown ids and is recorded as batches that replay after a restart
+        List<Long> ids = new ArrayList<>();
+        for (User instructor : instructors.subList(0, 5)) {
+            ids.add(instructor.getId());
+        }
+        ids.add(999_999L);
+        boolean byId = authManager.purgeUsers(ids) == 5 && authManager.getUserCount() == 6;
+        withTempDirectory("authdata", directory -> {
+            AuthManager stored = new AuthManager(new FileAuthStorage(directory), HASHER);
+            for (int i = 0; i < 50; i++) {
+                stored.createUser("temp" + i, "pass", new HashSet<>(Set.of(Role.STUDENT)));
+            }
+            stored.purgeUsers(user -> user.getUsername().compareTo("temp3") < 0); // temp0 to temp2 and temp10 to temp29
+            int remaining = stored.getUserCount();
+            AuthManager replayed = new AuthManager(new FileAuthStorage(directory), HASHER);
+            if (byId && remaining == 50 - 23 && replayed.getUserCount() == remaining
+                    && replayed.findUserByUsername("temp12") == null && replayed.findUserByUsername("temp30") != null) {
+                System.out.println("SUCCESS: Purges by id work and survive a restart.\n");
+            } else {
+                System.out.println("FAILURE: Purges by id should work and survive a restart, got " + remaining + ".\n");
+            }
+            stored.shutdown();
+            replayed.shutdown();
+        });
+    }
+
+    private void testInvitationExpiry() {
+        System.out.println("\n=====Test 36: Testing invitation expiry and eviction=====\n");
+        reinitializeAuthManager();
+        java.time.Instant now = java.time.Instant.now();
+        authManager.setInvitationTtl(java.time.Duration.ofHours(1));
+        String used = authManager.inviteUser("inv1", "inv1@asu.edu", new HashSet<>(Set.of(Role.STUDENT)));
+        authManager.inviteUser("inv2", "inv2@asu.edu", new HashSet<>(Set.of(Role.STUDENT)));
+        authManager.inviteUser("inv3", "inv3@asu.edu", new HashSet<>(Set.of(Role.STUDENT)));
+        authManager.markInvitationAsUsed(used);
+
+        // Used invitations go on the first purge, pending ones once their time to live has passed
+        boolean usedEvicted = authManager.purgeInvitations(now) == 1 && authManager.getInvitationFromInvitationCode(used) == null;
+        boolean expiredEvicted = authManager.purgeInvitations(now.plus(java.time.Duration.ofMinutes(30))) == 0
+                && authManager.purgeInvitations(now.plus(java.time.Duration.ofHours(2))) == 2
+                && authManager.getPendingInvitations().isEmpty();
+        if (usedEvicted && expiredEvicted) {
+            System.out.println("SUCCESS: Used and expired invitations are evicted.\n");
+        } else {
+            System.out.println("FAILURE: Used and expired invitations should be evicted.\n");
+        }
+
+        // An expired code cannot be redeemed and no longer blocks a new invitation for the same user
+        authManager.setInvitationTtl(java.time.Duration.ofMillis(1));
+        String expired = authManager.inviteUser("late", "late@asu.edu", new HashSet<>(Set.of(Role.STUDENT)));
+        try {
+            Thread.sleep(5);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        authManager.setInvitationTtl(java.time.Duration.ofHours(1));
+        List<InviteSpec> again = List.of(new InviteSpec("late", "late@asu.edu", Set.of(Role.STUDENT)));
+        if (!authManager.isUserInvited(expired) && !authManager.markInvitationAsUsed(expired)
+                && authManager.inviteUsers(again).getInvitations().size() == 1
+                && authManager.inviteUsers(again).getRejectedCount() == 1) {
+            System.out.println("SUCCESS: Expired codes cannot be redeemed and can be reissued once.\n");
+        } else {
+            System.out.println("FAILURE: Expired codes should not be redeemable and should be reissued once.\n");
+        }
+        try {
+            authManager.setInvitationTtl(java.time.Duration.ZERO);
+            System.out.println("FAILURE: A zero time to live should be rejected.\n");
+        } catch (IllegalArgumentException e) {
+            System.out.println("SUCCESS: A zero time to live is rejected.\n");
+        }
+
+        // Memory is bounded by the live invitations: a flood of unused codes is gone after one purge
+        List<InviteSpec> flood = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            flood.add(new InviteSpec("flood" + i, "flood" + i + "@asu.edu", Set.of(Role.STUDENT)));
+        }
+        authManager.inviteUsers(flood);
+        long begin = System.nanoTime();
+        int evicted = authManager.purgeInvitations(now.plus(java.time.Duration.ofDays(1)));
+        long purgeMillis = (System.nanoTime() - begin) / 1_000_000;
+        if (evicted == 20_002 && authManager.getMetrics().export().contains("auth_pending_invitations 0\n")) {
+            System.out.println("SUCCESS: 20002 expired invitations evicted in " + purgeMillis + " ms.\n");
+        } else {
+            System.out.println("FAILURE: All expired invitations should be evicted, got " + evicted + ".\n");
+        }
+
+        // Expiration times are stored, and purges are recorded so evicted codes stay gone after a restart
+        withTempDirectory("authdata", directory -> {
+            AuthManager stored = new AuthManager(new FileAuthStorage(directory), HASHER);
+            stored.setInvitationTtl(java.time.Duration.ofHours(1));
+            String kept = stored.inviteUser("keep", "keep@asu.edu", new HashSet<>(Set.of(Role.STUDENT)));
+            String dropped = stored.inviteUser("drop", "drop@asu.edu", new HashSet<>(Set.of(Role.STUDENT)));
+            stored.markInvitationAsUsed(dropped);
+            stored.purgeInvitations();
+            stored.setInvitationTtl(java.time.Duration.ofDays(365 * 30)); // Expires after 2038
+            String distant = stored.inviteUser("distant", "distant@asu.edu", new HashSet<>(Set.of(Role.STUDENT)));
+            java.time.Instant distantExpiresAt = stored.getInvitationFromInvitationCode(distant).getExpiresAt();
+            java.time.Instant expiresAt = stored.getInvitationFromInvitationCode(kept).getExpiresAt();
+            AuthManager replayed = new AuthManager(new FileAuthStorage(directory), HASHER); // Replays the log
+            boolean replayOk = replayed.getInvitationFromInvitationCode(dropped) == null
+                    && expiresAt.equals(replayed.getInvitationFromInvitationCode(kept).getExpiresAt());
+            replayed.shutdown();
+            stored.shutdown(); // Writes a snapshot
+            AuthManager restored = new AuthManager(new FileAuthStorage(directory), HASHER);
+            Invitation fromSnapshot = restored.getInvitationFromInvitationCode(kept);
+            Invitation distantFromSnapshot = restored.getInvitationFromInvitationCode(distant);
+            if (replayOk && fromSnapshot != null && fromSnapshot.getExpiresAt().equals(expiresAt)
+                    && distantFromSnapshot != null && distantFromSnapshot.getExpiresAt().equals(distantExpiresAt)) {
+                System.out.println("SUCCESS: Expiration times and purges survive a restart.\n");
+            } else {
+                System.out.println("FAILURE: Expiration times and purges should survive a restart.\n");
+            }
+            restored.shutdown();
+        });
+    }
+
+    private void testUserListVersions() {
+        System.out.println("\n=====Test 37: Testing versioned user lists=====\n");
+        reinitializeAuthManager();
+        java.util.TreeMap<Long, User> expected = new java.util.TreeMap<>();
+        expected.put(admin.getId(), admin);
+        java.util.Random random = new java.util.Random(37);
+
+        // Random creates and deletes, each version must match the users registered at that moment
+        boolean matches = true;
+        for (int i = 0; i < 3000 && matches; i++) {
+            if (expected.size() > 1 && random.nextInt(3) == 0) {
+                List<Long> ids = new ArrayList<>(expected.keySet());
+                User victim = expected.remove(ids.get(1 + random.nextInt(ids.size() - 1)));
+                authManager.deleteUser(victim);
+            } else {
+                User user = authManager.createUser("version" + i, "pass", new HashSet<>(Set.of(Role.STUDENT)));
+                expected.put(user.getId(), user);
+            }
+            if (i % 100 == 0) {
+                List<User> all = authManager.getAllUsers();
+                int probe = random.nextInt(all.size());
+                matches = all.equals(new ArrayList<>(expected.values()))
+                        && all.get(probe) == new ArrayList<>(expected.values()).get(probe);
+            }
+        }
+        if (matches && authManager.getAllUsers().equals(new ArrayList<>(expected.values()))) {
+            System.out.println("SUCCESS: Every version holds the registered users in registration order.\n");
+        } else {
+            System.out.println("FAILURE: Versions should hold the registered users in registration order.\n");
+        }
+
+        // A version taken before a burst of changes stays exactly as it was while it is being walked
+        List<User> before = authManager.getAllUsers();
+        List<User> copy = new ArrayList<>(before);
+        long version = authManager.getUserListVersion();
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 2000; i++) {
+                User user = authManager.createUser("burst" + i, "pass", new HashSet<>(Set.of(Role.STUDENT)));
+                if (i % 2 == 0) {
+                    authManager.deleteUser(user);
+                }
+            }
+        });
+        writer.start();
+        boolean stable = true;
+        try {
+            while (writer.isAlive() && stable) {
+                int walked = 0;
+                for (User user : before) {
+                    stable &= user == copy.get(walked++);
+                }
+                stable &= walked == copy.size();
+            }
+            writer.join();
+        } catch (java.util.ConcurrentModificationException | InterruptedException e) {
+            stable = false;
+        }
+        if (stable && before.equals(copy) && authManager.getUserListVersion() > version
+                && authManager.getAllUsers().size() == copy.size() + 1000) {
+            System.out.println("SUCCESS: Earlier versions are unaffected by concurrent changes.\n");
+        } else {
+            System.out.println("FAILURE: Earlier versions should be unaffected by concurrent changes.\n");
+        }
+        try {
+            before.add(admin);
+            System.out.println("FAILURE: A version should not be modifiable.\n");
+        } catch (UnsupportedOperationException e) {
+            System.out.println("SUCCESS: A version cannot be modified.\n");
+        }
+
+        // Obtaining a version does not copy the users
+        long begin = System.nanoTime();
+        int total = 0;
+        for (int i = 0; i < 100_000; i++) {
+            total += authManager.getAllUsers().size();
+        }
+        long nanosPerCall = (System.nanoTime() - begin) / 100_000;
+        if (total == 100_000 * authManager.getUserCount()) {
+            System.out.println("SUCCESS: getAllUsers takes " + nanosPerCall + " ns for " + authManager.getUserCount() + " users.\n");
+        } else {
+            System.out.println("FAILURE: getAllUsers should return every user.\n");
+        }
+    }
+
+    private void testTransactions() {
+        System.out.println("\n=====Test 38: Testing transactions=====\n");
+        reinitializeAuthManager();
+
+        // Racing redemptions of one code create exactly one account
+        String code = authManager.inviteUser("redeemer", "redeemer@asu.edu", new HashSet<>(Set.of(Role.STUDENT)));
+        java.util.concurrent.atomic.AtomicInteger created = new java.util.concurrent.atomic.AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                if (authManager.redeemInvitation(code, "secret") != null) {
+                    created.incrementAndGet();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        joinAll(threads);
+        String taken = authManager.inviteUser("admin", "other@asu.edu", new HashSet<>(Set.of(Role.STUDENT)));
+        if (created.get() == 1 && authManager.getUserCount() == 2 && authManager.login("redeemer", "secret") != null
+                && !authManager.isUserInvited(code) && authManager.redeemInvitation("no-such-code", "x") == null
+                && authManager.redeemInvitation(taken, "x") == null && authManager.isUserInvited(taken)) {
+            System.out.println("SUCCESS: An invitation creates exactly one account.\n");
+        } else {
+            System.out.println("FAILURE: An invitation should create exactly one account, created " + created.get() + ".\n");
+        }
+
+        // A one-time password resets the password once, a wrong code changes nothing
+        User redeemer = authManager.findUserByUsername("redeemer");
+        authManager.completeAccountSetup(redeemer, "Re", "", "Deemer", "", "redeemer@asu.edu");
+        authManager.requestPasswordReset("redeemer@asu.edu");
+        String otp = authManager.findRequestByEmail("redeemer@asu.edu").getOneTimePassword();
+        String wrong = otp.equals("000000") ? "000001" : "000000";
+        boolean wrongRejected = !authManager.resetPasswordWithOtp("redeemer@asu.edu", wrong, "hacked")
+                && authManager.findRequestByEmail("redeemer@asu.edu") != null;
+        java.util.concurrent.atomic.AtomicInteger resets = new java.util.concurrent.atomic.AtomicInteger();
+        threads.clear();
+        for (int t = 0; t < 4; t++) {
+            int threadNumber = t;
+            Thread thread = new Thread(() -> {
+                if (authManager.resetPasswordWithOtp("redeemer@asu.edu", otp, "new" + threadNumber)) {
+                    resets.incrementAndGet();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        joinAll(threads);
+        int winners = 0;
+        for (int t = 0; t < 4; t++) {
+            winners += authManager.login("redeemer", "new" + t) != null ? 1 : 0;
+        }
+        if (wrongRejected && resets.get() == 1 && winners == 1 && authManager.login("redeemer", "secret") == null
+                && authManager.findRequestByEmail("redeemer@asu.edu") == null) {
+            System.out.println("SUCCESS: A one-time password works exactly once.\n");
+        } else {
+            System.out.println("FAILURE: A one-time password should work exactly once, got " + resets.get() + " resets.\n");
+        }
+
+        // Two admins editing the same roles: the second one is told instead of overwriting the first
+        long seen = redeemer.getVersion();
+        long first = authManager.setRoles(redeemer, seen, Set.of(Role.STUDENT, Role.INSTRUCTOR));
+        long second = authManager.setRoles(redeemer, seen, Set.of(Role.ADMIN));
+        long again = authManager.setRoles(redeemer, first, Set.of(Role.INSTRUCTOR));
+        if (first == redeemer.getVersion() - 1 && second == -1 && again == redeemer.getVersion()
+                && redeemer.getRoles().equals(Set.of(Role.INSTRUCTOR))) {
+            System.out.println("SUCCESS: A stale role edit is rejected.\n");
+        } else {
+            System.out.println("FAILURE: A stale role edit should be rejected.\n");
+        }
+
+        // A conflicting commit applies nothing, transact() retries it and counts what happened
+        AuthTransaction transaction = authManager.beginTransaction();
+        transaction.read(redeemer);
+        transaction.createUser("sidekick", "pass", new HashSet<>(Set.of(Role.STUDENT)));
+        authManager.addRole(redeemer, Role.STUDENT); // Another admin gets in first
+        boolean conflicted = !transaction.commit() && authManager.findUserByUsername("sidekick") == null;
+        long conflictsBefore = authManager.getTransactionMetrics().getFailureCount();
+        java.util.concurrent.atomic.AtomicInteger attempts = new java.util.concurrent.atomic.AtomicInteger();
+        User retried = authManager.transact(tx -> {
+            tx.read(redeemer);
+            if (attempts.incrementAndGet() == 1) {
+                authManager.removeRole(redeemer, Role.STUDENT); // Conflict on the first attempt only
+            }
+            return tx.createUser("sidekick", "pass", new HashSet<>(Set.of(Role.STUDENT)));
+        });
+        User exhausted = authManager.transact(tx -> {
+            tx.read(redeemer);
+            authManager.addRole(redeemer, Role.STUDENT); // Conflicts every time
+            return tx.createUser("never", "pass", new HashSet<>(Set.of(Role.STUDENT)));
+        });
+        if (conflicted && retried != null && attempts.get() == 2 && authManager.findUserByUsername("sidekick") == retried
+                && exhausted == null && authManager.findUserByUsername("never") == null
+                && authManager.getTransactionMetrics().getFailureCount() == conflictsBefore + 6
+                && authManager.getExhaustedTransactionCount() == 1
+                && authManager.getMetrics().export().contains("auth_transactions_exhausted 1\n")) {
+            System.out.println("SUCCESS: Conflicts apply nothing and are retried and counted.\n");
+        } else {
+            System.out.println("FAILURE: Conflicts should apply nothing and be retried and counted.\n");
+        }
+
+        // A commit is one log record: replay applies all of it, or none of it if the record was torn
+        withTempDirectory("authdata", directory -> {
+            AuthManager stored = new AuthManager(new FileAuthStorage(directory), HASHER);
+            String storedCode = stored.inviteUser("durable", "durable@asu.edu", new HashSet<>(Set.of(Role.STUDENT)));
+            Path log;
+            try (java.util.stream.Stream<Path> files = Files.list(directory)) {
+                log = files.filter(file -> file.toString().endsWith(".wal")).max(java.util.Comparator.naturalOrder()).get();
+            }
+            long beforeCommit = Files.size(log);
+            boolean redeemed = stored.redeemInvitation(storedCode, "pass") != null;
+            long afterCommit = Files.size(log);
+            AuthManager replayed = new AuthManager(new FileAuthStorage(directory), HASHER);
+            boolean whole = replayed.findUserByUsername("durable") != null && !replayed.isUserInvited(storedCode);
+            try (FileChannel channel = FileChannel.open(log,
+                    StandardOpenOption.WRITE)) {
+                channel.truncate(afterCommit - 1); // Tear the commit as a crash during the append would
+            }
+            AuthManager torn = new AuthManager(new FileAuthStorage(directory), HASHER);
+            boolean none = torn.findUserByUsername("durable") == null && torn.isUserInvited(storedCode)
+                    && Files.size(log) == beforeCommit;
+            if (redeemed && whole && none) {
+                System.out.println("SUCCESS: A commit is replayed whole or not at all.\n");
+            } else {
+                System.out.println("FAILURE: A commit should be replayed whole or not at all.\n");
+            }
+            stored.shutdown();
+            replayed.shutdown();
+            torn.shutdown();
+        });
+    }
+
+    private static void joinAll(List<Thread> threads) {
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private interface TempDirectoryTest {
+        void run(Path directory) throws IOException;
+    }
+
+    /**
+     * Run a test in a fresh temporary directory, and delete the directory and everything in it afterwards.
+     */
+    private static void withTempDirectory(String prefix, TempDirectoryTest test) {
+        Path directory = null;
+        try {
+            directory = Files.createTempDirectory(prefix);
+            test.run(directory);
+        } catch (IOException e) {
+            System.out.println("FAILURE: Could not use a temporary directory: " + e.getMessage() + "\n");
+        } finally {
+            if (directory != null) {
+                deleteRecursively(directory);
+            }
+        }
+    }
+
+    private static void deleteRecursively(Path directory) {
+        try (java.util.stream.Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(java.util.Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    // Leave it for the system to clean up
+                }
+            });
+        } catch (IOException e) {
+            // Leave it for the system to clean up
+        }
+    }
+
     public static void main(String[] args) {
         AuthManagerConsoleTest test = new AuthManagerConsoleTest();
         test.runTests();
@@ -0,0 +1,144 @@
+package application;
+
+import backend.*;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+/**
+ * <p> Title: HeapFootprintReport Class. </p>
+ *
+ * <p> Description: Reports how much heap one account takes in three layouts: the original one with seven
+ * private strings and a {@code HashSet<Role>} per user, the current {@link User} with pooled names and packed
+ * role and setup bits, and the columnar {@link UserTable}. Every layout is filled with the same generated
+ * roster, in which names and email domains repeat the way they do in a real class while usernames, emails
+ * and password hashes are unique. Strings are created fresh for every account, as they are when read from
+ * storage, so only deliberate sharing is counted. </p>
+ *
+ * <p> Options, all optional: {@code --users=250000}. Heap usage is measured after forcing garbage collection,
+ * so run it with a heap large enough to hold a layout, for example {@code -Xmx2g}. </p>
+ *
+ * @author Zeel Tejashkumar Shah
+ *
+ * @version 1.0	2024-10-17	Initial implementation
+ */
+
+public class HeapFootprintReport {
+    private static final String[] FIRST_NAMES = { "James", "Mary", "Robert", "Patricia", "John", "Jennifer",
+            "Michael", "Linda", "David", "Elizabeth", "William", "Barbara", "Richard", "Susan", "Joseph", "Jessica",
+            "Thomas", "Sarah", "Charles", "Karen", "Wei", "Priya", "Mohammed", "Ana", "Hiroshi", "Zeel" };
+    private static final String[] LAST_NAMES = { "Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia",
+            "Miller", "Davis", "Rodriguez", "Martinez", "Hernandez", "Lopez", "Gonzalez", "Wilson", "Anderson",
+            "Thomas", "Taylor", "Moore", "Jackson", "Martin", "Lee", "Patel", "Nguyen", "Kim", "Shah" };
+    private static final String[] DOMAINS = { "@asu.edu", "@gmail.com", "@outlook.com", "@yahoo.com", "@icloud.com" };
+    private static final char[] HASH_CHARS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+    /**
+     * The user layout from before pooling and packing, kept here only to be measured.
+     */
+    @SuppressWarnings("unused")
+    private static class LegacyUser {
+        long id;
+        String username;
+        String password;
+        String firstName;
+        String middleName;
+        String lastName;
+        String preferredName;
+        String email;
+        Set<Role> roles;
+        boolean isSetupComplete;
+    }
+
+    private static Object retained; // Keeps the layout being measured reachable
+
+    public static void main(String[] args) {
+        int userCount = 250_000;
+        for (String arg : args) {
+            if (!arg.startsWith("--users=")) {
+                throw new IllegalArgumentException("Unknown option " + arg);
+            }
+            userCount = Integer.parseInt(arg.substring("--users=".length()));
+        }
+        int count = userCount;
+
+        System.out.printf("%-12s %10s %14s %12s%n", "Layout", "users", "heap bytes", "bytes/user");
+        report("legacy", count, () -> legacyUsers(count));
+        report("User", count, () -> users(count));
+        report("UserTable", count, () -> UserTable.of(users(count)));
+    }
+
+    private interface Layout {
+        Object build();
+    }
+
+    /**
+     * Build a layout and print the heap it holds on to.
+     */
+    private static void report(String name, int count, Layout layout) {
+        long before = usedHeap();
+        retained = layout.build();
+        long after = usedHeap();
+        retained = null;
+        long bytes = after - before;
+        System.out.printf("%-12s %10d %14d %12.1f%n", name, count, bytes, (double) bytes / count);
+    }
+
+    private static List<LegacyUser> legacyUsers(int count) {
+        List<LegacyUser> users = new ArrayList<>(count);
+        Random random = new Random(42);
+        for (int i = 0; i < count; i++) {
+            LegacyUser user = new LegacyUser();
+            user.id = i + 1;
+            user.username = "user" + i;
+            user.password = passwordHash(random);
+            user.firstName = new String(FIRST_NAMES[i % FIRST_NAMES.length]);
+            user.middleName = "";
+            user.lastName = new String(LAST_NAMES[(i / FIRST_NAMES.length) % LAST_NAMES.length]);
+            user.preferredName = "";
+            user.email = "user" + i + DOMAINS[i % DOMAINS.length];
+            user.roles = new HashSet<>(Set.of(Role.STUDENT));
+            user.isSetupComplete = true;
+            users.add(user);
+        }
+        return users;
+    }
+
+    private static List<User> users(int count) {
+        List<User> users = new ArrayList<>(count);
+        Random random = new Random(42);
+        for (int i = 0; i < count; i++) {
+            User user = new User("user" + i, passwordHash(random), Set.of(Role.STUDENT));
+            user.setFirstName(new String(FIRST_NAMES[i % FIRST_NAMES.length]));
+            user.setMiddleName("");
+            user.setLastName(new String(LAST_NAMES[(i / FIRST_NAMES.length) % LAST_NAMES.length]));
+            user.setPreferredName("");
+            user.setEmail("user" + i + DOMAINS[i % DOMAINS.length]);
+            user.setSetupComplete(true);
+            users.add(user);
+        }
+        return users;
+    }
+
+    /**
+     * Generate a string shaped like a stored PBKDF2 hash.
+     */
+    private static String passwordHash(Random random) {
+        StringBuilder hash = new StringBuilder("pbkdf2-sha256$210000$");
+        for (int i = 0; i < 22 + 1 + 43; i++) {
+            hash.append(i == 22 ? '$' : HASH_CHARS[random.nextInt(HASH_CHARS.length)]);
+        }
+        return hash.toString();
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
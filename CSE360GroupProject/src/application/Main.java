@@ -1,11 +1,16 @@
 package application;
 
+import backend.AuditLog;
 import backend.AuthManager;
+import backend.FileAuthStorage;
+import backend.PasswordHasher;
 import frontend.LoginScene.LoginScene;
 import javafx.application.Application;
-import javafx.scene.Scene;
 import javafx.stage.Stage;
 
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
 /**
  * <p> Title: Main Class for the Application </p>
  * 
@@ -16,6 +21,7 @@ import javafx.stage.Stage;
  * @version 1.0 2404-10-08 Initial version with basic application setup.
  */
 public class Main extends Application {
+    private AuthManager authManager; // Shared by every scene of the application
     
     /**
      * <p> This method is called when the application is started. It sets up the primary stage and initializes the login scene. </p>
@@ -24,16 +30,33 @@ public class Main extends Application {
      */
     @Override
     public void start(Stage primaryStage) {
-        AuthManager authManager = new AuthManager(); // Create a user manager
+        authManager = new AuthManager(new FileAuthStorage(Paths.get("authdata")), new PasswordHasher(),
+                new AuditLog(Paths.get("authdata", "audit.log"))); // Create a user manager backed by local files, auditing every change
+        authManager.startSnapshotting(10, TimeUnit.MINUTES); // Keep the log that is replayed at startup short
+        authManager.startResetRequestSweeper(1, TimeUnit.HOURS); // Evict expired password reset requests
+        authManager.startInvitationSweeper(1, TimeUnit.HOURS); // Evict used and expired invitation codes
+        authManager.startSessionSweeper(5, TimeUnit.MINUTES); // Evict idle login sessions
+        authManager.startLoginLimitSweeper(10, TimeUnit.MINUTES); // Drop idle login rate limit counters
+        authManager.startUserCompactor(1, TimeUnit.SECONDS); // Clean search entries of deleted users a batch at a time
+        authManager.startMetricsExport(Paths.get("authdata", "metrics.prom"), 1, TimeUnit.MINUTES); // For the local scraping agent
         
-        // Create the login scene
+        // Show the login scene
         LoginScene loginScene = new LoginScene(primaryStage, authManager);
-        Scene scene = loginScene.createLoginScene(); // Create the login scene
-
-        primaryStage.setScene(scene); // Set the scene for the primary stage
+        loginScene.showLoginScene(); // Set the scene for the primary stage, cached for later logins
         primaryStage.show(); // Display the primary stage
     }
 
+    /**
+     * <p> This method is called when the application exits. It stops the background tasks of the AuthManager
+     * and saves its state. </p>
+     */
+    @Override
+    public void stop() {
+        if (authManager != null) {
+            authManager.shutdown(); // Stop background maintenance and write a final snapshot
+        }
+    }
+
     /**
      * <p> The main method that serves as the entry point for the JavaFX application. </p>
      * 
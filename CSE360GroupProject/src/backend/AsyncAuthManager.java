@@ -0,0 +1,241 @@
+package backend;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * <p> Title: AsyncAuthManager Class. </p>
+ *
+ * <p> Description: A non-blocking facade over an {@link AuthManager}. Every call runs on its own virtual
+ * thread, so password hashing and storage I/O never run on the caller's thread, and the returned future is
+ * completed through a callback executor. A JavaFX scene passes {@code Platform::runLater} as that executor,
+ * which makes the stages attached to the future with {@code thenAccept} or {@code whenComplete} run on the
+ * JavaFX application thread where they may update the scene graph. </p>
+ *
+ * <p> The facade holds no state of its own besides the two references, so it is cheap to create one per
+ * scene. All facades share one virtual thread executor. </p>
+ *
+ * @author Zeel Tejashkumar Shah
+ *
+ * @version 1.0	2024-10-17	Initial implementation
+ */
+
+public class AsyncAuthManager {
+    private static final ExecutorService WORKERS = Executors.newVirtualThreadPerTaskExecutor();
+
+    private AuthManager authManager; // The manager doing the work
+    private Executor callbackExecutor; // Where results are delivered
+
+    /**
+     * Constructor that delivers results on the worker thread that produced them.
+     *
+     * @param authManager The manager to delegate to
+     */
+    public AsyncAuthManager(AuthManager authManager) {
+        this(authManager, Runnable::run);
+    }
+
+    /**
+     * Constructor for AsyncAuthManager.
+     *
+     * @param authManager The manager to delegate to
+     * @param callbackExecutor The executor the returned futures are completed on, such as {@code Platform::runLater}
+     */
+    public AsyncAuthManager(AuthManager authManager, Executor callbackExecutor) {
+        this.authManager = authManager;
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    public AuthManager getAuthManager() {
+        return authManager; // Returns the manager this facade delegates to
+    }
+
+    /**
+     * Run any operation against the AuthManager in the background. Useful to keep several dependent calls
+     * together in one background step.
+     *
+     * @param operation The operation to run
+     * @return A future completed with the operation's result on the callback executor
+     */
+    public <T> CompletableFuture<T> call(Function<AuthManager, T> operation) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        WORKERS.execute(() -> {
+            T value;
+            try {
+                value = operation.apply(authManager);
+            } catch (Throwable e) {
+                callbackExecutor.execute(() -> result.completeExceptionally(e));
+                return;
+            }
+            callbackExecutor.execute(() -> result.complete(value));
+        });
+        return result;
+    }
+
+    /**
+     * Run an operation without a result against the AuthManager in the background.
+     *
+     * @param operation The operation to run
+     * @return A future completed on the callback executor once the operation has finished
+     */
+    public CompletableFuture<Void> run(Consumer<AuthManager> operation) {
+        return call(manager -> {
+            operation.accept(manager);
+            return null;
+        });
+    }
+
+    // ========== User Management ========== //
+
+    public CompletableFuture<User> createFirstUserAsync(String username, String password) {
+        return call(manager -> manager.createFirstUser(username, password));
+    }
+
+    public CompletableFuture<User> createUserAsync(String username, String password, Set<Role> roles) {
+        return call(manager -> manager.createUser(username, password, roles));
+    }
+
+    public CompletableFuture<User> loginAsync(String username, String password) {
+        return call(manager -> manager.login(username, password));
+    }
+
+    public CompletableFuture<User> loginAsync(String username, String password, String source) {
+        return call(manager -> manager.login(username, password, source));
+    }
+
+    public CompletableFuture<Boolean> isLoginLimitedAsync(String username, String source) {
+        return call(manager -> manager.isLoginLimited(username, source));
+    }
+
+    public CompletableFuture<Boolean> completeAccountSetupAsync(User user, String firstName, String middleName,
+            String lastName, String preferredName, String email) {
+        return call(manager -> manager.completeAccountSetup(user, firstName, middleName, lastName, preferredName, email));
+    }
+
+    public CompletableFuture<User> findUserByUsernameAsync(String username) {
+        return call(manager -> manager.findUserByUsername(username));
+    }
+
+    public CompletableFuture<Boolean> deleteUserAsync(User user) {
+        return call(manager -> manager.deleteUser(user));
+    }
+
+    public CompletableFuture<Integer> purgeUsersAsync(Collection<Long> ids) {
+        return call(manager -> manager.purgeUsers(ids));
+    }
+
+    public CompletableFuture<Boolean> userExistsForEmailAsync(String email) {
+        return call(manager -> manager.userExistsForEmail(email));
+    }
+
+    public CompletableFuture<List<User>> getAllUsersAsync() {
+        return call(AuthManager::getAllUsers);
+    }
+
+    public CompletableFuture<UserPage> getUsersPageAsync(long cursor, int limit) {
+        return call(manager -> manager.getUsersPage(cursor, limit));
+    }
+
+    public CompletableFuture<List<User>> searchUsersAsync(UserQuery query) {
+        return call(manager -> manager.searchUsers(query));
+    }
+
+    public CompletableFuture<Integer> getUserCountAsync() {
+        return call(AuthManager::getUserCount);
+    }
+
+    // ========== Role Management ========== //
+
+    public CompletableFuture<Void> addRoleAsync(User user, Role role) {
+        return run(manager -> manager.addRole(user, role));
+    }
+
+    public CompletableFuture<Void> removeRoleAsync(User user, Role role) {
+        return run(manager -> manager.removeRole(user, role));
+    }
+
+    public CompletableFuture<Long> setRolesAsync(User user, long expectedVersion, Set<Role> roles) {
+        return call(manager -> manager.setRoles(user, expectedVersion, roles));
+    }
+
+    public CompletableFuture<List<User>> getUsersWithRoleAsync(Role role) {
+        return call(manager -> manager.getUsersWithRole(role));
+    }
+
+    public CompletableFuture<Integer> countUsersWithRoleAsync(Role role) {
+        return call(manager -> manager.countUsersWithRole(role));
+    }
+
+    // ========== Invitation Management ========== //
+
+    public CompletableFuture<String> inviteUserAsync(String username, String email, Set<Role> roles) {
+        return call(manager -> manager.inviteUser(username, email, roles));
+    }
+
+    public CompletableFuture<BulkInviteResult> inviteUsersAsync(Collection<InviteSpec> specs) {
+        return call(manager -> manager.inviteUsers(specs));
+    }
+
+    public CompletableFuture<Boolean> isUserInvitedAsync(String invitationCode) {
+        return call(manager -> manager.isUserInvited(invitationCode));
+    }
+
+    public CompletableFuture<Invitation> getInvitationFromInvitationCodeAsync(String invitationCode) {
+        return call(manager -> manager.getInvitationFromInvitationCode(invitationCode));
+    }
+
+    public CompletableFuture<Boolean> markInvitationAsUsedAsync(String invitationCode) {
+        return call(manager -> manager.markInvitationAsUsed(invitationCode));
+    }
+
+    public CompletableFuture<Void> deleteInvitationAsync(String invitationCode) {
+        return run(manager -> manager.deleteInvitation(invitationCode));
+    }
+
+    public CompletableFuture<User> redeemInvitationAsync(String invitationCode, String password) {
+        return call(manager -> manager.redeemInvitation(invitationCode, password));
+    }
+
+    // ========== Password Reset Management ========== //
+
+    public CompletableFuture<Void> requestPasswordResetAsync(String email) {
+        return run(manager -> manager.requestPasswordReset(email));
+    }
+
+    public CompletableFuture<ResetRequest> findRequestByEmailAsync(String email) {
+        return call(manager -> manager.findRequestByEmail(email));
+    }
+
+    public CompletableFuture<Boolean> updateUserPasswordAsync(String email, String newPassword) {
+        return call(manager -> manager.updateUserPassword(email, newPassword));
+    }
+
+    public CompletableFuture<Void> removeRequestAsync(ResetRequest request) {
+        return run(manager -> manager.removeRequest(request));
+    }
+
+    public CompletableFuture<Boolean> resetPasswordWithOtpAsync(String email, String oneTimePassword, String newPassword) {
+        return call(manager -> manager.resetPasswordWithOtp(email, oneTimePassword, newPassword));
+    }
+
+    // ========== Session Management ========== //
+
+    public CompletableFuture<Session> startSessionAsync(User user, Role role) {
+        return call(manager -> manager.startSession(user, role));
+    }
+
+    public CompletableFuture<Session> validateSessionAsync(String token) {
+        return call(manager -> manager.validateSession(token));
+    }
+
+    public CompletableFuture<Void> endSessionAsync(String token) {
+        return run(manager -> manager.endSession(token));
+    }
+}
@@ -0,0 +1,96 @@
+package backend;
+
+import java.time.Instant;
+
+/**
+ * <p> Title: AuditEvent Class. </p>
+ *
+ * <p> Description: One entry of the audit log: what changed, when, and for which user. Events are immutable
+ * and numbered in the order they were recorded. Events about something other than a registered user, such
+ * as an invitation, carry the user id {@link #NO_USER} and the username the change was meant for. </p>
+ *
+ * <p> Secrets such as passwords, invitation codes and one-time passwords are never put in an event. </p>
+ *
+ * @author Zeel Tejashkumar Shah
+ *
+ * @version 1.0	2024-10-17	Initial implementation
+ */
+
+public final class AuditEvent {
+    public static final long NO_USER = 0; // The UserStore hands out ids from 1
+
+    /**
+     * The kinds of change that are audited.
+     */
+    public enum Type {
+        USER_CREATED,
+        ACCOUNT_SETUP_COMPLETED,
+        ROLE_ADDED,
+        ROLE_REMOVED,
+        USER_DELETED,
+        INVITATION_CREATED,
+        INVITATION_REDEEMED,
+        INVITATION_DELETED,
+        PASSWORD_RESET_REQUESTED,
+        PASSWORD_CHANGED
+    }
+
+    private long sequence; // Position in the log, increasing in recording order
+    private long timeMillis; // When the change happened, in epoch milliseconds
+    private Type type; // What changed
+    private long userId; // The user changed, or NO_USER
+    private String username; // The username the change was about
+    private String detail; // Extra information such as the role, may be null
+
+    /**
+     * Constructor for AuditEvent.
+     *
+     * @param sequence The position in the log
+     * @param timeMillis When the change happened, in epoch milliseconds
+     * @param type What changed
+     * @param userId The user changed, or NO_USER
+     * @param username The username the change was about
+     * @param detail Extra information, may be null
+     */
+    public AuditEvent(long sequence, long timeMillis, Type type, long userId, String username, String detail) {
+        this.sequence = sequence;
+        this.timeMillis = timeMillis;
+        this.type = type;
+        this.userId = userId;
+        this.username = username;
+        this.detail = detail;
+    }
+
+    public long getSequence() {
+        return sequence; // Returns the position in the log
+    }
+
+    public Instant getTime() {
+        return Instant.ofEpochMilli(timeMillis); // Returns when the change happened
+    }
+
+    public long getTimeMillis() {
+        return timeMillis; // Returns when the change happened in epoch milliseconds
+    }
+
+    public Type getType() {
+        return type; // Returns what changed
+    }
+
+    public long getUserId() {
+        return userId; // Returns the id of the user changed, or NO_USER
+    }
+
+    public String getUsername() {
+        return username; // Returns the username the change was about
+    }
+
+    public String getDetail() {
+        return detail; // Returns the extra information, or null
+    }
+
+    @Override
+    public String toString() {
+        return "#" + sequence + " " + getTime() + " " + type + " " + username + (detail == null ? "" : " " + detail);
+    }
+}
@@ -0,0 +1,336 @@
+package backend;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+
+/**
+ * <p> Title: AuditLog Class. </p>
+ *
+ * <p> Description: Records {@link AuditEvent}s to a local append-only file. Recording an event only claims a
+ * slot in a ring buffer with one atomic increment and stores the event there, so the thread making the change
+ * never waits for the disk. A single background writer takes the events out of the ring in order and appends
+ * them in batches, flushing once per batch. A producer only waits if the writer has fallen a whole ring
+ * behind. </p>
+ *
+ * <p> Records are framed like the write-ahead log of {@link FileAuthStorage}: a length, a CRC32 of the payload
+ * and the payload. Opening the log drops a record torn by a crash at the end of the file and continues the
+ * sequence numbers after the last complete record. </p>
+ *
+ * <p> {@link #query(String, Instant, Instant)} first waits for the events recorded so far to reach the file and
+ * then scans it, so the log stays a plain file with no second copy of the events in memory. </p>
+ *
+ * @author Zeel Tejashkumar Shah
+ *
+ * @version 1.0	2024-10-17	Initial implementation
+ */
+
+public final class AuditLog {
+    public static final int DEFAULT_CAPACITY = 1 << 14;
+    private static final int MAX_BATCH = 1024; // Events written between two flushes at most
+    private static final int MAX_RECORD_SIZE = 1 << 16; // Larger lengths are treated as corruption
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(5); // Writer sleep when idle
+
+    private Path file; // The append-only log file
+    private AtomicReferenceArray<AuditEvent> ring; // Recorded events waiting for the writer
+    private int mask; // Ring capacity minus one
+    private long firstSequence; // Sequence number of the first event recorded since the log was opened
+    private AtomicLong claimed; // Ring slots handed to producers so far
+    private volatile long consumed; // Ring slots taken by the writer so far
+    private volatile long written; // Ring slots written to the file so far
+    private volatile boolean closed; // Set once close() has been called
+    private Thread writer; // Background thread appending batches to the file
+    private DataOutputStream out; // Buffered writer on the log file, used by the writer thread only
+    private RecordBuffer recordBytes; // Reused buffer for encoding one record
+    private DataOutputStream record; // Writer on the record buffer
+    private CRC32 checksum; // Reused checksum for record payloads
+
+    /**
+     * A record buffer whose contents can be checksummed without copying them.
+     */
+    private static final class RecordBuffer extends ByteArrayOutputStream {
+        RecordBuffer() {
+            super(128);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+    }
+
+    /**
+     * Constructor using the default ring capacity.
+     *
+     * @param file The log file, created along with its directory if missing
+     */
+    public AuditLog(Path file) {
+        this(file, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor for AuditLog.
+     *
+     * @param file The log file, created along with its directory if missing
+     * @param capacity The number of events the ring holds, a power of two
+     */
+    public AuditLog(Path file, int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two, got " + capacity);
+        }
+        this.file = file;
+        this.ring = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+        this.claimed = new AtomicLong();
+        this.recordBytes = new RecordBuffer();
+        this.record = new DataOutputStream(recordBytes);
+        this.checksum = new CRC32();
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            this.firstSequence = recover() + 1;
+            this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file.toFile(), true), 1 << 16));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open audit log " + file, e);
+        }
+        this.writer = new Thread(this::writeLoop, "audit-writer");
+        writer.setDaemon(true); // Never keep the application alive, close() drains the ring
+        writer.start();
+    }
+
+    /**
+     * Record a change to a registered user.
+     *
+     * @param type What changed
+     * @param user The user changed
+     * @param detail Extra information, may be null
+     */
+    public void record(AuditEvent.Type type, User user, String detail) {
+        record(type, user.getId(), user.getUsername(), detail);
+    }
+
+    /**
+     * Record a change. Returns as soon as the event is in the ring; events recorded after close are dropped.
+     *
+     * @param type What changed
+     * @param userId The user changed, or {@link AuditEvent#NO_USER}
+     * @param username The username the change was about
+     * @param detail Extra information, may be null
+     */
+    public void record(AuditEvent.Type type, long userId, String username, String detail) {
+        if (closed) {
+            return;
+        }
+        long slot = claimed.getAndIncrement();
+        AuditEvent event = new AuditEvent(firstSequence + slot, System.currentTimeMillis(), type, userId, username, detail);
+        while (slot - consumed >= ring.length()) { // The writer is a whole ring behind
+            if (!writer.isAlive()) {
+                return;
+            }
+            LockSupport.unpark(writer);
+            Thread.yield();
+        }
+        ring.setRelease((int) slot & mask, event);
+    }
+
+    /**
+     * Wait until every event recorded before this call has been written to the file.
+     */
+    public void flush() {
+        long target = claimed.get();
+        while (written < target && writer.isAlive()) {
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+        }
+    }
+
+    /**
+     * Find the events about a username within a time range, in recording order.
+     *
+     * @param username The username, or null for events about anyone
+     * @param from The start of the range, inclusive, or null for no start
+     * @param to The end of the range, exclusive, or null for no end
+     * @return The matching events
+     */
+    public List<AuditEvent> query(String username, Instant from, Instant to) {
+        flush();
+        long fromMillis = from == null ? Long.MIN_VALUE : from.toEpochMilli();
+        long toMillis = to == null ? Long.MAX_VALUE : to.toEpochMilli();
+        List<AuditEvent> events = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            byte[] payload;
+            while ((payload = readRecord(in)) != null) {
+                DataInputStream fields = new DataInputStream(new ByteArrayInputStream(payload));
+                long sequence = fields.readLong();
+                long timeMillis = fields.readLong();
+                if (timeMillis < fromMillis || timeMillis >= toMillis) {
+                    continue; // Skip the rest of the record without decoding its strings
+                }
+                AuditEvent.Type type = AuditEvent.Type.values()[fields.readByte()];
+                long userId = fields.readLong();
+                String name = readNullable(fields);
+                if (username == null || username.equals(name)) {
+                    events.add(new AuditEvent(sequence, timeMillis, type, userId, name, readNullable(fields)));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read audit log " + file, e);
+        }
+        return events;
+    }
+
+    /**
+     * Get the number of events recorded since the log was opened.
+     *
+     * @return The number of recorded events
+     */
+    public long getRecordedCount() {
+        return claimed.get();
+    }
+
+    /**
+     * Write out the events still in the ring, stop the writer and close the file.
+     */
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not close audit log " + file, e);
+        }
+    }
+
+    /**
+     * Take batches of events out of the ring and append them to the file until closed.
+     */
+    private void writeLoop() {
+        List<AuditEvent> batch = new ArrayList<>(MAX_BATCH);
+        while (true) {
+            long next = consumed;
+            while (batch.size() < MAX_BATCH) {
+                int index = (int) next & mask;
+                AuditEvent event = ring.getAcquire(index);
+                if (event == null) {
+                    break; // Not recorded yet, or claimed but not stored yet
+                }
+                ring.set(index, null);
+                batch.add(event);
+                next++;
+            }
+            if (!batch.isEmpty()) {
+                consumed = next; // Free the slots before the disk write
+                writeBatch(batch);
+                written = next;
+                batch.clear();
+            } else if (closed && next == claimed.get()) {
+                return;
+            } else {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Append a batch of events and flush them to the operating system once.
+     *
+     * @param batch The events in recording order
+     */
+    private void writeBatch(List<AuditEvent> batch) {
+        try {
+            for (AuditEvent event : batch) {
+                recordBytes.reset();
+                record.writeLong(event.getSequence());
+                record.writeLong(event.getTimeMillis());
+                record.writeByte(event.getType().ordinal());
+                record.writeLong(event.getUserId());
+                writeNullable(record, event.getUsername());
+                writeNullable(record, event.getDetail());
+                checksum.reset();
+                checksum.update(recordBytes.array(), 0, recordBytes.size());
+                out.writeInt(recordBytes.size());
+                out.writeInt((int) checksum.getValue());
+                recordBytes.writeTo(out);
+            }
+            out.flush();
+        } catch (IOException e) {
+            // The writer must keep draining, or every producer would end up waiting on a full ring
+            System.err.println("Audit log " + file + " lost " + batch.size() + " events: " + e);
+        }
+    }
+
+    /**
+     * Find the end of the last complete record, cut off anything after it and read its sequence number.
+     *
+     * @return The sequence number of the last record, or 0 if there is none
+     */
+    private long recover() throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        long validLength = 0;
+        long lastSequence = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            byte[] payload;
+            while ((payload = readRecord(in)) != null) {
+                validLength += 8 + payload.length;
+                lastSequence = new DataInputStream(new ByteArrayInputStream(payload)).readLong();
+            }
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            if (channel.size() > validLength) {
+                channel.truncate(validLength); // Drop a record torn by a crash
+            }
+        }
+        return lastSequence;
+    }
+
+    /**
+     * Read one framed record.
+     *
+     * @return The record payload, or null at the end of the input or at a torn or corrupt record
+     */
+    private static byte[] readRecord(DataInputStream in) throws IOException {
+        try {
+            int length = in.readInt();
+            int expected = in.readInt();
+            if (length <= 0 || length > MAX_RECORD_SIZE) {
+                return null;
+            }
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            return (int) crc.getValue() == expected ? payload : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -1,29 +1,127 @@
 package backend;
 
+import java.io.PrintStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
-import java.util.*; 
+import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 /**
  * <p> Title: AuthManager Class. </p>
  * 
  * <p> Description: A class for managing user authentication and related operations, including user management, role management, invitation management, and password reset functionalities. </p>
  * 
+ * <p> The AuthManager is safe to use from many threads at once. Lookups and logins read concurrent indexes
+ * without locking. Changes to a single user (roles, profile) lock only that user, and a user's role set is
+ * replaced with an updated copy instead of being modified, so readers never see a half-applied change. </p>
+ * 
+ * <p> State is kept in memory and every mutation is reported to an {@link AuthStorage}. With the default
+ * {@link InMemoryAuthStorage} nothing survives a restart; with {@link FileAuthStorage} the state is reloaded
+ * from disk when the AuthManager is constructed. </p>
+ * 
+ * <p> Passwords are stored as salted hashes produced by a {@link PasswordHasher}. Plain text passwords left
+ * from older data, and hashes made with a different cost, are hashed again the next time the user logs in. </p>
+ * 
  * @author Zeel Tejashkumar Shah
  * 
  * @version 1.0	2024-10-08	Initial implementation
  */
 
 public class AuthManager {
-	private List<User> users; // List to store registered users
-	private List<Invitation> invitations; // List to store invitations
-	private List<ResetRequest> resetRequests; // List to store password reset requests
+	private UserStore users; // Registered users, indexed by username and email
+	private InvitationRegistry invitations; // Invitations by code, split into pending and used
+	private ResetRequestStore resetRequests; // Password reset requests by email, ordered by expiration
+	private MaintenanceScheduler maintenance; // Background housekeeping, started on demand
+	private AuthStorage storage; // Persistence layer that records every mutation
+	private PasswordHasher hasher; // Hashes and verifies passwords off the caller's thread
+	private SessionManager sessions; // Login sessions by token
+	private LoginRateLimiter loginLimiter; // Failed logins by username and attempts by source
+	private AuditLog audit; // Trail of every change, or null when changes are not audited
+	private NotificationDispatcher notifications; // Delivers invitation codes and one-time passwords
+	private OtpGenerator otpGenerator; // One-time passwords for reset requests
+	private MetricsRegistry metrics; // Operation timings and gauges for export
+	private OperationMetrics loginMetrics; // Kept here so timing a call needs no lookup
+	private OperationMetrics inviteMetrics;
+	private OperationMetrics resetMetrics;
+	private OperationMetrics deleteMetrics;
+	private OperationMetrics purgeMetrics;
+	private OperationMetrics commitMetrics; // Commits as successes, conflicts as failures
+	private LongAdder exhaustedTransactions; // Transactions that conflicted on every attempt
+	private static final int MAX_TRANSACTION_ATTEMPTS = 5; // Attempts transact() makes before giving up
+	private static final int PURGE_BATCH = 1024; // Users removed and recorded together by purgeUsers
+	private static final int COMPACT_BATCH = 10_000; // Search entries cleaned per compactor run
+	private volatile Duration invitationTtl = Invitation.DEFAULT_TTL; // How long new invitations can be redeemed
+	private static final SecureRandom CODE_RANDOM = new SecureRandom(); // Source of bulk invitation codes
+	private boolean closed; // Set once shutdown() has released the storage
 
 	// Constructor
 	public AuthManager() {
-		this.users = new ArrayList<>(); // Initialize the list of users
-		this.invitations = new ArrayList<>(); // Initialize the list of invitations
-		this.resetRequests = new ArrayList<>(); // Initialize the list of reset requests
+		this(new InMemoryAuthStorage()); // Keep everything in memory only
+	}
+
+	/**
+	 * Constructor that restores the state kept by the given storage
+	 * 
+	 * @param storage The storage to load from and record mutations to
+	 */
+	public AuthManager(AuthStorage storage) {
+		this(storage, new PasswordHasher()); // Default hashing cost
+	}
+
+	/**
+	 * Constructor that restores the state kept by the given storage and hashes passwords with the given hasher
+	 * 
+	 * @param storage The storage to load from and record mutations to
+	 * @param hasher The password hasher, whose iteration count is the cost for new and rehashed passwords
+	 */
+	public AuthManager(AuthStorage storage, PasswordHasher hasher) {
+		this(storage, hasher, null); // Changes are not audited
+	}
+
+	/**
+	 * Constructor that also records every change to an audit log
+	 * 
+	 * @param storage The storage to load from and record mutations to
+	 * @param hasher The password hasher, whose iteration count is the cost for new and rehashed passwords
+	 * @param audit The audit log, closed on shutdown, or null to audit nothing
+	 */
+	public AuthManager(AuthStorage storage, PasswordHasher hasher, AuditLog audit) {
+		this.hasher = hasher;
+		this.audit = audit;
+		this.users = new UserStore(); // Initialize the user store
+		this.invitations = new InvitationRegistry(); // Initialize the invitation registry
+		this.resetRequests = new ResetRequestStore(); // Initialize the reset request store
+		this.sessions = new SessionManager(); // Sessions live in memory only
+		this.loginLimiter = new LoginRateLimiter(); // Rate limits live in memory only
+		this.notifications = new NotificationDispatcher(new InMemoryNotificationSink()); // Codes wait until handed over, used or expired
+		this.otpGenerator = new OtpGenerator();
+		this.exhaustedTransactions = new LongAdder();
+		this.storage = storage;
+		registerMetrics();
+
+		StoredState state = storage.load(); // Reload what was stored before the last shutdown
+		if (state.getUserSnapshot() != null) {
+			users.attachSnapshot(state.getUserSnapshot(), state.getSnapshotSkippedIds()); // Users load on first lookup
+		}
+		for (User user : state.getUsers()) {
+			users.restore(user);
+		}
+		for (Invitation invitation : state.getInvitations()) {
+			invitations.add(invitation);
+		}
+		for (ResetRequest request : state.getResetRequests()) {
+			resetRequests.add(request);
+		}
 	}
 
 	// ========== User Management Methods ========== //
@@ -36,10 +134,13 @@ public class AuthManager {
 	 * @return The created admin user or null if an admin already exists
 	 */
 	public User createFirstUser(String username, String password) {
-		if (users.isEmpty()) { // Check if the user list is empty
-			User admin = new User(username, password, new HashSet<>(Arrays.asList(Role.ADMIN))); // Create admin user
-			users.add(admin); // Add admin to the user list
-			return admin; // Return the created admin user
+		User admin = new User(username, hasher.hash(password), Set.of(Role.ADMIN)); // Create admin user
+		synchronized (admin) { // Record the admin before anyone else can change it
+			if (users.addIfEmpty(admin)) { // Add admin only if the user list is empty
+				saveUser(admin); // Record the new admin
+				audit(AuditEvent.Type.USER_CREATED, admin, admin.getRoles().toString());
+				return admin; // Return the created admin user
+			}
 		}
 		return null; // Return null if admin already exists
 	}
@@ -50,11 +151,20 @@ public class AuthManager {
 	 * @param username The username for the new user
 	 * @param password The password for the new user
 	 * @param roles The set of roles assigned to the new user
-	 * @return The newly created user
+	 * @return The newly created user, or null if the username is taken
 	 */
 	public User createUser(String username, String password, Set<Role> roles) {
-		User newUser = new User(username, password, roles); // Create new user
-		users.add(newUser); // Add new user to the list
+		if (users.findByUsername(username) != null) {
+			return null; // Taken, don't pay for the hash
+		}
+		User newUser = new User(username, hasher.hash(password), roles); // Create new user, which keeps its roles as a mask
+		synchronized (newUser) { // Record the user before anyone else can change it
+			if (!users.add(newUser)) { // Add new user to the list
+				return null; // Taken by a user registered meanwhile
+			}
+			saveUser(newUser); // Record the new user
+			audit(AuditEvent.Type.USER_CREATED, newUser, newUser.getRoles().toString());
+		}
 		return newUser; // Return the created user
 	}
 
@@ -63,15 +173,107 @@ public class AuthManager {
 	 * 
 	 * @param username The username of the user attempting to login
 	 * @param password The password of the user attempting to login
-	 * @return The logged-in user or null if login fails
+	 * @return The logged-in user or null if login fails, including when the password hasher is overloaded
 	 */
 	public User login(String username, String password) {
-		for (User user : users) { // Iterate through the list of users
-			if (user.getUsername().equals(username) && user.getPassword().equals(password)) { // Check for matching credentials
-				return user; // Return the logged-in user
+		return login(username, password, null);
+	}
+
+	/**
+	 * Login a user on behalf of a client, subject to the login rate limits. Attempts over a limit are rejected
+	 * before the user is looked up or any password is hashed.
+	 * 
+	 * @param username The username of the user attempting to login
+	 * @param password The password of the user attempting to login
+	 * @param source The client the attempt comes from, or null if unknown and only the username is limited
+	 * @return The logged-in user or null if login fails or is rejected by the rate limits
+	 */
+	public User login(String username, String password, String source) {
+		long start = System.nanoTime();
+		User user = attemptLogin(username, password, source);
+		loginMetrics.record(start, user != null);
+		return user;
+	}
+
+	/**
+	 * Check the rate limits and the credentials of a login attempt
+	 * 
+	 * @return The logged-in user or null if login fails or is rejected by the rate limits
+	 */
+	private User attemptLogin(String username, String password, String source) {
+		if (!loginLimiter.tryAcquire(username, source)) {
+			return null; // Over a limit, reject without touching the password
+		}
+		User user = users.findByUsername(username); // Look up the user by username
+		if (user == null) {
+			try {
+				hasher.verifyDummy(password); // Take as long as a wrong password, so the timing hides who exists
+			} catch (RejectedExecutionException e) {
+				return null; // Overloaded, the same answer a known user would get
 			}
+			return null; // No counter for a username the caller made up, the source limit covers those
 		}
-		return null; // Return null if login fails
+		String stored = user.getPassword();
+		try {
+			if (!hasher.verify(password, stored)) { // Check for matching credentials
+				loginLimiter.recordFailure(username);
+				return null; // Return null if login fails
+			}
+			if (hasher.needsRehash(stored)) {
+				rehashPassword(user, stored, password); // Upgrade plain text or outdated hashes
+			}
+		} catch (RejectedExecutionException e) {
+			return null; // Too many logins in flight, the caller may retry
+		}
+		loginLimiter.recordSuccess(username);
+		return user; // Return the logged-in user
+	}
+
+	/**
+	 * Check whether logins for a username or from a source are currently being rejected
+	 * 
+	 * @param username The username
+	 * @param source The client, or null
+	 * @return true if a login attempt would be rejected by the rate limits
+	 */
+	public boolean isLoginLimited(String username, String source) {
+		Instant now = Instant.now();
+		return loginLimiter.isUsernameLimited(username, now) || loginLimiter.isSourceLimited(source, now);
+	}
+
+	/**
+	 * Get the login rate limiter, for example to purge it
+	 * 
+	 * @return The login rate limiter
+	 */
+	public LoginRateLimiter getLoginRateLimiter() {
+		return loginLimiter; // Returns the login rate limiter
+	}
+
+	/**
+	 * Replace a stored password with a hash at the current cost, unless it was changed meanwhile
+	 * 
+	 * @param user The user who just logged in
+	 * @param stored The stored password that was verified
+	 * @param password The verified password
+	 */
+	private void rehashPassword(User user, String stored, String password) {
+		String rehashed = hasher.hash(password);
+		synchronized (user) {
+			if (stored.equals(user.getPassword())) { // A password reset in between wins
+				user.setPassword(rehashed);
+				saveUser(user);
+			}
+		}
+	}
+
+	/**
+	 * Get the password hasher, for example to read its metrics
+	 * 
+	 * @return The password hasher
+	 */
+	public PasswordHasher getPasswordHasher() {
+		return hasher;
 	}
 
 	/**
@@ -83,16 +285,23 @@ public class AuthManager {
 	 * @param lastName The last name of the user
 	 * @param preferredName The preferred name of the user
 	 * @param email The email of the user
-	 * @return true if account setup is completed successfully
+	 * @return true if account setup is completed successfully, false if another user has the email
 	 */
 	public boolean completeAccountSetup(User user, String firstName, String middleName, String lastName,
 			String preferredName, String email) {
-		user.setFirstName(firstName); // Set the user's first name
-		user.setMiddleName(middleName); // Set the user's middle name
-		user.setLastName(lastName); // Set the user's last name
-		user.setPreferredName(preferredName); // Set the user's preferred name
-		user.setEmail(email); // Set the user's email
-		user.setSetupComplete(true); // Mark the account setup as complete
+		synchronized (user) { // Lock only this user while its profile changes
+			if (!users.updateEmail(user, email)) { // Set the user's email and re-index it
+				return false; // Nothing is changed
+			}
+			user.setFirstName(firstName); // Set the user's first name
+			user.setMiddleName(middleName); // Set the user's middle name
+			user.setLastName(lastName); // Set the user's last name
+			user.setPreferredName(preferredName); // Set the user's preferred name
+			user.setSetupComplete(true); // Mark the account setup as complete
+			users.reindex(user); // Make the new profile searchable
+			saveUser(user); // Record the completed profile
+			audit(AuditEvent.Type.ACCOUNT_SETUP_COMPLETED, user, null);
+		}
 		return true; // Return true to indicate success
 	}
 
@@ -103,12 +312,7 @@ public class AuthManager {
 	 * @return The found user or null if not found
 	 */
 	public User findUserByUsername(String username) {
-		for (User user : users) { // Iterate through the list of users
-			if (user.getUsername().equals(username)) { // Check for matching username
-				return user; // Return the found user
-			}
-		}
-		return null; // Return null if user not found
+		return users.findByUsername(username); // Return the found user or null if not found
 	}
 
 	/**
@@ -118,13 +322,8 @@ public class AuthManager {
 	 * @return true if found email or false if not found
 	 */
 	public boolean userExistsForEmail(String email) {
-	    for (User user : users) {
-	        // Check if the user's email is not null and if it matches the provided email (case-insensitive)
-	        if (user.getEmail() != null && user.getEmail().equalsIgnoreCase(email)) {
-	            return true; // User exists
-	        }
-	    }
-	    return false; // No user found with the given email
+	    // The email index is case-insensitive, so a hit means the user exists
+	    return users.findByEmail(email) != null;
 	}
 	
 	/**
@@ -133,22 +332,106 @@ public class AuthManager {
 	 * This method prints the details of all users in the system.
 	 */
 	public void listUsers() {
-		for (User user : users) { // Iterate through the list of users
-			System.out.println("Username: " + user.getUsername()); // Print username
-			System.out.println("Name: " + user.getFirstName() + " " + user.getLastName()); // Print user's full name
-			System.out.println("Roles: " + user.getRoles()); // Print user's roles
-			System.out.println("Setup Complete: " + user.isSetupComplete()); // Print setup status
-			System.out.println(); // Print a newline for better readability
+		listUsers(System.out);
+	}
+
+	/**
+	 * List all users to the given stream, for example a report file instead of the console
+	 * 
+	 * @param out Where the details are printed
+	 */
+	public void listUsers(PrintStream out) {
+		for (User user : users.getAll()) { // Iterate through the list of users
+			out.println("Username: " + user.getUsername()); // Print username
+			out.println("Name: " + user.getFirstName() + " " + user.getLastName()); // Print user's full name
+			out.println("Roles: " + user.getRoles()); // Print user's roles
+			out.println("Setup Complete: " + user.isSetupComplete()); // Print setup status
+			out.println(); // Print a newline for better readability
 		}
 	}
 
 	/**
 	 * Method to return the list of users
 	 * 
+	 * The list is an immutable version of the registered users, obtained in constant time. Changes made
+	 * afterwards publish new versions and never show up in, or wait for, a list already handed out.
+	 * 
 	 * @return List of all registered users
 	 */
 	public List<User> getAllUsers() {
-		return users; // Return the list of users
+		return users.getAll(); // Return the current version of the users
+	}
+
+	/**
+	 * Get the version number of the user list, which changes whenever users are added, loaded or removed,
+	 * so a screen can tell whether its listing is stale without fetching it again
+	 * 
+	 * @return The current version number
+	 */
+	public long getUserListVersion() {
+		return users.getVersion();
+	}
+
+	/**
+	 * Get one page of users in registration order
+	 * 
+	 * @param cursor The next cursor of the previous page, 0 for the first page
+	 * @param limit The maximum number of users on the page
+	 * @return The page of users
+	 */
+	public UserPage getUsersPage(long cursor, int limit) {
+		return new UserPage(users.page(cursor, limit), cursor, limit);
+	}
+
+	/**
+	 * Move a paging cursor forward without loading the users skipped, for jumping ahead several pages
+	 * 
+	 * @param cursor The cursor to start from
+	 * @param count The number of users to skip
+	 * @return The cursor after the skipped users
+	 */
+	public long skipUsers(long cursor, int count) {
+		return users.skip(cursor, count);
+	}
+
+	/**
+	 * Search the user directory by username, name or email, with optional role and setup filters, in the
+	 * requested order. Served from indexes, so it does not scan every user.
+	 * 
+	 * @param query The query
+	 * @return The matching users, at most the query's limit
+	 */
+	public List<User> searchUsers(UserQuery query) {
+		return users.search(query);
+	}
+
+	/**
+	 * Get the users holding a role, from the role index rather than a pass over every user
+	 * 
+	 * @param role The role
+	 * @return The users holding the role in registration order
+	 */
+	public List<User> getUsersWithRole(Role role) {
+		return users.withRole(role);
+	}
+
+	/**
+	 * Count the users holding a role without loading them
+	 * 
+	 * @param role The role
+	 * @return The number of users holding the role
+	 */
+	public int countUsersWithRole(Role role) {
+		return users.countWithRole(role);
+	}
+
+	/**
+	 * Get the number of registered users without loading them
+	 * 
+	 * @return The user count
+	 */
+	public int getUserCount() {
+		return users.size();
 	}
 
 	// ========== Role Management Methods ========== //
@@ -160,7 +443,12 @@ public class AuthManager {
 	 * @param role The role to be added to the user
 	 */
 	public void addRole(User user, Role role) {
-		user.getRoles().add(role); // Add the specified role to the user
+		synchronized (user) { // Serialize role changes on this user
+			user.setRoleBits(user.getRoleBits() | role.bit()); // Add the specified role
+			users.reindex(user); // Update the role filter
+			saveUser(user); // Record the change
+			audit(AuditEvent.Type.ROLE_ADDED, user, role.toString());
+		}
 	}
 
 	/**
@@ -170,7 +458,12 @@ public class AuthManager {
 	 * @param role The role to be removed from the user
 	 */
 	public void removeRole(User user, Role role) {
-		user.getRoles().remove(role); // Remove the specified role from the user
+		synchronized (user) { // Serialize role changes on this user
+			user.setRoleBits(user.getRoleBits() & ~role.bit()); // Remove the specified role
+			users.reindex(user); // Update the role filter
+			saveUser(user); // Record the change
+			audit(AuditEvent.Type.ROLE_REMOVED, user, role.toString());
+		}
 	}
 
 	/**
@@ -180,7 +473,205 @@ public class AuthManager {
 	 * @return true if the user was successfully removed, false otherwise
 	 */
 	public boolean deleteUser(User user) {
-		return users.remove(user); // Remove the user from the list and return the result
+		long start = System.nanoTime();
+		boolean deleted = removeUser(user);
+		deleteMetrics.record(start, deleted);
+		return deleted;
+	}
+
+	/**
+	 * Remove a user and record the deletion
+	 * 
+	 * @param user The user to be deleted
+	 * @return true if the user was registered and has been removed
+	 */
+	private boolean removeUser(User user) {
+		synchronized (user) { // Keep a concurrent change from recording the user after its deletion
+			if (!users.remove(user)) { // Remove the user from the list
+				return false;
+			}
+			storage.deleteUser(user); // Record the deletion
+			sessions.invalidateUser(user); // Log the deleted user out everywhere
+			audit(AuditEvent.Type.USER_DELETED, user, null);
+			return true;
+		}
+	}
+
+	/**
+	 * Delete every user matching a filter. Users are visited page by page in registration order, and each page
+	 * of matches is removed and recorded as one batch, so even tens of thousands of deletions stay linear.
+	 * Their search entries are cleaned up later by the user compactor.
+	 * 
+	 * @param filter Selects the users to delete
+	 * @return The number of users deleted
+	 */
+	public int purgeUsers(Predicate<User> filter) {
+		int purged = 0;
+		long cursor = 0;
+		while (true) {
+			UserPage page = getUsersPage(cursor, PURGE_BATCH);
+			List<User> matches = new ArrayList<>();
+			for (User user : page.getUsers()) {
+				if (filter.test(user)) {
+					matches.add(user);
+				}
+			}
+			purged += purgeBatch(matches);
+			if (page.isLastPage()) {
+				return purged;
+			}
+			cursor = page.getNextCursor();
+		}
+	}
+
+	/**
+	 * Delete the users with the given ids. Unknown ids are ignored.
+	 * 
+	 * @param ids The ids of the users to delete
+	 * @return The number of users deleted
+	 */
+	public int purgeUsers(Collection<Long> ids) {
+		int purged = 0;
+		List<User> batch = new ArrayList<>(Math.min(ids.size(), PURGE_BATCH));
+		for (long id : ids) {
+			User user = users.findById(id);
+			if (user != null) {
+				batch.add(user);
+			}
+			if (batch.size() == PURGE_BATCH) {
+				purged += purgeBatch(batch);
+				batch.clear();
+			}
+		}
+		return purged + purgeBatch(batch);
+	}
+
+	/**
+	 * Remove a batch of users, record their deletion as one batch and end their sessions in one pass
+	 * 
+	 * @param batch The users to delete
+	 * @return The number of users that were still registered and have been removed
+	 */
+	private int purgeBatch(List<User> batch) {
+		if (batch.isEmpty()) {
+			return 0;
+		}
+		long start = System.nanoTime();
+		List<User> removed = new ArrayList<>(batch.size());
+		for (User user : batch) {
+			synchronized (user) { // No change to this user can be recorded after its removal
+				if (users.remove(user)) {
+					removed.add(user);
+				}
+			}
+		}
+		if (!removed.isEmpty()) {
+			storage.deleteUsers(removed); // Recorded after the removal, like a single delete
+			sessions.invalidateUsers(removed);
+			for (User user : removed) {
+				audit(AuditEvent.Type.USER_DELETED, user, "purge");
+			}
+		}
+		purgeMetrics.record(start, true);
+		return removed.size();
+	}
+
+	/**
+	 * Record the current state of a user if it is still registered. The caller must hold the user's monitor.
+	 * 
+	 * @param user The user to record
+	 */
+	private void saveUser(User user) {
+		user.incrementVersion(); // Transactions that read the user before this change will not commit
+		if (users.contains(user)) { // A user deleted concurrently must not be written back
+			storage.saveUser(user);
+		}
+	}
+
+	/**
+	 * Add a change to a user to the audit log, if changes are audited. Changes to a user deleted concurrently
+	 * were not recorded and are not audited either. The caller must hold the user's monitor.
+	 * 
+	 * @param type What changed
+	 * @param user The user changed
+	 * @param detail Extra information, may be null
+	 */
+	private void audit(AuditEvent.Type type, User user, String detail) {
+		if (audit != null && (type == AuditEvent.Type.USER_DELETED || users.contains(user))) {
+			audit.record(type, user, detail);
+		}
+	}
+
+	/**
+	 * Add a change that is not about a registered user to the audit log, if changes are audited.
+	 * 
+	 * @param type What changed
+	 * @param username The username the change was about
+	 * @param detail Extra information, may be null
+	 */
+	private void audit(AuditEvent.Type type, String username, String detail) {
+		if (audit != null) {
+			audit.record(type, AuditEvent.NO_USER, username, detail);
+		}
+	}
+
+	/**
+	 * Create the operation metrics and register the gauges read on export
+	 */
+	private void registerMetrics() {
+		metrics = new MetricsRegistry("auth_");
+		loginMetrics = metrics.operation("login");
+		inviteMetrics = metrics.operation("inviteUser");
+		resetMetrics = metrics.operation("requestPasswordReset");
+		deleteMetrics = metrics.operation("deleteUser");
+		purgeMetrics = metrics.operation("purgeUsers");
+		commitMetrics = metrics.operation("commitTransaction");
+		metrics.gauge("users", users::size);
+		metrics.gauge("search_tombstones", users::getTombstoneCount);
+		metrics.gauge("pending_invitations", invitations::getPendingCount);
+		metrics.gauge("pending_reset_requests", resetRequests::size);
+		metrics.gauge("sessions", sessions::size);
+		metrics.gauge("password_hasher_queued", hasher::getQueuedCount);
+		metrics.gauge("otp_generated", otpGenerator::getGeneratedCount);
+		metrics.gauge("otp_codes_per_second", () -> (long) otpGenerator.getCodesPerSecond());
+		metrics.gauge("transactions_exhausted", exhaustedTransactions::sum);
+	}
+
+	/**
+	 * Get the one-time password generator, for example to read its throughput
+	 * 
+	 * @return The one-time password generator
+	 */
+	public OtpGenerator getOtpGenerator() {
+		return otpGenerator; // Returns the one-time password generator
+	}
+
+	/**
+	 * Get the metrics registry, for example to export it
+	 * 
+	 * @return The metrics registry
+	 */
+	public MetricsRegistry getMetrics() {
+		return metrics; // Returns the metrics registry
+	}
+
+	/**
+	 * Get the dispatcher that delivers invitation codes and one-time passwords, for example to plug in
+	 * another sink or to read its counters
+	 * 
+	 * @return The notification dispatcher
+	 */
+	public NotificationDispatcher getNotifications() {
+		return notifications; // Returns the notification dispatcher
+	}
+
+	/**
+	 * Get the audit log
+	 * 
+	 * @return The audit log, or null if changes are not audited
+	 */
+	public AuditLog getAuditLog() {
+		return audit; // Returns the audit log
 	}
 
 	// ========== Invitation Management Methods ========== //
@@ -194,25 +685,125 @@ public class AuthManager {
 	 * @return The invitation code for the newly created invitation
 	 */
 	public String inviteUser(String username, String email, Set<Role> roles) {
-		Invitation newInvitation = new Invitation(username, email, roles); // Create a new invitation
-		invitations.add(newInvitation); // Add invitation to the list
-		System.out.println("Invitation code for " + email + " : " + newInvitation.getInvitationCode()); // Print invitation code
-		return newInvitation.getInvitationCode(); // Return the invitation code
+		long start = System.nanoTime();
+		boolean success = false;
+		try {
+			Invitation newInvitation = new Invitation(username, email, roles, invitationTtl); // Create a new invitation
+			synchronized (invitations) { // Keep a running bulk invite from interleaving with this one
+				invitations.add(newInvitation); // Add invitation to the list
+				storage.saveInvitation(newInvitation); // Record the invitation
+			}
+			audit(AuditEvent.Type.INVITATION_CREATED, username, email);
+			notifications.dispatch(new AuthNotification(AuthNotification.Type.INVITATION_CODE, username, email,
+					newInvitation.getInvitationCode(), newInvitation.getExpiresAt())); // Deliver the code without waiting for it
+			success = true;
+			return newInvitation.getInvitationCode(); // Return the invitation code
+		} finally {
+			inviteMetrics.record(start, success);
+		}
+	}
+
+	/**
+	 * Invite many users at once
+	 * 
+	 * Every request is checked against the registered users, the pending invitations and the rest of the batch
+	 * in one pass. The accepted invitations are then registered together and recorded as one batch, while
+	 * other invitations wait.
+	 * 
+	 * @param specs The invitations to create
+	 * @return The created invitations and the rejected requests with their reasons
+	 */
+	public BulkInviteResult inviteUsers(Collection<InviteSpec> specs) {
+		BulkInviteResult result = new BulkInviteResult();
+		synchronized (invitations) { // No other invitation may be added between the checks and the commit
+			Iterator<String> codes = generateInvitationCodes(specs.size()).iterator();
+			Instant expiresAt = Instant.now().plus(invitationTtl);
+			Set<String> batchUsernames = new HashSet<>();
+			Set<String> batchEmails = new HashSet<>();
+			List<Invitation> batch = new ArrayList<>(specs.size());
+			for (InviteSpec spec : specs) {
+				String reason = validateInvite(spec, batchUsernames, batchEmails);
+				if (reason != null) {
+					result.reject(spec, reason);
+					continue;
+				}
+				Invitation invitation = new Invitation(codes.next(), spec.getUsername(), spec.getEmail(),
+						Role.canonical(spec.getRoles()), false, expiresAt);
+				batch.add(invitation);
+				result.addInvitation(invitation);
+			}
+			if (!batch.isEmpty()) {
+				// Registered before it is recorded, so a checkpoint that rolls the log in between still snapshots it
+				invitations.addAll(batch);
+				try {
+					storage.saveInvitations(batch);
+				} catch (RuntimeException e) {
+					for (Invitation invitation : batch) {
+						invitations.remove(invitation.getInvitationCode()); // Nothing was recorded, register nothing
+					}
+					throw e;
+				}
+				for (Invitation invitation : batch) {
+					audit(AuditEvent.Type.INVITATION_CREATED, invitation.getUsername(), invitation.getEmail());
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Invite the users listed in a CSV file of username, email and semicolon-separated roles
+	 * 
+	 * @param csv The CSV input
+	 * @return The created invitations and the rejected requests with their reasons
+	 * @throws IllegalArgumentException if a line is malformed, in which case nobody is invited
+	 */
+	public BulkInviteResult importInvitations(Reader csv) {
+		return inviteUsers(InviteCsvParser.parse(csv));
+	}
+
+	/**
+	 * Check one bulk invite request
+	 * 
+	 * @return The reason the request is rejected, or null if it is valid
+	 */
+	private String validateInvite(InviteSpec spec, Set<String> batchUsernames, Set<String> batchEmails) {
+		if (spec.getUsername() == null || spec.getUsername().isEmpty() || spec.getEmail() == null || spec.getEmail().isEmpty()) {
+			return "Username and email are required";
+		}
+		if (spec.getRoles() == null || spec.getRoles().isEmpty()) {
+			return "At least one role is required";
+		}
+		if (users.findByUsername(spec.getUsername()) != null) {
+			return "Username is already registered";
+		}
+		if (users.findByEmail(spec.getEmail()) != null) {
+			return "Email is already registered";
+		}
+		if (invitations.findPendingByUsername(spec.getUsername()) != null) {
+			return "Username already has a pending invitation";
+		}
+		if (invitations.findPendingByEmail(spec.getEmail()) != null) {
+			return "Email already has a pending invitation";
+		}
+		if (!batchUsernames.add(spec.getUsername())) {
+			return "Username appears more than once in the batch";
+		}
+		if (!batchEmails.add(UserStore.emailKey(spec.getEmail()))) {
+			batchUsernames.remove(spec.getUsername());
+			return "Email appears more than once in the batch";
+		}
+		return null;
 	}
 
 	/**
 	 * Check if a user is invited
 	 * 
 	 * @param invitationCode The invitation code to check
-	 * @return true if the invitation exists and is not used, false otherwise
+	 * @return true if the invitation exists, is not used and has not expired, false otherwise
 	 */
 	public boolean isUserInvited(String invitationCode) {
-		for (Invitation invitation : invitations) { // Iterate through the list of invitations
-			if (invitation.getInvitationCode().equals(invitationCode) && !invitation.isUsed()) { // Check for matching invitation code and usage status
-				return true; // Invitation exists and is not used
-			}
-		}
-		return false; // Invitation does not exist or has been used
+		return invitations.getPending(invitationCode) != null; // Only pending invitations can be redeemed
 	}
 
 	/**
@@ -222,12 +813,52 @@ public class AuthManager {
 	 * @return The invitation object if found, null otherwise
 	 */
 	public Invitation getInvitationFromInvitationCode(String invitationCode) {
-		for (Invitation invitation : invitations) { // Iterate through the list of invitations
-			if (invitation.getInvitationCode().equals(invitationCode)) { // Check for matching invitation code
-				return invitation; // Return the invitation object
-			}
+		return invitations.get(invitationCode); // Return the invitation object or null if not found
+	}
+
+	/**
+	 * Mark an invitation as used
+	 * 
+	 * @param invitationCode The invitation code being redeemed
+	 * @return true if a pending invitation was marked as used, false otherwise
+	 */
+	public boolean markInvitationAsUsed(String invitationCode) {
+		Invitation invitation = invitations.markUsed(invitationCode); // Move the invitation to the used partition
+		if (invitation == null) {
+			return false;
 		}
-		return null; // Invitation not found
+		recordRedemption(invitation);
+		return true;
+	}
+
+	/**
+	 * Record and audit an invitation that was just marked used
+	 * 
+	 * @param invitation The redeemed invitation
+	 */
+	private void recordRedemption(Invitation invitation) {
+		storage.saveInvitation(invitation); // Record that it was used
+		announceRedemption(invitation);
+	}
+
+	/**
+	 * Audit an invitation whose redemption was recorded and drop its code from the notifications
+	 * 
+	 * @param invitation The redeemed invitation
+	 */
+	private void announceRedemption(Invitation invitation) {
+		audit(AuditEvent.Type.INVITATION_REDEEMED, invitation.getUsername(), invitation.getEmail());
+		notifications.revoke(AuthNotification.Type.INVITATION_CODE, invitation.getEmail(),
+				invitation.getInvitationCode()); // The sink need not keep a code that no longer works
+	}
+
+	/**
+	 * Get the invitations that have not been used yet
+	 * 
+	 * @return The pending invitations
+	 */
+	public Collection<Invitation> getPendingInvitations() {
+		return invitations.getPendingInvitations();
 	}
 
 	/**
@@ -236,22 +867,90 @@ public class AuthManager {
 	 * @param invitationCode The invitation code to be deleted
 	 */
 	public void deleteInvitation(String invitationCode) {
-		invitations.removeIf(invitation -> invitation.getInvitationCode().equals(invitationCode)); // Remove the invitation with the matching code
+		Invitation removed = invitations.remove(invitationCode); // Remove the invitation with the matching code
+		if (removed != null) {
+			storage.deleteInvitation(invitationCode); // Record the deletion
+			audit(AuditEvent.Type.INVITATION_DELETED, removed.getUsername(), removed.getEmail());
+			notifications.revoke(AuthNotification.Type.INVITATION_CODE, removed.getEmail(), invitationCode);
+		}
+	}
+
+	/**
+	 * Evict every used invitation and every invitation that has expired
+	 * 
+	 * @return The number of invitations evicted
+	 */
+	public int purgeInvitations() {
+		return purgeInvitations(Instant.now());
+	}
+
+	/**
+	 * Evict every used invitation and every invitation that has expired by the given time
+	 * 
+	 * @param now The current time
+	 * @return The number of invitations evicted
+	 */
+	public int purgeInvitations(Instant now) {
+		List<Invitation> evicted;
+		synchronized (invitations) { // Keep a bulk invite from interleaving with the recorded deletions
+			evicted = invitations.purge(now);
+			notifications.purgeExpired(now); // Expired codes leave the sink along with their invitations
+			if (evicted.isEmpty()) {
+				return 0;
+			}
+			List<String> codes = new ArrayList<>(evicted.size());
+			for (Invitation invitation : evicted) {
+				codes.add(invitation.getInvitationCode());
+			}
+			storage.deleteInvitations(codes); // Record the whole purge at once
+		}
+		for (Invitation invitation : evicted) {
+			if (!invitation.isUsed()) { // Redeemed invitations were audited and revoked when they were used
+				audit(AuditEvent.Type.INVITATION_DELETED, invitation.getUsername(), invitation.getEmail() + " expired");
+			}
+		}
+		return evicted.size();
+	}
+
+	/**
+	 * Set how long invitations created from now on can be redeemed
+	 * 
+	 * @param ttl The time to live of new invitations
+	 */
+	public void setInvitationTtl(Duration ttl) {
+		if (ttl == null || ttl.isNegative() || ttl.isZero()) {
+			throw new IllegalArgumentException("Invitation time to live must be positive");
+		}
+		this.invitationTtl = ttl;
+	}
+
+	public Duration getInvitationTtl() {
+		return invitationTtl; // Returns the time to live of new invitations
 	}
 
 	/**
 	 * List all invitations
 	 * 
-	 * This method prints the details of all invitations in the system.
+	 * This method prints the details of all invitations in the system. Codes are only ever handed out through
+	 * the notifications, so they are not printed.
 	 */
 	public void listInvitations() {
-		for (Invitation invitation : invitations) { // Iterate through the list of invitations
-			System.out.println("Username: " + invitation.getUsername()); // Print username associated with the invitation
-			System.out.println("Email: " + invitation.getEmail()); // Print email associated with the invitation
-			System.out.println("Roles: " + invitation.getRoles()); // Print roles associated with the invitation
-			System.out.println("Invitation Code: " + invitation.getInvitationCode()); // Print invitation code
-			System.out.println("Used: " + invitation.isUsed()); // Print usage status
-			System.out.println(); // Print a newline for better readability
+		listInvitations(System.out);
+	}
+
+	/**
+	 * List all invitations to the given stream, for example a report file instead of the console
+	 * 
+	 * @param out Where the details are printed
+	 */
+	public void listInvitations(PrintStream out) {
+		for (Invitation invitation : invitations.getAll()) { // Iterate through the list of invitations
+			out.println("Username: " + invitation.getUsername()); // Print username associated with the invitation
+			out.println("Email: " + invitation.getEmail()); // Print email associated with the invitation
+			out.println("Roles: " + invitation.getRoles()); // Print roles associated with the invitation
+			out.println("Used: " + invitation.isUsed()); // Print usage status
+			out.println("Expires: " + invitation.getExpiresAt()); // Print expiration time
+			out.println(); // Print a newline for better readability
 		}
 	}
 
@@ -264,26 +963,36 @@ public class AuthManager {
 	 * @return void
 	 */
 	public void requestPasswordReset(String email) {
-		String oneTimePassword = generateOneTimePassword(); // Implement this method to generate a secure OTP
-		Instant expirationTime = Instant.now().plus(3, ChronoUnit.DAYS); // OTP valid for 3 days
-		System.out.println("OTP for " + email + ": " + oneTimePassword + ", it expires at " + expirationTime);
-		resetRequests.add(new ResetRequest(email, oneTimePassword, expirationTime));
+		long start = System.nanoTime();
+		boolean success = false;
+		try {
+			Instant expirationTime = Instant.now().plus(3, ChronoUnit.DAYS); // OTP valid for 3 days
+			ResetRequest request;
+			do {
+				request = new ResetRequest(email, otpGenerator.next(), expirationTime); // Six random digits
+			} while (!resetRequests.addWithUniqueOtp(request)); // Replaces any earlier request for this email
+			String oneTimePassword = request.getOneTimePassword();
+			storage.saveResetRequest(request); // Record the request
+			User user = users.findByEmail(email);
+			String username = user == null ? null : user.getUsername();
+			audit(AuditEvent.Type.PASSWORD_RESET_REQUESTED, username, email);
+			notifications.dispatch(new AuthNotification(AuthNotification.Type.PASSWORD_RESET_OTP, username, email,
+					oneTimePassword, expirationTime)); // Deliver the OTP without waiting for it
+			success = true;
+		} finally {
+			resetMetrics.record(start, success);
+		}
 	}
 
 	/**
 	 * Reset request
 	 * 
 	 * @param email The email of the user whose password will be reset
-	 * @return request if email found or null
+	 * @return the latest unexpired request for the email or null
 	 */
 	// Find reset request by email
 	public ResetRequest findRequestByEmail(String email) {
-		for (ResetRequest request : resetRequests) {
-			if (request.getEmail().equals(email)) {
-				return request;
-			}
-		}
-		return null; // No request found for the given email
+		return resetRequests.find(email); // Null if no request was found or it has expired
 	}
 
 	/**
@@ -294,16 +1003,19 @@ public class AuthManager {
 	 * @return true if the password was reset successfully, false otherwise
 	 */
 	public boolean updateUserPassword(String email, String newPassword) {
-	    // Loop through the list of users to find the user with the matching email
-	    for (User user : users) {
-	        // Check if user or email is null
-	        if (user != null && user.getEmail() != null && user.getEmail().equals(email)) {
-	            // Update the user's password
-	            user.setPassword(newPassword);
-	            return true; // Exit after updating the password
-	        }
+	    // Look up the user with the matching email
+	    User user = users.findByEmail(email);
+	    if (user == null) {
+	        return false; // No user registered with this email
+	    }
+	    String hashed = hasher.hash(newPassword); // Hash before taking the lock
+	    synchronized (user) {
+	        user.setPassword(hashed); // Update the user's password
+	        saveUser(user); // Record the new password
+	        audit(AuditEvent.Type.PASSWORD_CHANGED, user, null);
 	    }
-	    return false;
+	    sessions.invalidateUser(user); // Whoever held the old password is logged out
+	    return true;
 	}
 
 	/**
@@ -314,17 +1026,483 @@ public class AuthManager {
 	 * @return true if the password was reset successfully, false otherwise
 	 */
 	public void removeRequest(ResetRequest request) {
-		resetRequests.remove(request);
+		if (resetRequests.remove(request)) {
+			storage.deleteResetRequest(request); // Record the removal
+			notifications.revoke(AuthNotification.Type.PASSWORD_RESET_OTP, request.getEmail(), request.getOneTimePassword());
+		}
+	}
+
+	/**
+	 * Evict all expired password reset requests
+	 * 
+	 * @return The number of requests evicted
+	 */
+	public int purgeExpiredResetRequests() {
+		Instant now = Instant.now();
+		notifications.purgeExpired(now); // Expired one-time passwords leave the sink too
+		return resetRequests.purgeExpired(now);
+	}
+
+	/**
+	 * Get the number of pending password reset requests
+	 * 
+	 * @return The number of unexpired reset requests
+	 */
+	public int getPendingResetRequestCount() {
+		return resetRequests.size();
+	}
+
+	// ========== Transaction Methods ========== //
+
+	/**
+	 * Start a transaction that applies a group of changes all together or not at all
+	 * 
+	 * @return The new transaction
+	 */
+	public AuthTransaction beginTransaction() {
+		return new AuthTransaction(this);
+	}
+
+	/**
+	 * Run a transaction, retrying it on conflict
+	 * 
+	 * The body reads what it needs through the transaction, buffers its changes and returns a result. If a
+	 * record it read changes before the commit, the body runs again on a new transaction, up to
+	 * {@value #MAX_TRANSACTION_ATTEMPTS} times in all.
+	 * 
+	 * @param body Builds the transaction and returns its result, or returns null to commit nothing
+	 * @return The result of the attempt that committed, or null if the body returned null or every attempt conflicted
+	 */
+	public <T> T transact(Function<AuthTransaction, T> body) {
+		for (int attempt = 0; attempt < MAX_TRANSACTION_ATTEMPTS; attempt++) {
+			AuthTransaction transaction = beginTransaction();
+			T result = body.apply(transaction);
+			if (result == null) {
+				return null; // Nothing to do, for example the invitation was already used
+			}
+			if (transaction.commit()) {
+				return result;
+			}
+		}
+		exhaustedTransactions.increment();
+		return null;
+	}
+
+	/**
+	 * Redeem an invitation by registering its user, in one step
+	 * 
+	 * The invitation is marked used and the user is registered together, so a code can only ever create one
+	 * account and a failed registration leaves the invitation pending.
+	 * 
+	 * @param invitationCode The invitation code
+	 * @param password The password of the new user
+	 * @return The new user, or null if the invitation is not pending or its username is taken
+	 */
+	public User redeemInvitation(String invitationCode, String password) {
+		return transact(transaction -> {
+			Invitation invitation = transaction.redeemInvitation(invitationCode);
+			if (invitation == null || users.findByUsername(invitation.getUsername()) != null) {
+				return null;
+			}
+			return transaction.createUser(invitation.getUsername(), password, invitation.getRoles());
+		});
+	}
+
+	/**
+	 * Reset a password with the one-time password sent for it, in one step
+	 * 
+	 * The password changes and the reset request is used up together, so a one-time password works once.
+	 * 
+	 * @param email The email the reset was requested for
+	 * @param oneTimePassword The one-time password from the request
+	 * @param newPassword The new password
+	 * @return true if the password was reset, false if the request or the code is not valid
+	 */
+	public boolean resetPasswordWithOtp(String email, String oneTimePassword, String newPassword) {
+		return transact(transaction -> {
+			ResetRequest request = transaction.consumeResetRequest(email);
+			if (request == null || !request.getOneTimePassword().equals(oneTimePassword)) {
+				return null;
+			}
+			User user = users.findByEmail(email);
+			if (user == null) {
+				return null; // No user registered with this email
+			}
+			transaction.setPassword(user, newPassword);
+			return Boolean.TRUE;
+		}) != null;
+	}
+
+	/**
+	 * Replace a user's roles unless the user changed since the caller read it
+	 * 
+	 * @param user The user
+	 * @param expectedVersion The version of the user the new roles were chosen from
+	 * @param roles The new roles
+	 * @return The user's version after the change, to pass to the next call, or -1 if the user changed or was
+	 *         deleted meanwhile
+	 */
+	public long setRoles(User user, long expectedVersion, Set<Role> roles) {
+		AuthTransaction transaction = beginTransaction();
+		transaction.expect(user, expectedVersion);
+		transaction.setRoles(user, roles);
+		return transaction.commit() ? expectedVersion + 1 : -1; // The commit records the user exactly once
+	}
+
+	/**
+	 * Get the commit metrics of transactions, whose failures are commits that hit a conflict
+	 * 
+	 * @return The commit metrics
+	 */
+	public OperationMetrics getTransactionMetrics() {
+		return commitMetrics; // Returns the commit metrics
+	}
+
+	/**
+	 * Get the number of transactions that conflicted on every attempt and were given up
+	 * 
+	 * @return The number of transactions given up
+	 */
+	public long getExhaustedTransactionCount() {
+		return exhaustedTransactions.sum();
+	}
+
+	/**
+	 * Commit a transaction. Locks the users it touched in id order, then its reset requests in email order,
+	 * then the invitation registry if it redeems invitations, so commits never deadlock each other. The users
+	 * it creates are locked last; nobody else can reach them yet.
+	 * 
+	 * @param transaction The transaction
+	 * @return true if every change was applied, false on a conflict
+	 */
+	boolean commit(AuthTransaction transaction) {
+		long start = System.nanoTime();
+		List<Object> monitors = new ArrayList<>();
+		List<User> lockedUsers = new ArrayList<>(transaction.getReadVersions().keySet());
+		lockedUsers.sort(Comparator.comparingLong(User::getId));
+		monitors.addAll(lockedUsers);
+		List<ResetRequest> requests = new ArrayList<>(transaction.getConsumedRequests());
+		requests.sort(Comparator.comparing(request -> UserStore.emailKey(request.getEmail())));
+		monitors.addAll(requests);
+		if (!transaction.getRedeemedInvitations().isEmpty()) {
+			monitors.add(invitations); // Keeps a concurrent delete from taking a validated invitation
+		}
+		monitors.addAll(transaction.getCreatedUsers()); // Recorded before anyone else can change them
+		boolean committed = lockAll(monitors, 0, () -> commitLocked(transaction));
+		commitMetrics.record(start, committed);
+		if (committed) {
+			for (User user : transaction.getPasswordChanges().keySet()) {
+				sessions.invalidateUser(user); // Whoever held the old password is logged out
+			}
+		}
+		return committed;
+	}
+
+	/**
+	 * Hold the monitors from the given position on, in order, while running the body
+	 */
+	private static boolean lockAll(List<Object> monitors, int next, BooleanSupplier body) {
+		if (next == monitors.size()) {
+			return body.getAsBoolean();
+		}
+		synchronized (monitors.get(next)) {
+			return lockAll(monitors, next + 1, body);
+		}
+	}
+
+	/**
+	 * Validate a transaction and apply it. The caller holds the monitors of everything it touches.
+	 */
+	private boolean commitLocked(AuthTransaction transaction) {
+		for (Map.Entry<User, Long> read : transaction.getReadVersions().entrySet()) {
+			if (!users.contains(read.getKey()) || read.getKey().getVersion() != read.getValue()) {
+				return false; // Changed or deleted since it was read
+			}
+		}
+		for (ResetRequest request : transaction.getConsumedRequests()) {
+			if (resetRequests.find(request.getEmail()) != request) {
+				return false; // Used, replaced or expired meanwhile
+			}
+		}
+		for (Invitation invitation : transaction.getRedeemedInvitations()) {
+			if (invitations.getPending(invitation.getInvitationCode()) != invitation) {
+				return false; // Redeemed, deleted or expired meanwhile
+			}
+		}
+		List<User> added = new ArrayList<>();
+		for (User created : transaction.getCreatedUsers()) {
+			if (!users.add(created)) { // Claims the username atomically
+				for (User user : added) {
+					users.remove(user); // Never recorded, so nothing else to undo
+				}
+				return false; // Taken by a registered user
+			}
+			added.add(created);
+		}
+
+		// Everything is validated and locked, from here on the changes are applied
+		Set<User> changed = new LinkedHashSet<>(added);
+		for (User created : added) {
+			created.incrementVersion();
+		}
+		for (Invitation invitation : transaction.getRedeemedInvitations()) {
+			invitations.markUsed(invitation.getInvitationCode());
+		}
+		for (ResetRequest request : transaction.getConsumedRequests()) {
+			resetRequests.remove(request);
+		}
+		Map<User, Integer> previousRoles = new HashMap<>();
+		for (Map.Entry<User, Integer> change : transaction.getRoleChanges().entrySet()) {
+			User user = change.getKey();
+			previousRoles.put(user, user.getRoleBits());
+			user.setRoleBits(change.getValue());
+			users.reindex(user); // Update the role filter
+			user.incrementVersion(); // Transactions that read the user before this change will not commit
+			changed.add(user);
+		}
+		for (Map.Entry<User, String> change : transaction.getPasswordChanges().entrySet()) {
+			change.getKey().setPassword(change.getValue());
+			change.getKey().incrementVersion();
+			changed.add(change.getKey());
+		}
+		// One record for the whole commit, so a crash cannot keep part of it
+		storage.saveTransaction(changed, transaction.getRedeemedInvitations(), transaction.getConsumedRequests());
+
+		for (Invitation invitation : transaction.getRedeemedInvitations()) {
+			announceRedemption(invitation);
+		}
+		for (ResetRequest request : transaction.getConsumedRequests()) {
+			notifications.revoke(AuthNotification.Type.PASSWORD_RESET_OTP, request.getEmail(), request.getOneTimePassword());
+		}
+		for (User created : added) {
+			audit(AuditEvent.Type.USER_CREATED, created, created.getRoles().toString());
+		}
+		for (Map.Entry<User, Integer> change : transaction.getRoleChanges().entrySet()) {
+			int previous = previousRoles.get(change.getKey());
+			for (Role role : Role.values()) {
+				if ((previous & role.bit()) == 0 && (change.getValue() & role.bit()) != 0) {
+					audit(AuditEvent.Type.ROLE_ADDED, change.getKey(), role.toString());
+				} else if ((previous & role.bit()) != 0 && (change.getValue() & role.bit()) == 0) {
+					audit(AuditEvent.Type.ROLE_REMOVED, change.getKey(), role.toString());
+				}
+			}
+		}
+		for (User user : transaction.getPasswordChanges().keySet()) {
+			audit(AuditEvent.Type.PASSWORD_CHANGED, user, null);
+		}
+		return true;
+	}
+
+	// ========== Session Management Methods ========== //
+
+	/**
+	 * Start a session for a user that has logged in, acting in one of its roles
+	 * 
+	 * @param user The logged-in user
+	 * @param role The role selected for the session
+	 * @return The session, or null if the user is not registered or does not hold the role
+	 */
+	public Session startSession(User user, Role role) {
+		if (user == null || role == null || !users.contains(user) || !user.hasRole(role)) {
+			return null;
+		}
+		return sessions.create(user, role);
+	}
+
+	/**
+	 * Check a session token without checking the password again
+	 * 
+	 * @param token The session token
+	 * @return The session, or null if it is unknown, has expired, or its user was deleted or lost the role
+	 */
+	public Session validateSession(String token) {
+		Session session = sessions.validate(token);
+		if (session != null && (!users.contains(session.getUser()) || !session.getUser().hasRole(session.getRole()))) {
+			sessions.invalidate(token); // The user changed since the session was issued
+			return null;
+		}
+		return session;
+	}
+
+	/**
+	 * End a session, logging its user out
+	 * 
+	 * @param token The session token
+	 */
+	public void endSession(String token) {
+		sessions.invalidate(token);
+	}
+
+	/**
+	 * Evict all expired sessions
+	 * 
+	 * @return The number of sessions evicted
+	 */
+	public int purgeExpiredSessions() {
+		return sessions.purgeExpired(Instant.now());
+	}
+
+	public SessionManager getSessionManager() {
+		return sessions; // Returns the session manager
+	}
+
+	// ========== Maintenance Methods ========== //
+
+	/**
+	 * Periodically purge expired sessions in the background
+	 * 
+	 * @param period The time between purges
+	 * @param unit The unit of the period
+	 */
+	public void startSessionSweeper(long period, TimeUnit unit) {
+		getMaintenance().schedule("session-sweeper", this::purgeExpiredSessions, period, unit);
+	}
+
+	/**
+	 * Periodically drop idle login rate limit counters in the background
+	 * 
+	 * @param period The time between purges
+	 * @param unit The unit of the period
+	 */
+	public void startLoginLimitSweeper(long period, TimeUnit unit) {
+		getMaintenance().schedule("login-limit-sweeper", () -> loginLimiter.purgeExpired(Instant.now()), period, unit);
+	}
+
+	/**
+	 * Periodically write the metrics to a file for a local scraping agent
+	 * 
+	 * @param file The file replaced on every export
+	 * @param period The time between exports
+	 * @param unit The unit of the period
+	 */
+	public void startMetricsExport(Path file, long period, TimeUnit unit) {
+		getMaintenance().schedule("metrics-export", () -> metrics.writeTo(file), period, unit);
+	}
+
+	/**
+	 * Periodically clean the search entries of deleted users in the background. Each run cleans a bounded
+	 * number, one user at a time, so logins and searches are never held up.
+	 * 
+	 * @param period The time between runs
+	 * @param unit The unit of the period
+	 */
+	public void startUserCompactor(long period, TimeUnit unit) {
+		getMaintenance().schedule("user-compactor", this::compactDeletedUsers, period, unit);
+	}
+
+	/**
+	 * Clean the search entries of up to a batch of deleted users
+	 * 
+	 * @return The number of users cleaned
+	 */
+	public int compactDeletedUsers() {
+		return users.compact(COMPACT_BATCH);
+	}
+
+	/**
+	 * Periodically evict used and expired invitations in the background
+	 * 
+	 * @param period The time between purges
+	 * @param unit The unit of the period
+	 */
+	public void startInvitationSweeper(long period, TimeUnit unit) {
+		getMaintenance().schedule("invitation-sweeper", this::purgeInvitations, period, unit);
+	}
+
+	/**
+	 * Periodically purge expired password reset requests in the background
+	 * 
+	 * @param period The time between purges
+	 * @param unit The unit of the period
+	 */
+	public void startResetRequestSweeper(long period, TimeUnit unit) {
+		getMaintenance().schedule("reset-request-sweeper", this::purgeExpiredResetRequests, period, unit);
+	}
+
+	/**
+	 * Periodically write a snapshot of the whole state so that startup replays only recent changes
+	 * 
+	 * @param period The time between snapshots
+	 * @param unit The unit of the period
+	 */
+	public void startSnapshotting(long period, TimeUnit unit) {
+		getMaintenance().schedule("snapshot", this::checkpoint, period, unit);
+	}
+
+	/**
+	 * Write a snapshot of the whole state to storage
+	 */
+	public void checkpoint() {
+		storage.checkpoint(() -> {
+			// Take the snapshot and consumed ids before the loaded users, so a user loaded in between is kept
+			MappedUserSnapshot snapshot = users.getSnapshot();
+			Set<Long> consumedIds = users.getConsumedIds();
+			StoredState state = new StoredState(users.getLoaded(), invitations.getAll(), resetRequests.getAll());
+			if (snapshot != null) {
+				state.setUserSnapshot(snapshot, consumedIds); // Users never loaded are copied from the old snapshot
+			}
+			return state;
+		});
+	}
+
+	/**
+	 * Stop all background maintenance tasks, write a final snapshot and close the storage
+	 */
+	public synchronized void shutdown() {
+		if (maintenance != null) {
+			maintenance.shutdown();
+			maintenance = null;
+		}
+		if (!closed) {
+			closed = true;
+			checkpoint(); // The next startup then has nothing to replay
+			storage.close();
+			notifications.shutdown(); // Delivers what is still queued
+			otpGenerator.shutdown();
+			if (audit != null) {
+				audit.close(); // Writes out the events still buffered
+			}
+		}
+	}
+
+	/**
+	 * Get the maintenance scheduler, starting it on first use
+	 * 
+	 * @return The maintenance scheduler
+	 */
+	private synchronized MaintenanceScheduler getMaintenance() {
+		if (maintenance == null) {
+			maintenance = new MaintenanceScheduler();
+		}
+		return maintenance;
 	}
 	
 	
 	/**
-	 * Generate a secure one-time password
+	 * Generate unused invitation codes in bulk
 	 * 
-	 * @return String
+	 * @param count The number of codes
+	 * @return Distinct codes no invitation has yet
 	 */
-	private String generateOneTimePassword() {
-		// Implementation for generating a secure OTP (e.g., random 6-digit number)
-		return String.valueOf(new Random().nextInt(999999));
+	private List<String> generateInvitationCodes(int count) {
+		byte[] bytes = new byte[count * 16];
+		CODE_RANDOM.nextBytes(bytes); // One call for the whole batch
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		Set<String> codes = new LinkedHashSet<>(count * 2);
+		while (codes.size() < count) {
+			if (!buffer.hasRemaining()) {
+				CODE_RANDOM.nextBytes(bytes); // Only reached after a collision
+				buffer.clear();
+			}
+			// Same layout as UUID.randomUUID(): version 4, IETF variant
+			long high = (buffer.getLong() & ~0xF000L) | 0x4000L;
+			long low = (buffer.getLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+			String code = new UUID(high, low).toString();
+			if (!invitations.containsCode(code)) {
+				codes.add(code);
+			}
+		}
+		return new ArrayList<>(codes);
 	}
+
 }
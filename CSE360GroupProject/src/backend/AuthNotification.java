@@ -0,0 +1,82 @@
+package backend;
+
+import java.time.Instant;
+
+/**
+ * <p> Title: AuthNotification Class. </p>
+ *
+ * <p> Description: A message the AuthManager wants delivered to a person, such as a new invitation code or a
+ * one-time password. It is handed to a {@link NotificationSink} through a {@link NotificationDispatcher}, so
+ * delivery happens apart from the request that caused it. </p>
+ *
+ * <p> The code is a secret and is left out of {@link #toString()}, which is what ends up in logs. </p>
+ *
+ * @author Zeel Tejashkumar Shah
+ *
+ * @version 1.0	2024-10-17	Initial implementation
+ */
+
+public final class AuthNotification {
+
+    /**
+     * The kinds of message the AuthManager sends.
+     */
+    public enum Type {
+        INVITATION_CODE,
+        PASSWORD_RESET_OTP
+    }
+
+    private Type type; // What is being delivered
+    private String username; // The username the message is about, may be null
+    private String email; // Where the message goes
+    private String code; // The invitation code or one-time password
+    private Instant expiresAt; // When the code stops working, or null if it does not expire
+    private Instant createdAt; // When the message was created
+
+    /**
+     * Constructor for AuthNotification.
+     *
+     * @param type What is being delivered
+     * @param username The username the message is about, may be null
+     * @param email Where the message goes
+     * @param code The invitation code or one-time password
+     * @param expiresAt When the code stops working, or null if it does not expire
+     */
+    public AuthNotification(Type type, String username, String email, String code, Instant expiresAt) {
+        this.type = type;
+        this.username = username;
+        this.email = email;
+        this.code = code;
+        this.expiresAt = expiresAt;
+        this.createdAt = Instant.now();
+    }
+
+    public Type getType() {
+        return type; // Returns what is being delivered
+    }
+
+    public String getUsername() {
+        return username; // Returns the username the message is about
+    }
+
+    public String getEmail() {
+        return email; // Returns where the message goes
+    }
+
+    public String getCode() {
+        return code; // Returns the invitation code or one-time password
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt; // Returns when the code stops working, or null
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt; // Returns when the message was created
+    }
+
+    @Override
+    public String toString() {
+        return type + " for " + email + (expiresAt == null ? "" : ", expires at " + expiresAt);
+    }
+}
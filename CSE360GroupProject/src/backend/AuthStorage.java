@@ -0,0 +1,140 @@
+package backend;
+
+import java.util.Collection;
+import java.util.function.Supplier;
+
+/**
+ * <p> Title: AuthStorage Interface. </p>
+ *
+ * <p> Description: The persistence layer under an AuthManager. The AuthManager loads its state once at
+ * construction and then reports every mutation as it happens, so an implementation can record each change
+ * as a single append instead of rewriting everything. Saves always carry the full current state of a record,
+ * which makes replaying the same change twice harmless. </p>
+ *
+ * @author Zeel Tejashkumar Shah
+ *
+ * @version 1.0	2024-10-16	Initial implementation
+ */
+
+public interface AuthStorage {
+
+    /**
+     * Load the stored users, invitations and reset requests.
+     *
+     * @return The stored state
+     */
+    StoredState load();
+
+    /**
+     * Record the current state of a user.
+     *
+     * @param user The user that was created or changed
+     */
+    void saveUser(User user);
+
+    /**
+     * Record the deletion of a user.
+     *
+     * @param user The deleted user
+     */
+    void deleteUser(User user);
+
+    /**
+     * Record the deletion of many users at once. Implementations that can should record the whole batch or
+     * none of it; the default records them one by one.
+     *
+     * @param batch The deleted users
+     */
+    default void deleteUsers(Collection<User> batch) {
+        for (User user : batch) {
+            deleteUser(user);
+        }
+    }
+
+    /**
+     * Record the current state of an invitation.
+     *
+     * @param invitation The invitation that was created or changed
+     */
+    void saveInvitation(Invitation invitation);
+
+    /**
+     * Record a batch of new invitations. Implementations that can should record the whole batch or none
+     * of it; the default records them one by one.
+     *
+     * @param batch The invitations that were created
+     */
+    default void saveInvitations(Collection<Invitation> batch) {
+        for (Invitation invitation : batch) {
+            saveInvitation(invitation);
+        }
+    }
+
+    /**
+     * Record the deletion of an invitation.
+     *
+     * @param invitationCode The code of the deleted invitation
+     */
+    void deleteInvitation(String invitationCode);
+
+    /**
+     * Record the deletion of many invitations at once, such as the expired and used invitations of one purge.
+     * Implementations that can should record the whole batch or none of it; the default records them one by one.
+     *
+     * @param invitationCodes The codes of the deleted invitations
+     */
+    default void deleteInvitations(Collection<String> invitationCodes) {
+        for (String invitationCode : invitationCodes) {
+            deleteInvitation(invitationCode);
+        }
+    }
+
+    /**
+     * Record a password reset request, replacing any earlier request for the same email.
+     *
+     * @param request The reset request
+     */
+    void saveResetRequest(ResetRequest request);
+
+    /**
+     * Record the removal of a password reset request.
+     *
+     * @param request The removed reset request
+     */
+    void deleteResetRequest(ResetRequest request);
+
+    /**
+     * Record the changes of one committed transaction. Implementations that can should record the whole
+     * commit or none of it, so a crash never keeps an invitation used without its user or a reset request
+     * consumed without the new password; the default records the changes one by one.
+     *
+     * @param savedUsers The users created or changed, in their current state
+     * @param savedInvitations The invitations changed, in their current state
+     * @param deletedRequests The reset requests removed
+     */
+    default void saveTransaction(Collection<User> savedUsers, Collection<Invitation> savedInvitations,
+            Collection<ResetRequest> deletedRequests) {
+        for (Invitation invitation : savedInvitations) {
+            saveInvitation(invitation);
+        }
+        for (ResetRequest request : deletedRequests) {
+            deleteResetRequest(request);
+        }
+        for (User user : savedUsers) {
+            saveUser(user);
+        }
+    }
+
+    /**
+     * Write a full snapshot so that older changes no longer need to be replayed. Changes recorded while
+     * the snapshot is being taken must not be lost.
+     *
+     * @param state Supplies the state to snapshot, called once the implementation is ready for it
+     */
+    void checkpoint(Supplier<StoredState> state);
+
+    /**
+     * Release any files or other resources held by the storage.
+     */
+    void close();
+}
@@ -0,0 +1,184 @@
+package backend;
+
+import java.util.*;
+
+/**
+ * <p> Title: AuthTransaction Class. </p>
+ *
+ * <p> Description: A group of changes to users, invitations and password reset requests that is applied all
+ * together or not at all. A transaction reads records and buffers changes without locking anything. When it is
+ * committed, the AuthManager locks only the records it touched, checks that none of them changed since they
+ * were read, and then applies every change before unlocking. If another change got in first the commit fails,
+ * nothing is applied, and the caller may read again and retry; {@link AuthManager#transact} does that. </p>
+ *
+ * <p> Users are checked by their version number, which every recorded change bumps. Invitations must still be
+ * pending and reset requests must still be the live request for their email. New users must have a username
+ * no registered user or other committing transaction holds. Passwords are hashed when the change is buffered,
+ * so no hashing happens while records are locked. </p>
+ *
+ * <p> A transaction is meant to be used by one thread and committed once. </p>
+ *
+ * @author Zeel Tejashkumar Shah
+ *
+ * @version 1.0	2024-10-17	Initial implementation
+ */
+
+public class AuthTransaction {
+    private AuthManager manager; // The manager the transaction commits to
+    private Map<User, Long> readVersions; // Version of each existing user when first read
+    private Map<User, Integer> roleChanges; // New role masks by user
+    private Map<User, String> passwordChanges; // New password hashes by user
+    private List<User> createdUsers; // Users registered on commit
+    private List<Invitation> redeemedInvitations; // Invitations marked used on commit
+    private List<ResetRequest> consumedRequests; // Reset requests removed on commit
+    private boolean finished; // Set once commit() has been called
+
+    /**
+     * Constructor for AuthTransaction. Transactions are started with {@link AuthManager#beginTransaction()}.
+     *
+     * @param manager The manager the transaction commits to
+     */
+    AuthTransaction(AuthManager manager) {
+        this.manager = manager;
+        this.readVersions = new HashMap<>();
+        this.roleChanges = new LinkedHashMap<>();
+        this.passwordChanges = new LinkedHashMap<>();
+        this.createdUsers = new ArrayList<>();
+        this.redeemedInvitations = new ArrayList<>();
+        this.consumedRequests = new ArrayList<>();
+    }
+
+    /**
+     * Read a user, so the commit fails if the user changes or is deleted before it.
+     *
+     * @param user The user to read
+     * @return The user
+     */
+    public User read(User user) {
+        checkOpen();
+        readVersions.putIfAbsent(user, user.getVersion());
+        return user;
+    }
+
+    /**
+     * Require a user to still be at a version read earlier, for example when a screen showed it to an admin.
+     *
+     * @param user The user
+     * @param version The version the user had when it was read
+     */
+    public void expect(User user, long version) {
+        checkOpen();
+        readVersions.put(user, version);
+    }
+
+    /**
+     * Replace a user's roles on commit.
+     *
+     * @param user The user, which is read if it was not yet
+     * @param roles The new roles
+     */
+    public void setRoles(User user, Set<Role> roles) {
+        checkOpen();
+        read(user);
+        roleChanges.put(user, Role.toBits(roles));
+    }
+
+    /**
+     * Change a user's password on commit. The password is hashed now.
+     *
+     * @param user The user, which is read if it was not yet
+     * @param password The new plain text password
+     */
+    public void setPassword(User user, String password) {
+        checkOpen();
+        read(user);
+        passwordChanges.put(user, manager.getPasswordHasher().hash(password));
+    }
+
+    /**
+     * Register a new user on commit. The password is hashed now.
+     *
+     * @param username The username, which must still be free at commit
+     * @param password The plain text password
+     * @param roles The roles of the new user
+     * @return The user that the commit registers
+     */
+    public User createUser(String username, String password, Set<Role> roles) {
+        checkOpen();
+        User user = new User(username, manager.getPasswordHasher().hash(password), roles);
+        createdUsers.add(user);
+        return user;
+    }
+
+    /**
+     * Look up a pending invitation and mark it used on commit.
+     *
+     * @param invitationCode The invitation code
+     * @return The invitation, or null if it is unknown, used or expired
+     */
+    public Invitation redeemInvitation(String invitationCode) {
+        checkOpen();
+        Invitation invitation = manager.getInvitationFromInvitationCode(invitationCode);
+        if (invitation == null || invitation.isUsed()) {
+            return null;
+        }
+        redeemedInvitations.add(invitation);
+        return invitation;
+    }
+
+    /**
+     * Look up the live reset request for an email and remove it on commit.
+     *
+     * @param email The email the request was made for
+     * @return The request, or null if there is none or it has expired
+     */
+    public ResetRequest consumeResetRequest(String email) {
+        checkOpen();
+        ResetRequest request = manager.findRequestByEmail(email);
+        if (request != null) {
+            consumedRequests.add(request);
+        }
+        return request;
+    }
+
+    /**
+     * Apply every buffered change, or none of them if a record read by the transaction changed meanwhile.
+     *
+     * @return true if the changes were applied, false on a conflict
+     */
+    public boolean commit() {
+        checkOpen();
+        finished = true;
+        return manager.commit(this);
+    }
+
+    Map<User, Long> getReadVersions() {
+        return readVersions; // Returns the versions the users were read at
+    }
+
+    Map<User, Integer> getRoleChanges() {
+        return roleChanges; // Returns the new role masks
+    }
+
+    Map<User, String> getPasswordChanges() {
+        return passwordChanges; // Returns the new password hashes
+    }
+
+    List<User> getCreatedUsers() {
+        return createdUsers; // Returns the users to register
+    }
+
+    List<Invitation> getRedeemedInvitations() {
+        return redeemedInvitations; // Returns the invitations to mark used
+    }
+
+    List<ResetRequest> getConsumedRequests() {
+        return consumedRequests; // Returns the reset requests to remove
+    }
+
+    private void checkOpen() {
+        if (finished) {
+            throw new IllegalStateException("Transaction already committed");
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package backend;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * <p> Title: BulkInviteResult Class. </p>
+ *
+ * <p> Description: The outcome of a bulk invite: the invitations that were created, in the order they were
+ * requested, and every request that was rejected together with the reason. </p>
+ *
+ * @author Zeel Tejashkumar Shah
+ *
+ * @version 1.0	2024-10-17	Initial implementation
+ */
+
+public class BulkInviteResult {
+    private List<Invitation> invitations; // Created invitations
+    private Map<InviteSpec, String> rejected; // Rejected requests and why, in request order
+
+    // Constructor
+    public BulkInviteResult() {
+        this.invitations = new ArrayList<>();
+        this.rejected = new LinkedHashMap<>();
+    }
+
+    void addInvitation(Invitation invitation) {
+        invitations.add(invitation);
+    }
+
+    void reject(InviteSpec spec, String reason) {
+        rejected.put(spec, reason);
+    }
+
+    public List<Invitation> getInvitations() {
+        return Collections.unmodifiableList(invitations); // Returns the created invitations
+    }
+
+    public Map<InviteSpec, String> getRejected() {
+        return Collections.unmodifiableMap(rejected); // Returns the rejected requests with their reasons
+    }
+
+    public int getInvitedCount() {
+        return invitations.size(); // Returns the number of created invitations
+    }
+
+    public int getRejectedCount() {
+        return rejected.size(); // Returns the number of rejected requests
+    }
+
+    /**
+     * Write the created invitations as CSV lines of username, email and invitation code, for handing the
+     * codes out.
+     *
+     * @param out The writer to write to
+     */
+    public void writeCodesCsv(Writer out) {
+        try {
+            out.write("username,email,invitationCode\n");
+            for (Invitation invitation : invitations) {
+                out.write(InviteCsvParser.quote(invitation.getUsername()) + "," + InviteCsvParser.quote(invitation.getEmail())
+                        + "," + invitation.getInvitationCode() + "\n");
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write invitation codes", e);
+        }
+    }
+}
@@ -0,0 +1,699 @@
+package backend;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * <p> Title: FileAuthStorage Class. </p>
+ *
+ * <p> Description: Stores the AuthManager state in a local directory as a snapshot file plus an append-only
+ * write-ahead log. Every mutation, and every committed transaction as a whole, is encoded as one checksummed
+ * record and appended to the current log segment. A checkpoint starts a new segment, writes the full state to
+ * a new snapshot and then deletes the segments the snapshot covers, so startup only maps the snapshot and
+ * replays the segments written after it. </p>
+ *
+ * <p> Snapshots use the {@link MappedUserSnapshot} format. Loading maps the file and hands it to the
+ * AuthManager without reading the users, which are loaded one at a time as they are looked up. </p>
+ *
+ * <p> Directory layout:
+ * <ul>
+ *   <li> {@code auth-N.snapshot} - the last complete snapshot, covering every segment before N </li>
+ *   <li> {@code auth-N.wal} - log segments, replayed in increasing N </li>
+ * </ul>
+ * Each snapshot gets a new file name, so a checkpoint never replaces a file that is still mapped. Older
+ * snapshots are deleted when possible; a platform that refuses to delete a mapped file leaves it for the
+ * next start. </p>
+ *
+ * <p> A record is framed as its length, a CRC32 of its payload and the payload. A record torn by a crash at
+ * the end of the last segment is dropped and the segment is truncated back to the last complete record. </p>
+ *
+ * <p> Records are flushed to the operating system after every append. Pass {@code syncOnWrite} to also force
+ * them to the disk, which survives power loss at the cost of one disk sync per mutation. </p>
+ *
+ * @author Zeel Tejashkumar Shah
+ *
+ * @version 1.0	2024-10-16	Initial implementation
+ */
+
+public class FileAuthStorage implements AuthStorage {
+    private static final int MAX_RECORD_SIZE = 1 << 24; // Larger lengths are treated as corruption on replay
+
+    // Record types
+    private static final byte PUT_USER = 1;
+    private static final byte DELETE_USER = 2;
+    private static final byte PUT_INVITATION = 3; // An invitation with its expiration time
+    private static final byte DELETE_INVITATION = 4;
+    private static final byte PUT_RESET_REQUEST = 5;
+    private static final byte DELETE_RESET_REQUEST = 6;
+    private static final byte PUT_INVITATIONS = 7; // A batch of invitations committed as one record
+    private static final byte DELETE_USERS = 8; // A batch of user deletions committed as one record
+    private static final byte DELETE_INVITATIONS = 9; // A batch of invitation deletions committed as one record
+    private static final byte TRANSACTION = 10; // Every change of one committed transaction as one record
+
+    private Path directory; // Directory holding the snapshot and log segments
+    private boolean syncOnWrite; // Force every record to disk before returning
+    private long segment; // Number of the log segment being appended to
+    private FileOutputStream logFile; // Current log segment
+    private DataOutputStream log; // Buffered writer on the current log segment
+    private ByteArrayOutputStream recordBytes; // Reused buffer for encoding one record
+    private DataOutputStream record; // Writer on the record buffer
+    private CRC32 checksum; // Reused checksum for record payloads
+    private final Object checkpointLock = new Object(); // Keeps checkpoints from overlapping
+
+    /**
+     * Constructor for storage that flushes every record to the operating system.
+     *
+     * @param directory The directory holding the data files, created if missing
+     */
+    public FileAuthStorage(Path directory) {
+        this(directory, false);
+    }
+
+    /**
+     * Constructor for FileAuthStorage.
+     *
+     * @param directory The directory holding the data files, created if missing
+     * @param syncOnWrite Whether every record is forced to disk before the mutation returns
+     */
+    public FileAuthStorage(Path directory, boolean syncOnWrite) {
+        this.directory = directory;
+        this.syncOnWrite = syncOnWrite;
+        this.recordBytes = new ByteArrayOutputStream(256);
+        this.record = new DataOutputStream(recordBytes);
+        this.checksum = new CRC32();
+    }
+
+    @Override
+    public synchronized StoredState load() {
+        try {
+            Files.createDirectories(directory);
+            TreeMap<Long, User> users = new TreeMap<>(); // Ids are handed out in registration order
+            Map<String, Invitation> invitations = new LinkedHashMap<>();
+            Map<String, ResetRequest> resetRequests = new LinkedHashMap<>();
+
+            Set<Long> replacedIds = new HashSet<>(); // Snapshot users changed or deleted by the log
+            MappedUserSnapshot snapshot = openLatestSnapshot();
+            long firstSegment = 0; // No snapshot yet, replay every segment
+            if (snapshot != null) {
+                firstSegment = snapshot.getTailSegment();
+                for (Invitation invitation : snapshot.readInvitations()) {
+                    invitations.put(invitation.getInvitationCode(), invitation);
+                }
+                for (ResetRequest request : snapshot.readResetRequests()) {
+                    resetRequests.put(UserStore.emailKey(request.getEmail()), request);
+                }
+            }
+            List<Long> segments = listSegments();
+            segment = firstSegment;
+            for (long number : segments) {
+                if (number < firstSegment) {
+                    Files.deleteIfExists(segmentPath(number)); // Left over from an interrupted checkpoint
+                    continue;
+                }
+                replaySegment(segmentPath(number), users, invitations, resetRequests, snapshot, replacedIds);
+                segment = number;
+            }
+            openSegment(segment);
+
+            List<ResetRequest> liveRequests = new ArrayList<>();
+            for (ResetRequest request : resetRequests.values()) {
+                if (!request.isExpired()) {
+                    liveRequests.add(request); // Requests that expired while we were down are not restored
+                }
+            }
+            StoredState state = new StoredState(new ArrayList<>(users.values()),
+                    new ArrayList<>(invitations.values()), liveRequests);
+            if (snapshot != null) {
+                state.setUserSnapshot(snapshot, replacedIds);
+            }
+            return state;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load auth data from " + directory, e);
+        }
+    }
+
+    @Override
+    public void saveUser(User user) {
+        try {
+            synchronized (this) {
+                beginRecord(PUT_USER);
+                writeUser(record, user);
+                appendRecord();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to save user " + user.getUsername(), e);
+        }
+    }
+
+    @Override
+    public void deleteUser(User user) {
+        try {
+            synchronized (this) {
+                beginRecord(DELETE_USER);
+                record.writeLong(user.getId());
+                appendRecord();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to delete user " + user.getUsername(), e);
+        }
+    }
+
+    @Override
+    public void deleteUsers(Collection<User> batch) {
+        try {
+            synchronized (this) {
+                // One checksummed record, so a crash keeps either the whole batch or none of it
+                beginRecord(DELETE_USERS);
+                record.writeInt(batch.size());
+                for (User user : batch) {
+                    record.writeLong(user.getId());
+                }
+                appendRecord();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to delete " + batch.size() + " users", e);
+        }
+    }
+
+    @Override
+    public void saveInvitation(Invitation invitation) {
+        try {
+            synchronized (this) {
+                beginRecord(PUT_INVITATION);
+                writeInvitation(record, invitation);
+                appendRecord();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to save invitation for " + invitation.getEmail(), e);
+        }
+    }
+
+    @Override
+    public void saveInvitations(Collection<Invitation> batch) {
+        try {
+            synchronized (this) {
+                // One checksummed record, so a crash keeps either the whole batch or none of it
+                beginRecord(PUT_INVITATIONS);
+                record.writeInt(batch.size());
+                for (Invitation invitation : batch) {
+                    writeInvitation(record, invitation);
+                }
+                appendRecord();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to save " + batch.size() + " invitations", e);
+        }
+    }
+
+    @Override
+    public void deleteInvitation(String invitationCode) {
+        try {
+            synchronized (this) {
+                beginRecord(DELETE_INVITATION);
+                record.writeUTF(invitationCode);
+                appendRecord();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to delete invitation", e);
+        }
+    }
+
+    @Override
+    public void deleteInvitations(Collection<String> invitationCodes) {
+        try {
+            synchronized (this) {
+                // One checksummed record, so a crash keeps either the whole batch or none of it
+                beginRecord(DELETE_INVITATIONS);
+                record.writeInt(invitationCodes.size());
+                for (String invitationCode : invitationCodes) {
+                    record.writeUTF(invitationCode);
+                }
+                appendRecord();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to delete " + invitationCodes.size() + " invitations", e);
+        }
+    }
+
+    @Override
+    public void saveResetRequest(ResetRequest request) {
+        try {
+            synchronized (this) {
+                beginRecord(PUT_RESET_REQUEST);
+                writeResetRequest(record, request);
+                appendRecord();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to save reset request for " + request.getEmail(), e);
+        }
+    }
+
+    @Override
+    public void deleteResetRequest(ResetRequest request) {
+        try {
+            synchronized (this) {
+                beginRecord(DELETE_RESET_REQUEST);
+                record.writeUTF(request.getEmail());
+                appendRecord();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to delete reset request for " + request.getEmail(), e);
+        }
+    }
+
+    @Override
+    public void saveTransaction(Collection<User> savedUsers, Collection<Invitation> savedInvitations,
+            Collection<ResetRequest> deletedRequests) {
+        try {
+            synchronized (this) {
+                // One checksummed record, so a crash keeps either the whole commit or none of it
+                beginRecord(TRANSACTION);
+                record.writeInt(savedInvitations.size());
+                for (Invitation invitation : savedInvitations) {
+                    writeInvitation(record, invitation);
+                }
+                record.writeInt(deletedRequests.size());
+                for (ResetRequest request : deletedRequests) {
+                    record.writeUTF(request.getEmail());
+                }
+                record.writeInt(savedUsers.size());
+                for (User user : savedUsers) {
+                    writeUser(record, user);
+                }
+                appendRecord();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to save transaction of " + savedUsers.size() + " users", e);
+        }
+    }
+
+    @Override
+    public void checkpoint(Supplier<StoredState> state) {
+        synchronized (checkpointLock) {
+            try {
+                long tailSegment;
+                synchronized (this) {
+                    // Changes from here on go to a fresh segment that the new snapshot will not cover
+                    closeSegment();
+                    tailSegment = segment + 1;
+                    openSegment(tailSegment);
+                }
+                writeSnapshot(state.get(), tailSegment);
+                for (long number : listNumbered(".snapshot")) {
+                    if (number < tailSegment) {
+                        deleteIfPossible(snapshotPath(number)); // Superseded by the new snapshot
+                    }
+                }
+                for (long number : listSegments()) {
+                    if (number < tailSegment) {
+                        Files.deleteIfExists(segmentPath(number)); // Covered by the snapshot
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to write auth snapshot to " + directory, e);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            closeSegment();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to close auth log in " + directory, e);
+        }
+    }
+
+    // ========== Snapshot ========== //
+
+    /**
+     * Map the newest snapshot and delete any older ones.
+     *
+     * @return The mapped snapshot, or null if there is none yet
+     */
+    private MappedUserSnapshot openLatestSnapshot() throws IOException {
+        List<Long> numbers = listNumbered(".snapshot");
+        if (numbers.isEmpty()) {
+            return null;
+        }
+        long latest = numbers.get(numbers.size() - 1);
+        for (long number : numbers) {
+            if (number < latest) {
+                deleteIfPossible(snapshotPath(number));
+            }
+        }
+        return MappedUserSnapshot.open(snapshotPath(latest));
+    }
+
+    /**
+     * Write a complete snapshot to a temporary file and move it into place under its own name.
+     *
+     * @param state The state to write
+     * @param tailSegment The first log segment not covered by this snapshot
+     */
+    private void writeSnapshot(StoredState state, long tailSegment) throws IOException {
+        Path temp = directory.resolve("auth-" + tailSegment + ".snapshot.tmp");
+        MappedUserSnapshot.write(temp, state, tailSegment);
+        Files.move(temp, snapshotPath(tailSegment), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Delete a file, leaving it in place if the platform refuses, for example because it is still mapped.
+     */
+    private static void deleteIfPossible(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // Retried after the next checkpoint or start
+        }
+    }
+
+    private Path snapshotPath(long number) {
+        return directory.resolve("auth-" + number + ".snapshot");
+    }
+
+    // ========== Log segments ========== //
+
+    /**
+     * Replay one log segment into the given maps, truncating a torn record at its end.
+     */
+    private void replaySegment(Path path, Map<Long, User> users, Map<String, Invitation> invitations,
+            Map<String, ResetRequest> resetRequests, MappedUserSnapshot snapshot, Set<Long> replacedIds)
+            throws IOException {
+        long validLength = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            byte[] payload;
+            while ((payload = readRecord(in)) != null) {
+                applyRecord(payload, users, invitations, resetRequests, snapshot, replacedIds);
+                validLength += 8 + payload.length; // Length and checksum plus payload
+            }
+        }
+        if (validLength < Files.size(path)) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(validLength); // Drop the record torn by a crash
+            }
+        }
+    }
+
+    /**
+     * Open a log segment for appending.
+     *
+     * @param number The segment number
+     */
+    private void openSegment(long number) throws IOException {
+        segment = number;
+        logFile = new FileOutputStream(segmentPath(number).toFile(), true);
+        log = new DataOutputStream(new BufferedOutputStream(logFile, 1 << 16));
+    }
+
+    /**
+     * Flush and close the current log segment, if one is open.
+     */
+    private void closeSegment() throws IOException {
+        if (log != null) {
+            log.flush();
+            logFile.getChannel().force(false);
+            log.close();
+            log = null;
+            logFile = null;
+        }
+    }
+
+    /**
+     * Get the numbers of the log segments in the directory, in increasing order.
+     *
+     * @return The segment numbers
+     */
+    private List<Long> listSegments() throws IOException {
+        return listNumbered(".wal");
+    }
+
+    /**
+     * Get the numbers N of the files named {@code auth-N} plus the given suffix, in increasing order.
+     *
+     * @param suffix The file name suffix
+     * @return The file numbers
+     */
+    private List<Long> listNumbered(String suffix) throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                String name = file.getFileName().toString();
+                if (name.startsWith("auth-") && name.endsWith(suffix)) {
+                    try {
+                        numbers.add(Long.parseLong(name.substring(5, name.length() - suffix.length())));
+                    } catch (NumberFormatException e) {
+                        // Not one of our files, ignore it
+                    }
+                }
+            });
+        }
+        Collections.sort(numbers);
+        return numbers;
+    }
+
+    private Path segmentPath(long number) {
+        return directory.resolve("auth-" + number + ".wal");
+    }
+
+    // ========== Records ========== //
+
+    /**
+     * Start encoding a record of the given type into the record buffer.
+     *
+     * @param type The record type
+     */
+    private void beginRecord(byte type) throws IOException {
+        if (log == null) {
+            throw new IllegalStateException("FileAuthStorage must be loaded before it is written to");
+        }
+        recordBytes.reset();
+        record.writeByte(type);
+    }
+
+    /**
+     * Append the record buffer to the current log segment.
+     */
+    private void appendRecord() throws IOException {
+        if (recordBytes.size() > MAX_RECORD_SIZE) {
+            throw new IOException("Record of " + recordBytes.size() + " bytes exceeds the maximum record size");
+        }
+        writeFramed(log, recordBytes, checksum);
+        log.flush();
+        if (syncOnWrite) {
+            logFile.getChannel().force(false);
+        }
+    }
+
+    /**
+     * Write an encoded record with its length and checksum.
+     */
+    private static void writeFramed(DataOutputStream out, ByteArrayOutputStream bytes, CRC32 crc) throws IOException {
+        crc.reset();
+        crc.update(bytes.toByteArray(), 0, bytes.size());
+        out.writeInt(bytes.size());
+        out.writeInt((int) crc.getValue());
+        bytes.writeTo(out);
+    }
+
+    /**
+     * Read one framed record.
+     *
+     * @return The record payload, or null at the end of the input or at a torn or corrupt record
+     */
+    private static byte[] readRecord(DataInputStream in) throws IOException {
+        try {
+            int length = in.readInt();
+            int expected = in.readInt();
+            if (length <= 0 || length > MAX_RECORD_SIZE) {
+                return null; // Garbage length, the rest of the file cannot be trusted
+            }
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            return (int) crc.getValue() == expected ? payload : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Apply one decoded record to the given maps. Users changed or deleted by the record that also exist
+     * in the snapshot are added to the replaced ids, so the snapshot copy is no longer served.
+     */
+    private static void applyRecord(byte[] payload, Map<Long, User> users, Map<String, Invitation> invitations,
+            Map<String, ResetRequest> resetRequests, MappedUserSnapshot snapshot, Set<Long> replacedIds)
+            throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte type = in.readByte();
+        switch (type) {
+        case PUT_USER:
+            User user = readUser(in);
+            users.put(user.getId(), user);
+            if (snapshot != null && snapshot.findOrdinalById(user.getId()) >= 0) {
+                replacedIds.add(user.getId());
+            }
+            break;
+        case DELETE_USER:
+            long id = in.readLong();
+            users.remove(id);
+            if (snapshot != null && snapshot.findOrdinalById(id) >= 0) {
+                replacedIds.add(id);
+            }
+            break;
+        case DELETE_USERS:
+            for (int count = in.readInt(); count > 0; count--) {
+                long deleted = in.readLong();
+                users.remove(deleted);
+                if (snapshot != null && snapshot.findOrdinalById(deleted) >= 0) {
+                    replacedIds.add(deleted);
+                }
+            }
+            break;
+        case PUT_INVITATION:
+            Invitation invitation = readInvitation(in);
+            invitations.put(invitation.getInvitationCode(), invitation);
+            break;
+        case PUT_INVITATIONS:
+            for (int count = in.readInt(); count > 0; count--) {
+                Invitation batched = readInvitation(in);
+                invitations.put(batched.getInvitationCode(), batched);
+            }
+            break;
+        case DELETE_INVITATION:
+            invitations.remove(in.readUTF());
+            break;
+        case DELETE_INVITATIONS:
+            for (int count = in.readInt(); count > 0; count--) {
+                invitations.remove(in.readUTF());
+            }
+            break;
+        case PUT_RESET_REQUEST:
+            ResetRequest request = readResetRequest(in);
+            resetRequests.put(UserStore.emailKey(request.getEmail()), request);
+            break;
+        case DELETE_RESET_REQUEST:
+            resetRequests.remove(UserStore.emailKey(in.readUTF()));
+            break;
+        case TRANSACTION:
+            applyTransaction(in, users, invitations, resetRequests, snapshot, replacedIds);
+            break;
+        default:
+            throw new IOException("Unknown record type " + type);
+        }
+    }
+
+    /**
+     * Apply a transaction record. The whole record is decoded before anything is applied, so a record that
+     * cannot be read changes nothing.
+     */
+    private static void applyTransaction(DataInputStream in, Map<Long, User> users, Map<String, Invitation> invitations,
+            Map<String, ResetRequest> resetRequests, MappedUserSnapshot snapshot, Set<Long> replacedIds)
+            throws IOException {
+        List<Invitation> savedInvitations = new ArrayList<>();
+        for (int count = in.readInt(); count > 0; count--) {
+            savedInvitations.add(readInvitation(in));
+        }
+        List<String> deletedEmails = new ArrayList<>();
+        for (int count = in.readInt(); count > 0; count--) {
+            deletedEmails.add(in.readUTF());
+        }
+        List<User> savedUsers = new ArrayList<>();
+        for (int count = in.readInt(); count > 0; count--) {
+            savedUsers.add(readUser(in));
+        }
+
+        for (Invitation invitation : savedInvitations) {
+            invitations.put(invitation.getInvitationCode(), invitation);
+        }
+        for (String email : deletedEmails) {
+            resetRequests.remove(UserStore.emailKey(email));
+        }
+        for (User user : savedUsers) {
+            users.put(user.getId(), user);
+            if (snapshot != null && snapshot.findOrdinalById(user.getId()) >= 0) {
+                replacedIds.add(user.getId());
+            }
+        }
+    }
+
+    private static void writeUser(DataOutputStream out, User user) throws IOException {
+        out.writeLong(user.getId());
+        out.writeUTF(user.getUsername());
+        writeNullable(out, user.getPassword());
+        writeNullable(out, user.getFirstName());
+        writeNullable(out, user.getMiddleName());
+        writeNullable(out, user.getLastName());
+        writeNullable(out, user.getPreferredName());
+        writeNullable(out, user.getEmail());
+        out.writeByte(Role.toBits(user.getRoles()));
+        out.writeBoolean(user.isSetupComplete());
+    }
+
+    private static User readUser(DataInputStream in) throws IOException {
+        long id = in.readLong();
+        User user = new User(in.readUTF(), readNullable(in), null);
+        user.setId(id);
+        user.setFirstName(readNullable(in));
+        user.setMiddleName(readNullable(in));
+        user.setLastName(readNullable(in));
+        user.setPreferredName(readNullable(in));
+        user.setEmail(readNullable(in));
+        user.setRoles(Role.fromBits(in.readByte()));
+        user.setSetupComplete(in.readBoolean());
+        return user;
+    }
+
+    private static void writeInvitation(DataOutputStream out, Invitation invitation) throws IOException {
+        out.writeUTF(invitation.getInvitationCode());
+        writeNullable(out, invitation.getUsername());
+        writeNullable(out, invitation.getEmail());
+        out.writeByte(Role.toBits(invitation.getRoles()));
+        out.writeBoolean(invitation.isUsed());
+        out.writeLong(invitation.getExpiresAt().getEpochSecond());
+        out.writeInt(invitation.getExpiresAt().getNano());
+    }
+
+    private static Invitation readInvitation(DataInputStream in) throws IOException {
+        String code = in.readUTF();
+        String username = readNullable(in);
+        String email = readNullable(in);
+        Set<Role> roles = Role.fromBits(in.readByte());
+        boolean used = in.readBoolean();
+        Instant expiresAt = Instant.ofEpochSecond(in.readLong(), in.readInt());
+        return new Invitation(code, username, email, roles, used, expiresAt);
+    }
+
+    private static void writeResetRequest(DataOutputStream out, ResetRequest request) throws IOException {
+        out.writeUTF(request.getEmail());
+        out.writeUTF(request.getOneTimePassword());
+        out.writeLong(request.getExpirationTime().getEpochSecond());
+        out.writeInt(request.getExpirationTime().getNano());
+    }
+
+    private static ResetRequest readResetRequest(DataInputStream in) throws IOException {
+        String email = in.readUTF();
+        String oneTimePassword = in.readUTF();
+        Instant expirationTime = Instant.ofEpochSecond(in.readLong(), in.readInt());
+        return new ResetRequest(email, oneTimePassword, expirationTime);
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,54 @@
+package backend;
+
+import java.util.function.Supplier;
+
+/**
+ * <p> Title: InMemoryAuthStorage Class. </p>
+ *
+ * <p> Description: Storage that keeps nothing. An AuthManager using it starts empty and loses its state when
+ * the application exits, which is what the console tests and a fresh AuthManager expect. </p>
+ *
+ * @author Zeel Tejashkumar Shah
+ *
+ * @version 1.0	2024-10-16	Initial implementation
+ */
+
+public class InMemoryAuthStorage implements AuthStorage {
+
+    @Override
+    public StoredState load() {
+        return new StoredState(); // Nothing was stored
+    }
+
+    @Override
+    public void saveUser(User user) {
+    }
+
+    @Override
+    public void deleteUser(User user) {
+    }
+
+    @Override
+    public void saveInvitation(Invitation invitation) {
+    }
+
+    @Override
+    public void deleteInvitation(String invitationCode) {
+    }
+
+    @Override
+    public void saveResetRequest(ResetRequest request) {
+    }
+
+    @Override
+    public void deleteResetRequest(ResetRequest request) {
+    }
+
+    @Override
+    public void checkpoint(Supplier<StoredState> state) {
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,95 @@
+package backend;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p> Title: InMemoryNotificationSink Class. </p>
+ *
+ * <p> Description: The default {@link NotificationSink}. It keeps the latest notification of each type for each
+ * email, like a mailbox per recipient that only holds the message that still matters: a newer invitation or
+ * one-time password replaces the older one. The password reset screen takes one-time passwords from it to hand
+ * them over in person; invitation codes are shown to the admin when they are created. </p>
+ *
+ * <p> Codes are secrets, so none is kept longer than it works. A code is dropped when the AuthManager revokes it
+ * because it was used or deleted, and expired codes are never handed out and are dropped by
+ * {@link #purgeExpired(Instant)}, so the mailbox only ever holds codes that could still be redeemed. </p>
+ *
+ * @author Zeel Tejashkumar Shah
+ *
+ * @version 1.0	2024-10-17	Initial implementation
+ */
+
+public class InMemoryNotificationSink implements NotificationSink {
+    private Map<AuthNotification.Type, Map<String, AuthNotification>> latest; // Latest notification by type and email
+
+    // Constructor
+    public InMemoryNotificationSink() {
+        this.latest = new EnumMap<>(AuthNotification.Type.class);
+        for (AuthNotification.Type type : AuthNotification.Type.values()) {
+            latest.put(type, new ConcurrentHashMap<>());
+        }
+    }
+
+    @Override
+    public void deliver(AuthNotification notification) {
+        if (isExpired(notification, Instant.now())) {
+            return; // Sat in the queue past its expiry, nobody can use it any more
+        }
+        latest.get(notification.getType()).put(notification.getEmail(), notification);
+    }
+
+    @Override
+    public void revoke(AuthNotification.Type type, String email, String code) {
+        latest.get(type).computeIfPresent(email, (key, held) -> held.getCode().equals(code) ? null : held);
+    }
+
+    @Override
+    public void purgeExpired(Instant now) {
+        for (Map<String, AuthNotification> byEmail : latest.values()) {
+            byEmail.values().removeIf(notification -> isExpired(notification, now));
+        }
+    }
+
+    /**
+     * Get the latest notification of a type sent to an email.
+     *
+     * @param type The notification type
+     * @param email The recipient's email
+     * @return The latest notification, or null if none was delivered or it has expired
+     */
+    public AuthNotification getLatest(AuthNotification.Type type, String email) {
+        AuthNotification notification = latest.get(type).get(email);
+        return notification == null || isExpired(notification, Instant.now()) ? null : notification;
+    }
+
+    /**
+     * Remove and return the latest notification of a type sent to an email, once it has been handed over.
+     *
+     * @param type The notification type
+     * @param email The recipient's email
+     * @return The removed notification, or null if none was delivered or it has expired
+     */
+    public AuthNotification take(AuthNotification.Type type, String email) {
+        AuthNotification notification = latest.get(type).remove(email);
+        return notification == null || isExpired(notification, Instant.now()) ? null : notification;
+    }
+
+    /**
+     * Get the number of notifications held.
+     *
+     * @return The number of notifications
+     */
+    public int size() {
+        int size = 0;
+        for (Map<String, AuthNotification> byEmail : latest.values()) {
+            size += byEmail.size();
+        }
+        return size;
+    }
+
+    private static boolean isExpired(AuthNotification notification, Instant now) {
+        return notification.getExpiresAt() != null && !notification.getExpiresAt().isAfter(now);
+    }
+}
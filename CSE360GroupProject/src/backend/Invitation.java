@@ -1,5 +1,7 @@
 package backend;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
 
 /**
@@ -7,6 +9,9 @@ import java.util.*;
  * 
  * <p> Description: A class to manage user invitations with unique codes, associated usernames, emails, roles, and usage status. </p>
  * 
+ * <p> Every invitation expires after a time to live, {@link #DEFAULT_TTL} unless another is given. An expired
+ * invitation can no longer be redeemed and is evicted from the {@link InvitationRegistry} on its next purge. </p>
+ * 
  * @author Zeel Tejashkumar Shah
  * 
  * @version 1.0	2024-10-08	Initial implementation
@@ -17,10 +22,10 @@ public class Invitation {
     private String username; // Username of the invited user
     private String email; // Email of the invited user
     private Set<Role> roles; // Roles assigned to the invited user
-    private boolean isUsed; // Status indicating if the invitation has been used
+    private volatile boolean isUsed; // Status indicating if the invitation has been used
+    private Instant expiresAt; // Time after which the invitation can no longer be redeemed
 
-    // Static list to store all invitations
-    private static List<Invitation> invitations = new ArrayList<>();
+    public static final Duration DEFAULT_TTL = Duration.ofDays(7); // Time to live when none is given
 
     /**
      * Constructor to create a new invitation.
@@ -30,11 +35,44 @@ public class Invitation {
      * @param roles The roles to assign to the invited user
      */
     public Invitation(String username, String email, Set<Role> roles) {
+        this(username, email, roles, DEFAULT_TTL);
+    }
+
+    /**
+     * Constructor to create a new invitation with its own time to live.
+     * 
+     * @param username The username of the invited user
+     * @param email The email of the invited user
+     * @param roles The roles to assign to the invited user
+     * @param ttl How long the invitation can be redeemed for
+     */
+    public Invitation(String username, String email, Set<Role> roles, Duration ttl) {
         this.invitationCode = UUID.randomUUID().toString(); // Generate unique code
         this.username = username;
         this.email = email;
         this.roles = roles;
         this.isUsed = false; // Invitation is initially not used
+        this.expiresAt = Instant.now().plus(ttl);
+    }
+
+    /**
+     * Constructor to restore a stored invitation with its original code and status.
+     * 
+     * @param invitationCode The unique code of the invitation
+     * @param username The username of the invited user
+     * @param email The email of the invited user
+     * @param roles The roles to assign to the invited user
+     * @param isUsed Whether the invitation has been used
+     * @param expiresAt The time after which the invitation can no longer be redeemed
+     */
+    Invitation(String invitationCode, String username, String email, Set<Role> roles, boolean isUsed,
+            Instant expiresAt) {
+        this.invitationCode = invitationCode;
+        this.username = username;
+        this.email = email;
+        this.roles = roles;
+        this.isUsed = isUsed;
+        this.expiresAt = expiresAt;
     }
 
     // Getters
@@ -84,69 +122,39 @@ public class Invitation {
         return isUsed;
     }
 
-    // Mark the invitation as used
-    /**
-     * Mark the invitation as used.
-     */
-    public void markAsUsed() {
-        this.isUsed = true;
-    }
-
-    // Method to create and store an invitation
     /**
-     * Create and store a new invitation.
+     * Get the time after which the invitation can no longer be redeemed.
      * 
-     * @param username The username of the invited user
-     * @param email The email of the invited user
-     * @param roles The roles to assign to the invited user
-     * @return The unique invitation code
+     * @return The expiration time
      */
-    public static String inviteUser(String username, String email, Set<Role> roles) {
-        Invitation invitation = new Invitation(username, email, roles);
-        invitations.add(invitation);
-        // In a real application, you would send the email here
-        return invitation.getInvitationCode(); // Return the invitation code
+    public Instant getExpiresAt() {
+        return expiresAt;
     }
 
-    // Method to retrieve an invitation by code
     /**
-     * Retrieve an invitation by its unique code.
+     * Check if the invitation has expired.
      * 
-     * @param invitationCode The code of the invitation to retrieve
-     * @return The Invitation object if found and not used, otherwise null
+     * @return True if the invitation is expired, false otherwise
      */
-    public static Invitation getInvitationByCode(String invitationCode) {
-        for (Invitation invite : invitations) {
-            if (invite.getInvitationCode().equals(invitationCode) && !invite.isUsed()) {
-                return invite; // Return the invitation if it is valid and not used
-            }
-        }
-        return null; // Invitation not found or already used
+    public boolean isExpired() {
+        return isExpired(Instant.now());
     }
 
-    // Method to delete an invitation
     /**
-     * Delete an invitation by its code.
+     * Check if the invitation has expired by the given time.
      * 
-     * @param invitationCode The code of the invitation to delete
-     * @return True if the invitation was successfully deleted, false otherwise
+     * @param now The current time
+     * @return True if the invitation is expired, false otherwise
      */
-    public static boolean deleteInvitation(String invitationCode) {
-        return invitations.removeIf(invite -> invite.getInvitationCode().equals(invitationCode));
+    public boolean isExpired(Instant now) {
+        return now.isAfter(expiresAt);
     }
 
-    // List all invitations (for debugging or admin purposes)
+    // Mark the invitation as used
     /**
-     * List all invitations for debugging or administrative purposes.
+     * Mark the invitation as used.
      */
-    public static void listInvitations() {
-        for (Invitation invite : invitations) {
-            System.out.println("Invitation Code: " + invite.getInvitationCode());
-            System.out.println("Username: " + invite.getUsername());
-            System.out.println("Email: " + invite.getEmail());
-            System.out.println("Roles: " + invite.getRoles());
-            System.out.println("Used: " + invite.isUsed());
-            System.out.println(); // Print a newline for better readability
-        }
+    public void markAsUsed() {
+        this.isUsed = true;
     }
 }
@@ -0,0 +1,307 @@
+package backend;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p> Title: InvitationRegistry Class. </p>
+ *
+ * <p> Description: Maps invitation codes straight to their invitations and keeps pending (unused) and
+ * used invitations in separate partitions, so redemption checks and deletes are constant-time and listing
+ * the pending invitations never touches consumed ones. </p>
+ *
+ * <p> Invitations should be marked as used through {@link #markUsed(String)}. An invitation marked used
+ * directly through {@link Invitation#markAsUsed()} is moved to the used partition the next time it is looked up. </p>
+ *
+ * <p> Pending invitations are also indexed by username and case-folded email, so a batch of new invitations
+ * can be checked for duplicates without scanning the registry. </p>
+ *
+ * <p> Pending invitations are ordered by expiration time as well. An expired invitation is no longer returned
+ * as pending, and {@link #purge(Instant)} evicts expired invitations by looking only at the head of the
+ * expiration queue, together with every used one, so the registry stays proportional to the live invites.
+ * Entries of invitations removed some other way stay in the queue until they expire or the queue is compacted,
+ * which happens once stale entries outnumber live ones. </p>
+ *
+ * <p> The registry is safe for concurrent use. Both partitions are concurrent maps, and marking an
+ * invitation as used locks only that invitation, so exactly one caller can redeem a code. Adding and removing
+ * invitations lock the registry, so a caller holding the registry's monitor can check for duplicates and then
+ * add a whole batch without another invitation slipping in between. Lookups never lock. </p>
+ *
+ * @author Zeel Tejashkumar Shah
+ *
+ * @version 1.0	2024-10-14	Initial implementation
+ */
+
+public class InvitationRegistry {
+    private Map<String, Invitation> pending; // Unused invitations by code
+    private Map<String, Invitation> used; // Used invitations by code
+    private Map<String, Invitation> pendingByUsername; // Pending invitations by invited username
+    private Map<String, Invitation> pendingByEmail; // Pending invitations by case-folded invited email
+    private PriorityQueue<Invitation> expirationQueue; // Pending invitations, earliest expiration first
+
+    // Constructor
+    public InvitationRegistry() {
+        this.pending = new ConcurrentHashMap<>();
+        this.used = new ConcurrentHashMap<>();
+        this.pendingByUsername = new ConcurrentHashMap<>();
+        this.pendingByEmail = new ConcurrentHashMap<>();
+        this.expirationQueue = new PriorityQueue<>(Comparator.comparing(Invitation::getExpiresAt));
+    }
+
+    /**
+     * Register an invitation in the partition matching its usage status.
+     *
+     * @param invitation The invitation to register
+     */
+    public synchronized void add(Invitation invitation) {
+        if (invitation.isUsed()) {
+            used.put(invitation.getInvitationCode(), invitation);
+        } else {
+            pending.put(invitation.getInvitationCode(), invitation);
+            indexPending(invitation);
+            expirationQueue.add(invitation);
+            compactIfStale();
+        }
+    }
+
+    /**
+     * Register a batch of new invitations under one lock.
+     *
+     * @param batch The invitations to register
+     */
+    public synchronized void addAll(Collection<Invitation> batch) {
+        for (Invitation invitation : batch) {
+            add(invitation);
+        }
+    }
+
+    /**
+     * Check whether an invitation code is already taken, used or not.
+     *
+     * @param invitationCode The invitation code
+     * @return true if an invitation has this code
+     */
+    public boolean containsCode(String invitationCode) {
+        return pending.containsKey(invitationCode) || used.containsKey(invitationCode);
+    }
+
+    /**
+     * Find the pending invitation for a username.
+     *
+     * @param username The invited username
+     * @return The pending invitation or null if there is none
+     */
+    public Invitation findPendingByUsername(String username) {
+        return username == null ? null : live(pendingByUsername.get(username));
+    }
+
+    /**
+     * Find the pending invitation for an email, ignoring case.
+     *
+     * @param email The invited email
+     * @return The pending invitation or null if there is none
+     */
+    public Invitation findPendingByEmail(String email) {
+        return email == null ? null : live(pendingByEmail.get(UserStore.emailKey(email)));
+    }
+
+    /**
+     * Get an invitation by code, used or not. Used invitations stay readable until the next purge.
+     *
+     * @param invitationCode The invitation code
+     * @return The invitation or null if not found or expired
+     */
+    public Invitation get(String invitationCode) {
+        if (invitationCode == null) {
+            return null;
+        }
+        Invitation invitation = getPending(invitationCode);
+        return invitation != null ? invitation : used.get(invitationCode);
+    }
+
+    /**
+     * Get an invitation by code if it has not been used yet and has not expired.
+     *
+     * @param invitationCode The invitation code
+     * @return The pending invitation or null if not found, already used or expired
+     */
+    public Invitation getPending(String invitationCode) {
+        if (invitationCode == null) {
+            return null;
+        }
+        Invitation invitation = pending.get(invitationCode);
+        if (invitation != null && invitation.isUsed()) {
+            moveToUsed(invitation); // Marked used behind our back, move it now
+            return null;
+        }
+        return invitation == null || invitation.isExpired() ? null : invitation; // Expired ones wait for the purge
+    }
+
+    /**
+     * Mark a pending invitation as used and move it to the used partition.
+     *
+     * @param invitationCode The invitation code
+     * @return The invitation this call marked used, or null if it was not found or already used
+     */
+    public Invitation markUsed(String invitationCode) {
+        Invitation invitation = getPending(invitationCode);
+        if (invitation == null) {
+            return null;
+        }
+        synchronized (invitation) { // Only one caller may redeem the code
+            if (invitation.isUsed()) {
+                return null;
+            }
+            invitation.markAsUsed();
+        }
+        moveToUsed(invitation);
+        return invitation; // A purge may evict it from the used partition at any time after this
+    }
+
+    /**
+     * Remove an invitation from whichever partition holds it.
+     *
+     * @param invitationCode The invitation code
+     * @return The removed invitation or null if not found
+     */
+    public synchronized Invitation remove(String invitationCode) {
+        if (invitationCode == null) {
+            return null;
+        }
+        Invitation invitation = pending.remove(invitationCode);
+        if (invitation != null) {
+            unindexPending(invitation);
+            return invitation;
+        }
+        return used.remove(invitationCode);
+    }
+
+    /**
+     * Evict every used invitation and every pending invitation that has expired by the given time.
+     *
+     * @param now The current time
+     * @return The evicted invitations
+     */
+    public synchronized List<Invitation> purge(Instant now) {
+        List<Invitation> evicted = new ArrayList<>(used.values());
+        for (Invitation invitation : evicted) {
+            used.remove(invitation.getInvitationCode(), invitation);
+        }
+        while (!expirationQueue.isEmpty() && expirationQueue.peek().isExpired(now)) {
+            Invitation invitation = expirationQueue.poll();
+            if (pending.remove(invitation.getInvitationCode(), invitation)) {
+                unindexPending(invitation);
+                evicted.add(invitation);
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * Get the invitations that have not been used yet and have not expired.
+     *
+     * @return The pending invitations
+     */
+    public Collection<Invitation> getPendingInvitations() {
+        List<Invitation> result = new ArrayList<>();
+        Instant now = Instant.now();
+        for (Invitation invitation : pending.values()) {
+            if (invitation.isUsed()) {
+                moveToUsed(invitation); // Catch up on direct markAsUsed calls
+            } else if (!invitation.isExpired(now)) {
+                result.add(invitation);
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Get the number of pending invitations without copying them. Invitations marked as used directly are
+     * counted until the next call to {@link #getPendingInvitations()} moves them, and expired invitations
+     * until the next purge.
+     *
+     * @return The number of pending invitations
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Get the invitations that have already been used.
+     *
+     * @return The used invitations
+     */
+    public Collection<Invitation> getUsedInvitations() {
+        return Collections.unmodifiableCollection(used.values());
+    }
+
+    /**
+     * Get all invitations, pending first.
+     *
+     * @return A new list of all invitations
+     */
+    public List<Invitation> getAll() {
+        List<Invitation> all = new ArrayList<>(pending.size() + used.size());
+        all.addAll(pending.values());
+        all.addAll(used.values());
+        return all;
+    }
+
+    /**
+     * Move an invitation from the pending to the used partition.
+     *
+     * @param invitation The invitation to move
+     */
+    private void moveToUsed(Invitation invitation) {
+        if (pending.remove(invitation.getInvitationCode(), invitation)) {
+            unindexPending(invitation);
+            used.put(invitation.getInvitationCode(), invitation);
+        }
+    }
+
+    /**
+     * Return the invitation if it is still pending, catching up on direct markAsUsed calls.
+     */
+    private Invitation live(Invitation invitation) {
+        if (invitation != null && invitation.isUsed()) {
+            moveToUsed(invitation);
+            return null;
+        }
+        return invitation == null || invitation.isExpired() ? null : invitation;
+    }
+
+    /**
+     * Rebuild the expiration queue from the pending invitations once used and removed
+     * invitations make up most of it, so the queue stays proportional to the live set.
+     */
+    private void compactIfStale() {
+        if (expirationQueue.size() > 2 * pending.size() + 64) {
+            expirationQueue.clear();
+            expirationQueue.addAll(pending.values());
+        }
+    }
+
+    private void indexPending(Invitation invitation) {
+        // An expired or used invitation waiting for the purge gives way to the new one
+        if (invitation.getUsername() != null) {
+            pendingByUsername.merge(invitation.getUsername(), invitation, InvitationRegistry::keepLive);
+        }
+        if (invitation.getEmail() != null) {
+            pendingByEmail.merge(UserStore.emailKey(invitation.getEmail()), invitation, InvitationRegistry::keepLive);
+        }
+    }
+
+    private static Invitation keepLive(Invitation indexed, Invitation added) {
+        return indexed.isUsed() || indexed.isExpired() ? added : indexed;
+    }
+
+    private void unindexPending(Invitation invitation) {
+        if (invitation.getUsername() != null) {
+            pendingByUsername.remove(invitation.getUsername(), invitation);
+        }
+        if (invitation.getEmail() != null) {
+            pendingByEmail.remove(UserStore.emailKey(invitation.getEmail()), invitation);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package backend;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.*;
+
+/**
+ * <p> Title: InviteCsvParser Class. </p>
+ *
+ * <p> Description: Reads bulk invitation requests from CSV. Each line holds a username, an email and the
+ * roles separated by semicolons, for example {@code jdoe,jdoe@asu.edu,STUDENT;INSTRUCTOR}. Role names are
+ * case-insensitive, fields may be double-quoted, blank lines are skipped and a first line starting with
+ * {@code username} is treated as a header. </p>
+ *
+ * @author Zeel Tejashkumar Shah
+ *
+ * @version 1.0	2024-10-17	Initial implementation
+ */
+
+public class InviteCsvParser {
+
+    /**
+     * Parse invitation requests.
+     *
+     * @param in The CSV input
+     * @return The requests in file order
+     * @throws IllegalArgumentException if a line is malformed, naming the line
+     */
+    public static List<InviteSpec> parse(Reader in) {
+        List<InviteSpec> specs = new ArrayList<>();
+        BufferedReader reader = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in);
+        try {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                List<String> fields = splitLine(line, lineNumber);
+                if (lineNumber == 1 && fields.get(0).trim().equalsIgnoreCase("username")) {
+                    continue; // Header
+                }
+                if (fields.size() != 3) {
+                    throw new IllegalArgumentException("Line " + lineNumber + ": expected username,email,roles");
+                }
+                specs.add(new InviteSpec(fields.get(0).trim(), fields.get(1).trim(), parseRoles(fields.get(2), lineNumber)));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read invitation CSV", e);
+        }
+        return specs;
+    }
+
+    /**
+     * Quote a field for CSV output if it needs it.
+     *
+     * @param field The field, may be null
+     * @return The field as it should be written
+     */
+    static String quote(String field) {
+        if (field == null) {
+            return "";
+        }
+        if (field.contains(",") || field.contains("\"") || field.contains("\n")) {
+            return "\"" + field.replace("\"", "\"\"") + "\"";
+        }
+        return field;
+    }
+
+    private static Set<Role> parseRoles(String field, int lineNumber) {
+        Set<Role> roles = EnumSet.noneOf(Role.class);
+        for (String name : field.split(";")) {
+            if (name.isBlank()) {
+                continue;
+            }
+            try {
+                roles.add(Role.valueOf(name.trim().toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": unknown role " + name.trim());
+            }
+        }
+        return roles;
+    }
+
+    /**
+     * Split one line into fields, honouring double quotes.
+     */
+    private static List<String> splitLine(String line, int lineNumber) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"'); // Escaped quote
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Line " + lineNumber + ": unterminated quote");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -0,0 +1,50 @@
+package backend;
+
+import java.util.*;
+
+/**
+ * <p> Title: InviteSpec Class. </p>
+ *
+ * <p> Description: The details of one invitation in a bulk invite: the username and email of the invited
+ * user and the roles they will receive. </p>
+ *
+ * @author Zeel Tejashkumar Shah
+ *
+ * @version 1.0	2024-10-17	Initial implementation
+ */
+
+public class InviteSpec {
+    private String username; // Username of the invited user
+    private String email; // Email of the invited user
+    private Set<Role> roles; // Roles the invited user will receive
+
+    /**
+     * Constructor for InviteSpec.
+     *
+     * @param username The username of the invited user
+     * @param email The email of the invited user
+     * @param roles The roles to assign to the invited user
+     */
+    public InviteSpec(String username, String email, Set<Role> roles) {
+        this.username = username;
+        this.email = email;
+        this.roles = roles;
+    }
+
+    public String getUsername() {
+        return username; // Returns the username
+    }
+
+    public String getEmail() {
+        return email; // Returns the email
+    }
+
+    public Set<Role> getRoles() {
+        return roles; // Returns the roles
+    }
+
+    @Override
+    public String toString() {
+        return username + " <" + email + "> " + roles;
+    }
+}
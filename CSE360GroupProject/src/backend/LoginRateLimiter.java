@@ -0,0 +1,281 @@
+package backend;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p> Title: LoginRateLimiter Class. </p>
+ *
+ * <p> Description: Limits login attempts before any password is checked. Two limits apply over a sliding
+ * window: failed attempts per username, which stops guessing one account's password, and attempts of any
+ * kind per source (such as a client address), which stops one client flooding the system with attempts at
+ * many accounts. A successful login clears the failures of its username. </p>
+ *
+ * <p> Each key keeps a sliding window counter: the counts of the current and the previous fixed window, with
+ * the previous one weighted by how much of it still overlaps the sliding window. That is two ints per key
+ * instead of a timestamp per attempt, so checking and recording an attempt take constant time and a rejected
+ * attempt costs a map lookup and a little arithmetic. </p>
+ *
+ * <p> Counters live in several independent maps chosen by the key's hash, each with its own lock, so that
+ * attempts at different keys rarely contend and {@link #purgeExpired(Instant)} can sweep stripe by stripe.
+ * Each stripe holds a bounded number of counters in access order: adding a key to a full stripe drops the
+ * counter touched least recently, in constant time, so a flood of new keys neither grows the maps nor costs
+ * more per attempt. Counters idle for two windows are dropped by the sweep. </p>
+ *
+ * <p> Callers should only count failures for usernames that exist, so the keys of the username counters are
+ * not chosen by whoever floods the login; the source limit covers attempts at unknown usernames. </p>
+ *
+ * @author Zeel Tejashkumar Shah
+ *
+ * @version 1.0	2024-10-17	Initial implementation
+ */
+
+public class LoginRateLimiter {
+    public static final int DEFAULT_MAX_FAILURES_PER_USERNAME = 10;
+    public static final int DEFAULT_MAX_ATTEMPTS_PER_SOURCE = 100;
+    public static final Duration DEFAULT_WINDOW = Duration.ofMinutes(5);
+    private static final int STRIPES = 16;
+    private static final int MAX_KEYS_PER_STRIPE = 4096; // Counters kept per stripe before the least recently used is dropped
+
+    private int maxFailuresPerUsername; // Failed attempts allowed per username per window
+    private int maxAttemptsPerSource; // Attempts allowed per source per window
+    private long windowMillis; // Length of the sliding window
+    private List<Map<String, Counter>> usernameStripes; // Failure counters by username
+    private List<Map<String, Counter>> sourceStripes; // Attempt counters by source
+    private LongAdder evictedCount; // Counters dropped to stay within the bound
+
+    /**
+     * A sliding window counter for one key.
+     */
+    private static final class Counter {
+        private long window; // Number of the current fixed window
+        private int current; // Count in the current fixed window
+        private int previous; // Count in the fixed window before it
+
+        synchronized double estimate(long now, long length) {
+            roll(now, length);
+            double overlap = 1 - (double) (now % length) / length; // Share of the previous window still in range
+            return previous * overlap + current;
+        }
+
+        synchronized void add(long now, long length) {
+            roll(now, length);
+            current++;
+        }
+
+        synchronized boolean isIdle(long now, long length) {
+            return now / length > window + 1; // Both counts have left the sliding window
+        }
+
+        private void roll(long now, long length) {
+            long index = now / length;
+            if (index == window + 1) {
+                previous = current;
+                current = 0;
+            } else if (index > window + 1) {
+                previous = 0;
+                current = 0;
+            }
+            window = Math.max(window, index);
+        }
+    }
+
+    /**
+     * Constructor using the default limits and window.
+     */
+    public LoginRateLimiter() {
+        this(DEFAULT_MAX_FAILURES_PER_USERNAME, DEFAULT_MAX_ATTEMPTS_PER_SOURCE, DEFAULT_WINDOW);
+    }
+
+    /**
+     * Constructor for LoginRateLimiter.
+     *
+     * @param maxFailuresPerUsername The failed attempts allowed per username in a window
+     * @param maxAttemptsPerSource The attempts allowed per source in a window
+     * @param window The length of the sliding window
+     */
+    public LoginRateLimiter(int maxFailuresPerUsername, int maxAttemptsPerSource, Duration window) {
+        if (maxFailuresPerUsername < 1 || maxAttemptsPerSource < 1 || window.toMillis() < 1) {
+            throw new IllegalArgumentException("Limits and window must be positive");
+        }
+        this.maxFailuresPerUsername = maxFailuresPerUsername;
+        this.maxAttemptsPerSource = maxAttemptsPerSource;
+        this.windowMillis = window.toMillis();
+        this.evictedCount = new LongAdder();
+        this.usernameStripes = newStripes();
+        this.sourceStripes = newStripes();
+    }
+
+    /**
+     * Check whether a login attempt may go ahead and count it against its source.
+     *
+     * @param username The username being logged in to
+     * @param source The client the attempt comes from, or null if unknown
+     * @return true if the attempt may check the password, false if it must be rejected
+     */
+    public boolean tryAcquire(String username, String source) {
+        return tryAcquire(username, source, Instant.now());
+    }
+
+    /**
+     * Check whether a login attempt may go ahead at the given time and count it against its source.
+     *
+     * @param username The username being logged in to
+     * @param source The client the attempt comes from, or null if unknown
+     * @param now The time of the attempt
+     * @return true if the attempt may check the password, false if it must be rejected
+     */
+    public boolean tryAcquire(String username, String source, Instant now) {
+        long millis = now.toEpochMilli();
+        if (source != null) {
+            Counter attempts = counter(sourceStripes, source);
+            attempts.add(millis, windowMillis); // Rejected attempts count too, so a flood stays blocked
+            if (attempts.estimate(millis, windowMillis) > maxAttemptsPerSource) {
+                return false;
+            }
+        }
+        return !isUsernameLimited(username, now);
+    }
+
+    /**
+     * Check whether a username has used up its failed attempts.
+     *
+     * @param username The username
+     * @param now The current time
+     * @return true if attempts at this username are being rejected
+     */
+    public boolean isUsernameLimited(String username, Instant now) {
+        if (username == null) {
+            return false;
+        }
+        Counter failures = stripe(usernameStripes, username).get(username);
+        long millis = now.toEpochMilli();
+        return failures != null && failures.estimate(millis, windowMillis) >= maxFailuresPerUsername;
+    }
+
+    /**
+     * Check whether a source has used up its attempts.
+     *
+     * @param source The source, or null
+     * @param now The current time
+     * @return true if attempts from this source are being rejected
+     */
+    public boolean isSourceLimited(String source, Instant now) {
+        if (source == null) {
+            return false;
+        }
+        Counter attempts = stripe(sourceStripes, source).get(source);
+        long millis = now.toEpochMilli();
+        return attempts != null && attempts.estimate(millis, windowMillis) >= maxAttemptsPerSource;
+    }
+
+    /**
+     * Count a failed attempt against its username.
+     *
+     * @param username The username
+     */
+    public void recordFailure(String username) {
+        recordFailure(username, Instant.now());
+    }
+
+    /**
+     * Count a failed attempt against its username at the given time.
+     *
+     * @param username The username
+     * @param now The time of the attempt
+     */
+    public void recordFailure(String username, Instant now) {
+        if (username != null) {
+            long millis = now.toEpochMilli();
+            counter(usernameStripes, username).add(millis, windowMillis);
+        }
+    }
+
+    /**
+     * Clear the failures of a username after a successful login.
+     *
+     * @param username The username
+     */
+    public void recordSuccess(String username) {
+        if (username != null) {
+            stripe(usernameStripes, username).remove(username);
+        }
+    }
+
+    /**
+     * Drop the counters that have been idle for a whole sliding window.
+     *
+     * @param now The current time
+     * @return The number of counters dropped
+     */
+    public int purgeExpired(Instant now) {
+        long millis = now.toEpochMilli();
+        int removed = 0;
+        for (List<Map<String, Counter>> stripes : List.of(usernameStripes, sourceStripes)) {
+            for (Map<String, Counter> stripe : stripes) {
+                removed += sweep(stripe, millis);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Get the number of usernames and sources being tracked.
+     *
+     * @return The number of counters
+     */
+    public int size() {
+        int size = 0;
+        for (List<Map<String, Counter>> stripes : List.of(usernameStripes, sourceStripes)) {
+            for (Map<String, Counter> stripe : stripes) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    public long getEvictedCount() {
+        return evictedCount.sum(); // Returns the number of counters dropped to stay within the bound
+    }
+
+    private Counter counter(List<Map<String, Counter>> stripes, String key) {
+        // A full stripe drops its least recently touched counter on insert
+        return stripe(stripes, key).computeIfAbsent(key, k -> new Counter());
+    }
+
+    private int sweep(Map<String, Counter> stripe, long now) {
+        int removed = 0;
+        synchronized (stripe) { // Iterating a synchronized map needs its lock
+            for (Iterator<Counter> it = stripe.values().iterator(); it.hasNext(); ) {
+                if (it.next().isIdle(now, windowMillis)) {
+                    it.remove();
+                    removed++;
+                }
+            }
+        }
+        return removed;
+    }
+
+    private static Map<String, Counter> stripe(List<Map<String, Counter>> stripes, String key) {
+        return stripes.get((key.hashCode() & 0x7fffffff) % STRIPES);
+    }
+
+    private List<Map<String, Counter>> newStripes() {
+        List<Map<String, Counter>> stripes = new ArrayList<>(STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes.add(Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Counter> eldest) {
+                    if (size() > MAX_KEYS_PER_STRIPE) {
+                        evictedCount.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            }));
+        }
+        return stripes;
+    }
+}
@@ -0,0 +1,54 @@
+package backend;
+
+import java.util.concurrent.*;
+
+/**
+ * <p> Title: MaintenanceScheduler Class. </p>
+ *
+ * <p> Description: Runs the periodic housekeeping tasks of an AuthManager, such as purging expired reset
+ * requests, on a single background daemon thread. A failing task is reported and keeps its schedule. </p>
+ *
+ * @author Zeel Tejashkumar Shah
+ *
+ * @version 1.0	2024-10-15	Initial implementation
+ */
+
+public class MaintenanceScheduler {
+    private ScheduledExecutorService executor; // Single daemon thread that runs all tasks
+
+    // Constructor
+    public MaintenanceScheduler() {
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "auth-maintenance");
+            thread.setDaemon(true); // Never keep the application alive
+            return thread;
+        });
+    }
+
+    /**
+     * Run a task repeatedly with a fixed delay between runs.
+     *
+     * @param name The task name used in error reports
+     * @param task The task to run
+     * @param period The delay between runs
+     * @param unit The unit of the period
+     * @return The handle to cancel the task
+     */
+    public ScheduledFuture<?> schedule(String name, Runnable task, long period, TimeUnit unit) {
+        return executor.scheduleWithFixedDelay(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                // An uncaught exception would cancel the schedule, so report it and carry on
+                System.err.println("Maintenance task " + name + " failed: " + e);
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * Stop running tasks.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
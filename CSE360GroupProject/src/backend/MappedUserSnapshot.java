@@ -0,0 +1,511 @@
+package backend;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * <p> Title: MappedUserSnapshot Class. </p>
+ *
+ * <p> Description: A binary snapshot of the AuthManager state that is memory-mapped and queried in place.
+ * Users are stored as fixed-width records sorted by id, next to open-addressing hash indexes on username and
+ * case-folded email, so a restarted AuthManager can answer a login by probing the mapped file and only then
+ * turn that one record into a User object. </p>
+ *
+ * <p> File layout, all numbers big-endian:
+ * <ul>
+ *   <li> Header ({@value #HEADER_SIZE} bytes): magic, version, first log segment to replay, record counts,
+ *        index capacity and the offset of every section </li>
+ *   <li> User records ({@value #USER_RECORD_SIZE} bytes each): id, seven string references, role bits, setup flag </li>
+ *   <li> Invitation records ({@value #INVITATION_RECORD_SIZE} bytes each): three string references, role bits,
+ *        used flag and the expiration time as epoch seconds and nanoseconds </li>
+ *   <li> Reset request records ({@value #RESET_RECORD_SIZE} bytes each) </li>
+ *   <li> Username and email indexes: slots of (hash, record number + 1), zero meaning empty </li>
+ *   <li> String heap: UTF-8 bytes referenced from records as (offset, length), length -1 meaning null </li>
+ * </ul>
+ * Invitations and reset requests are few compared to users and are read eagerly when the AuthManager starts. </p>
+ *
+ * <p> A snapshot is immutable once written and safe to read from many threads. </p>
+ *
+ * @author Zeel Tejashkumar Shah
+ *
+ * @version 1.0	2024-10-17	Initial implementation
+ */
+
+public class MappedUserSnapshot {
+    static final int MAGIC = 0x4155544D; // "AUTM"
+    static final int VERSION = 3;
+
+    private static final int HEADER_SIZE = 96;
+    private static final int USER_RECORD_SIZE = 72;
+    private static final int INVITATION_RECORD_SIZE = 40;
+    private static final int RESET_RECORD_SIZE = 32;
+    private static final int INDEX_SLOT_SIZE = 8;
+    private static final int USER_STRINGS = 7; // username, password, first, middle, last, preferred, email
+
+    private Path path; // File the snapshot was mapped from
+    private MappedByteBuffer buffer; // Whole file, read only absolute gets are used so sharing is safe
+    private long tailSegment; // First log segment written after this snapshot
+    private int userCount;
+    private int invitationCount;
+    private int resetCount;
+    private int indexCapacity; // Slots per index, a power of two
+    private int usersOffset;
+    private int invitationsOffset;
+    private int resetsOffset;
+    private int usernameIndexOffset;
+    private int emailIndexOffset;
+    private int stringsOffset;
+
+    /**
+     * Constructor, use {@link #open(Path)}.
+     */
+    private MappedUserSnapshot(Path path, MappedByteBuffer buffer) throws IOException {
+        this.path = path;
+        this.buffer = buffer;
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Unrecognized snapshot format in " + path);
+        }
+        tailSegment = buffer.getLong(8);
+        userCount = buffer.getInt(16);
+        invitationCount = buffer.getInt(20);
+        resetCount = buffer.getInt(24);
+        indexCapacity = buffer.getInt(28);
+        usersOffset = (int) buffer.getLong(32);
+        invitationsOffset = (int) buffer.getLong(40);
+        resetsOffset = (int) buffer.getLong(48);
+        usernameIndexOffset = (int) buffer.getLong(56);
+        emailIndexOffset = (int) buffer.getLong(64);
+        stringsOffset = (int) buffer.getLong(72);
+    }
+
+    /**
+     * Map a snapshot file.
+     *
+     * @param path The snapshot file
+     * @return The mapped snapshot
+     */
+    public static MappedUserSnapshot open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot " + path + " is larger than 2 GB");
+            }
+            // The mapping stays valid after the channel is closed
+            return new MappedUserSnapshot(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public Path getPath() {
+        return path; // Returns the file the snapshot was mapped from
+    }
+
+    public long getTailSegment() {
+        return tailSegment; // Returns the first log segment to replay after this snapshot
+    }
+
+    public int getUserCount() {
+        return userCount; // Returns the number of user records
+    }
+
+    /**
+     * Get the highest user id in the snapshot.
+     *
+     * @return The highest id, or 0 if there are no users
+     */
+    public long getMaxUserId() {
+        return userCount == 0 ? 0 : idAt(userCount - 1); // Records are sorted by id
+    }
+
+    /**
+     * Get the id of a user record.
+     *
+     * @param ordinal The record number
+     * @return The user id
+     */
+    public long idAt(int ordinal) {
+        return buffer.getLong(userRecord(ordinal));
+    }
+
+    /**
+     * Find a user record by id with a binary search over the sorted records.
+     *
+     * @param id The user id
+     * @return The record number, or -1 if there is no such user
+     */
+    public int findOrdinalById(long id) {
+        int low = 0;
+        int high = userCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long middleId = idAt(middle);
+            if (middleId < id) {
+                low = middle + 1;
+            } else if (middleId > id) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Find the first user record whose id is greater than the given id.
+     *
+     * @param id The id to start after
+     * @return The record number, or the user count if every id is smaller or equal
+     */
+    public int firstOrdinalAfter(long id) {
+        int low = 0;
+        int high = userCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (idAt(middle) <= id) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Find a user record by exact username, comparing the stored bytes in place.
+     *
+     * @param username The username
+     * @return The record number, or -1 if not found
+     */
+    public int findByUsername(String username) {
+        if (userCount == 0) {
+            return -1;
+        }
+        byte[] wanted = username.getBytes(StandardCharsets.UTF_8);
+        int hash = username.hashCode();
+        for (int slot = mix(hash) & (indexCapacity - 1); ; slot = (slot + 1) & (indexCapacity - 1)) {
+            int position = usernameIndexOffset + slot * INDEX_SLOT_SIZE;
+            int entry = buffer.getInt(position + 4);
+            if (entry == 0) {
+                return -1; // Reached an empty slot, the username is not indexed
+            }
+            if (buffer.getInt(position) == hash && stringEquals(userRecord(entry - 1) + 8, wanted)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    /**
+     * Find the user record owning a case-folded email.
+     *
+     * @param emailKey The case-folded email
+     * @return The record number, or -1 if not found
+     */
+    public int findByEmail(String emailKey) {
+        if (userCount == 0) {
+            return -1;
+        }
+        int hash = emailKey.hashCode();
+        for (int slot = mix(hash) & (indexCapacity - 1); ; slot = (slot + 1) & (indexCapacity - 1)) {
+            int position = emailIndexOffset + slot * INDEX_SLOT_SIZE;
+            int entry = buffer.getInt(position + 4);
+            if (entry == 0) {
+                return -1;
+            }
+            if (buffer.getInt(position) == hash) {
+                String email = readString(userRecord(entry - 1) + 8 + 6 * 8);
+                if (email != null && UserStore.emailKey(email).equals(emailKey)) {
+                    return entry - 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Materialize one user record as a User object.
+     *
+     * @param ordinal The record number
+     * @return A new User holding the record's values
+     */
+    public User readUser(int ordinal) {
+        int record = userRecord(ordinal);
+        int strings = record + 8;
+        User user = new User(readString(strings), readString(strings + 8), null);
+        user.setId(buffer.getLong(record));
+        user.setFirstName(readString(strings + 16));
+        user.setMiddleName(readString(strings + 24));
+        user.setLastName(readString(strings + 32));
+        user.setPreferredName(readString(strings + 40));
+        user.setEmail(readString(strings + 48));
+        int flags = strings + USER_STRINGS * 8;
+        user.setRoles(Role.fromBits(buffer.get(flags)));
+        user.setSetupComplete(buffer.get(flags + 1) != 0);
+        return user;
+    }
+
+    /**
+     * Read all invitation records.
+     *
+     * @return The invitations
+     */
+    public List<Invitation> readInvitations() {
+        List<Invitation> invitations = new ArrayList<>(invitationCount);
+        for (int i = 0; i < invitationCount; i++) {
+            int record = invitationsOffset + i * INVITATION_RECORD_SIZE;
+            Instant expiresAt = Instant.ofEpochSecond(buffer.getLong(record + 26), buffer.getInt(record + 34));
+            invitations.add(new Invitation(readString(record), readString(record + 8), readString(record + 16),
+                    Role.fromBits(buffer.get(record + 24)), buffer.get(record + 25) != 0, expiresAt));
+        }
+        return invitations;
+    }
+
+    /**
+     * Read all reset request records.
+     *
+     * @return The reset requests
+     */
+    public List<ResetRequest> readResetRequests() {
+        List<ResetRequest> requests = new ArrayList<>(resetCount);
+        for (int i = 0; i < resetCount; i++) {
+            int record = resetsOffset + i * RESET_RECORD_SIZE;
+            Instant expirationTime = Instant.ofEpochSecond(buffer.getLong(record + 16), buffer.getInt(record + 24));
+            requests.add(new ResetRequest(readString(record), readString(record + 8), expirationTime));
+        }
+        return requests;
+    }
+
+    private int userRecord(int ordinal) {
+        return usersOffset + ordinal * USER_RECORD_SIZE;
+    }
+
+    /**
+     * Decode the string referenced at a position.
+     *
+     * @param reference Position of the (offset, length) reference
+     * @return The string, or null
+     */
+    private String readString(int reference) {
+        int length = buffer.getInt(reference + 4);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(stringsOffset + buffer.getInt(reference), bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Compare the string referenced at a position with the given bytes without decoding it.
+     */
+    private boolean stringEquals(int reference, byte[] wanted) {
+        if (buffer.getInt(reference + 4) != wanted.length) {
+            return false;
+        }
+        int start = stringsOffset + buffer.getInt(reference);
+        for (int i = 0; i < wanted.length; i++) {
+            if (buffer.get(start + i) != wanted[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int mix(int hash) {
+        return (hash ^ (hash >>> 16)) * 0x9E3779B1;
+    }
+
+    // ========== Writing ========== //
+
+    /**
+     * Write a snapshot. Users come from two sources: the users already in memory and, for users that were
+     * never loaded, the records of the previous snapshot, which are copied without being kept in memory.
+     *
+     * @param path The file to write
+     * @param state The state to write; its users must be sorted by id
+     * @param tailSegment The first log segment not covered by this snapshot
+     */
+    public static void write(Path path, StoredState state, long tailSegment) throws IOException {
+        MappedUserSnapshot previous = state.getUserSnapshot();
+        Set<Long> skippedIds = state.getSnapshotSkippedIds();
+        Iterator<User> loaded = state.getUsers().iterator(); // Walked once, the list need not be indexable cheaply
+
+        StringHeap strings = new StringHeap();
+        ByteArrayOutputStream userBytes = new ByteArrayOutputStream();
+        DataOutputStream users = new DataOutputStream(userBytes);
+        List<String> usernames = new ArrayList<>();
+        List<String> emails = new ArrayList<>();
+
+        // Merge the loaded users with the previous snapshot's untouched records, both sorted by id
+        User next = loaded.hasNext() ? loaded.next() : null;
+        int previousCount = previous == null ? 0 : previous.getUserCount();
+        for (int ordinal = 0; ordinal <= previousCount; ordinal++) {
+            long previousId = ordinal < previousCount ? previous.idAt(ordinal) : Long.MAX_VALUE;
+            while (next != null && next.getId() <= previousId) {
+                User user = next;
+                next = loaded.hasNext() ? loaded.next() : null;
+                writeUserRecord(users, strings, user);
+                usernames.add(user.getUsername());
+                emails.add(user.getEmail());
+                if (user.getId() == previousId) {
+                    previousId = -1; // The loaded copy supersedes the old record
+                }
+            }
+            if (ordinal < previousCount && previousId != -1 && !skippedIds.contains(previousId)) {
+                User user = previous.readUser(ordinal); // Short-lived, only used to copy the record
+                writeUserRecord(users, strings, user);
+                usernames.add(user.getUsername());
+                emails.add(user.getEmail());
+            }
+        }
+
+        ByteArrayOutputStream invitationBytes = new ByteArrayOutputStream();
+        DataOutputStream invitations = new DataOutputStream(invitationBytes);
+        for (Invitation invitation : state.getInvitations()) {
+            invitations.writeLong(strings.add(invitation.getInvitationCode()));
+            invitations.writeLong(strings.add(invitation.getUsername()));
+            invitations.writeLong(strings.add(invitation.getEmail()));
+            invitations.writeByte(Role.toBits(invitation.getRoles()));
+            invitations.writeBoolean(invitation.isUsed());
+            invitations.writeLong(invitation.getExpiresAt().getEpochSecond());
+            invitations.writeInt(invitation.getExpiresAt().getNano());
+            invitations.write(new byte[INVITATION_RECORD_SIZE - 38]);
+        }
+
+        ByteArrayOutputStream resetBytes = new ByteArrayOutputStream();
+        DataOutputStream resets = new DataOutputStream(resetBytes);
+        for (ResetRequest request : state.getResetRequests()) {
+            resets.writeLong(strings.add(request.getEmail()));
+            resets.writeLong(strings.add(request.getOneTimePassword()));
+            resets.writeLong(request.getExpirationTime().getEpochSecond());
+            resets.writeInt(request.getExpirationTime().getNano());
+            resets.write(new byte[RESET_RECORD_SIZE - 28]);
+        }
+
+        // Index tables at most half full, the first user registered owns a duplicate key
+        int userCount = usernames.size();
+        int capacity = Integer.highestOneBit(Math.max(16, userCount * 2 - 1)) << 1;
+        int[] usernameIndex = buildIndex(usernames, capacity, false);
+        int[] emailIndex = buildIndex(emails, capacity, true);
+
+        long usersOffset = HEADER_SIZE;
+        long invitationsOffset = usersOffset + userBytes.size();
+        long resetsOffset = invitationsOffset + invitationBytes.size();
+        long usernameIndexOffset = resetsOffset + resetBytes.size();
+        long emailIndexOffset = usernameIndexOffset + (long) capacity * INDEX_SLOT_SIZE;
+        long stringsOffset = emailIndexOffset + (long) capacity * INDEX_SLOT_SIZE;
+        if (stringsOffset + strings.size() > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot would be larger than 2 GB");
+        }
+
+        try (FileOutputStream file = new FileOutputStream(path.toFile());
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(tailSegment);
+            out.writeInt(userCount);
+            out.writeInt(state.getInvitations().size());
+            out.writeInt(state.getResetRequests().size());
+            out.writeInt(capacity);
+            out.writeLong(usersOffset);
+            out.writeLong(invitationsOffset);
+            out.writeLong(resetsOffset);
+            out.writeLong(usernameIndexOffset);
+            out.writeLong(emailIndexOffset);
+            out.writeLong(stringsOffset);
+            out.writeLong(strings.size());
+            out.write(new byte[HEADER_SIZE - 88]);
+            userBytes.writeTo(out);
+            invitationBytes.writeTo(out);
+            resetBytes.writeTo(out);
+            for (int value : usernameIndex) {
+                out.writeInt(value);
+            }
+            for (int value : emailIndex) {
+                out.writeInt(value);
+            }
+            strings.writeTo(out);
+            out.flush();
+            file.getChannel().force(true); // The snapshot must be on disk before it is swapped in
+        }
+    }
+
+    private static void writeUserRecord(DataOutputStream out, StringHeap strings, User user) throws IOException {
+        out.writeLong(user.getId());
+        out.writeLong(strings.add(user.getUsername()));
+        out.writeLong(strings.add(user.getPassword()));
+        out.writeLong(strings.add(user.getFirstName()));
+        out.writeLong(strings.add(user.getMiddleName()));
+        out.writeLong(strings.add(user.getLastName()));
+        out.writeLong(strings.add(user.getPreferredName()));
+        out.writeLong(strings.add(user.getEmail()));
+        out.writeByte(Role.toBits(user.getRoles()));
+        out.writeBoolean(user.isSetupComplete());
+        out.write(new byte[USER_RECORD_SIZE - 8 - USER_STRINGS * 8 - 2]);
+    }
+
+    /**
+     * Build an index table of (hash, record number + 1) slots with linear probing.
+     *
+     * @param keys The key of each record, null for records without one
+     * @param capacity The number of slots, a power of two
+     * @param emailKeys Whether the keys are emails to be case-folded
+     * @return The slots flattened into pairs of ints
+     */
+    private static int[] buildIndex(List<String> keys, int capacity, boolean emailKeys) {
+        int[] slots = new int[capacity * 2];
+        Set<String> seen = new HashSet<>();
+        for (int ordinal = 0; ordinal < keys.size(); ordinal++) {
+            String key = keys.get(ordinal);
+            if (key == null) {
+                continue;
+            }
+            if (emailKeys) {
+                key = UserStore.emailKey(key);
+            }
+            if (!seen.add(key)) {
+                continue; // An earlier user owns this key
+            }
+            int hash = key.hashCode();
+            int slot = mix(hash) & (capacity - 1);
+            while (slots[slot * 2 + 1] != 0) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            slots[slot * 2] = hash;
+            slots[slot * 2 + 1] = ordinal + 1;
+        }
+        return slots;
+    }
+
+    /**
+     * The string heap of a snapshot being written.
+     */
+    private static class StringHeap {
+        private ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 16);
+
+        /**
+         * Append a string.
+         *
+         * @param value The string, may be null
+         * @return The reference packed as offset in the high and length in the low 32 bits
+         */
+        long add(String value) {
+            if (value == null) {
+                return 0xFFFFFFFFL; // Offset 0, length -1
+            }
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            long offset = bytes.size();
+            bytes.write(encoded, 0, encoded.length);
+            return (offset << 32) | (encoded.length & 0xFFFFFFFFL);
+        }
+
+        int size() {
+            return bytes.size();
+        }
+
+        void writeTo(OutputStream out) throws IOException {
+            bytes.writeTo(out);
+        }
+    }
+}
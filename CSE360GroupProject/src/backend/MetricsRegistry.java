@@ -0,0 +1,129 @@
+package backend;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongSupplier;
+
+/**
+ * <p> Title: MetricsRegistry Class. </p>
+ *
+ * <p> Description: Holds the {@link OperationMetrics} of the AuthManager operations and gauges that read a
+ * current value, such as the number of users, when they are exported. Export renders everything in the
+ * Prometheus text format, which local scraping agents read either from an HTTP endpoint or from a file;
+ * {@link #writeTo(Path)} replaces such a file atomically so an agent never reads half of it. </p>
+ *
+ * <p> Names are kept sorted, so consecutive exports list the metrics in the same order. </p>
+ *
+ * @author Zeel Tejashkumar Shah
+ *
+ * @version 1.0	2024-10-17	Initial implementation
+ */
+
+public class MetricsRegistry {
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+    private String prefix; // Prepended to every exported metric name
+    private Map<String, OperationMetrics> operations; // Operation metrics by operation name
+    private Map<String, LongSupplier> gauges; // Gauges by metric name
+
+    /**
+     * Constructor for MetricsRegistry.
+     *
+     * @param prefix Prepended to every exported metric name, such as "auth_"
+     */
+    public MetricsRegistry(String prefix) {
+        this.prefix = prefix;
+        this.operations = new ConcurrentSkipListMap<>();
+        this.gauges = new ConcurrentSkipListMap<>();
+    }
+
+    /**
+     * Get the metrics of an operation, creating them on first use.
+     *
+     * @param name The operation name
+     * @return The metrics of the operation
+     */
+    public OperationMetrics operation(String name) {
+        return operations.computeIfAbsent(name, OperationMetrics::new);
+    }
+
+    /**
+     * Register a gauge, replacing any gauge of the same name.
+     *
+     * @param name The metric name without the prefix
+     * @param value Reads the current value when the metrics are exported
+     */
+    public void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    /**
+     * Render all metrics in the Prometheus text format.
+     *
+     * @return The metrics, one sample per line
+     */
+    public String export() {
+        StringBuilder out = new StringBuilder(4096);
+        String calls = prefix + "operation_total";
+        String latency = prefix + "operation_latency_seconds";
+        if (!operations.isEmpty()) {
+            out.append("# TYPE ").append(calls).append(" counter\n");
+            for (OperationMetrics operation : operations.values()) {
+                sample(out, calls, operation.getName(), "outcome", "success", operation.getSuccessCount());
+                sample(out, calls, operation.getName(), "outcome", "failure", operation.getFailureCount());
+            }
+            out.append("# TYPE ").append(latency).append(" summary\n");
+            for (OperationMetrics operation : operations.values()) {
+                LatencyHistogram histogram = operation.getLatency();
+                for (double quantile : QUANTILES) {
+                    sample(out, latency, operation.getName(), "quantile", Double.toString(quantile),
+                            seconds(histogram.getValueAtQuantile(quantile)));
+                }
+                out.append(latency).append("_sum{operation=\"").append(operation.getName()).append("\"} ")
+                        .append(seconds(histogram.getSum())).append('\n');
+                out.append(latency).append("_count{operation=\"").append(operation.getName()).append("\"} ")
+                        .append(histogram.getCount()).append('\n');
+            }
+        }
+        for (Map.Entry<String, LongSupplier> gauge : gauges.entrySet()) {
+            out.append("# TYPE ").append(prefix).append(gauge.getKey()).append(" gauge\n");
+            out.append(prefix).append(gauge.getKey()).append(' ').append(gauge.getValue().getAsLong()).append('\n');
+        }
+        return out.toString();
+    }
+
+    /**
+     * Write the export to a file, replacing it atomically where the file system allows.
+     *
+     * @param file The file to write
+     */
+    public void writeTo(Path file) {
+        try {
+            Path absolute = file.toAbsolutePath();
+            Files.createDirectories(absolute.getParent());
+            Path temporary = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+            Files.writeString(temporary, export(), StandardCharsets.UTF_8);
+            try {
+                Files.move(temporary, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, absolute, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write metrics to " + file, e);
+        }
+    }
+
+    private static void sample(StringBuilder out, String metric, String operation, String label, String labelValue,
+            Object value) {
+        out.append(metric).append("{operation=\"").append(operation).append("\",").append(label).append("=\"")
+                .append(labelValue).append("\"} ").append(value).append('\n');
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+}
@@ -0,0 +1,230 @@
+package backend;
+
+import java.time.Instant;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p> Title: NotificationDispatcher Class. </p>
+ *
+ * <p> Description: Hands {@link AuthNotification}s to a {@link NotificationSink} on a background thread. Dispatching
+ * only puts the notification in a bounded queue, so a slow sink never holds up the request that produced it.
+ * If the queue is full the notification is dropped and counted; the code it carried is still stored, so the
+ * request can simply be made again. </p>
+ *
+ * <p> Revoking a code and purging expired ones go through the same queue, so they reach the sink after the
+ * notification they are about. They are never dropped: one that finds the queue full waits in an unbounded
+ * overflow list instead, which the delivery thread works off once the queue has drained, so the notification it
+ * is about has been delivered or dropped by then. Otherwise a busy sink would keep used and expired codes for
+ * good. </p>
+ *
+ * <p> The delivery thread is a daemon that is started on the first notification and stops after a while
+ * without any, so an idle AuthManager holds no thread for it. The counters of delivered, dropped and failed
+ * notifications tell whether delivery keeps up. </p>
+ *
+ * @author Zeel Tejashkumar Shah
+ *
+ * @version 1.0	2024-10-17	Initial implementation
+ */
+
+public class NotificationDispatcher {
+    public static final int DEFAULT_QUEUE_CAPACITY = 10_000;
+
+    private volatile NotificationSink sink; // Where notifications are delivered
+    private ThreadPoolExecutor executor; // Single delivery thread over a bounded queue
+    private AtomicLong pending; // Notifications queued or being delivered
+    private AtomicLong delivered; // Notifications the sink accepted
+    private AtomicLong dropped; // Notifications rejected by a full queue or after shutdown
+    private AtomicLong failed; // Notifications the sink threw on
+    private Queue<Runnable> overflow; // Revocations and purges that found the queue full
+    private AtomicLong deferred; // Revocations and purges that had to wait in the overflow list
+
+    /**
+     * Constructor with the default queue capacity.
+     *
+     * @param sink Where notifications are delivered
+     */
+    public NotificationDispatcher(NotificationSink sink) {
+        this(sink, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Constructor for NotificationDispatcher.
+     *
+     * @param sink Where notifications are delivered
+     * @param queueCapacity The number of notifications that may wait for delivery
+     */
+    public NotificationDispatcher(NotificationSink sink, int queueCapacity) {
+        this.sink = sink;
+        this.pending = new AtomicLong();
+        this.delivered = new AtomicLong();
+        this.dropped = new AtomicLong();
+        this.failed = new AtomicLong();
+        this.overflow = new ConcurrentLinkedQueue<>();
+        this.deferred = new AtomicLong();
+        this.executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "auth-notifications");
+                    thread.setDaemon(true); // Never keep the application alive
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true); // No thread while there is nothing to deliver
+    }
+
+    /**
+     * Queue a notification for delivery and return at once.
+     *
+     * @param notification The notification to deliver
+     */
+    public void dispatch(AuthNotification notification) {
+        Runnable delivery = () -> {
+            try {
+                sink.deliver(notification);
+                delivered.incrementAndGet();
+            } catch (RuntimeException e) {
+                failed.incrementAndGet();
+                System.err.println("Notification " + notification + " could not be delivered: " + e);
+            }
+        };
+        pending.incrementAndGet();
+        try {
+            executor.execute(track(delivery));
+        } catch (RejectedExecutionException e) {
+            pending.decrementAndGet();
+            dropped.incrementAndGet(); // The code is still stored, the request can be made again
+        }
+    }
+
+    /**
+     * Queue telling the sink that a code no longer works, so it stops holding it.
+     *
+     * @param type The notification type
+     * @param email The email the code was sent to
+     * @param code The code
+     */
+    public void revoke(AuthNotification.Type type, String email, String code) {
+        enqueueHousekeeping(() -> {
+            try {
+                sink.revoke(type, email, code);
+            } catch (RuntimeException e) {
+                failed.incrementAndGet();
+                System.err.println("Revoking a " + type + " for " + email + " failed: " + e);
+            }
+        });
+    }
+
+    /**
+     * Queue telling the sink to drop the codes that have expired by the given time.
+     *
+     * @param now The current time
+     */
+    public void purgeExpired(Instant now) {
+        enqueueHousekeeping(() -> {
+            try {
+                sink.purgeExpired(now);
+            } catch (RuntimeException e) {
+                failed.incrementAndGet();
+                System.err.println("Purging expired notifications failed: " + e);
+            }
+        });
+    }
+
+    /**
+     * Wait until every notification dispatched so far has been delivered or has failed.
+     */
+    public void flush() {
+        while (pending.get() > 0) {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+    }
+
+    /**
+     * Deliver what is still queued and stop the delivery thread. Later notifications are dropped; later
+     * revocations and purges run on the calling thread.
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        runOverflow();
+    }
+
+    /**
+     * Queue a revocation or purge. If the queue is full it waits in the overflow list instead of being dropped.
+     */
+    private void enqueueHousekeeping(Runnable task) {
+        pending.incrementAndGet();
+        try {
+            executor.execute(track(task));
+            return;
+        } catch (RejectedExecutionException e) {
+            overflow.add(task);
+            deferred.incrementAndGet();
+        }
+        if (executor.isShutdown()) {
+            runOverflow(); // No delivery thread will come for it
+            return;
+        }
+        try {
+            executor.execute(this::runOverflow); // The queue may have drained since it was full
+        } catch (RejectedExecutionException e) {
+            // Still full, the queued work runs the overflow once it has drained
+        }
+    }
+
+    /**
+     * Wrap a task so it counts as pending until it ends, and works off the overflow once the queue is empty.
+     */
+    private Runnable track(Runnable task) {
+        return () -> {
+            try {
+                task.run();
+            } finally {
+                pending.decrementAndGet();
+            }
+            if (executor.getQueue().isEmpty()) {
+                runOverflow();
+            }
+        };
+    }
+
+    private void runOverflow() {
+        Runnable task;
+        while ((task = overflow.poll()) != null) {
+            try {
+                task.run();
+            } finally {
+                pending.decrementAndGet();
+            }
+        }
+    }
+
+    public NotificationSink getSink() {
+        return sink; // Returns where notifications are delivered
+    }
+
+    public void setSink(NotificationSink sink) {
+        this.sink = sink; // Sets where notifications are delivered from now on
+    }
+
+    public long getDeliveredCount() {
+        return delivered.get(); // Returns the number of notifications delivered
+    }
+
+    public long getDroppedCount() {
+        return dropped.get(); // Returns the number of notifications dropped
+    }
+
+    public long getFailedCount() {
+        return failed.get(); // Returns the number of notifications the sink failed on
+    }
+
+    public long getDeferredCount() {
+        return deferred.get(); // Returns the number of revocations and purges that waited for a full queue
+    }
+}
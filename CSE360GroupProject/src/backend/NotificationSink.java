@@ -0,0 +1,47 @@
+package backend;
+
+import java.time.Instant;
+
+/**
+ * <p> Title: NotificationSink Interface. </p>
+ *
+ * <p> Description: Where the AuthManager's notifications end up, for example an email gateway or the
+ * {@link InMemoryNotificationSink} the reset screen takes one-time passwords from. A sink is called from the
+ * dispatcher's background thread, one call at a time, and may take as long as it needs without slowing down
+ * the request that produced the notification. </p>
+ *
+ * <p> A sink that holds on to notifications is told when a code stops working, because it was used, deleted or
+ * has expired, so it can drop the secret. A sink that sends messages right away can ignore both calls. </p>
+ *
+ * @author Zeel Tejashkumar Shah
+ *
+ * @version 1.0	2024-10-17	Initial implementation
+ */
+
+public interface NotificationSink {
+
+    /**
+     * Deliver a notification. An exception is reported by the dispatcher and does not stop later deliveries.
+     *
+     * @param notification The notification to deliver
+     */
+    void deliver(AuthNotification notification);
+
+    /**
+     * Forget a code that can no longer be used, if it is still held.
+     *
+     * @param type The notification type
+     * @param email The email the code was sent to
+     * @param code The code
+     */
+    default void revoke(AuthNotification.Type type, String email, String code) {
+    }
+
+    /**
+     * Forget every held code that has expired by the given time.
+     *
+     * @param now The current time
+     */
+    default void purgeExpired(Instant now) {
+    }
+}
@@ -0,0 +1,72 @@
+package backend;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p> Title: OperationMetrics Class. </p>
+ *
+ * <p> Description: Counts the calls of one operation by outcome and keeps a {@link LatencyHistogram} of how
+ * long they took. Callers get their instance from the {@link MetricsRegistry} once and keep it, so timing a
+ * call is a clock read before and after plus a few uncontended increments. </p>
+ *
+ * @author Zeel Tejashkumar Shah
+ *
+ * @version 1.0	2024-10-17	Initial implementation
+ */
+
+public class OperationMetrics {
+    private String name; // Operation name used in the export
+    private LongAdder successes; // Calls that succeeded
+    private LongAdder failures; // Calls that failed or were refused
+    private LatencyHistogram latency; // Durations of all calls
+
+    /**
+     * Constructor for OperationMetrics.
+     *
+     * @param name The operation name used in the export
+     */
+    public OperationMetrics(String name) {
+        this.name = name;
+        this.successes = new LongAdder();
+        this.failures = new LongAdder();
+        this.latency = new LatencyHistogram();
+    }
+
+    /**
+     * Record one call.
+     *
+     * @param startNanos The {@link System#nanoTime()} when the call started
+     * @param success Whether the call succeeded
+     */
+    public void record(long startNanos, boolean success) {
+        latency.record(System.nanoTime() - startNanos);
+        (success ? successes : failures).increment();
+    }
+
+    /**
+     * Get the share of calls that failed.
+     *
+     * @return The failure rate between 0 and 1, or 0 if there were no calls
+     */
+    public double getFailureRate() {
+        long failed = failures.sum();
+        long total = failed + successes.sum();
+        return total == 0 ? 0 : (double) failed / total;
+    }
+
+    public String getName() {
+        return name; // Returns the operation name
+    }
+
+    public long getSuccessCount() {
+        return successes.sum(); // Returns the number of calls that succeeded
+    }
+
+    public long getFailureCount() {
+        return failures.sum(); // Returns the number of calls that failed
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency; // Returns the durations of all calls
+    }
+}
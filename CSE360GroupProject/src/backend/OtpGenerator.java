@@ -0,0 +1,180 @@
+package backend;
+
+import java.security.SecureRandom;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p> Title: OtpGenerator Class. </p>
+ *
+ * <p> Description: Produces fixed-width numeric one-time passwords from a shared {@link SecureRandom}. Codes are
+ * drawn in batches: a background thread keeps a few batches ready, and callers take codes from one of several
+ * buffers picked by thread id, so concurrent reset requests rarely touch the same lock and almost never wait
+ * for the random source. A caller that finds no batch ready generates one itself. </p>
+ *
+ * <p> Buffers are striped rather than kept per thread because requests often run on short-lived virtual
+ * threads, which would each take a whole batch and use one code of it. </p>
+ *
+ * <p> Each code is drawn uniformly from 24 random bits, rejecting the values above the largest multiple of
+ * 10^{@value #DIGITS}, so every code is equally likely. Uniqueness among live requests is checked where the
+ * requests are stored, see {@link ResetRequestStore#addWithUniqueOtp(ResetRequest)}. </p>
+ *
+ * @author Zeel Tejashkumar Shah
+ *
+ * @version 1.0	2024-10-17	Initial implementation
+ */
+
+public class OtpGenerator {
+    public static final int DIGITS = 6;
+    private static final int BOUND = 1_000_000; // 10^DIGITS
+    private static final int SAMPLE_LIMIT = (1 << 24) / BOUND * BOUND; // Largest multiple of BOUND in 24 bits
+    private static final int BATCH_SIZE = 256;
+    private static final int READY_BATCHES = 8;
+
+    private SecureRandom random; // Shared source of every code
+    private Stripe[] stripes; // Code buffers picked by thread id
+    private ArrayBlockingQueue<int[]> ready; // Batches generated in the background
+    private ThreadPoolExecutor refiller; // Single thread that tops up the ready batches
+    private AtomicBoolean refilling; // Set while a refill is queued or running
+    private LongAdder generated; // Codes generated so far
+    private LongAdder generationNanos; // Time spent generating them
+    private LongAdder inlineBatches; // Batches callers had to generate themselves
+
+    /**
+     * A buffer of codes, used under its own monitor.
+     */
+    private static final class Stripe {
+        private int[] codes;
+        private int position;
+    }
+
+    // Constructor
+    public OtpGenerator() {
+        this.random = new SecureRandom();
+        int count = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1) * 2;
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.ready = new ArrayBlockingQueue<>(READY_BATCHES);
+        this.refilling = new AtomicBoolean();
+        this.generated = new LongAdder();
+        this.generationNanos = new LongAdder();
+        this.inlineBatches = new LongAdder();
+        this.refiller = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "otp-generator");
+            thread.setDaemon(true); // Never keep the application alive
+            return thread;
+        });
+        refiller.allowCoreThreadTimeOut(true); // No thread while nobody asks for codes
+    }
+
+    /**
+     * Get the next one-time password.
+     *
+     * @return A code of exactly {@value #DIGITS} digits, zero-padded
+     */
+    public String next() {
+        Stripe stripe = stripes[(int) Thread.currentThread().threadId() & (stripes.length - 1)];
+        int code;
+        synchronized (stripe) {
+            if (stripe.codes == null || stripe.position == stripe.codes.length) {
+                stripe.codes = takeBatch();
+                stripe.position = 0;
+            }
+            code = stripe.codes[stripe.position];
+            stripe.codes[stripe.position++] = 0; // Do not keep handed out codes in memory
+        }
+        return format(code);
+    }
+
+    /**
+     * Stop the background thread. Later calls still work and generate their batches themselves.
+     */
+    public void shutdown() {
+        refiller.shutdownNow();
+    }
+
+    public long getGeneratedCount() {
+        return generated.sum(); // Returns the number of codes generated
+    }
+
+    public long getInlineBatchCount() {
+        return inlineBatches.sum(); // Returns the number of batches callers generated themselves
+    }
+
+    /**
+     * Get how fast codes are generated, counting only the time spent generating.
+     *
+     * @return Codes per second, or 0 if none were generated yet
+     */
+    public double getCodesPerSecond() {
+        long nanos = generationNanos.sum();
+        return nanos == 0 ? 0 : generated.sum() * 1e9 / nanos;
+    }
+
+    /**
+     * Take a ready batch, or generate one if none is ready, and top the ready batches up in the background.
+     */
+    private int[] takeBatch() {
+        int[] batch = ready.poll();
+        if (ready.size() < READY_BATCHES / 2 && !refiller.isShutdown() && refilling.compareAndSet(false, true)) {
+            try {
+                refiller.execute(() -> {
+                    try {
+                        while (ready.remainingCapacity() > 0 && ready.offer(generateBatch())) {
+                            // Keep going until the queue is full
+                        }
+                    } finally {
+                        refilling.set(false);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                refilling.set(false); // Shut down in between
+            }
+        }
+        if (batch == null) {
+            inlineBatches.increment();
+            batch = generateBatch();
+        }
+        return batch;
+    }
+
+    /**
+     * Draw a batch of uniformly distributed codes below BOUND from the shared random source.
+     */
+    private int[] generateBatch() {
+        long start = System.nanoTime();
+        int[] codes = new int[BATCH_SIZE];
+        byte[] bytes = new byte[BATCH_SIZE * 3 * 21 / 20]; // About 5% extra covers the rejected samples
+        int offset = bytes.length;
+        int count = 0;
+        while (count < BATCH_SIZE) {
+            if (offset + 3 > bytes.length) {
+                random.nextBytes(bytes);
+                offset = 0;
+            }
+            int sample = (bytes[offset] & 0xFF) << 16 | (bytes[offset + 1] & 0xFF) << 8 | (bytes[offset + 2] & 0xFF);
+            offset += 3;
+            if (sample < SAMPLE_LIMIT) {
+                codes[count++] = sample % BOUND;
+            }
+        }
+        generated.add(BATCH_SIZE);
+        generationNanos.add(System.nanoTime() - start);
+        return codes;
+    }
+
+    /**
+     * Render a code with leading zeros.
+     */
+    private static String format(int code) {
+        char[] digits = new char[DIGITS];
+        for (int i = DIGITS - 1; i >= 0; i--) {
+            digits[i] = (char) ('0' + code % 10);
+            code /= 10;
+        }
+        return new String(digits);
+    }
+}
@@ -0,0 +1,360 @@
+package backend;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * <p> Title: PasswordHasher Class. </p>
+ *
+ * <p> Description: Hashes and verifies passwords with salted PBKDF2-HMAC-SHA256. Hashes are stored as
+ * {@code pbkdf2-sha256$iterations$salt$hash} with Base64 salt and hash, so every stored password carries the
+ * cost it was hashed with and can be verified after the default cost changes. {@link #needsRehash(String)}
+ * tells the caller when a stored password should be hashed again with the current cost, which also covers
+ * passwords stored in plain text before hashing was introduced. </p>
+ *
+ * <p> The hashing itself runs on a small dedicated pool with a bounded queue. At most one hash per worker
+ * runs at a time, so a flood of logins cannot take every core, and once the queue is full further requests
+ * are rejected immediately with a {@link RejectedExecutionException} instead of piling up. Worker threads
+ * are daemons and exit when idle. </p>
+ *
+ * <p> {@link #verifyDummy(String)} costs the same as a failed verification, so a login naming an unknown user
+ * takes as long as one with a wrong password and the response time does not reveal which usernames exist. </p>
+ *
+ * <p> Counters for hashes, verifications, rejections and hashing time are kept so the iteration count can
+ * be tuned against login latency. </p>
+ *
+ * @author Zeel Tejashkumar Shah
+ *
+ * @version 1.0	2024-10-17	Initial implementation
+ */
+
+public class PasswordHasher {
+    public static final int DEFAULT_ITERATIONS = 210_000; // Recommended minimum for PBKDF2-HMAC-SHA256
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final String PREFIX = "pbkdf2-sha256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    private static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+    private int iterations; // Cost used for new hashes
+    private ThreadPoolExecutor workers; // Bounded pool the hashing runs on
+    private SecureRandom random; // Salt source
+    private String dummyHash; // Matches no password, checked for unknown users
+    private LongAdder hashCount; // Hashes computed, including those done to verify
+    private LongAdder verifyCount; // Verifications requested
+    private LongAdder verifyFailures; // Verifications that did not match
+    private LongAdder rejectedCount; // Requests turned away because the queue was full
+    private LongAdder hashNanos; // Total time spent hashing
+    private LongAccumulator maxHashNanos; // Slowest single hash
+
+    /**
+     * Constructor using the default cost and one worker per core.
+     */
+    public PasswordHasher() {
+        this(DEFAULT_ITERATIONS);
+    }
+
+    /**
+     * Constructor using the given cost and one worker per core.
+     *
+     * @param iterations The PBKDF2 iteration count for new hashes
+     */
+    public PasswordHasher(int iterations) {
+        this(iterations, Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Constructor for PasswordHasher.
+     *
+     * @param iterations The PBKDF2 iteration count for new hashes
+     * @param threads The number of hashes that may run at once
+     * @param queueCapacity The number of requests that may wait before new ones are rejected
+     */
+    public PasswordHasher(int iterations, int threads, int queueCapacity) {
+        if (iterations < 1 || threads < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Iterations, threads and queue capacity must be positive");
+        }
+        this.iterations = iterations;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), task -> {
+                    Thread thread = new Thread(task, "password-hasher-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true); // Never keep the application alive
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.workers.allowCoreThreadTimeOut(true);
+        this.random = new SecureRandom();
+        this.dummyHash = dummyHash(iterations);
+        this.hashCount = new LongAdder();
+        this.verifyCount = new LongAdder();
+        this.verifyFailures = new LongAdder();
+        this.rejectedCount = new LongAdder();
+        this.hashNanos = new LongAdder();
+        this.maxHashNanos = new LongAccumulator(Math::max, 0);
+    }
+
+    public int getIterations() {
+        return iterations; // Returns the cost used for new hashes
+    }
+
+    /**
+     * Hash a password with the current cost, waiting for a worker.
+     *
+     * @param password The password to hash
+     * @return The encoded hash
+     * @throws RejectedExecutionException if the hasher is overloaded
+     */
+    public String hash(String password) {
+        return hash(password, iterations);
+    }
+
+    /**
+     * Hash a password with the given cost, waiting for a worker.
+     *
+     * @param password The password to hash
+     * @param iterations The PBKDF2 iteration count
+     * @return The encoded hash
+     * @throws IllegalArgumentException if the password is null
+     * @throws RejectedExecutionException if the hasher is overloaded
+     */
+    public String hash(String password, int iterations) {
+        return await(hashAsync(password, iterations));
+    }
+
+    /**
+     * Hash a password with the given cost on a worker.
+     *
+     * @param password The password to hash
+     * @param iterations The PBKDF2 iteration count
+     * @return A future completing with the encoded hash
+     * @throws IllegalArgumentException if the password is null
+     * @throws RejectedExecutionException if the hasher is overloaded
+     */
+    public Future<String> hashAsync(String password, int iterations) {
+        if (password == null) {
+            throw new IllegalArgumentException("Password must not be null");
+        }
+        return submit(() -> encode(password, iterations));
+    }
+
+    /**
+     * Check a password against a stored hash, waiting for a worker. A stored value that is not in the
+     * hash format is treated as a plain text password from before hashing was introduced.
+     *
+     * @param password The password to check
+     * @param stored The stored hash
+     * @return true if the password matches
+     * @throws RejectedExecutionException if the hasher is overloaded
+     */
+    public boolean verify(String password, String stored) {
+        return await(verifyAsync(password, stored));
+    }
+
+    /**
+     * Check a password against a stored hash on a worker.
+     *
+     * @param password The password to check
+     * @param stored The stored hash
+     * @return A future completing with whether the password matches
+     * @throws RejectedExecutionException if the hasher is overloaded
+     */
+    public Future<Boolean> verifyAsync(String password, String stored) {
+        verifyCount.increment();
+        return submit(() -> {
+            boolean matches = matches(password, stored);
+            if (!matches) {
+                verifyFailures.increment();
+            }
+            return matches;
+        });
+    }
+
+    /**
+     * Check a password against a hash that matches nothing, at the current cost, waiting for a worker. Used
+     * when the user is unknown, so the attempt takes as long as a wrong password for a real user.
+     *
+     * @param password The password to check
+     * @throws RejectedExecutionException if the hasher is overloaded
+     */
+    public void verifyDummy(String password) {
+        verify(password == null ? "" : password, dummyHash); // Same work as a real check, the result is ignored
+    }
+
+    /**
+     * Check whether a stored password should be hashed again with the current cost.
+     *
+     * @param stored The stored hash
+     * @return true if it is plain text or was hashed with a different iteration count
+     */
+    public boolean needsRehash(String stored) {
+        String[] parts = split(stored);
+        return parts == null || Integer.parseInt(parts[1]) != iterations;
+    }
+
+    /**
+     * Stop the workers. Requests already queued still run.
+     */
+    public void shutdown() {
+        workers.shutdown();
+    }
+
+    // ========== Metrics ========== //
+
+    public long getHashCount() {
+        return hashCount.sum(); // Returns the number of hashes computed
+    }
+
+    public long getVerifyCount() {
+        return verifyCount.sum(); // Returns the number of verifications requested
+    }
+
+    public long getVerifyFailures() {
+        return verifyFailures.sum(); // Returns the number of failed verifications
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.sum(); // Returns the number of requests rejected as overload
+    }
+
+    public int getQueuedCount() {
+        return workers.getQueue().size(); // Returns the number of requests waiting for a worker
+    }
+
+    /**
+     * Get the average time one hash takes.
+     *
+     * @return The average in milliseconds, or 0 if nothing was hashed yet
+     */
+    public double getAverageHashMillis() {
+        long count = hashCount.sum();
+        return count == 0 ? 0 : hashNanos.sum() / 1e6 / count;
+    }
+
+    public double getMaxHashMillis() {
+        return maxHashNanos.get() / 1e6; // Returns the slowest single hash in milliseconds
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PasswordHasher[iterations=%d, hashes=%d, verifications=%d, failures=%d, rejected=%d, "
+                + "queued=%d, avg=%.2fms, max=%.2fms]", iterations, getHashCount(), getVerifyCount(),
+                getVerifyFailures(), getRejectedCount(), getQueuedCount(), getAverageHashMillis(), getMaxHashMillis());
+    }
+
+    // ========== Hashing ========== //
+
+    private <T> Future<T> submit(Callable<T> task) {
+        try {
+            return workers.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejectedCount.increment();
+            throw e;
+        }
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(false);
+            throw new RejectedExecutionException("Interrupted while waiting for the password hasher", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+
+    /**
+     * Hash a password with a new salt and encode the result.
+     */
+    private String encode(String password, int iterations) throws GeneralSecurityException {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        byte[] hash = pbkdf2(password, salt, iterations);
+        Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+        return PREFIX + "$" + iterations + "$" + base64.encodeToString(salt) + "$" + base64.encodeToString(hash);
+    }
+
+    /**
+     * Make a hash in the stored format with random salt and digest, which no password matches in practice.
+     * No hashing is needed, only the cost and the field sizes have to match those of real hashes.
+     */
+    private String dummyHash(int iterations) {
+        byte[] salt = new byte[SALT_BYTES];
+        byte[] hash = new byte[HASH_BITS / 8];
+        random.nextBytes(salt);
+        random.nextBytes(hash);
+        Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+        return PREFIX + "$" + iterations + "$" + base64.encodeToString(salt) + "$" + base64.encodeToString(hash);
+    }
+
+    /**
+     * Compare a password with a stored value in time independent of where they differ.
+     */
+    private boolean matches(String password, String stored) throws GeneralSecurityException {
+        if (password == null || stored == null) {
+            return false;
+        }
+        String[] parts = split(stored);
+        if (parts == null) {
+            if (stored.startsWith(PREFIX + "$")) {
+                return false; // A damaged hash matches nothing
+            }
+            // Plain text password stored before hashing was introduced
+            return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8), stored.getBytes(StandardCharsets.UTF_8));
+        }
+        Base64.Decoder base64 = Base64.getDecoder();
+        byte[] expected = base64.decode(parts[3]);
+        byte[] actual = pbkdf2(password, base64.decode(parts[2]), Integer.parseInt(parts[1]));
+        return MessageDigest.isEqual(expected, actual);
+    }
+
+    private byte[] pbkdf2(String password, byte[] salt, int iterations) throws GeneralSecurityException {
+        long start = System.nanoTime();
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } finally {
+            spec.clearPassword();
+            long elapsed = System.nanoTime() - start;
+            hashCount.increment();
+            hashNanos.add(elapsed);
+            maxHashNanos.accumulate(elapsed);
+        }
+    }
+
+    /**
+     * Split a stored hash into its four fields, checking that the cost is positive and the salt and digest
+     * decode.
+     *
+     * @return The fields, or null if the value is not a usable hash
+     */
+    private static String[] split(String stored) {
+        if (stored == null || !stored.startsWith(PREFIX + "$")) {
+            return null;
+        }
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4 || parts[2].isEmpty() || parts[3].isEmpty()) {
+            return null;
+        }
+        try {
+            if (Integer.parseInt(parts[1]) < 1) {
+                return null;
+            }
+            Base64.getDecoder().decode(parts[2]);
+            Base64.getDecoder().decode(parts[3]);
+        } catch (IllegalArgumentException e) {
+            return null; // Not a number or not Base64, NumberFormatException included
+        }
+        return parts;
+    }
+}
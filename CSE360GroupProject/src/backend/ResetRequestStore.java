@@ -0,0 +1,152 @@
+package backend;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p> Title: ResetRequestStore Class. </p>
+ *
+ * <p> Description: Holds the pending password reset requests, indexed by case-folded email and ordered by
+ * expiration time. Each email keeps only its most recent request, so a lookup always returns the request the
+ * user was last sent. Expired requests are evicted in bulk by {@link #purgeExpired(Instant)}, which only ever
+ * looks at the head of the expiration queue. </p>
+ *
+ * <p> Requests that are replaced or removed stay in the expiration queue until they expire or the queue is
+ * compacted, which happens once stale entries outnumber live ones. </p>
+ *
+ * <p> Live requests are also indexed by one-time password, so a new request can be given a code no other live
+ * request holds. </p>
+ *
+ * <p> The store is safe for concurrent use. Lookups and removals go straight to a concurrent map without
+ * locking, while adding and purging, which also touch the expiration queue, are synchronized. </p>
+ *
+ * @author Zeel Tejashkumar Shah
+ *
+ * @version 1.0	2024-10-15	Initial implementation
+ */
+
+public class ResetRequestStore {
+    private Map<String, ResetRequest> requestsByEmail; // Latest request for each case-folded email
+    private PriorityQueue<ResetRequest> expirationQueue; // All requests, earliest expiration first
+    private Map<String, ResetRequest> requestsByOtp; // Live requests by one-time password
+
+    // Constructor
+    public ResetRequestStore() {
+        this.requestsByEmail = new ConcurrentHashMap<>();
+        this.expirationQueue = new PriorityQueue<>(Comparator.comparing(ResetRequest::getExpirationTime));
+        this.requestsByOtp = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Add a request, replacing any earlier request for the same email.
+     *
+     * @param request The reset request to add
+     */
+    public synchronized void add(ResetRequest request) {
+        ResetRequest replaced = requestsByEmail.put(UserStore.emailKey(request.getEmail()), request);
+        if (replaced != null) {
+            requestsByOtp.remove(replaced.getOneTimePassword(), replaced);
+        }
+        requestsByOtp.put(request.getOneTimePassword(), request);
+        expirationQueue.add(request);
+        compactIfStale();
+    }
+
+    /**
+     * Add a request unless another live request already holds its one-time password. The check and the add
+     * happen together, so two concurrent requests can never end up with the same code.
+     *
+     * @param request The reset request to add
+     * @return true if the request was added, false if its code is taken and a new one should be drawn
+     */
+    public synchronized boolean addWithUniqueOtp(ResetRequest request) {
+        ResetRequest holder = requestsByOtp.get(request.getOneTimePassword());
+        if (holder != null && !holder.isExpired() && !holder.getEmail().equalsIgnoreCase(request.getEmail())) {
+            return false; // A request being replaced may pass its code on, any other live holder may not
+        }
+        add(request);
+        return true;
+    }
+
+    /**
+     * Find the live request for an email, ignoring case.
+     *
+     * @param email The email to look up
+     * @return The request or null if there is none or it has expired
+     */
+    public ResetRequest find(String email) {
+        if (email == null) {
+            return null;
+        }
+        ResetRequest request = requestsByEmail.get(UserStore.emailKey(email));
+        if (request != null && request.isExpired()) {
+            if (requestsByEmail.remove(UserStore.emailKey(email), request)) { // Evict lazily, the queue entry goes on the next purge
+                requestsByOtp.remove(request.getOneTimePassword(), request);
+            }
+            return null;
+        }
+        return request;
+    }
+
+    /**
+     * Remove a request.
+     *
+     * @param request The request to remove
+     * @return true if the request was the live request for its email
+     */
+    public boolean remove(ResetRequest request) {
+        if (!requestsByEmail.remove(UserStore.emailKey(request.getEmail()), request)) {
+            return false;
+        }
+        requestsByOtp.remove(request.getOneTimePassword(), request);
+        return true;
+    }
+
+    /**
+     * Evict every request that has expired by the given time.
+     *
+     * @param now The current time
+     * @return The number of live requests evicted
+     */
+    public synchronized int purgeExpired(Instant now) {
+        int evicted = 0;
+        while (!expirationQueue.isEmpty() && now.isAfter(expirationQueue.peek().getExpirationTime())) {
+            ResetRequest request = expirationQueue.poll();
+            if (requestsByEmail.remove(UserStore.emailKey(request.getEmail()), request)) {
+                requestsByOtp.remove(request.getOneTimePassword(), request);
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * Get all live requests.
+     *
+     * @return A new list of the live requests
+     */
+    public List<ResetRequest> getAll() {
+        return new ArrayList<>(requestsByEmail.values());
+    }
+
+    /**
+     * Get the number of live requests.
+     *
+     * @return The request count
+     */
+    public int size() {
+        return requestsByEmail.size();
+    }
+
+    /**
+     * Rebuild the expiration queue from the live requests once replaced and removed
+     * requests make up most of it, so the queue stays proportional to the live set.
+     */
+    private void compactIfStale() {
+        if (expirationQueue.size() > 2 * requestsByEmail.size() + 64) {
+            expirationQueue.clear();
+            expirationQueue.addAll(requestsByEmail.values());
+        }
+    }
+}
@@ -1,9 +1,13 @@
 package backend;
 
+import java.util.*;
+
 /**
  * <p> Title: Role Enum. </p>
  * 
- * <p> Description: represent different user roles in the system.
+ * <p> Description: represent different user roles in the system. A set of roles is stored as a bitmask
+ * with one {@link #bit()} per role, and {@link #fromBits(int)} hands out one shared read-only set per
+ * mask, so users and invitations do not each carry their own set. </p>
  * 
  * @author Zeel Tejashkumar Shah
  * 
@@ -13,5 +17,68 @@ package backend;
 public enum Role {
     ADMIN,      // Represents an administrator with full access rights
     STUDENT,    // Represents a student with limited access rights
-    INSTRUCTOR   // Represents an instructor with teaching privileges
+    INSTRUCTOR;  // Represents an instructor with teaching privileges
+
+    private static final Role[] VALUES = values();
+    private static final int MASK = (1 << VALUES.length) - 1; // Every role's bit
+    private static final List<Set<Role>> SETS = canonicalSets(); // Shared set for each mask
+
+    /**
+     * Get the bit standing for this role in a role mask.
+     *
+     * @return The bit
+     */
+    public int bit() {
+        return 1 << ordinal();
+    }
+
+    /**
+     * Convert a set of roles to a mask.
+     *
+     * @param roles The roles, may be null
+     * @return The mask
+     */
+    public static int toBits(Set<Role> roles) {
+        int bits = 0;
+        if (roles != null) {
+            for (Role role : roles) {
+                bits |= role.bit();
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Get the shared read-only set of the roles in a mask. Bits that stand for no role are ignored.
+     *
+     * @param bits The mask
+     * @return The roles
+     */
+    public static Set<Role> fromBits(int bits) {
+        return SETS.get(bits & MASK);
+    }
+
+    /**
+     * Get the shared read-only copy of a set of roles.
+     *
+     * @param roles The roles, may be null
+     * @return The shared set holding the same roles
+     */
+    public static Set<Role> canonical(Set<Role> roles) {
+        return fromBits(toBits(roles));
+    }
+
+    private static List<Set<Role>> canonicalSets() {
+        List<Set<Role>> sets = new ArrayList<>(MASK + 1);
+        for (int bits = 0; bits <= MASK; bits++) {
+            Set<Role> roles = EnumSet.noneOf(Role.class);
+            for (Role role : VALUES) {
+                if ((bits & role.bit()) != 0) {
+                    roles.add(role);
+                }
+            }
+            sets.add(Collections.unmodifiableSet(roles));
+        }
+        return sets;
+    }
 }
@@ -0,0 +1,78 @@
+package backend;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p> Title: RoleIndex Class. </p>
+ *
+ * <p> Description: An inverted index from each role to the ids of the users holding it, kept up to date by
+ * the {@link UserStore} as users are added, change roles and are removed. Listing or counting the users with a
+ * role then costs the size of the result instead of a pass over every user. </p>
+ *
+ * <p> The sets are concurrent, so lookups never lock. Changes to one user must not run concurrently, which
+ * the store ensures by making them under the user's monitor or the lock that loads it. </p>
+ *
+ * @author Zeel Tejashkumar Shah
+ *
+ * @version 1.0	2024-10-17	Initial implementation
+ */
+
+public class RoleIndex {
+    private Map<Role, Set<Long>> usersByRole; // Ids of the users holding each role
+
+    // Constructor
+    public RoleIndex() {
+        this.usersByRole = new EnumMap<>(Role.class);
+        for (Role role : Role.values()) {
+            usersByRole.put(role, ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    /**
+     * Record the roles a user currently holds.
+     *
+     * @param id The id of the user
+     * @param roleBits The user's roles as a mask of {@link Role#bit()}
+     */
+    public void put(long id, int roleBits) {
+        for (Role role : Role.values()) {
+            if ((roleBits & role.bit()) != 0) {
+                usersByRole.get(role).add(id);
+            } else {
+                usersByRole.get(role).remove(id);
+            }
+        }
+    }
+
+    /**
+     * Drop a user from the index.
+     *
+     * @param id The id of the user
+     */
+    public void remove(long id) {
+        for (Set<Long> ids : usersByRole.values()) {
+            ids.remove(id);
+        }
+    }
+
+    /**
+     * Get the ids of the users holding a role.
+     *
+     * @param role The role
+     * @return A read-only live view of the ids, in no particular order
+     */
+    public Set<Long> getIds(Role role) {
+        return Collections.unmodifiableSet(usersByRole.get(role));
+    }
+
+    /**
+     * Count the users holding a role.
+     *
+     * @param role The role
+     * @return The number of users
+     */
+    public int count(Role role) {
+        return usersByRole.get(role).size();
+    }
+}
@@ -0,0 +1,75 @@
+package backend;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * <p> Title: Session Class. </p>
+ *
+ * <p> Description: A logged-in user acting in one role, identified by an opaque random token. Sessions are
+ * issued and validated by a {@link SessionManager}; holding the token is what proves the user already passed
+ * the credential check. </p>
+ *
+ * @author Zeel Tejashkumar Shah
+ *
+ * @version 1.0	2024-10-17	Initial implementation
+ */
+
+public class Session {
+    private String token; // Opaque identifier handed to the client
+    private User user; // The logged-in user
+    private Role role; // The role selected for this session
+    private Instant createdAt; // When the session was issued
+    private volatile Instant lastAccess; // When the session was last validated
+
+    /**
+     * Constructor for Session.
+     *
+     * @param token The session token
+     * @param user The logged-in user
+     * @param role The role selected for the session
+     * @param createdAt When the session is issued
+     */
+    public Session(String token, User user, Role role, Instant createdAt) {
+        this.token = token;
+        this.user = user;
+        this.role = role;
+        this.createdAt = createdAt;
+        this.lastAccess = createdAt;
+    }
+
+    public String getToken() {
+        return token; // Returns the session token
+    }
+
+    public User getUser() {
+        return user; // Returns the logged-in user
+    }
+
+    public Role getRole() {
+        return role; // Returns the role selected for the session
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt; // Returns when the session was issued
+    }
+
+    public Instant getLastAccess() {
+        return lastAccess; // Returns when the session was last validated
+    }
+
+    void touch(Instant now) {
+        this.lastAccess = now; // Records a validation, only the SessionManager does this
+    }
+
+    /**
+     * Check whether the session has been idle for longer than a timeout.
+     *
+     * @param now The current time
+     * @param idleTimeout The longest allowed time between validations
+     * @return true if the session has expired
+     */
+    public boolean isExpired(Instant now, Duration idleTimeout) {
+        return now.isAfter(lastAccess.plus(idleTimeout));
+    }
+}
@@ -0,0 +1,206 @@
+package backend;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * <p> Title: SessionManager Class. </p>
+ *
+ * <p> Description: Issues and validates login sessions. A session token is 256 random bits, so it cannot be
+ * guessed, and validating one is a single hash lookup instead of a password check. Sessions expire after a
+ * period without validation and the number of live sessions is bounded: when a new session would exceed the
+ * bound, the least recently used one is dropped. </p>
+ *
+ * <p> Sessions are kept in a {@link LinkedHashMap} in access order, so the least recently used session is
+ * always at the head. Since a validation both moves a session to the tail and resets its idle time, the head
+ * is also the session closest to expiring, and {@link #purgeExpired(Instant)} only looks at as many sessions
+ * as it evicts. Access order means every lookup changes the map, so all methods are synchronized. </p>
+ *
+ * <p> The tokens of each user are also kept in a second map, so logging a user out after a password change or
+ * a delete only touches that user's sessions instead of scanning every live session under the lock. </p>
+ *
+ * @author Zeel Tejashkumar Shah
+ *
+ * @version 1.0	2024-10-17	Initial implementation
+ */
+
+public class SessionManager {
+    public static final int DEFAULT_MAX_SESSIONS = 10_000;
+    public static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofMinutes(30);
+    private static final int TOKEN_BYTES = 32;
+
+    private Map<String, Session> sessions; // Live sessions by token, least recently used first
+    private Map<User, Set<String>> tokensByUser; // Tokens of the live sessions of each user, by identity
+    private int maxSessions; // Number of sessions kept before the least recently used is dropped
+    private Duration idleTimeout; // Longest allowed time between validations
+    private SecureRandom random; // Token source
+    private long evictedCount; // Sessions dropped to stay within the bound
+
+    /**
+     * Constructor using the default bound and idle timeout.
+     */
+    public SessionManager() {
+        this(DEFAULT_MAX_SESSIONS, DEFAULT_IDLE_TIMEOUT);
+    }
+
+    /**
+     * Constructor for SessionManager.
+     *
+     * @param maxSessions The number of sessions kept before the least recently used is dropped
+     * @param idleTimeout The longest allowed time between validations of a session
+     */
+    public SessionManager(int maxSessions, Duration idleTimeout) {
+        if (maxSessions < 1 || idleTimeout.isNegative() || idleTimeout.isZero()) {
+            throw new IllegalArgumentException("Session bound and idle timeout must be positive");
+        }
+        this.maxSessions = maxSessions;
+        this.idleTimeout = idleTimeout;
+        this.random = new SecureRandom();
+        this.tokensByUser = new IdentityHashMap<>();
+        this.sessions = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Session> eldest) {
+                if (size() > SessionManager.this.maxSessions) {
+                    evictedCount++;
+                    forget(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Issue a session for a user acting in a role.
+     *
+     * @param user The logged-in user
+     * @param role The role selected for the session
+     * @return The new session
+     */
+    public synchronized Session create(User user, Role role) {
+        Session session = new Session(newToken(), user, role, Instant.now());
+        sessions.put(session.getToken(), session);
+        tokensByUser.computeIfAbsent(user, key -> new HashSet<>(2)).add(session.getToken());
+        return session;
+    }
+
+    /**
+     * Look up a session by token and mark it as used.
+     *
+     * @param token The session token
+     * @return The session, or null if the token is unknown or the session has expired
+     */
+    public synchronized Session validate(String token) {
+        if (token == null) {
+            return null;
+        }
+        Session session = sessions.get(token);
+        if (session == null) {
+            return null;
+        }
+        Instant now = Instant.now();
+        if (session.isExpired(now, idleTimeout)) {
+            sessions.remove(token);
+            forget(session);
+            return null;
+        }
+        session.touch(now);
+        return session;
+    }
+
+    /**
+     * End a session.
+     *
+     * @param token The session token
+     * @return true if the session was live
+     */
+    public synchronized boolean invalidate(String token) {
+        Session session = token == null ? null : sessions.remove(token);
+        if (session == null) {
+            return false;
+        }
+        forget(session);
+        return true;
+    }
+
+    /**
+     * End every session of a user, for example after its password changed or it was deleted.
+     *
+     * @param user The user
+     * @return The number of sessions ended
+     */
+    public synchronized int invalidateUser(User user) {
+        Set<String> tokens = tokensByUser.remove(user);
+        if (tokens == null) {
+            return 0;
+        }
+        for (String token : tokens) {
+            sessions.remove(token);
+        }
+        return tokens.size();
+    }
+
+    /**
+     * End every session of any of the given users, touching only their sessions.
+     *
+     * @param users The users to log out
+     * @return The number of sessions ended
+     */
+    public synchronized int invalidateUsers(Collection<User> users) {
+        int removed = 0;
+        for (User user : users) {
+            removed += invalidateUser(user);
+        }
+        return removed;
+    }
+
+    /**
+     * Evict every session that has expired by the given time.
+     *
+     * @param now The current time
+     * @return The number of sessions evicted
+     */
+    public synchronized int purgeExpired(Instant now) {
+        int removed = 0;
+        for (Iterator<Session> it = sessions.values().iterator(); it.hasNext(); ) {
+            Session session = it.next();
+            if (!session.isExpired(now, idleTimeout)) {
+                break; // Later sessions were used more recently
+            }
+            it.remove();
+            forget(session);
+            removed++;
+        }
+        return removed;
+    }
+
+    public synchronized int size() {
+        return sessions.size(); // Returns the number of live sessions
+    }
+
+    public synchronized long getEvictedCount() {
+        return evictedCount; // Returns the number of sessions dropped to stay within the bound
+    }
+
+    public Duration getIdleTimeout() {
+        return idleTimeout; // Returns the longest allowed time between validations
+    }
+
+    /**
+     * Drop the token of a session that was removed from the sessions map from its user's tokens.
+     */
+    private void forget(Session session) {
+        Set<String> tokens = tokensByUser.get(session.getUser());
+        if (tokens != null && tokens.remove(session.getToken()) && tokens.isEmpty()) {
+            tokensByUser.remove(session.getUser());
+        }
+    }
+
+    private String newToken() {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
@@ -0,0 +1,77 @@
+package backend;
+
+import java.util.*;
+
+/**
+ * <p> Title: StoredState Class. </p>
+ *
+ * <p> Description: The users, invitations and password reset requests handed between an AuthManager and its
+ * AuthStorage, either when loading at startup or when taking a snapshot. </p>
+ *
+ * <p> Users may also be left in a {@link MappedUserSnapshot}. The users list then only holds the users that
+ * are in memory, and the snapshot supplies the rest except those whose ids are in the skipped set. </p>
+ *
+ * @author Zeel Tejashkumar Shah
+ *
+ * @version 1.0	2024-10-16	Initial implementation
+ */
+
+public class StoredState {
+    private List<User> users; // Users in registration order
+    private List<Invitation> invitations; // Pending and used invitations
+    private List<ResetRequest> resetRequests; // Live password reset requests
+    private MappedUserSnapshot userSnapshot; // Further users not loaded into memory, may be null
+    private Set<Long> snapshotSkippedIds; // Snapshot users superseded by the users list or deleted
+
+    /**
+     * Constructor for an empty state.
+     */
+    public StoredState() {
+        this(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+    }
+
+    /**
+     * Constructor for a state holding the given records.
+     *
+     * @param users The users in registration order
+     * @param invitations The invitations
+     * @param resetRequests The password reset requests
+     */
+    public StoredState(List<User> users, List<Invitation> invitations, List<ResetRequest> resetRequests) {
+        this.users = users;
+        this.invitations = invitations;
+        this.resetRequests = resetRequests;
+        this.snapshotSkippedIds = new HashSet<>();
+    }
+
+    /**
+     * Supply further users from a snapshot.
+     *
+     * @param userSnapshot The snapshot holding users not in the users list
+     * @param snapshotSkippedIds Ids of snapshot users that are superseded or deleted
+     */
+    public void setUserSnapshot(MappedUserSnapshot userSnapshot, Set<Long> snapshotSkippedIds) {
+        this.userSnapshot = userSnapshot;
+        this.snapshotSkippedIds = snapshotSkippedIds;
+    }
+
+    public List<User> getUsers() {
+        return users; // Returns the users in registration order
+    }
+
+    public List<Invitation> getInvitations() {
+        return invitations; // Returns the invitations
+    }
+
+    public List<ResetRequest> getResetRequests() {
+        return resetRequests; // Returns the password reset requests
+    }
+
+    public MappedUserSnapshot getUserSnapshot() {
+        return userSnapshot; // Returns the snapshot supplying further users, or null
+    }
+
+    public Set<Long> getSnapshotSkippedIds() {
+        return snapshotSkippedIds; // Returns the ids of snapshot users not to use
+    }
+}
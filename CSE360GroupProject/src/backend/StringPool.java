@@ -0,0 +1,60 @@
+package backend;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p> Title: StringPool Class. </p>
+ *
+ * <p> Description: Hands out one shared copy of equal strings, so values repeated across many accounts such
+ * as first names, last names and email domains are held in memory once. Unlike {@link String#intern()} the
+ * pool is an ordinary map that can be sized and measured. It never shrinks, so it is only meant for values
+ * with a limited number of distinct entries; once it holds {@code maxSize} strings, new values are returned
+ * as they are instead of being pooled. </p>
+ *
+ * <p> The pool is safe for concurrent use and lookups of pooled values do not lock. </p>
+ *
+ * @author Zeel Tejashkumar Shah
+ *
+ * @version 1.0	2024-10-17	Initial implementation
+ */
+
+public class StringPool {
+    private Map<String, String> strings; // Each pooled string mapped to itself
+    private int maxSize; // Number of strings after which new values are not pooled
+
+    /**
+     * Constructor for StringPool.
+     *
+     * @param maxSize The maximum number of strings to pool
+     */
+    public StringPool(int maxSize) {
+        this.strings = new ConcurrentHashMap<>();
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Get the shared copy of a string, pooling it if it is new.
+     *
+     * @param value The string, may be null
+     * @return The pooled string equal to value, or value itself if the pool is full
+     */
+    public String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        String pooled = strings.get(value);
+        if (pooled != null) {
+            return pooled;
+        }
+        if (strings.size() >= maxSize) {
+            return value;
+        }
+        pooled = strings.putIfAbsent(value, value);
+        return pooled == null ? value : pooled;
+    }
+
+    public int size() {
+        return strings.size(); // Returns the number of pooled strings
+    }
+}
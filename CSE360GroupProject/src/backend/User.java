@@ -6,6 +6,11 @@ import java.util.Set;
  * <p> Title: User Class. </p>
  * 
  * <p> Description: represent a system user with associated attributes and roles.
+ * Names are kept as shared copies from a {@link StringPool}, since many accounts repeat them, and the roles
+ * and the setup flag are packed into one int. Changing either is a read-modify-write of that int, so like
+ * every other change it is made under the user's monitor or before the user is published.
+ * Every recorded change also bumps the user's version, which an {@link AuthTransaction} checks at commit to tell
+ * whether the user changed since it was read. Versions live in memory only and start at zero after a restart.
  * 
  * @author Zeel Tejashkumar Shah
  * 
@@ -13,15 +18,21 @@ import java.util.Set;
  */
 
 public class User {
-    private String username;          // Unique username for the user
-    private String password;          // User's password
-    private String firstName;         // User's first name
-    private String middleName;        // User's middle name (optional)
-    private String lastName;          // User's last name
-    private String preferredName;     // User's preferred name (optional)
-    private String email;             // User's email address
-    private Set<Role> roles;          // Set of roles assigned to the user
-    private boolean isSetupComplete;   // Flag indicating if the user's setup is complete
+    private static final StringPool NAMES = new StringPool(1 << 20); // Shared copies of names
+    private static final int SETUP_COMPLETE = 1 << 8; // Flag bit above the role bits
+    private static final int ROLE_MASK = SETUP_COMPLETE - 1;
+
+    // Mutable fields are volatile so that lock-free readers on other threads see the latest value
+    private long id;                           // Store-assigned id, increasing in registration order
+    private String username;                   // Unique username for the user
+    private volatile String password;          // Salted hash of the user's password
+    private volatile String firstName;         // User's first name
+    private volatile String middleName;        // User's middle name (optional)
+    private volatile String lastName;          // User's last name
+    private volatile String preferredName;     // User's preferred name (optional)
+    private volatile String email;             // User's email address
+    private volatile int flags;                // Role.bit() mask of the user's roles, plus the setup complete flag
+    private volatile long version;             // Number of recorded changes, for optimistic transactions
 
     /**
      * Constructor to initialize a new User object.
@@ -33,12 +44,27 @@ public class User {
     public User(String username, String password, Set<Role> roles) {
         this.username = username;
         this.password = password;
-        this.roles = roles;
-        this.isSetupComplete = false;  // New users need to finish setup
+        this.flags = Role.toBits(roles) & ROLE_MASK;  // New users need to finish setup
     }
 
     // Getters and Setters
 
+    public long getId() {
+        return id; // Returns the store-assigned id
+    }
+
+    void setId(long id) {
+        this.id = id; // Sets the id, only the UserStore assigns ids
+    }
+
+    public long getVersion() {
+        return version; // Returns the number of recorded changes
+    }
+
+    void incrementVersion() {
+        version++; // Bumps the version, only called under the user's monitor
+    }
+
     public String getUsername() {
         return username; // Returns the username
     }
@@ -60,7 +86,7 @@ public class User {
     }
 
     public void setFirstName(String firstName) {
-        this.firstName = firstName; // Sets the first name
+        this.firstName = NAMES.intern(firstName); // Sets the first name
     }
 
     public String getMiddleName() {
@@ -68,7 +94,7 @@ public class User {
     }
 
     public void setMiddleName(String middleName) {
-        this.middleName = middleName; // Sets the middle name
+        this.middleName = NAMES.intern(middleName); // Sets the middle name
     }
 
     public String getLastName() {
@@ -76,7 +102,7 @@ public class User {
     }
 
     public void setLastName(String lastName) {
-        this.lastName = lastName; // Sets the last name
+        this.lastName = NAMES.intern(lastName); // Sets the last name
     }
 
     public String getPreferredName() {
@@ -84,7 +110,7 @@ public class User {
     }
 
     public void setPreferredName(String preferredName) {
-        this.preferredName = preferredName; // Sets the preferred name
+        this.preferredName = NAMES.intern(preferredName); // Sets the preferred name
     }
 
     public String getEmail() {
@@ -96,18 +122,30 @@ public class User {
     }
 
     public Set<Role> getRoles() {
-        return roles; // Returns the set of roles assigned to the user
+        return Role.fromBits(flags); // Returns a shared read-only set of the roles assigned to the user
     }
 
     public void setRoles(Set<Role> roles) {
-        this.roles = roles; // Sets the roles for the user
+        setRoleBits(Role.toBits(roles)); // Sets the roles for the user
+    }
+
+    public int getRoleBits() {
+        return flags & ROLE_MASK; // Returns the roles as a mask of Role.bit()
+    }
+
+    public void setRoleBits(int roleBits) {
+        flags = (flags & ~ROLE_MASK) | (roleBits & ROLE_MASK); // Sets the roles from a mask of Role.bit()
+    }
+
+    public boolean hasRole(Role role) {
+        return (flags & role.bit()) != 0; // Returns whether the user holds the role
     }
 
     public boolean isSetupComplete() {
-        return isSetupComplete; // Returns whether the setup is complete
+        return (flags & SETUP_COMPLETE) != 0; // Returns whether the setup is complete
     }
 
     public void setSetupComplete(boolean setupComplete) {
-        isSetupComplete = setupComplete; // Sets the setup complete flag
+        flags = setupComplete ? flags | SETUP_COMPLETE : flags & ~SETUP_COMPLETE; // Sets the setup complete flag
     }
 }
@@ -0,0 +1,53 @@
+package backend;
+
+import java.util.*;
+
+/**
+ * <p> Title: UserPage Class. </p>
+ *
+ * <p> Description: One page of users in registration order, returned by
+ * {@link AuthManager#getUsersPage(long, int)}. Pages are addressed by cursor rather than by offset: the
+ * cursor of the next page is the id of the last user on this one, so paging stays correct and cheap while
+ * users are added or deleted. </p>
+ *
+ * @author Zeel Tejashkumar Shah
+ *
+ * @version 1.0	2024-10-17	Initial implementation
+ */
+
+public class UserPage {
+    private List<User> users; // Users on this page
+    private long cursor; // Cursor this page was read after
+    private long nextCursor; // Cursor for the following page
+    private boolean lastPage; // Whether no users follow this page
+
+    /**
+     * Constructor for UserPage.
+     *
+     * @param users The users on the page
+     * @param cursor The cursor the page was read after
+     * @param limit The page size that was asked for
+     */
+    public UserPage(List<User> users, long cursor, int limit) {
+        this.users = Collections.unmodifiableList(users);
+        this.cursor = cursor;
+        this.nextCursor = users.isEmpty() ? cursor : users.get(users.size() - 1).getId();
+        this.lastPage = users.size() < limit;
+    }
+
+    public List<User> getUsers() {
+        return users; // Returns the users on this page
+    }
+
+    public long getCursor() {
+        return cursor; // Returns the cursor this page was read after
+    }
+
+    public long getNextCursor() {
+        return nextCursor; // Returns the cursor for the following page
+    }
+
+    public boolean isLastPage() {
+        return lastPage; // Returns whether this is the last page
+    }
+}
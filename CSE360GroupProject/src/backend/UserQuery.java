@@ -0,0 +1,120 @@
+package backend;
+
+/**
+ * <p> Title: UserQuery Class. </p>
+ *
+ * <p> Description: Describes a search of the user directory for {@link AuthManager#searchUsers(UserQuery)}:
+ * optional text matched against the username, the name and the email, optional filters on a role and on
+ * whether account setup is complete, the order of the results and how many to return. Text matching
+ * ignores case. The setters return the query so one can be built in a single expression, for example
+ * {@code new UserQuery().setText("smi").setRole(Role.STUDENT).setSortKey(UserQuery.SortKey.NAME)}. </p>
+ *
+ * @author Zeel Tejashkumar Shah
+ *
+ * @version 1.0	2024-10-17	Initial implementation
+ */
+
+public class UserQuery {
+    /**
+     * How the text is matched.
+     */
+    public enum MatchMode {
+        PREFIX,     // A field starts with the text, or any word of the name does
+        CONTAINS    // A field contains the text anywhere
+    }
+
+    /**
+     * The order results are returned in.
+     */
+    public enum SortKey {
+        ID,         // Registration order
+        USERNAME,   // Username, ignoring case
+        NAME,       // First and last name, ignoring case
+        EMAIL       // Email, ignoring case
+    }
+
+    public static final int DEFAULT_LIMIT = 50;
+
+    private String text; // Text to match, null or empty matches every user
+    private MatchMode matchMode; // How the text is matched
+    private Role role; // Role the users must have, or null
+    private Boolean setupComplete; // Required setup state, or null
+    private SortKey sortKey; // Order of the results
+    private boolean descending; // Whether the order is reversed
+    private int limit; // Maximum number of results
+
+    /**
+     * Constructor for a query matching every user, by username, up to the default limit.
+     */
+    public UserQuery() {
+        this.matchMode = MatchMode.PREFIX;
+        this.sortKey = SortKey.USERNAME;
+        this.limit = DEFAULT_LIMIT;
+    }
+
+    public String getText() {
+        return text; // Returns the text to match
+    }
+
+    public UserQuery setText(String text) {
+        this.text = text; // Sets the text to match
+        return this;
+    }
+
+    public MatchMode getMatchMode() {
+        return matchMode; // Returns how the text is matched
+    }
+
+    public UserQuery setMatchMode(MatchMode matchMode) {
+        this.matchMode = matchMode; // Sets how the text is matched
+        return this;
+    }
+
+    public Role getRole() {
+        return role; // Returns the role the users must have
+    }
+
+    public UserQuery setRole(Role role) {
+        this.role = role; // Sets the role the users must have, null for any
+        return this;
+    }
+
+    public Boolean getSetupComplete() {
+        return setupComplete; // Returns the required setup state
+    }
+
+    public UserQuery setSetupComplete(Boolean setupComplete) {
+        this.setupComplete = setupComplete; // Sets the required setup state, null for either
+        return this;
+    }
+
+    public SortKey getSortKey() {
+        return sortKey; // Returns the order of the results
+    }
+
+    public UserQuery setSortKey(SortKey sortKey) {
+        this.sortKey = sortKey; // Sets the order of the results
+        return this;
+    }
+
+    public boolean isDescending() {
+        return descending; // Returns whether the order is reversed
+    }
+
+    public UserQuery setDescending(boolean descending) {
+        this.descending = descending; // Sets whether the order is reversed
+        return this;
+    }
+
+    public int getLimit() {
+        return limit; // Returns the maximum number of results
+    }
+
+    public UserQuery setLimit(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        this.limit = limit; // Sets the maximum number of results
+        return this;
+    }
+}
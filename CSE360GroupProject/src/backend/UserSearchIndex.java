@@ -0,0 +1,523 @@
+package backend;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p> Title: UserSearchIndex Class. </p>
+ *
+ * <p> Description: Search indexes over the user directory, maintained by the {@link UserStore} as users are
+ * added, changed and removed. Each user is summarized by an entry holding its case-folded username, name and
+ * email together with its roles and setup state. Sorted sets of those keys answer prefix searches and return
+ * users in username, name or email order without sorting, and an index from every three-character sequence
+ * to the users containing it answers substring searches by checking only the users under the rarest
+ * sequence of the search text. </p>
+ *
+ * <p> The sequence index holds the ids of each sequence as a sorted array of primitive ids while they are few
+ * and as a bitmap over the ids once the bitmap is the smaller of the two, so a sequence costs no object per
+ * user. Entries do not keep their sequences; they are worked out again from the folded values when a user
+ * changes or is removed. </p>
+ *
+ * <p> Sorted keys are the folded value, a separator and the id in fixed-width hex, so users with equal values
+ * stay distinct and order by id. Changes to one user are serialized by striped locks; searches lock only the
+ * id list of a sequence, long enough to copy it, and see each user either before or after a concurrent
+ * change. </p>
+ *
+ * <p> Removing a user drops only its entry and leaves its keys behind as a tombstone, since searches skip keys
+ * without an entry anyway. {@link #compact(int)} cleans the keys of tombstoned users a few at a time. </p>
+ *
+ * @author Zeel Tejashkumar Shah
+ *
+ * @version 1.0	2024-10-17	Initial implementation
+ */
+
+public class UserSearchIndex {
+    private static final char SEPARATOR = '\u0000'; // Sorts before any character of a value
+    private static final char LAST = '\uffff'; // Sorts after any character of a value
+    private static final int GRAM = 3;
+
+    private Map<Long, Entry> entries; // Current entry of every indexed user
+    private ConcurrentSkipListSet<String> byUsername; // Sorted username keys
+    private ConcurrentSkipListSet<String> byName; // Sorted full name keys
+    private ConcurrentSkipListSet<String> byNameWord; // Sorted keys for the last and preferred names
+    private ConcurrentSkipListSet<String> byEmail; // Sorted email keys
+    private Map<String, Posting> byTrigram; // Users containing each three-character sequence
+    private Object[] locks; // Striped locks serializing changes to one user
+    private Queue<Entry> tombstones; // Entries of removed users whose keys are still in the sorted sets
+    private AtomicInteger tombstoneCount; // Size of the tombstone queue, which does not count in constant time
+
+    /**
+     * The searchable summary of one user. Entries are replaced, never changed.
+     */
+    private static final class Entry {
+        final long id;
+        final String username;
+        final String name;
+        final String email;
+        final List<String> nameWords;
+        final int roleBits;
+        final boolean setupComplete;
+
+        Entry(User user) {
+            this.id = user.getId();
+            this.username = fold(user.getUsername());
+            this.name = user.getFirstName() == null ? fold(user.getLastName())
+                    : (fold(user.getFirstName()) + " " + fold(user.getLastName())).trim();
+            this.email = fold(user.getEmail());
+            List<String> words = new ArrayList<>(2);
+            for (String word : new String[] { fold(user.getLastName()), fold(user.getPreferredName()) }) {
+                if (!word.isEmpty() && !words.contains(word)) {
+                    words.add(word);
+                }
+            }
+            this.nameWords = words;
+            this.roleBits = user.getRoleBits();
+            this.setupComplete = user.isSetupComplete();
+        }
+
+        boolean contains(String text) {
+            return username.contains(text) || name.contains(text) || email.contains(text);
+        }
+
+        Set<String> trigrams() {
+            Set<String> grams = new HashSet<>();
+            addTrigrams(grams, username);
+            addTrigrams(grams, name);
+            addTrigrams(grams, email);
+            return grams;
+        }
+    }
+
+    /**
+     * The ids of the users containing one three-character sequence. The ids are kept in a sorted array while
+     * that is smaller than a bitmap covering them, and in a bitmap indexed by id once it is not. Ids are handed
+     * out in registration order, so new users append to the array or set a bit near the end.
+     */
+    private static final class Posting {
+        private long[] ids = new long[4]; // Sorted ids, null while the bitmap is used
+        private long[] bits; // Bit id of word id / 64 is set for each id, null while the array is used
+        private int size;
+
+        synchronized void add(long id) {
+            if (bits != null) {
+                int word = (int) (id >>> 6);
+                if (id >>> 6 >= Integer.MAX_VALUE - 8 || word >= 2 * (size + 1) + bits.length) {
+                    toArray(); // Far beyond the other ids, the bitmap would be mostly empty
+                } else {
+                    if (word >= bits.length) {
+                        bits = Arrays.copyOf(bits, Math.max(word + 1, bits.length + (bits.length >> 1)));
+                    }
+                    if ((bits[word] & (1L << id)) == 0) {
+                        bits[word] |= 1L << id;
+                        size++;
+                    }
+                    return;
+                }
+            }
+            int at = size > 0 && ids[size - 1] < id ? -size - 1 : Arrays.binarySearch(ids, 0, size, id);
+            if (at >= 0) {
+                return; // Already present
+            }
+            at = -at - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size + (size >> 1) + 1);
+            }
+            System.arraycopy(ids, at, ids, at + 1, size - at);
+            ids[at] = id;
+            size++;
+            long words = (ids[size - 1] >>> 6) + 1;
+            if (size > words) {
+                toBits(); // Denser than one id per 64, the bitmap is smaller
+            }
+        }
+
+        /**
+         * Remove an id.
+         *
+         * @return true if no ids are left
+         */
+        synchronized boolean remove(long id) {
+            if (bits != null) {
+                int word = (int) (id >>> 6);
+                if (id >= 0 && word < bits.length && (bits[word] & (1L << id)) != 0) {
+                    bits[word] &= ~(1L << id);
+                    size--;
+                    if (2 * size < bits.length) {
+                        toArray(); // Sparse again, the array is smaller
+                    }
+                }
+                return size == 0;
+            }
+            int at = Arrays.binarySearch(ids, 0, size, id);
+            if (at >= 0) {
+                System.arraycopy(ids, at + 1, ids, at, size - at - 1);
+                size--;
+                if (ids.length > 16 && size < ids.length / 4) {
+                    ids = Arrays.copyOf(ids, ids.length / 2);
+                }
+            }
+            return size == 0;
+        }
+
+        synchronized int size() {
+            return size; // Returns the number of ids
+        }
+
+        /**
+         * Copy the ids, so the caller can go through them without holding the lock.
+         *
+         * @return The ids in increasing order
+         */
+        synchronized List<Long> copy() {
+            List<Long> copy = new ArrayList<>(size);
+            if (bits == null) {
+                for (int i = 0; i < size; i++) {
+                    copy.add(ids[i]);
+                }
+            } else {
+                for (int word = 0; word < bits.length; word++) {
+                    for (long rest = bits[word]; rest != 0; rest &= rest - 1) {
+                        copy.add(((long) word << 6) + Long.numberOfTrailingZeros(rest));
+                    }
+                }
+            }
+            return copy;
+        }
+
+        private void toBits() {
+            long[] words = new long[(int) (ids[size - 1] >>> 6) + 1];
+            for (int i = 0; i < size; i++) {
+                words[(int) (ids[i] >>> 6)] |= 1L << ids[i];
+            }
+            bits = words;
+            ids = null;
+        }
+
+        private void toArray() {
+            long[] sorted = new long[Math.max(4, size + (size >> 1))];
+            int count = 0;
+            for (int word = 0; word < bits.length; word++) {
+                for (long rest = bits[word]; rest != 0; rest &= rest - 1) {
+                    sorted[count++] = ((long) word << 6) + Long.numberOfTrailingZeros(rest);
+                }
+            }
+            ids = sorted;
+            bits = null;
+        }
+    }
+
+    // Constructor
+    public UserSearchIndex() {
+        this.entries = new ConcurrentHashMap<>();
+        this.byUsername = new ConcurrentSkipListSet<>();
+        this.byName = new ConcurrentSkipListSet<>();
+        this.byNameWord = new ConcurrentSkipListSet<>();
+        this.byEmail = new ConcurrentSkipListSet<>();
+        this.byTrigram = new ConcurrentHashMap<>();
+        this.tombstones = new ConcurrentLinkedQueue<>();
+        this.tombstoneCount = new AtomicInteger();
+        this.locks = new Object[64];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Index a user, replacing its previous entry.
+     *
+     * @param user The user to index
+     */
+    public void put(User user) {
+        synchronized (lock(user.getId())) {
+            Entry entry = new Entry(user);
+            Entry old = entries.put(entry.id, entry);
+            addKeys(entry);
+            if (old != null) {
+                removeKeys(old, entry);
+            }
+        }
+    }
+
+    /**
+     * Index a user unless it already has an entry.
+     *
+     * @param user The user to index
+     */
+    public void putIfAbsent(User user) {
+        synchronized (lock(user.getId())) {
+            if (!entries.containsKey(user.getId())) {
+                put(user);
+            }
+        }
+    }
+
+    /**
+     * Drop a user from the indexes.
+     *
+     * @param id The id of the user
+     */
+    public void remove(long id) {
+        synchronized (lock(id)) {
+            Entry old = entries.remove(id);
+            if (old != null) {
+                removeKeys(old, null);
+            }
+        }
+    }
+
+    /**
+     * Drop a user from the searches at once and leave its keys for {@link #compact(int)}. Searches already skip
+     * keys without an entry, so this is a single map removal however many keys the user had.
+     *
+     * @param id The id of the user
+     */
+    public void tombstone(long id) {
+        synchronized (lock(id)) {
+            Entry old = entries.remove(id);
+            if (old != null) {
+                tombstones.add(old);
+                tombstoneCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Remove the keys of up to a number of tombstoned users. Each user is cleaned under its own lock, so
+     * searches and changes to other users carry on in between.
+     *
+     * @param max The most users to clean
+     * @return The number of users cleaned
+     */
+    public int compact(int max) {
+        int cleaned = 0;
+        Entry dead;
+        while (cleaned < max && (dead = tombstones.poll()) != null) {
+            synchronized (lock(dead.id)) {
+                removeKeys(dead, entries.get(dead.id)); // Keeps the keys of an entry put back meanwhile
+            }
+            tombstoneCount.decrementAndGet();
+            cleaned++;
+        }
+        return cleaned;
+    }
+
+    public int size() {
+        return entries.size(); // Returns the number of indexed users
+    }
+
+    public int getTombstoneCount() {
+        return tombstoneCount.get(); // Returns the number of removed users whose keys are not cleaned yet
+    }
+
+    /**
+     * Find the users matching a query.
+     *
+     * @param query The query
+     * @return The ids of the matching users in the requested order, at most the query's limit
+     */
+    public List<Long> search(UserQuery query) {
+        return search(query, null);
+    }
+
+    /**
+     * Find the users matching a query among a narrower set of users, such as those a {@link RoleIndex}
+     * gives for the query's role.
+     *
+     * @param query The query
+     * @param ids The ids of the users to consider, or null for every user
+     * @return The ids of the matching users in the requested order, at most the query's limit
+     */
+    public List<Long> search(UserQuery query, Collection<Long> ids) {
+        String text = query.getText() == null ? "" : fold(query.getText().trim());
+        if (text.isEmpty() && ids == null && query.getSortKey() != UserQuery.SortKey.ID) {
+            return walk(sorted(query.getSortKey()), query); // Already in order, stop at the limit
+        }
+
+        Collection<Long> candidates;
+        boolean verify = false; // Whether candidates may not contain the text
+        if (text.isEmpty()) {
+            candidates = ids == null ? entries.keySet() : ids;
+        } else if (query.getMatchMode() == UserQuery.MatchMode.PREFIX) {
+            candidates = prefixCandidates(text);
+        } else {
+            candidates = containsCandidates(text);
+            verify = true;
+        }
+
+        Comparator<Entry> order = comparator(query.getSortKey());
+        if (!query.isDescending()) {
+            order = order.reversed(); // The heap keeps the worst result on top
+        }
+        PriorityQueue<Entry> best = new PriorityQueue<>(order);
+        for (Long id : candidates) {
+            Entry entry = entries.get(id);
+            if (entry == null || !matchesFilters(entry, query) || (verify && !entry.contains(text))) {
+                continue;
+            }
+            best.add(entry);
+            if (best.size() > query.getLimit()) {
+                best.poll();
+            }
+        }
+        Long[] found = new Long[best.size()];
+        for (int i = found.length - 1; i >= 0; i--) {
+            found[i] = best.poll().id;
+        }
+        return Arrays.asList(found);
+    }
+
+    /**
+     * Collect the matching users from a sorted key set in order until the limit is reached.
+     */
+    private List<Long> walk(NavigableSet<String> keys, UserQuery query) {
+        List<Long> ids = new ArrayList<>();
+        for (String key : query.isDescending() ? keys.descendingSet() : keys) {
+            Entry entry = entries.get(idOf(key));
+            if (entry != null && matchesFilters(entry, query)) {
+                ids.add(entry.id);
+                if (ids.size() == query.getLimit()) {
+                    break;
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Collect the users whose username, email, name or any name word starts with the text.
+     */
+    private Set<Long> prefixCandidates(String text) {
+        Set<Long> ids = new HashSet<>();
+        for (NavigableSet<String> keys : List.of(byUsername, byEmail, byName, byNameWord)) {
+            for (String key : keys.subSet(text, true, text + LAST, true)) {
+                ids.add(idOf(key));
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Collect the users that may contain the text: those under the rarest trigram of the text, or every
+     * user if the text is too short to have one.
+     */
+    private Collection<Long> containsCandidates(String text) {
+        if (text.length() < GRAM) {
+            return entries.keySet();
+        }
+        Posting rarest = null;
+        int rarestSize = 0;
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            Posting ids = byTrigram.get(text.substring(i, i + GRAM));
+            int size = ids == null ? 0 : ids.size();
+            if (size == 0) {
+                return List.of(); // No user contains this part of the text
+            }
+            if (rarest == null || size < rarestSize) {
+                rarest = ids;
+                rarestSize = size;
+            }
+        }
+        return rarest.copy();
+    }
+
+    private static boolean matchesFilters(Entry entry, UserQuery query) {
+        return (query.getRole() == null || (entry.roleBits & query.getRole().bit()) != 0)
+                && (query.getSetupComplete() == null || entry.setupComplete == query.getSetupComplete());
+    }
+
+    private NavigableSet<String> sorted(UserQuery.SortKey sortKey) {
+        switch (sortKey) {
+        case NAME:
+            return byName;
+        case EMAIL:
+            return byEmail;
+        default:
+            return byUsername;
+        }
+    }
+
+    private static Comparator<Entry> comparator(UserQuery.SortKey sortKey) {
+        Comparator<Entry> byId = Comparator.comparingLong(entry -> entry.id);
+        switch (sortKey) {
+        case USERNAME:
+            return Comparator.<Entry, String>comparing(entry -> entry.username).thenComparing(byId);
+        case NAME:
+            return Comparator.<Entry, String>comparing(entry -> entry.name).thenComparing(byId);
+        case EMAIL:
+            return Comparator.<Entry, String>comparing(entry -> entry.email).thenComparing(byId);
+        default:
+            return byId;
+        }
+    }
+
+    private void addKeys(Entry entry) {
+        byUsername.add(key(entry.username, entry.id));
+        byName.add(key(entry.name, entry.id));
+        byEmail.add(key(entry.email, entry.id));
+        for (String word : entry.nameWords) {
+            byNameWord.add(key(word, entry.id));
+        }
+        for (String gram : entry.trigrams()) {
+            byTrigram.compute(gram, (k, ids) -> {
+                Posting posting = ids == null ? new Posting() : ids;
+                posting.add(entry.id);
+                return posting;
+            });
+        }
+    }
+
+    /**
+     * Remove the keys of an old entry that the entry replacing it does not share.
+     *
+     * @param old The old entry
+     * @param replacement The new entry, or null if the user was removed
+     */
+    private void removeKeys(Entry old, Entry replacement) {
+        if (replacement == null || !old.username.equals(replacement.username)) {
+            byUsername.remove(key(old.username, old.id));
+        }
+        if (replacement == null || !old.name.equals(replacement.name)) {
+            byName.remove(key(old.name, old.id));
+        }
+        if (replacement == null || !old.email.equals(replacement.email)) {
+            byEmail.remove(key(old.email, old.id));
+        }
+        for (String word : old.nameWords) {
+            if (replacement == null || !replacement.nameWords.contains(word)) {
+                byNameWord.remove(key(word, old.id));
+            }
+        }
+        Set<String> kept = replacement == null ? Set.of() : replacement.trigrams();
+        for (String gram : old.trigrams()) {
+            if (!kept.contains(gram)) {
+                byTrigram.computeIfPresent(gram, (k, ids) -> ids.remove(old.id) ? null : ids);
+            }
+        }
+    }
+
+    private Object lock(long id) {
+        return locks[(int) (id & (locks.length - 1))];
+    }
+
+    private static String key(String value, long id) {
+        String hex = Long.toHexString(id);
+        return value + SEPARATOR + "0000000000000000".substring(hex.length()) + hex;
+    }
+
+    private static long idOf(String key) {
+        return Long.parseUnsignedLong(key.substring(key.lastIndexOf(SEPARATOR) + 1), 16);
+    }
+
+    private static void addTrigrams(Set<String> grams, String value) {
+        for (int i = 0; i + GRAM <= value.length(); i++) {
+            grams.add(value.substring(i, i + GRAM));
+        }
+    }
+
+    private static String fold(String value) {
+        return value == null ? "" : value.toLowerCase(Locale.ROOT);
+    }
+}
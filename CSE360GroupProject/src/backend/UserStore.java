@@ -0,0 +1,621 @@
+package backend;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <p> Title: UserStore Class. </p>
+ *
+ * <p> Description: Holds the registered users in registration order together with hash indexes on the
+ * exact username and the case-folded email, so that logins and lookups do not have to scan every account.
+ * The indexes are kept in sync by {@link #add(User)}, {@link #remove(User)} and {@link #updateEmail(User, String)}. </p>
+ *
+ * <p> Usernames and emails are unique. {@link #add(User)} refuses a username that is taken and
+ * {@link #updateEmail(User, String)} refuses an email another user has, so every user stays reachable through
+ * the indexes. Users restored from older data that share a key are all kept, and the first one restored owns
+ * the index entry, which matches the first-match behaviour of the old linear scans. </p>
+ *
+ * <p> A {@link UserSearchIndex} over every user answers directory searches and a {@link RoleIndex} lists the
+ * users holding a role. Changes to a user's name, roles or setup state must be reported with
+ * {@link #reindex(User)}. Removal only tombstones a user's search keys; {@link #compact(int)} cleans them up
+ * later, so deleting many users does not pay for every key of every user up front. </p>
+ *
+ * <p> The store is safe for concurrent use. The users themselves are held in a {@link VersionedUserList} that
+ * writers replace with a compare-and-set, so listing every user grabs the current version in constant time and
+ * never holds up a change; the indexes are concurrent maps, so lookups never lock.
+ * {@link #updateEmail(User, String)} must be called while holding the user's monitor. </p>
+ *
+ * <p> After a restart the users can stay in a {@link MappedUserSnapshot} instead of being loaded up front.
+ * A lookup that misses the in-memory indexes probes the snapshot and loads just the user it finds, so start-up
+ * cost no longer grows with the number of accounts. Listing all users loads every remaining record. </p>
+ *
+ * @author Zeel Tejashkumar Shah
+ *
+ * @version 1.0	2024-10-14	Initial implementation
+ */
+
+public class UserStore {
+    private AtomicReference<VersionedUserList> users; // Current version of the users by id, which is registration order
+    private Map<String, User> usersByUsername; // Primary index on the exact username
+    private Map<String, User> usersByEmail; // Secondary index on the case-folded email
+    private AtomicLong nextId; // Id handed to the next registered user
+    private AtomicInteger count; // Number of registered users, including those still only in the snapshot
+    private final Object addLock = new Object(); // Makes claiming a username and counting the user one step
+    private volatile MappedUserSnapshot snapshot; // Users not loaded yet, null once all are in memory
+    private Set<Long> consumedIds; // Snapshot users that were loaded, replaced or deleted
+    private Object[] loadLocks; // Striped locks so a snapshot user is loaded only once
+    private UserSearchIndex searchIndex; // Prefix, substring and sorted indexes for searches
+    private RoleIndex roleIndex; // Users holding each role
+    private volatile boolean snapshotIndexed; // Whether users still in the snapshot were added to the search and role indexes
+
+    // Constructor
+    public UserStore() {
+        this.users = new AtomicReference<>(VersionedUserList.empty());
+        this.usersByUsername = new ConcurrentHashMap<>();
+        this.usersByEmail = new ConcurrentHashMap<>();
+        this.nextId = new AtomicLong(1);
+        this.count = new AtomicInteger();
+        this.consumedIds = ConcurrentHashMap.newKeySet();
+        this.loadLocks = new Object[64];
+        for (int i = 0; i < loadLocks.length; i++) {
+            loadLocks[i] = new Object();
+        }
+        this.searchIndex = new UserSearchIndex();
+        this.roleIndex = new RoleIndex();
+    }
+
+    /**
+     * Serve the users of a snapshot, loading each one on first use. Must be called before any user is added.
+     *
+     * @param snapshot The mapped snapshot
+     * @param skippedIds Ids of snapshot users that were since replaced or deleted and must not be served
+     */
+    public void attachSnapshot(MappedUserSnapshot snapshot, Set<Long> skippedIds) {
+        consumedIds.addAll(skippedIds);
+        count.addAndGet(snapshot.getUserCount() - skippedIds.size());
+        nextId.accumulateAndGet(snapshot.getMaxUserId() + 1, Math::max);
+        this.snapshot = snapshot.getUserCount() == 0 ? null : snapshot;
+    }
+
+    /**
+     * Add a user and index its username and email, unless the username is taken. The check and the insert are
+     * atomic with respect to concurrent calls.
+     *
+     * @param user The user to add
+     * @return true if the user was added, false if another user has the username
+     */
+    public boolean add(User user) {
+        synchronized (addLock) {
+            if (!claim(user)) {
+                return false;
+            }
+            count.incrementAndGet();
+        }
+        insert(user);
+        return true;
+    }
+
+    /**
+     * Add a user only if no user is registered yet. The check, the username claim and the insert are atomic
+     * with respect to concurrent calls to {@link #add(User)}.
+     *
+     * @param user The user to add
+     * @return true if the user was added, false if the store was not empty or the username is taken
+     */
+    public boolean addIfEmpty(User user) {
+        synchronized (addLock) {
+            if (count.get() != 0 || !claim(user)) {
+                return false;
+            }
+            count.incrementAndGet();
+        }
+        insert(user);
+        return true;
+    }
+
+    /**
+     * Take the username index entry for a user about to be added. The caller must hold the add lock.
+     *
+     * @param user The user to add
+     * @return true if the username was free and now belongs to the user
+     */
+    private boolean claim(User user) {
+        String username = user.getUsername();
+        // A snapshot user is loaded and indexed by the lookup, so the claim sees it
+        return findByUsername(username) == null && usersByUsername.putIfAbsent(username, user) == null;
+    }
+
+    /**
+     * Add a user loaded from storage, keeping the id it was stored with.
+     *
+     * @param user The stored user
+     */
+    public void restore(User user) {
+        count.incrementAndGet();
+        nextId.accumulateAndGet(user.getId() + 1, Math::max); // Never hand out a stored id again
+        index(user);
+    }
+
+    /**
+     * Check whether a user is currently registered in this store.
+     *
+     * @param user The user to check
+     * @return true if the user is registered
+     */
+    public boolean contains(User user) {
+        return users.get().findById(user.getId()) == user;
+    }
+
+    /**
+     * Remove a user and drop its index entries.
+     *
+     * @param user The user to remove
+     * @return true if the user was registered, false otherwise
+     */
+    public boolean remove(User user) {
+        synchronized (user) { // Keep a concurrent email change from re-indexing a removed user
+            if (!unpublish(user)) {
+                return false; // Not one of ours, or already removed by another thread
+            }
+            count.decrementAndGet();
+            searchIndex.tombstone(user.getId()); // Its keys are cleaned by compact()
+            roleIndex.remove(user.getId());
+            usersByUsername.remove(user.getUsername(), user);
+            String email = user.getEmail();
+            if (email != null) {
+                usersByEmail.remove(emailKey(email), user);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Clean the search keys of up to a number of removed users.
+     *
+     * @param max The most users to clean
+     * @return The number of users cleaned
+     */
+    public int compact(int max) {
+        return searchIndex.compact(max);
+    }
+
+    /**
+     * Get the number of removed users whose search keys are not cleaned yet.
+     *
+     * @return The number of tombstones
+     */
+    public int getTombstoneCount() {
+        return searchIndex.getTombstoneCount();
+    }
+
+    /**
+     * Change a user's email and move its email index entry, unless another user has the email. The caller
+     * must hold the user's monitor.
+     *
+     * @param user The user whose email changes
+     * @param email The new email, may be null
+     * @return true if the email was changed, false if another user has it
+     */
+    public boolean updateEmail(User user, String email) {
+        if (email != null) {
+            User owner = findByEmail(email); // Loads and indexes a snapshot owner, so the claim sees it
+            if (owner != null && owner != user) {
+                return false;
+            }
+            if (contains(user)) {
+                owner = usersByEmail.putIfAbsent(emailKey(email), user);
+                if (owner != null && owner != user) {
+                    return false; // Claimed by another user meanwhile
+                }
+            }
+        }
+        String previous = user.getEmail();
+        if (previous != null && (email == null || !emailKey(previous).equals(emailKey(email)))) {
+            usersByEmail.remove(emailKey(previous), user);
+        }
+        user.setEmail(email);
+        return true;
+    }
+
+    /**
+     * Update the search index after a user's name, email, roles or setup state changed. The caller must
+     * hold the user's monitor.
+     *
+     * @param user The changed user
+     */
+    public void reindex(User user) {
+        if (contains(user)) {
+            searchIndex.put(user);
+            roleIndex.put(user.getId(), user.getRoleBits());
+        }
+    }
+
+    /**
+     * Find a user by id.
+     *
+     * @param id The id to look up
+     * @return The user or null if not found
+     */
+    public User findById(long id) {
+        User user = users.get().findById(id);
+        MappedUserSnapshot current = snapshot;
+        if (user == null && current != null) {
+            user = load(current, current.findOrdinalById(id));
+        }
+        return user;
+    }
+
+    /**
+     * Search the users. The first search after a restart indexes the users still in the snapshot without
+     * loading them, afterwards searches only touch the indexes and the users they return.
+     *
+     * @param query The query
+     * @return The matching users in the requested order
+     */
+    public List<User> search(UserQuery query) {
+        indexSnapshot();
+        boolean byRole = query.getRole() != null && (query.getText() == null || query.getText().isBlank());
+        return resolve(searchIndex.search(query, byRole ? roleIndex.getIds(query.getRole()) : null));
+    }
+
+    /**
+     * Get the users holding a role.
+     *
+     * @param role The role
+     * @return The users in registration order
+     */
+    public List<User> withRole(Role role) {
+        indexSnapshot();
+        List<Long> ids = new ArrayList<>(roleIndex.getIds(role));
+        Collections.sort(ids);
+        return resolve(ids);
+    }
+
+    /**
+     * Count the users holding a role.
+     *
+     * @param role The role
+     * @return The number of users
+     */
+    public int countWithRole(Role role) {
+        indexSnapshot();
+        return roleIndex.count(role);
+    }
+
+    /**
+     * Find a user by exact username.
+     *
+     * @param username The username to look up
+     * @return The user or null if not found
+     */
+    public User findByUsername(String username) {
+        if (username == null) {
+            return null;
+        }
+        User user = usersByUsername.get(username);
+        MappedUserSnapshot current = snapshot;
+        if (current != null && (user == null || user.getId() > current.getMaxUserId())) {
+            // A snapshot user registered earlier owns the username even if it is not loaded yet
+            User stored = load(current, current.findByUsername(username));
+            if (stored != null) {
+                return stored;
+            }
+        }
+        return user;
+    }
+
+    /**
+     * Find a user by email, ignoring case.
+     *
+     * @param email The email to look up
+     * @return The user or null if not found
+     */
+    public User findByEmail(String email) {
+        if (email == null) {
+            return null;
+        }
+        String key = emailKey(email);
+        User user = usersByEmail.get(key);
+        MappedUserSnapshot current = snapshot;
+        if (current != null && (user == null || user.getId() > current.getMaxUserId())) {
+            User stored = load(current, current.findByEmail(key));
+            if (stored != null && stored.getEmail() != null && emailKey(stored.getEmail()).equals(key)) {
+                return stored; // Only if the loaded user has not changed its email since the snapshot
+            }
+        }
+        return user;
+    }
+
+    /**
+     * Check whether no users are registered.
+     *
+     * @return true if the store is empty
+     */
+    public boolean isEmpty() {
+        return count.get() == 0;
+    }
+
+    /**
+     * Get the number of registered users.
+     *
+     * @return The user count
+     */
+    public int size() {
+        return count.get();
+    }
+
+    /**
+     * Get all users in registration order as an immutable version that later changes do not affect. Once the
+     * snapshot has been loaded this takes constant time, however many users there are.
+     *
+     * @return The current version of the user list
+     */
+    public VersionedUserList getAll() {
+        loadAll();
+        return users.get();
+    }
+
+    /**
+     * Get the users registered after a cursor, in registration order. Only the users on the page are
+     * loaded from the snapshot.
+     *
+     * @param afterId The id of the last user already seen, 0 to start at the beginning
+     * @param limit The maximum number of users to return
+     * @return Up to limit users with ids greater than afterId
+     */
+    public List<User> page(long afterId, int limit) {
+        List<User> page = new ArrayList<>(Math.min(limit, 1024));
+        MappedUserSnapshot current = snapshot;
+        int snapshotCount = current == null ? 0 : current.getUserCount();
+        int ordinal = current == null ? 0 : current.firstOrdinalAfter(afterId);
+        Iterator<User> heap = users.get().iteratorAfter(afterId);
+        User nextHeap = heap.hasNext() ? heap.next() : null;
+        long lastId = afterId;
+        while (page.size() < limit) {
+            long snapshotId = ordinal < snapshotCount ? current.idAt(ordinal) : Long.MAX_VALUE;
+            User next;
+            if (nextHeap != null && nextHeap.getId() <= snapshotId) {
+                next = nextHeap;
+                nextHeap = heap.hasNext() ? heap.next() : null;
+            } else if (snapshotId != Long.MAX_VALUE) {
+                next = load(current, ordinal++); // Null if the user was deleted
+            } else {
+                break;
+            }
+            if (next != null && next.getId() > lastId) { // A user loaded meanwhile can show up twice
+                page.add(next);
+                lastId = next.getId();
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Move a cursor forward past a number of users without loading them.
+     *
+     * @param afterId The cursor to start from
+     * @param count The number of users to skip
+     * @return The id of the last user skipped, which is the cursor for the users after it
+     */
+    public long skip(long afterId, int count) {
+        MappedUserSnapshot current = snapshot;
+        int snapshotCount = current == null ? 0 : current.getUserCount();
+        int ordinal = current == null ? 0 : current.firstOrdinalAfter(afterId);
+        Iterator<User> heap = users.get().iteratorAfter(afterId);
+        long nextHeap = heap.hasNext() ? heap.next().getId() : Long.MAX_VALUE;
+        long lastId = afterId;
+        for (int skipped = 0; skipped < count; ) {
+            long snapshotId = ordinal < snapshotCount ? current.idAt(ordinal) : Long.MAX_VALUE;
+            long next;
+            if (nextHeap != Long.MAX_VALUE && nextHeap <= snapshotId) {
+                next = nextHeap;
+                nextHeap = heap.hasNext() ? heap.next().getId() : Long.MAX_VALUE;
+            } else if (snapshotId != Long.MAX_VALUE) {
+                ordinal++;
+                if (consumedIds.contains(snapshotId) && users.get().findById(snapshotId) == null) {
+                    continue; // Deleted
+                }
+                next = snapshotId;
+            } else {
+                break;
+            }
+            if (next > lastId) {
+                lastId = next;
+                skipped++;
+            }
+        }
+        return lastId;
+    }
+
+    /**
+     * Get the users already in memory, in registration order, without loading the snapshot.
+     *
+     * @return The current version of the loaded users
+     */
+    public VersionedUserList getLoaded() {
+        return users.get();
+    }
+
+    /**
+     * Get the version number of the users in memory, which changes whenever a user is added, loaded or removed.
+     *
+     * @return The current version number
+     */
+    public long getVersion() {
+        return users.get().getVersion();
+    }
+
+    /**
+     * Get the snapshot users are still being loaded from.
+     *
+     * @return The snapshot, or null if every user is in memory
+     */
+    public MappedUserSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Get the ids of snapshot users that must not be read from the snapshot any more.
+     *
+     * @return A copy of the ids
+     */
+    public Set<Long> getConsumedIds() {
+        return new HashSet<>(consumedIds);
+    }
+
+    /**
+     * Look up users by id, leaving out those deleted meanwhile.
+     *
+     * @param ids The ids
+     * @return The users in the order of the ids
+     */
+    private List<User> resolve(List<Long> ids) {
+        List<User> found = new ArrayList<>(ids.size());
+        for (long id : ids) {
+            User user = findById(id);
+            if (user != null) {
+                found.add(user);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Add the users that are still only in the snapshot to the search and role indexes, once.
+     */
+    private void indexSnapshot() {
+        MappedUserSnapshot current = snapshot;
+        if (current == null || snapshotIndexed) {
+            return;
+        }
+        synchronized (searchIndex) {
+            if (snapshotIndexed) {
+                return;
+            }
+            for (int ordinal = 0; ordinal < current.getUserCount(); ordinal++) {
+                long id = current.idAt(ordinal);
+                if (consumedIds.contains(id)) {
+                    continue; // Loaded users index themselves
+                }
+                User stored = current.readUser(ordinal); // Short-lived, only the index entries are kept
+                searchIndex.putIfAbsent(stored);
+                roleIndex.put(id, stored.getRoleBits());
+                User loaded = users.get().findById(id);
+                if (loaded != null) {
+                    synchronized (loaded) { // Loaded meanwhile, its roles may have changed since the snapshot
+                        if (contains(loaded)) {
+                            roleIndex.put(id, loaded.getRoleBits());
+                        }
+                    }
+                }
+                if (consumedIds.contains(id) && users.get().findById(id) == null) {
+                    searchIndex.tombstone(id); // Deleted while it was being read
+                    roleIndex.remove(id);
+                }
+            }
+            snapshotIndexed = true;
+        }
+    }
+
+    /**
+     * Load every snapshot user that is still only on disk, then drop the snapshot.
+     */
+    private void loadAll() {
+        MappedUserSnapshot current = snapshot;
+        if (current == null) {
+            return;
+        }
+        for (int ordinal = 0; ordinal < current.getUserCount(); ordinal++) {
+            load(current, ordinal);
+        }
+        snapshot = null; // Everything is in memory now
+    }
+
+    /**
+     * Load a snapshot user into memory unless it was already loaded, replaced or deleted.
+     *
+     * @param current The snapshot
+     * @param ordinal The record number, or -1
+     * @return The user in memory, or null if the record is not served any more
+     */
+    private User load(MappedUserSnapshot current, int ordinal) {
+        if (ordinal < 0) {
+            return null;
+        }
+        long id = current.idAt(ordinal);
+        User user = users.get().findById(id);
+        if (user != null) {
+            return user; // Already loaded
+        }
+        synchronized (loadLocks[(int) (id & (loadLocks.length - 1))]) {
+            user = users.get().findById(id);
+            if (user != null) {
+                return user; // Loaded by another thread while we waited
+            }
+            if (consumedIds.contains(id)) {
+                return null; // Deleted, or replaced by a user that has been deleted since
+            }
+            user = current.readUser(ordinal);
+            consumedIds.add(id);
+            index(user);
+            return user;
+        }
+    }
+
+    /**
+     * Assign the user an id and index it.
+     *
+     * @param user The user to insert
+     */
+    private void insert(User user) {
+        user.setId(nextId.getAndIncrement());
+        index(user);
+    }
+
+    /**
+     * Index a user under its id, username and email.
+     *
+     * @param user The user to index
+     */
+    private void index(User user) {
+        searchIndex.put(user); // Indexed before it can be found, so a change can only come after
+        roleIndex.put(user.getId(), user.getRoleBits());
+        users.updateAndGet(current -> current.with(user)); // Publish a new version, readers keep theirs
+        usersByUsername.putIfAbsent(user.getUsername(), user);
+        String email = user.getEmail();
+        if (email != null) {
+            usersByEmail.putIfAbsent(emailKey(email), user);
+        }
+    }
+
+    /**
+     * Publish a version without the user, unless another user has taken its place or it is already gone.
+     *
+     * @param user The user to drop
+     * @return true if this call dropped the user
+     */
+    private boolean unpublish(User user) {
+        while (true) {
+            VersionedUserList current = users.get();
+            if (current.findById(user.getId()) != user) {
+                return false;
+            }
+            if (users.compareAndSet(current, current.without(user.getId()))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Normalize an email to its index key.
+     *
+     * @param email The email to normalize
+     * @return The case-folded email
+     */
+    static String emailKey(String email) {
+        return email.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,159 @@
+package backend;
+
+import java.util.*;
+
+/**
+ * <p> Title: UserTable Class. </p>
+ *
+ * <p> Description: A compact, read-only copy of a list of users stored column by column in parallel arrays
+ * instead of one object per user. Names and email domains are dictionary encoded: each distinct value is
+ * stored once and rows hold its int code, so an email is kept as its local part plus the code of a domain
+ * shared by every account at that domain. Roles and the setup flag are packed into one byte per row. </p>
+ *
+ * <p> The table suits large read-mostly uses such as exports, reports or an archive of a roster, where a
+ * {@link User} per account is not needed. {@link #toUser(int)} materializes a row when one is. </p>
+ *
+ * @author Zeel Tejashkumar Shah
+ *
+ * @version 1.0	2024-10-17	Initial implementation
+ */
+
+public class UserTable {
+    private static final int SETUP_COMPLETE = 0x80; // Flag bit above the role bits
+
+    private int size; // Number of rows
+    private long[] ids; // Id of each row
+    private String[] usernames; // Username of each row
+    private String[] passwords; // Password hash of each row
+    private int[] firstNames; // Dictionary code of each first name, -1 for null
+    private int[] middleNames; // Dictionary code of each middle name, -1 for null
+    private int[] lastNames; // Dictionary code of each last name, -1 for null
+    private int[] preferredNames; // Dictionary code of each preferred name, -1 for null
+    private String[] emailLocals; // Email up to the last '@', or the whole email if it has none
+    private int[] emailDomains; // Dictionary code of the email from the last '@' on, -1 for none
+    private byte[] flags; // Role bits and the setup complete flag
+    private String[] dictionary; // Distinct names and domains by code
+
+    private UserTable(int capacity) {
+        this.ids = new long[capacity];
+        this.usernames = new String[capacity];
+        this.passwords = new String[capacity];
+        this.firstNames = new int[capacity];
+        this.middleNames = new int[capacity];
+        this.lastNames = new int[capacity];
+        this.preferredNames = new int[capacity];
+        this.emailLocals = new String[capacity];
+        this.emailDomains = new int[capacity];
+        this.flags = new byte[capacity];
+    }
+
+    /**
+     * Build a table holding the current state of the given users.
+     *
+     * @param users The users, in the order the rows should have
+     * @return The table
+     */
+    public static UserTable of(Collection<User> users) {
+        UserTable table = new UserTable(users.size());
+        Map<String, Integer> codes = new HashMap<>();
+        List<String> dictionary = new ArrayList<>();
+        for (User user : users) {
+            int row = table.size++;
+            table.ids[row] = user.getId();
+            table.usernames[row] = user.getUsername();
+            table.passwords[row] = user.getPassword();
+            table.firstNames[row] = encode(user.getFirstName(), codes, dictionary);
+            table.middleNames[row] = encode(user.getMiddleName(), codes, dictionary);
+            table.lastNames[row] = encode(user.getLastName(), codes, dictionary);
+            table.preferredNames[row] = encode(user.getPreferredName(), codes, dictionary);
+            String email = user.getEmail();
+            int at = email == null ? -1 : email.lastIndexOf('@');
+            table.emailLocals[row] = at < 0 ? email : email.substring(0, at);
+            table.emailDomains[row] = at < 0 ? -1 : encode(email.substring(at), codes, dictionary);
+            table.flags[row] = (byte) (user.getRoleBits() | (user.isSetupComplete() ? SETUP_COMPLETE : 0));
+        }
+        table.dictionary = dictionary.toArray(new String[0]);
+        return table;
+    }
+
+    public int size() {
+        return size; // Returns the number of rows
+    }
+
+    public int getDictionarySize() {
+        return dictionary.length; // Returns the number of distinct names and domains
+    }
+
+    public long getId(int row) {
+        return ids[row]; // Returns the id of a row
+    }
+
+    public String getUsername(int row) {
+        return usernames[row]; // Returns the username of a row
+    }
+
+    public String getPassword(int row) {
+        return passwords[row]; // Returns the password hash of a row
+    }
+
+    public String getFirstName(int row) {
+        return decode(firstNames[row]); // Returns the first name of a row
+    }
+
+    public String getMiddleName(int row) {
+        return decode(middleNames[row]); // Returns the middle name of a row
+    }
+
+    public String getLastName(int row) {
+        return decode(lastNames[row]); // Returns the last name of a row
+    }
+
+    public String getPreferredName(int row) {
+        return decode(preferredNames[row]); // Returns the preferred name of a row
+    }
+
+    public String getEmail(int row) {
+        int domain = emailDomains[row];
+        return domain < 0 ? emailLocals[row] : emailLocals[row] + dictionary[domain]; // Returns the email of a row
+    }
+
+    public Set<Role> getRoles(int row) {
+        return Role.fromBits(flags[row]); // Returns the roles of a row
+    }
+
+    public boolean isSetupComplete(int row) {
+        return (flags[row] & SETUP_COMPLETE) != 0; // Returns whether a row's setup is complete
+    }
+
+    /**
+     * Create a user holding the values of a row.
+     *
+     * @param row The row
+     * @return A new user, not registered with any store
+     */
+    public User toUser(int row) {
+        User user = new User(usernames[row], passwords[row], getRoles(row));
+        user.setId(ids[row]);
+        user.setFirstName(getFirstName(row));
+        user.setMiddleName(getMiddleName(row));
+        user.setLastName(getLastName(row));
+        user.setPreferredName(getPreferredName(row));
+        user.setEmail(getEmail(row));
+        user.setSetupComplete(isSetupComplete(row));
+        return user;
+    }
+
+    private static int encode(String value, Map<String, Integer> codes, List<String> dictionary) {
+        if (value == null) {
+            return -1;
+        }
+        return codes.computeIfAbsent(value, key -> {
+            dictionary.add(key);
+            return dictionary.size() - 1;
+        });
+    }
+
+    private String decode(int code) {
+        return code < 0 ? null : dictionary[code];
+    }
+}
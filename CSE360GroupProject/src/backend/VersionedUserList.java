@@ -0,0 +1,257 @@
+package backend;
+
+import java.util.*;
+
+/**
+ * <p> Title: VersionedUserList Class. </p>
+ *
+ * <p> Description: An immutable list of users in id order, kept as a persistent balanced search tree. A change
+ * never touches the existing list; {@link #with(User)} and {@link #without(long)} return a new list with the next
+ * version number that shares every node off the changed path, so a change costs O(log n) time and memory while
+ * every list handed out earlier stays exactly as it was. </p>
+ *
+ * <p> A writer publishes a new version by swapping a single reference, so a reader obtains a consistent view of
+ * all users in constant time and can walk it at leisure, for a listing or an export, without holding up any
+ * change and without ever seeing one half done. Lookups by id and by position take O(log n). </p>
+ *
+ * <p> Only the membership of the list is frozen. The {@link User} objects are shared with the live store, so
+ * a user's fields show its current state. </p>
+ *
+ * @author Zeel Tejashkumar Shah
+ *
+ * @version 1.0	2024-10-17	Initial implementation
+ */
+
+public final class VersionedUserList extends AbstractList<User> {
+    private static final VersionedUserList EMPTY = new VersionedUserList(null, 0);
+
+    private final Node root; // Root of the tree, null when empty
+    private final long version; // Number of changes since the empty list
+
+    private VersionedUserList(Node root, long version) {
+        this.root = root;
+        this.version = version;
+    }
+
+    /**
+     * Get the empty list, version 0.
+     *
+     * @return The empty list
+     */
+    public static VersionedUserList empty() {
+        return EMPTY;
+    }
+
+    public long getVersion() {
+        return version; // Returns the number of changes that led to this list
+    }
+
+    @Override
+    public int size() {
+        return size(root);
+    }
+
+    @Override
+    public User get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size());
+        }
+        Node node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index > leftSize) {
+                index -= leftSize + 1;
+                node = node.right;
+            } else {
+                return node.user;
+            }
+        }
+    }
+
+    /**
+     * Find a user by id.
+     *
+     * @param id The id to look up
+     * @return The user or null if the list does not hold the id
+     */
+    public User findById(long id) {
+        Node node = root;
+        while (node != null) {
+            if (id < node.id) {
+                node = node.left;
+            } else if (id > node.id) {
+                node = node.right;
+            } else {
+                return node.user;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get a list that also holds the user, replacing any user with the same id.
+     *
+     * @param user The user to add
+     * @return The next version of the list
+     */
+    public VersionedUserList with(User user) {
+        return new VersionedUserList(insert(root, user), version + 1);
+    }
+
+    /**
+     * Get a list without the user with the given id.
+     *
+     * @param id The id of the user to drop
+     * @return The next version of the list, or this list if it does not hold the id
+     */
+    public VersionedUserList without(long id) {
+        Node changed = delete(root, id);
+        return changed == root ? this : new VersionedUserList(changed, version + 1);
+    }
+
+    @Override
+    public Iterator<User> iterator() {
+        return iteratorAfter(Long.MIN_VALUE);
+    }
+
+    /**
+     * Iterate over the users with ids greater than the given one, in id order, without visiting the others.
+     *
+     * @param afterId The id to start after
+     * @return An iterator over the users after that id
+     */
+    public Iterator<User> iteratorAfter(long afterId) {
+        return new TreeIterator(root, afterId);
+    }
+
+    // ========== Tree Operations ========== //
+
+    private static Node insert(Node node, User user) {
+        if (node == null) {
+            return new Node(user, null, null);
+        }
+        long id = user.getId();
+        if (id < node.id) {
+            return balance(node.user, insert(node.left, user), node.right);
+        }
+        if (id > node.id) {
+            return balance(node.user, node.left, insert(node.right, user));
+        }
+        return new Node(user, node.left, node.right); // Same id, replace the user
+    }
+
+    private static Node delete(Node node, long id) {
+        if (node == null) {
+            return null;
+        }
+        if (id < node.id) {
+            Node left = delete(node.left, id);
+            return left == node.left ? node : balance(node.user, left, node.right);
+        }
+        if (id > node.id) {
+            Node right = delete(node.right, id);
+            return right == node.right ? node : balance(node.user, node.left, right);
+        }
+        if (node.left == null) {
+            return node.right;
+        }
+        if (node.right == null) {
+            return node.left;
+        }
+        Node successor = node.right;
+        while (successor.left != null) {
+            successor = successor.left;
+        }
+        return balance(successor.user, node.left, delete(node.right, successor.id));
+    }
+
+    /**
+     * Build a node from two subtrees whose heights differ by at most two, rotating it back into AVL balance.
+     */
+    private static Node balance(User user, Node left, Node right) {
+        int leftHeight = height(left);
+        int rightHeight = height(right);
+        if (leftHeight > rightHeight + 1) {
+            if (height(left.left) >= height(left.right)) {
+                return new Node(left.user, left.left, new Node(user, left.right, right));
+            }
+            Node pivot = left.right;
+            return new Node(pivot.user, new Node(left.user, left.left, pivot.left), new Node(user, pivot.right, right));
+        }
+        if (rightHeight > leftHeight + 1) {
+            if (height(right.right) >= height(right.left)) {
+                return new Node(right.user, new Node(user, left, right.left), right.right);
+            }
+            Node pivot = right.left;
+            return new Node(pivot.user, new Node(user, left, pivot.left), new Node(right.user, pivot.right, right.right));
+        }
+        return new Node(user, left, right);
+    }
+
+    private static int height(Node node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    /**
+     * An immutable tree node, which also counts the users below it so positions can be found in O(log n).
+     */
+    private static final class Node {
+        final User user;
+        final long id; // Copied from the user, ids never change once assigned
+        final Node left;
+        final Node right;
+        final int height;
+        final int size;
+
+        Node(User user, Node left, Node right) {
+            this.user = user;
+            this.id = user.getId();
+            this.left = left;
+            this.right = right;
+            this.height = Math.max(height(left), height(right)) + 1;
+            this.size = size(left) + size(right) + 1;
+        }
+    }
+
+    /**
+     * In-order walk that keeps the path still to visit on a stack, so each step takes constant amortized time.
+     */
+    private static final class TreeIterator implements Iterator<User> {
+        private final ArrayDeque<Node> path = new ArrayDeque<>();
+
+        TreeIterator(Node root, long afterId) {
+            Node node = root;
+            while (node != null) {
+                if (node.id > afterId) {
+                    path.push(node);
+                    node = node.left;
+                } else {
+                    node = node.right;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !path.isEmpty();
+        }
+
+        @Override
+        public User next() {
+            if (path.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            Node node = path.pop();
+            for (Node child = node.right; child != null; child = child.left) {
+                path.push(child);
+            }
+            return node.user;
+        }
+    }
+}
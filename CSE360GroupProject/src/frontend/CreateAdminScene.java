@@ -3,6 +3,7 @@ package frontend;
 import backend.*;
 import frontend.LoginScene.LoginScene;
 import javafx.animation.PauseTransition;
+import javafx.application.Platform;
 import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
@@ -24,6 +25,7 @@ import javafx.util.Duration;
 
 public class CreateAdminScene {
     private AuthManager authManager; // Manages user authentication
+    private AsyncAuthManager asyncAuthManager; // Creates the admin off the JavaFX thread
     private Stage primaryStage; // Main application stage
 
     /**
@@ -34,6 +36,7 @@ public class CreateAdminScene {
      */
     public CreateAdminScene(Stage primaryStage, AuthManager authManager) {
         this.authManager = authManager;
+        this.asyncAuthManager = new AsyncAuthManager(authManager, Platform::runLater);
         this.primaryStage = primaryStage;
     }
 
@@ -100,19 +103,23 @@ public class CreateAdminScene {
             return; // Exit the method if passwords do not match
         }
 
-        // Proceed to create the first user as an admin
-        User admin = authManager.createFirstUser(username, password);
-
-        if (admin != null) {
-            // Display confirmation message on the screen
-            Label confirmationLabel = new Label("Admin account created successfully. Please log in.");
-            adminVBox.getChildren().add(confirmationLabel);
-
-            // Pause for a few seconds before redirecting
-            PauseTransition pause = new PauseTransition(Duration.seconds(1));
-            pause.setOnFinished(event -> redirectToLogin(adminVBox));
-            pause.play();
-        }
+        // Proceed to create the first user as an admin, keeping the form disabled meanwhile
+        adminVBox.setDisable(true);
+        asyncAuthManager.createFirstUserAsync(username, password).whenComplete((admin, error) -> {
+            adminVBox.setDisable(false);
+            if (error != null) {
+                showError("Error: Admin account could not be created. Please try again.", adminVBox);
+            } else if (admin != null) {
+                // Display confirmation message on the screen
+                Label confirmationLabel = new Label("Admin account created successfully. Please log in.");
+                adminVBox.getChildren().add(confirmationLabel);
+
+                // Pause for a few seconds before redirecting
+                PauseTransition pause = new PauseTransition(Duration.seconds(1));
+                pause.setOnFinished(event -> redirectToLogin(adminVBox));
+                pause.play();
+            }
+        });
     }
 
     /**
@@ -133,7 +140,7 @@ public class CreateAdminScene {
         }
 
         // Switch back to the login scene
-        primaryStage.setScene(new LoginScene(primaryStage, authManager).createLoginScene());
+        new LoginScene(primaryStage, authManager).showLoginScene();
     }
 
     /**
@@ -1,8 +1,11 @@
 package frontend.HomeScene;
 
 import backend.AuthManager;
+import backend.Role;
 import frontend.HomeScene.AdminTasks.*;
 import frontend.LoginScene.LoginScene;
+import frontend.SceneNavigator;
+import frontend.SessionContext;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
@@ -16,7 +19,10 @@ import javafx.stage.Stage;
  * options for inviting users, creating password reset requests, deleting users,
  * listing users, modifying roles, and logging out. 
  * It interacts with the AuthManager for backend functionality and switches
- * between various scenes for administrative tasks. </p>
+ * between various scenes for administrative tasks. Every task first checks that the session
+ * still grants the admin role. The home scene and the task scenes are cached by the stage's
+ * {@link SceneNavigator}, so going back and forth between them reuses the controls built on the
+ * first visit and only reloads their data. </p>
  * 
  * @author Zeel Tejashkumar Shah
  * 
@@ -38,6 +44,13 @@ public class AdminHomeScene {
         this.authManager = authManager; // Store the authManager
     }
 
+    /**
+     * Shows the admin home scene, reusing the cached scene if there is one.
+     */
+    public void showAdminHomeScene() {
+        SceneNavigator.of(primaryStage).show(AdminHomeScene.class, this::createAdminHomeScene);
+    }
+
     /**
      * Creates the admin home scene with various admin task options.
      *
@@ -74,54 +87,72 @@ public class AdminHomeScene {
         		resetPasswordButton, deleteUserButton, listUsersButton, modifyRoleButton, logoutButton);
         
         primaryStage.setTitle("Home");
-        return new Scene(homeVBox, 300, 400);
+        Scene scene = new Scene(homeVBox, 300, 400);
+        SceneNavigator.setOnShow(scene, () -> primaryStage.setTitle("Home"));
+        return scene;
     }
 
     /**
      * Handles the action of inviting a user by switching to the invite user scene.
      */
     private void handleInviteUser() {
-        CreateUserInvitationScene inviteScene = new CreateUserInvitationScene(authManager, primaryStage);
-        primaryStage.setScene(inviteScene.createAdminScene()); // Switch to invite user scene
+        if (!SessionContext.require(primaryStage, authManager, Role.ADMIN)) {
+            return; // Session expired or the admin role was removed
+        }
+        SceneNavigator.of(primaryStage).show(CreateUserInvitationScene.class, // Switch to invite user scene
+                () -> new CreateUserInvitationScene(authManager, primaryStage).createAdminScene());
     }
 
     /**
      * Handles the action of creating a password reset request by switching to the reset scene.
      */
     private void handlePasswordResetRequest() {
-        CreatePasswordResetScene resetScene = new CreatePasswordResetScene(primaryStage, authManager);
-        primaryStage.setScene(resetScene.createResetRequestScene()); // Switch to reset password scene
+        if (!SessionContext.require(primaryStage, authManager, Role.ADMIN)) {
+            return; // Session expired or the admin role was removed
+        }
+        SceneNavigator.of(primaryStage).show(CreatePasswordResetScene.class, // Switch to reset password scene
+                () -> new CreatePasswordResetScene(primaryStage, authManager).createResetRequestScene());
     }
 
     /**
      * Handles the action of deleting a user by switching to the delete user scene.
      */
     private void handleDeleteUser() {
-        DeleteUserScene deleteUserScene = new DeleteUserScene(primaryStage, authManager);
-        primaryStage.setScene(deleteUserScene.createDeleteUserScene()); // Switch to delete user scene
+        if (!SessionContext.require(primaryStage, authManager, Role.ADMIN)) {
+            return; // Session expired or the admin role was removed
+        }
+        SceneNavigator.of(primaryStage).show(DeleteUserScene.class, // Switch to delete user scene
+                () -> new DeleteUserScene(primaryStage, authManager).createDeleteUserScene());
     }
 
     /**
      * Handles the action of listing users by switching to the list users scene.
      */
     private void handleListUsers() {
-        ListUsersScene listUsersScene = new ListUsersScene(primaryStage, authManager);
-        primaryStage.setScene(listUsersScene.createListUsersScene()); // Switch to list users scene
+        if (!SessionContext.require(primaryStage, authManager, Role.ADMIN)) {
+            return; // Session expired or the admin role was removed
+        }
+        SceneNavigator.of(primaryStage).show(ListUsersScene.class, // Switch to list users scene
+                () -> new ListUsersScene(primaryStage, authManager).createListUsersScene());
     }
 
     /**
      * Handles the action of modifying roles by switching to the modify role scene.
      */
     private void handleModifyRole() {
-    	ModifyRoleScene modifyRoleScene = new ModifyRoleScene(primaryStage, authManager);
-        primaryStage.setScene(modifyRoleScene.createModifyRoleScene()); // Switch to modify role scene
+        if (!SessionContext.require(primaryStage, authManager, Role.ADMIN)) {
+            return; // Session expired or the admin role was removed
+        }
+        SceneNavigator.of(primaryStage).show(ModifyRoleScene.class, // Switch to modify role scene
+                () -> new ModifyRoleScene(primaryStage, authManager).createModifyRoleScene());
     }
 
     /**
      * Handles the logout action by switching back to the login scene.
      */
     private void handleLogout() {
+        SessionContext.end(primaryStage, authManager); // End the session before leaving
         LoginScene loginScene = new LoginScene(primaryStage, authManager); // Initialize login scene
-        primaryStage.setScene(loginScene.createLoginScene()); // Switch back to the login scene
+        loginScene.showLoginScene(); // Switch back to the login scene
     }
 }
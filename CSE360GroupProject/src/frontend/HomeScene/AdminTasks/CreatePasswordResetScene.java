@@ -1,7 +1,13 @@
 package frontend.HomeScene.AdminTasks;
 
+import backend.AsyncAuthManager;
 import backend.AuthManager;
+import backend.AuthNotification;
+import backend.InMemoryNotificationSink;
+import backend.NotificationDispatcher;
 import frontend.HomeScene.AdminHomeScene;
+import frontend.SceneNavigator;
+import javafx.application.Platform;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.VBox;
@@ -22,6 +28,7 @@ import javafx.stage.Stage;
 public class CreatePasswordResetScene {
     private Stage primaryStage;
     private AuthManager authManager;
+    private AsyncAuthManager asyncAuthManager; // Creates reset requests off the JavaFX thread
 
     /**
      * Constructor for the CreatePasswordResetScene class.
@@ -32,6 +39,7 @@ public class CreatePasswordResetScene {
     public CreatePasswordResetScene(Stage primaryStage, AuthManager authManager) {
         this.primaryStage = primaryStage;
         this.authManager = authManager;
+        this.asyncAuthManager = new AsyncAuthManager(authManager, Platform::runLater);
     }
 
     /**
@@ -56,17 +64,30 @@ public class CreatePasswordResetScene {
             if (email.isEmpty()) {
                 Alert alert = new Alert(Alert.AlertType.ERROR, "Email cannot be empty.");
                 alert.showAndWait();
-            } else if (!authManager.userExistsForEmail(email)) { // Check if the user exists
-                Alert alert = new Alert(Alert.AlertType.ERROR, "No user found with the provided email.");
-                alert.showAndWait();
             } else {
-                // Request a password reset for the entered email
-                authManager.requestPasswordReset(email);
-                Alert successAlert = new Alert(Alert.AlertType.INFORMATION, "Password reset request created successfully.");
-                successAlert.showAndWait();
+                submitButton.setDisable(true);
+                asyncAuthManager.call(manager -> {
+                    if (!manager.userExistsForEmail(email)) { // Check if the user exists
+                        return null;
+                    }
+                    manager.requestPasswordReset(email); // Request a password reset for the entered email
+                    return takeOneTimePassword(manager, email);
+                }).whenComplete((message, error) -> {
+                    submitButton.setDisable(false);
+                    if (error != null) {
+                        Alert alert = new Alert(Alert.AlertType.ERROR, "Password reset request could not be created.");
+                        alert.showAndWait();
+                    } else if (message == null) {
+                        Alert alert = new Alert(Alert.AlertType.ERROR, "No user found with the provided email.");
+                        alert.showAndWait();
+                    } else {
+                        Alert successAlert = new Alert(Alert.AlertType.INFORMATION, message);
+                        successAlert.showAndWait();
 
-                // Clear the email field after successful request
-                emailField.clear();
+                        // Clear the email field after successful request
+                        emailField.clear();
+                    }
+                });
             }
         });
 
@@ -74,10 +95,33 @@ public class CreatePasswordResetScene {
         backButton.setOnAction(e -> {
             // Navigate back to the admin home scene
             AdminHomeScene adminHome = new AdminHomeScene(primaryStage, authManager);
-            primaryStage.setScene(adminHome.createAdminHomeScene());
+            adminHome.showAdminHomeScene();
         });
 
         layout.getChildren().addAll(emailLabel, emailField, submitButton, backButton);
-        return new Scene(layout, 300, 200);
+        Scene scene = new Scene(layout, 300, 200);
+        SceneNavigator.setOnShow(scene, emailField::clear); // Start over on each visit
+        return scene;
+    }
+
+    /**
+     * Waits for the one-time password of a new request to be delivered and takes it out of the in-memory
+     * mailbox, so the admin can hand it over. Runs off the JavaFX thread.
+     *
+     * @param manager The authentication manager that sent the notification.
+     * @param email The email the request was made for.
+     * @return The message to show the admin.
+     */
+    private static String takeOneTimePassword(AuthManager manager, String email) {
+        NotificationDispatcher notifications = manager.getNotifications();
+        notifications.flush();
+        if (notifications.getSink() instanceof InMemoryNotificationSink mailbox) {
+            AuthNotification otp = mailbox.take(AuthNotification.Type.PASSWORD_RESET_OTP, email);
+            if (otp != null) {
+                return "Password reset request created. One-time password: " + otp.getCode()
+                        + "\nIt expires at " + otp.getExpiresAt() + ".";
+            }
+        }
+        return "Password reset request created successfully. The one-time password has been sent to " + email + ".";
     }
 }
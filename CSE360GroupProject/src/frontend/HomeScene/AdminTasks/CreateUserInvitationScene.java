@@ -1,14 +1,27 @@
 package frontend.HomeScene.AdminTasks;
 
+import backend.BulkInviteResult;
+import backend.InviteSpec;
 import backend.Role;
+import backend.AsyncAuthManager;
 import backend.AuthManager;
 import frontend.HomeScene.AdminHomeScene;
+import frontend.SceneNavigator;
+import javafx.application.Platform;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.VBox;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -16,7 +29,8 @@ import java.util.Set;
  * 
  * <p> Description: This class provides a scene where an admin can invite a new user by entering 
  * the username, email, and selecting roles (Admin, Student, Instructor). The invitation code is 
- * generated and displayed upon successful invitation. </p>
+ * generated and displayed upon successful invitation. A whole class can also be invited at once from a CSV
+ * file of username, email and roles, after which the generated codes can be saved to another CSV file. </p>
  * 
  * @author Zeel Tejashkumar Shah
  * 
@@ -25,6 +39,7 @@ import java.util.Set;
 
 public class CreateUserInvitationScene {
     private AuthManager authManager;
+    private AsyncAuthManager asyncAuthManager; // Creates invitations off the JavaFX thread
     private Stage primaryStage;
 
     /**
@@ -35,6 +50,7 @@ public class CreateUserInvitationScene {
      */
     public CreateUserInvitationScene(AuthManager authManager, Stage primaryStage) {
         this.authManager = authManager;
+        this.asyncAuthManager = new AsyncAuthManager(authManager, Platform::runLater);
         this.primaryStage = primaryStage;
     }
 
@@ -60,20 +76,31 @@ public class CreateUserInvitationScene {
         CheckBox instructorRoleCheckBox = new CheckBox("Instructor");
 
         Button inviteButton = new Button("Send Invitation");
+        Button importButton = new Button("Import Invitations from CSV");
+        importButton.setOnAction(e -> handleImportInvitations(importButton));
         
         Button backButton = new Button("Back");
-        backButton.setOnAction(e -> primaryStage.setScene(new AdminHomeScene(primaryStage, authManager).createAdminHomeScene()));
+        backButton.setOnAction(e -> new AdminHomeScene(primaryStage, authManager).showAdminHomeScene());
 
         // Adding all components to the VBox
         adminVBox.getChildren().addAll(usernameLabel, usernameField, emailLabel, emailField, rolesLabel,
-                adminRoleCheckBox, studentRoleCheckBox, instructorRoleCheckBox, inviteButton, backButton);
+                adminRoleCheckBox, studentRoleCheckBox, instructorRoleCheckBox, inviteButton, importButton, backButton);
 
         // Handle invite button click
         inviteButton.setOnAction(e -> handleInviteUser(usernameField.getText(), emailField.getText(),
                 adminRoleCheckBox.isSelected(), studentRoleCheckBox.isSelected(), instructorRoleCheckBox.isSelected()));
 
         primaryStage.setTitle("Admin Panel");
-        return new Scene(adminVBox, 300, 400); // Return the admin scene
+        Scene scene = new Scene(adminVBox, 300, 400);
+        SceneNavigator.setOnShow(scene, () -> { // Start over on each visit
+            usernameField.clear();
+            emailField.clear();
+            adminRoleCheckBox.setSelected(false);
+            studentRoleCheckBox.setSelected(false);
+            instructorRoleCheckBox.setSelected(false);
+            primaryStage.setTitle("Admin Panel");
+        });
+        return scene; // Return the admin scene
     }
 
     /**
@@ -113,18 +140,101 @@ public class CreateUserInvitationScene {
         }
 
         // Call Invitations to invite the user
-        String invitationCode = authManager.inviteUser(username, email, roles);
+        asyncAuthManager.inviteUserAsync(username, email, roles).whenComplete((invitationCode, error) -> {
+            // Show invitation code to the admin
+            if (error == null && invitationCode != null) {
+                Alert alert = new Alert(Alert.AlertType.INFORMATION, "Invitation sent! Invitation code: " + invitationCode);
+                alert.showAndWait();
+            } else {
+                Alert alert = new Alert(Alert.AlertType.ERROR, "Failed to send invitation. Please try again.");
+                alert.showAndWait();
+            }
+
+            // Navigate back to Admin Home Scene
+            new AdminHomeScene(primaryStage, authManager).showAdminHomeScene();
+        });
+    }
 
-        // Show invitation code to the admin
-        if (invitationCode != null) {
-            Alert alert = new Alert(Alert.AlertType.INFORMATION, "Invitation sent! Invitation code: " + invitationCode);
-            alert.showAndWait();
-        } else {
-            Alert alert = new Alert(Alert.AlertType.ERROR, "Failed to send invitation. Please try again.");
-            alert.showAndWait();
+    /**
+     * Lets the admin pick a CSV file of username, email and semicolon-separated roles, invites everyone in it
+     * as one batch and offers to save the generated codes.
+     *
+     * @param importButton The import button, disabled while the import runs.
+     */
+    private void handleImportInvitations(Button importButton) {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Import Invitations");
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV files", "*.csv"));
+        File file = chooser.showOpenDialog(primaryStage);
+        if (file == null) {
+            return; // Canceled
+        }
+
+        importButton.setDisable(true);
+        asyncAuthManager.call(manager -> {
+            try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                return manager.importInvitations(reader);
+            } catch (IOException ex) {
+                throw new IllegalArgumentException("Could not read " + file.getName());
+            }
+        }).whenComplete((result, error) -> {
+            importButton.setDisable(false);
+            if (error != null) {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                new Alert(Alert.AlertType.ERROR, "Import failed: " + cause.getMessage()).showAndWait();
+                return;
+            }
+            new Alert(Alert.AlertType.INFORMATION, summarize(result)).showAndWait();
+            if (result.getInvitedCount() > 0) {
+                saveInvitationCodes(result);
+            }
+        });
+    }
+
+    /**
+     * Describes the outcome of a bulk invite, listing the first few rejected rows.
+     *
+     * @param result The bulk invite result.
+     * @return The summary text.
+     */
+    private String summarize(BulkInviteResult result) {
+        StringBuilder summary = new StringBuilder();
+        summary.append("Invited ").append(result.getInvitedCount()).append(" user(s), rejected ")
+                .append(result.getRejectedCount()).append(".");
+        int shown = 0;
+        for (Map.Entry<InviteSpec, String> rejection : result.getRejected().entrySet()) {
+            if (shown++ == 10) {
+                summary.append("\n...");
+                break;
+            }
+            summary.append("\n").append(rejection.getKey().getUsername()).append(": ").append(rejection.getValue());
         }
+        return summary.toString();
+    }
 
-        // Navigate back to Admin Home Scene
-        primaryStage.setScene(new AdminHomeScene(primaryStage, authManager).createAdminHomeScene());
+    /**
+     * Asks where to save the generated invitation codes and writes them there.
+     *
+     * @param result The bulk invite result holding the codes.
+     */
+    private void saveInvitationCodes(BulkInviteResult result) {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Save Invitation Codes");
+        chooser.setInitialFileName("invitation-codes.csv");
+        File file = chooser.showSaveDialog(primaryStage);
+        if (file == null) {
+            return; // The admin does not want the codes saved
+        }
+        asyncAuthManager.run(manager -> {
+            try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+                result.writeCodesCsv(writer);
+            } catch (IOException ex) {
+                throw new IllegalArgumentException("Could not write " + file.getName());
+            }
+        }).whenComplete((ignored, error) -> {
+            if (error != null) {
+                new Alert(Alert.AlertType.ERROR, "Invitation codes could not be saved.").showAndWait();
+            }
+        });
     }
 }
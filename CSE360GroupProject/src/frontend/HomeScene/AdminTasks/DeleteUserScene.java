@@ -1,19 +1,25 @@
 package frontend.HomeScene.AdminTasks;
 
+import backend.AsyncAuthManager;
 import backend.AuthManager;
+import backend.Session;
 import backend.User;
 import frontend.HomeScene.AdminHomeScene;
+import frontend.SceneNavigator;
+import frontend.SessionContext;
+import javafx.application.Platform;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
+import java.util.*;
 
 /**
  * <p> Title: DeleteUserScene Class. </p>
  * 
  * <p> Description: This class provides a scene for admins to delete a user by entering the username 
  * and confirming the deletion action. A confirmation prompt is displayed before the user is removed 
- * from the system. </p>
+ * from the system. Many users can be deleted at once by pasting their usernames, one per line. </p>
  * 
  * @author Zeel Tejashkumar Shah
  * 
@@ -23,6 +29,7 @@ import javafx.stage.Stage;
 public class DeleteUserScene {
     private Stage primaryStage;
     private AuthManager authManager;
+    private AsyncAuthManager asyncAuthManager; // Looks up and deletes users off the JavaFX thread
 
     /**
      * Constructor to initialize the DeleteUserScene.
@@ -33,6 +40,7 @@ public class DeleteUserScene {
     public DeleteUserScene(Stage primaryStage, AuthManager authManager) {
         this.primaryStage = primaryStage;
         this.authManager = authManager;
+        this.asyncAuthManager = new AsyncAuthManager(authManager, Platform::runLater);
     }
 
     /**
@@ -45,15 +53,18 @@ public class DeleteUserScene {
         Label instructionLabel = new Label("Enter the username of the user you want to delete:");
         TextField usernameField = new TextField();
         usernameField.setPromptText("Username");
+        UserSuggestions suggestions = new UserSuggestions(usernameField, asyncAuthManager); // Matching users as the admin types
         Button deleteButton = new Button("Delete");
         Label statusLabel = new Label();
 
         // Delete action: Check if the user exists and prompt for confirmation
         deleteButton.setOnAction(e -> {
             String username = usernameField.getText();
-            User user = authManager.findUserByUsername(username);
-
-            if (user != null) {
+            asyncAuthManager.findUserByUsernameAsync(username).whenComplete((user, error) -> {
+                if (user == null) {
+                    statusLabel.setText("Error: User not found.");
+                    return;
+                }
                 // Ask for confirmation before deleting the user
                 Alert confirmationAlert = new Alert(Alert.AlertType.CONFIRMATION);
                 confirmationAlert.setTitle("Confirm Deletion");
@@ -62,22 +73,100 @@ public class DeleteUserScene {
 
                 confirmationAlert.showAndWait().ifPresent(response -> {
                     if (response == ButtonType.OK) {
-                        authManager.deleteUser(user);
-                        statusLabel.setText("User '" + user.getUsername() + "' deleted successfully.");
-                        usernameField.clear();
+                        asyncAuthManager.deleteUserAsync(user).whenComplete((deleted, deleteError) -> {
+                            if (deleteError == null && deleted) {
+                                statusLabel.setText("User '" + user.getUsername() + "' deleted successfully.");
+                                usernameField.clear();
+                            } else {
+                                statusLabel.setText("Error: User could not be deleted.");
+                            }
+                        });
                     } else {
                         statusLabel.setText("Deletion canceled.");
                     }
                 });
-            } else {
-                statusLabel.setText("Error: User not found.");
-            }
+            });
         });
 
+        // Bulk deletion: paste usernames, one per line
+        Label bulkLabel = new Label("Or paste usernames to delete, one per line:");
+        TextArea bulkArea = new TextArea();
+        bulkArea.setPrefRowCount(6);
+        Button bulkDeleteButton = new Button("Delete Listed Users");
+        bulkDeleteButton.setOnAction(e -> handleBulkDelete(bulkDeleteButton, bulkArea, statusLabel));
+
         Button backButton = new Button("Back");
-        backButton.setOnAction(e -> primaryStage.setScene(new AdminHomeScene(primaryStage, authManager).createAdminHomeScene()));
+        backButton.setOnAction(e -> new AdminHomeScene(primaryStage, authManager).showAdminHomeScene());
+
+        vbox.getChildren().addAll(instructionLabel, usernameField, suggestions.getView(), deleteButton, statusLabel,
+                bulkLabel, bulkArea, bulkDeleteButton, backButton);
+        Scene scene = new Scene(vbox, 300, 520);
+        SceneNavigator.setOnShow(scene, () -> { // Start over on each visit
+            usernameField.clear();
+            bulkArea.clear();
+            statusLabel.setText("");
+        });
+        return scene;
+    }
 
-        vbox.getChildren().addAll(instructionLabel, usernameField, deleteButton, statusLabel, backButton);
-        return new Scene(vbox, 300, 200);
+    /**
+     * Looks up the pasted usernames, asks for confirmation and deletes the users found as one bulk purge.
+     * The admin who is logged in is never deleted this way.
+     *
+     * @param bulkDeleteButton The bulk delete button, disabled while the deletion runs.
+     * @param bulkArea The text area holding the usernames.
+     * @param statusLabel The label showing the outcome.
+     */
+    private void handleBulkDelete(Button bulkDeleteButton, TextArea bulkArea, Label statusLabel) {
+        Set<String> usernames = new LinkedHashSet<>();
+        for (String line : bulkArea.getText().split("\\R")) {
+            if (!line.isBlank()) {
+                usernames.add(line.trim());
+            }
+        }
+        if (usernames.isEmpty()) {
+            statusLabel.setText("Error: No usernames listed.");
+            return;
+        }
+        Session session = SessionContext.current(primaryStage, authManager);
+        User self = session == null ? null : session.getUser();
+        bulkDeleteButton.setDisable(true);
+        asyncAuthManager.call(manager -> {
+            List<Long> ids = new ArrayList<>(usernames.size());
+            for (String username : usernames) {
+                User user = manager.findUserByUsername(username);
+                if (user != null && user != self) {
+                    ids.add(user.getId());
+                }
+            }
+            return ids;
+        }).whenComplete((ids, error) -> {
+            bulkDeleteButton.setDisable(false);
+            if (error != null || ids.isEmpty()) {
+                statusLabel.setText("Error: None of the listed users can be deleted.");
+                return;
+            }
+            Alert confirmationAlert = new Alert(Alert.AlertType.CONFIRMATION);
+            confirmationAlert.setTitle("Confirm Deletion");
+            confirmationAlert.setHeaderText("Are you sure?");
+            confirmationAlert.setContentText("Do you really want to delete " + ids.size() + " of the "
+                    + usernames.size() + " listed users?");
+            confirmationAlert.showAndWait().ifPresent(response -> {
+                if (response != ButtonType.OK) {
+                    statusLabel.setText("Deletion canceled.");
+                    return;
+                }
+                bulkDeleteButton.setDisable(true);
+                asyncAuthManager.purgeUsersAsync(ids).whenComplete((deleted, deleteError) -> {
+                    bulkDeleteButton.setDisable(false);
+                    if (deleteError == null) {
+                        statusLabel.setText(deleted + " users deleted.");
+                        bulkArea.clear();
+                    } else {
+                        statusLabel.setText("Error: Users could not be deleted.");
+                    }
+                });
+            });
+        });
     }
 }
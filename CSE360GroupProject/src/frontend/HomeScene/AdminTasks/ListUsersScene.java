@@ -1,23 +1,34 @@
 package frontend.HomeScene.AdminTasks;
 
+import backend.AsyncAuthManager;
 import backend.AuthManager;
+import backend.Role;
 import backend.User;
+import backend.UserQuery;
 import frontend.HomeScene.AdminHomeScene;
+import frontend.SceneNavigator;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.collections.FXCollections;
 import javafx.scene.Scene;
-import javafx.scene.control.Button;
-import javafx.scene.control.Label;
+import javafx.scene.control.*;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
 import javafx.scene.layout.VBox;
-import javafx.scene.layout.HBox; // Import HBox
 import javafx.stage.Stage;
 
-import java.util.List;
+import java.util.function.Function;
 
 /**
  * <p> Title: ListUsersScene Class. </p>
  * 
- * <p> Description: This class provides a scene that lists users for the admin in a paginated format.
- * It allows the admin to browse users with forward and backward navigation buttons. Each page 
- * displays a set number of users, and the admin can return to the home scene using the back button. </p>
+ * <p> Description: This class provides a scene that lists users for the admin in a scrollable table.
+ * The table only creates cells for the visible rows and reuses them while scrolling, and the rows are
+ * backed by a {@link PagedUserList} that loads users a page at a time in the background, so the scene
+ * stays responsive whatever the number of users. Typing into the search field, picking a role or
+ * changing the order shows the matching users from {@link AuthManager#searchUsers(UserQuery)} instead.
+ * The admin can reload the list with the refresh button and return to the home scene using the back
+ * button. When the cached scene is shown again the list is reloaded with the search kept as it was. </p>
  * 
  * @author Zeel Tejashkumar Shah
  * 
@@ -25,12 +36,18 @@ import java.util.List;
  */
 
 public class ListUsersScene {
+    private static final int SEARCH_LIMIT = 1000;
+    private static final String ALL_ROLES = "All Roles";
+
     private Stage primaryStage;
     private AuthManager authManager;
-    private int currentPage;
-    private static final int USERS_PER_PAGE = 5;
-    private Button leftArrowButton;
-    private Button rightArrowButton;
+    private AsyncAuthManager asyncAuthManager; // Loads users off the JavaFX thread
+    private TableView<User> userTable; // Table showing the users
+    private Label countLabel; // Shows the number of users
+    private TextField searchField; // Text to search usernames, names and emails for
+    private ChoiceBox<String> roleFilter; // Role the listed users must have
+    private ChoiceBox<UserQuery.SortKey> sortChoice; // Order of the listed users
+    private Button refreshButton;
     private Button backButton;
     private VBox vbox; // VBox for the main layout
     private HBox buttonBox; // HBox for the buttons
@@ -44,82 +61,164 @@ public class ListUsersScene {
     public ListUsersScene(Stage primaryStage, AuthManager authManager) {
         this.primaryStage = primaryStage;
         this.authManager = authManager;
-        this.currentPage = 0; // Start at the first page
+        this.asyncAuthManager = new AsyncAuthManager(authManager, Platform::runLater);
         this.vbox = new VBox(10); // Initialize VBox
         this.buttonBox = new HBox(10); // Initialize HBox for buttons
+        initializeSearch(); // Initialize the search controls once
+        initializeTable(); // Initialize the table once
         initializeButtons(); // Initialize buttons once
     }
 
     /**
-     * Initializes the left and right arrow buttons, and the back button, and assigns
-     * their action events for navigation and returning to the home scene.
+     * Initializes the search field, role filter and sort order, which reload the list when changed.
+     */
+    private void initializeSearch() {
+        searchField = new TextField();
+        searchField.setPromptText("Search username, name or email");
+        roleFilter = new ChoiceBox<>();
+        roleFilter.getItems().add(ALL_ROLES);
+        for (Role role : Role.values()) {
+            roleFilter.getItems().add(role.toString());
+        }
+        roleFilter.setValue(ALL_ROLES);
+        sortChoice = new ChoiceBox<>(FXCollections.observableArrayList(UserQuery.SortKey.values()));
+        sortChoice.setValue(UserQuery.SortKey.ID); // Registration order
+
+        searchField.textProperty().addListener((obs, oldText, text) -> updateUserList());
+        roleFilter.setOnAction(e -> updateUserList());
+        sortChoice.setOnAction(e -> updateUserList());
+
+        HBox searchBox = new HBox(10, searchField, roleFilter, new Label("Sort by"), sortChoice);
+        HBox.setHgrow(searchField, Priority.ALWAYS);
+        vbox.getChildren().add(searchBox);
+    }
+
+    /**
+     * Initializes the user table and its columns.
+     */
+    private void initializeTable() {
+        userTable = new TableView<>();
+        userTable.setPlaceholder(new Label("Loading users..."));
+        userTable.setFixedCellSize(24); // Lets the table size its scroll bar without measuring rows
+        userTable.getColumns().add(column("Username", User::getUsername));
+        userTable.getColumns().add(column("Name", user -> user.getFirstName() == null ? ""
+                : user.getFirstName() + " " + user.getLastName()));
+        userTable.getColumns().add(column("Email", User::getEmail));
+        userTable.getColumns().add(column("Roles", user -> user.getRoles().toString()));
+        userTable.getColumns().add(column("Set Up", user -> user.isSetupComplete() ? "Yes" : "No"));
+        userTable.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY_FLEX_LAST_COLUMN);
+        VBox.setVgrow(userTable, Priority.ALWAYS);
+        countLabel = new Label();
+        vbox.getChildren().addAll(countLabel, userTable);
+    }
+
+    /**
+     * Creates a text column showing one property of a user. Rows not loaded yet are left empty.
+     */
+    private static TableColumn<User, String> column(String title, Function<User, String> value) {
+        TableColumn<User, String> column = new TableColumn<>(title);
+        column.setSortable(false); // Rows come in the order picked with the sort choice
+        column.setCellValueFactory(cell -> new ReadOnlyStringWrapper(
+                cell.getValue() == null ? null : value.apply(cell.getValue())));
+        return column;
+    }
+
+    /**
+     * Initializes the refresh and back buttons and assigns their action events.
      */
     private void initializeButtons() {
-        // Initialize buttons only once
-        leftArrowButton = new Button("<");
-        rightArrowButton = new Button(">");
+        refreshButton = new Button("Refresh");
         backButton = new Button("Back");
 
-        // Set actions for buttons
-        leftArrowButton.setOnAction(e -> {
-            if (currentPage > 0) {
-                currentPage--;
-                updateUserList();
-            }
-        });
+        refreshButton.setOnAction(e -> updateUserList());
+        backButton.setOnAction(e -> new AdminHomeScene(primaryStage, authManager).showAdminHomeScene());
 
-        rightArrowButton.setOnAction(e -> {
-            if ((currentPage + 1) * USERS_PER_PAGE < authManager.getAllUsers().size()) {
-                currentPage++;
-                updateUserList();
-            }
-        });
-
-        backButton.setOnAction(e -> primaryStage.setScene(new AdminHomeScene(primaryStage, authManager).createAdminHomeScene()));
-        
         // Add buttons to the buttonBox (HBox)
-        buttonBox.getChildren().addAll(leftArrowButton, rightArrowButton, backButton);
-        
+        buttonBox.getChildren().addAll(refreshButton, backButton);
+
         // Add the buttonBox to the vbox (this will be added last)
         vbox.getChildren().add(buttonBox);
     }
 
     /**
-     * Creates the scene to list users in a paginated manner.
+     * Creates the scene to list users.
      *
      * @return The scene for listing users.
      */
     public Scene createListUsersScene() {
-        updateUserList(); // Load the first page of users
-        return new Scene(vbox, 300, 400);
+        updateUserList(); // Load the user count, rows follow as they become visible
+        Scene scene = new Scene(vbox, 600, 400);
+        SceneNavigator.setOnShow(scene, this::updateUserList); // Users may have changed since the last visit
+        return scene;
     }
 
     /**
-     * Updates the displayed user list based on the current page. The user information is
-     * displayed, and navigation buttons are updated according to available users.
+     * Replaces the table rows with a fresh paged list sized to the current number of users, or with the
+     * search results while a search or filter is active.
      */
     private void updateUserList() {
-        // Clear previous user entries
-        vbox.getChildren().removeIf(node -> node instanceof Label && node != buttonBox);
-
-        // Get the list of all users
-        List<User> allUsers = authManager.getAllUsers();
-
-        // Calculate the start and end index for the current page
-        int startIndex = currentPage * USERS_PER_PAGE;
-        int endIndex = Math.min(startIndex + USERS_PER_PAGE, allUsers.size());
-
-        // Add users for the current page
-        for (int i = startIndex; i < endIndex; i++) {
-            User user = allUsers.get(i);
-            Label userInfo = new Label("Username: " + user.getUsername() + ", Name: "
-                    + user.getFirstName() + " " + user.getLastName()
-                    + ", Roles: " + user.getRoles().toString());
-            vbox.getChildren().add(userInfo); // Add user info to the VBox
+        UserQuery query = new UserQuery()
+                .setText(searchField.getText())
+                .setMatchMode(UserQuery.MatchMode.CONTAINS)
+                .setRole(ALL_ROLES.equals(roleFilter.getValue()) ? null : Role.valueOf(roleFilter.getValue()))
+                .setSortKey(sortChoice.getValue())
+                .setLimit(SEARCH_LIMIT);
+        if (!searchField.getText().isBlank() || query.getRole() != null || query.getSortKey() != UserQuery.SortKey.ID) {
+            showSearch(query);
+            return;
         }
+        String text = searchField.getText();
+        String role = roleFilter.getValue();
+        UserQuery.SortKey sortKey = sortChoice.getValue();
+        refreshButton.setDisable(true);
+        asyncAuthManager.getUserCountAsync().whenComplete((count, error) -> {
+            refreshButton.setDisable(false);
+            if (controlsChanged(text, role, sortKey)) {
+                return; // A search started meanwhile, its results must not be replaced
+            }
+            if (error != null) {
+                countLabel.setText("Error: Users could not be loaded.");
+                return;
+            }
+            countLabel.setText(count + (count == 1 ? " user" : " users"));
+            userTable.setPlaceholder(new Label("No users."));
+            userTable.setItems(new PagedUserList(asyncAuthManager, count));
+        });
+    }
+
+    /**
+     * Shows the users matching a query, unless the search controls changed again meanwhile.
+     *
+     * @param query The query built from the search controls
+     */
+    private void showSearch(UserQuery query) {
+        String text = searchField.getText();
+        String role = roleFilter.getValue();
+        UserQuery.SortKey sortKey = sortChoice.getValue();
+        asyncAuthManager.searchUsersAsync(query).whenComplete((users, error) -> {
+            if (controlsChanged(text, role, sortKey)) {
+                return; // A newer search is on its way
+            }
+            if (error != null) {
+                countLabel.setText("Error: Users could not be searched.");
+                return;
+            }
+            countLabel.setText(users.size() == SEARCH_LIMIT ? "First " + SEARCH_LIMIT + " matching users"
+                    : users.size() + (users.size() == 1 ? " matching user" : " matching users"));
+            userTable.setPlaceholder(new Label("No matching users."));
+            userTable.setItems(FXCollections.observableArrayList(users));
+        });
+    }
 
-        // Update button visibility based on current page
-        leftArrowButton.setDisable(currentPage == 0);
-        rightArrowButton.setDisable((currentPage + 1) * USERS_PER_PAGE >= allUsers.size());
+    /**
+     * Checks whether the search controls changed since a request was started from them.
+     *
+     * @param text The search text when the request started.
+     * @param role The role filter when the request started.
+     * @param sortKey The sort order when the request started.
+     * @return true if the request's results are stale.
+     */
+    private boolean controlsChanged(String text, String role, UserQuery.SortKey sortKey) {
+        return !text.equals(searchField.getText()) || !role.equals(roleFilter.getValue()) || sortKey != sortChoice.getValue();
     }
 }
@@ -2,6 +2,8 @@ package frontend.HomeScene.AdminTasks;
 
 import backend.*;
 import frontend.HomeScene.AdminHomeScene;
+import frontend.SceneNavigator;
+import javafx.application.Platform;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.VBox;
@@ -14,6 +16,9 @@ import java.util.*;
  * <p> Description: This class provides a scene for admins to modify user roles by fetching current 
  * roles, displaying checkboxes for role modification, and applying the changes. </p>
  * 
+ * <p> Changes are only applied if the user has not changed since its roles were fetched, so two admins editing
+ * the same user cannot silently overwrite each other; the second one is asked to fetch the roles again. </p>
+ * 
  * @author Zeel Tejashkumar Shah
  * 
  * @version 1.0 2024-10-09 Initial implementation
@@ -22,7 +27,10 @@ import java.util.*;
 public class ModifyRoleScene {
     private Stage primaryStage;
     private AuthManager authManager;
+    private AsyncAuthManager asyncAuthManager; // Reads and changes roles off the JavaFX thread
     private Button applyButton; // Declare applyButton at the class level
+    private User fetchedUser; // The user whose roles are shown
+    private long fetchedVersion; // The version of that user the shown roles were read from
     
     /**
      * Constructor to initialize the ModifyRoleScene.
@@ -33,6 +41,7 @@ public class ModifyRoleScene {
     public ModifyRoleScene(Stage primaryStage, AuthManager authManager) {
         this.primaryStage = primaryStage;
         this.authManager = authManager;
+        this.asyncAuthManager = new AsyncAuthManager(authManager, Platform::runLater);
         this.applyButton = new Button("Apply Changes"); // Initialize applyButton in the constructor
         applyButton.setVisible(false); // Initially hidden
     }
@@ -49,6 +58,7 @@ public class ModifyRoleScene {
         Label userLabel = new Label("Enter username to modify roles:");
         TextField usernameField = new TextField();
         usernameField.setPromptText("Username");
+        UserSuggestions suggestions = new UserSuggestions(usernameField, asyncAuthManager); // Matching users as the admin types
 
         // Display current roles label
         Label rolesLabel = new Label("Current roles: "); // Start with "Current roles"
@@ -77,61 +87,81 @@ public class ModifyRoleScene {
         // Fetch current roles action
         fetchRolesButton.setOnAction(e -> {
             String username = usernameField.getText();
-            User user = authManager.findUserByUsername(username);
-            if (user != null) {
-                // Set checkboxes based on current roles
-                for (Map.Entry<Role, CheckBox> entry : roleCheckBoxes.entrySet()) {
-                    CheckBox checkBox = entry.getValue();
-                    checkBox.setSelected(user.getRoles().contains(entry.getKey()));
-                    checkBox.setVisible(true); // Make checkbox visible
+            asyncAuthManager.findUserByUsernameAsync(username).whenComplete((user, error) -> {
+                if (user != null) {
+                    fetchedUser = user;
+                    fetchedVersion = user.getVersion(); // Read before the roles, so a change in between is caught
+                    // Set checkboxes based on current roles
+                    for (Map.Entry<Role, CheckBox> entry : roleCheckBoxes.entrySet()) {
+                        CheckBox checkBox = entry.getValue();
+                        checkBox.setSelected(user.getRoles().contains(entry.getKey()));
+                        checkBox.setVisible(true); // Make checkbox visible
+                    }
+                    rolesLabel.setVisible(true); // Show the roles label
+                    rolesVBox.setVisible(true); // Show the roles section
+                    applyButton.setVisible(false); // Hide apply button initially
+                } else {
+                    fetchedUser = null;
+                    showAlert("User not found.");
+                    clearCheckBoxes(roleCheckBoxes);
+                    rolesLabel.setVisible(false); // Hide the roles label
+                    rolesVBox.setVisible(false); // Hide the roles section
                 }
-                rolesLabel.setVisible(true); // Show the roles label
-                rolesVBox.setVisible(true); // Show the roles section
-                applyButton.setVisible(false); // Hide apply button initially
-            } else {
-                showAlert("User not found.");
-                clearCheckBoxes(roleCheckBoxes);
-                rolesLabel.setVisible(false); // Hide the roles label
-                rolesVBox.setVisible(false); // Hide the roles section
-            }
+            });
         });
 
         // Apply changes action
         applyButton.setOnAction(e -> {
-            String username = usernameField.getText();
-            User user = authManager.findUserByUsername(username);
-            if (user != null) {
-                for (Map.Entry<Role, CheckBox> entry : roleCheckBoxes.entrySet()) {
-                    Role role = entry.getKey();
-                    CheckBox checkBox = entry.getValue();
-                    if (checkBox.isSelected() && !user.getRoles().contains(role)) {
-                        // Add role if selected and not already present
-                        authManager.addRole(user, role);
-                    } else if (!checkBox.isSelected() && user.getRoles().contains(role)) {
-                        // Remove role if not selected and already present
-                        authManager.removeRole(user, role);
-                    }
+            User user = fetchedUser;
+            if (user == null) {
+                showAlert("Fetch the current roles first.");
+                return;
+            }
+            Set<Role> selected = EnumSet.noneOf(Role.class); // Read the checkboxes on the JavaFX thread
+            for (Map.Entry<Role, CheckBox> entry : roleCheckBoxes.entrySet()) {
+                if (entry.getValue().isSelected()) {
+                    selected.add(entry.getKey());
                 }
-                showAlert("Roles updated successfully.");
-                rolesLabel.setText("Current roles: "); // Reset label back to "Current roles"
-                applyButton.setVisible(false); // Hide the apply button
-            } else {
-                showAlert("User not found.");
             }
+            applyButton.setDisable(true);
+            // Replace all roles at once, only if nobody changed the user since it was fetched
+            asyncAuthManager.setRolesAsync(user, fetchedVersion, selected).whenComplete((version, error) -> {
+                applyButton.setDisable(false);
+                if (error != null) {
+                    showAlert("Roles could not be updated.");
+                } else if (version >= 0) {
+                    fetchedVersion = version;
+                    showAlert("Roles updated successfully.");
+                    rolesLabel.setText("Current roles: "); // Reset label back to "Current roles"
+                    applyButton.setVisible(false); // Hide the apply button
+                } else {
+                    showAlert("This user was changed or deleted by someone else. Fetch the current roles and try again.");
+                }
+            });
         });
 
         // Back button action
-        backButton.setOnAction(e -> primaryStage.setScene(new AdminHomeScene(primaryStage, authManager).createAdminHomeScene()));
+        backButton.setOnAction(e -> new AdminHomeScene(primaryStage, authManager).showAdminHomeScene());
 
         // Add components to VBox
-        vbox.getChildren().addAll(userLabel, usernameField, fetchRolesButton, rolesLabel, rolesVBox, applyButton, backButton);
+        vbox.getChildren().addAll(userLabel, usernameField, suggestions.getView(), fetchRolesButton, rolesLabel, rolesVBox, applyButton, backButton);
         
         // Add checkboxes to roles VBox after the initial setup
         for (CheckBox checkBox : roleCheckBoxes.values()) {
             rolesVBox.getChildren().add(checkBox); // Add each checkbox to rolesVBox
         }
 
-        return new Scene(vbox, 300, 400);
+        Scene scene = new Scene(vbox, 300, 500);
+        SceneNavigator.setOnShow(scene, () -> { // Start over on each visit, the fetched roles may be stale
+            fetchedUser = null;
+            usernameField.clear();
+            clearCheckBoxes(roleCheckBoxes);
+            rolesLabel.setText("Current roles: ");
+            rolesLabel.setVisible(false);
+            rolesVBox.setVisible(false);
+            applyButton.setVisible(false);
+        });
+        return scene;
     }
 
     /**
@@ -0,0 +1,117 @@
+package frontend.HomeScene.AdminTasks;
+
+import backend.AsyncAuthManager;
+import backend.User;
+import backend.UserPage;
+import javafx.collections.ObservableListBase;
+
+import java.util.*;
+
+/**
+ * <p> Title: PagedUserList Class. </p>
+ *
+ * <p> Description: A read-only observable list of all users that fetches them a page at a time as a
+ * TableView asks for rows. A row whose page is not loaded yet reads as null, which the table shows as an
+ * empty row, and the page is fetched in the background with a cursor query. When it arrives the rows are
+ * reported as updated so the table redraws them. Only a bounded number of pages is kept, least recently
+ * used first out, so scrolling through any number of users holds at most a few thousand in the list. </p>
+ *
+ * <p> The size is the user count when the list was created. Call sites create a new list to refresh. All
+ * methods must be called on the JavaFX application thread. </p>
+ *
+ * @author Zeel Tejashkumar Shah
+ *
+ * @version 1.0	2024-10-17	Initial implementation
+ */
+
+public class PagedUserList extends ObservableListBase<User> {
+    private static final int PAGE_SIZE = 100;
+    private static final int MAX_CACHED_PAGES = 20;
+
+    private AsyncAuthManager asyncAuthManager; // Loads pages in the background, delivering on the JavaFX thread
+    private int size; // Number of users when the list was created
+    private Map<Integer, List<User>> pages; // Loaded pages by page number, in access order
+    private TreeMap<Integer, Long> cursors; // Known cursors by page number
+    private Set<Integer> loading; // Pages being fetched
+
+    /**
+     * Constructor for PagedUserList.
+     *
+     * @param asyncAuthManager A facade delivering results on the JavaFX thread
+     * @param size The number of users to show
+     */
+    public PagedUserList(AsyncAuthManager asyncAuthManager, int size) {
+        this.asyncAuthManager = asyncAuthManager;
+        this.size = size;
+        this.pages = new LinkedHashMap<>(MAX_CACHED_PAGES * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<User>> eldest) {
+                return size() > MAX_CACHED_PAGES;
+            }
+        };
+        this.cursors = new TreeMap<>();
+        this.cursors.put(0, 0L); // User ids start at 1
+        this.loading = new HashSet<>();
+    }
+
+    @Override
+    public User get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        int page = index / PAGE_SIZE;
+        List<User> rows = pages.get(page);
+        if (rows == null) {
+            requestPage(page);
+            return null;
+        }
+        int offset = index % PAGE_SIZE;
+        return offset < rows.size() ? rows.get(offset) : null; // Users deleted since leave blank rows at the end
+    }
+
+    @Override
+    public int size() {
+        return size; // Returns the number of rows
+    }
+
+    /**
+     * Fetch a page in the background, starting from the nearest known cursor before it.
+     *
+     * @param page The page number
+     */
+    private void requestPage(int page) {
+        if (!loading.add(page)) {
+            return;
+        }
+        Map.Entry<Integer, Long> known = cursors.floorEntry(page);
+        int skipPages = page - known.getKey();
+        long knownCursor = known.getValue();
+        asyncAuthManager.call(manager -> {
+            long cursor = skipPages == 0 ? knownCursor : manager.skipUsers(knownCursor, skipPages * PAGE_SIZE);
+            return manager.getUsersPage(cursor, PAGE_SIZE);
+        }).whenComplete((userPage, error) -> {
+            loading.remove(page);
+            if (error == null) {
+                showPage(page, userPage);
+            }
+        });
+    }
+
+    /**
+     * Store a fetched page and tell the table its rows changed.
+     */
+    private void showPage(int page, UserPage userPage) {
+        cursors.put(page, userPage.getCursor());
+        if (!userPage.isLastPage()) {
+            cursors.put(page + 1, userPage.getNextCursor());
+        }
+        pages.put(page, userPage.getUsers());
+        int first = page * PAGE_SIZE;
+        int last = Math.min(size, first + PAGE_SIZE);
+        beginChange();
+        for (int i = first; i < last; i++) {
+            nextUpdate(i);
+        }
+        endChange();
+    }
+}
@@ -0,0 +1,92 @@
+package frontend.HomeScene.AdminTasks;
+
+import backend.AsyncAuthManager;
+import backend.User;
+import backend.UserQuery;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.TextField;
+
+import java.util.List;
+
+/**
+ * <p> Title: UserSuggestions Class. </p>
+ *
+ * <p> Description: A list of users matching what has been typed into a username field so far, searched by
+ * username, name or email prefix as the admin types. Clicking a suggestion copies its username into the
+ * field. The list hides itself while there is nothing to suggest. </p>
+ *
+ * @author Zeel Tejashkumar Shah
+ *
+ * @version 1.0	2024-10-17	Initial implementation
+ */
+
+public class UserSuggestions {
+    private static final int LIMIT = 8;
+
+    private TextField usernameField; // Field the suggestions are for
+    private AsyncAuthManager asyncAuthManager; // Searches off the JavaFX thread
+    private ListView<User> view; // Shows the suggestions
+
+    /**
+     * Constructor for UserSuggestions.
+     *
+     * @param usernameField The field to suggest usernames for
+     * @param asyncAuthManager A facade delivering results on the JavaFX thread
+     */
+    public UserSuggestions(TextField usernameField, AsyncAuthManager asyncAuthManager) {
+        this.usernameField = usernameField;
+        this.asyncAuthManager = asyncAuthManager;
+        this.view = new ListView<>();
+        view.setPrefHeight(120);
+        view.setCellFactory(list -> new ListCell<>() {
+            @Override
+            protected void updateItem(User user, boolean empty) {
+                super.updateItem(user, empty);
+                if (empty || user == null) {
+                    setText(null);
+                } else {
+                    setText(user.getEmail() == null ? user.getUsername() : user.getUsername() + " <" + user.getEmail() + ">");
+                }
+            }
+        });
+        view.setOnMouseClicked(e -> {
+            User selected = view.getSelectionModel().getSelectedItem();
+            if (selected != null) {
+                usernameField.setText(selected.getUsername()); // Searching again finds only this user and hides the list
+            }
+        });
+        setShown(false);
+        usernameField.textProperty().addListener((obs, oldText, text) -> suggest(text));
+    }
+
+    public ListView<User> getView() {
+        return view; // Returns the list to add to the scene
+    }
+
+    /**
+     * Search for users matching the text and show them, unless the field changed again meanwhile.
+     */
+    private void suggest(String text) {
+        if (text == null || text.isBlank()) {
+            setShown(false);
+            return;
+        }
+        asyncAuthManager.searchUsersAsync(new UserQuery().setText(text).setLimit(LIMIT)).whenComplete((users, error) -> {
+            if (error != null || !text.equals(usernameField.getText())) {
+                return; // Failed, or a newer search is on its way
+            }
+            view.getItems().setAll(users);
+            setShown(!users.isEmpty() && !isExactMatch(users, text));
+        });
+    }
+
+    private static boolean isExactMatch(List<User> users, String text) {
+        return users.size() == 1 && users.get(0).getUsername().equals(text);
+    }
+
+    private void setShown(boolean shown) {
+        view.setVisible(shown);
+        view.setManaged(shown); // Takes no space while hidden
+    }
+}
@@ -2,6 +2,7 @@ package frontend.HomeScene;
 
 import backend.AuthManager;
 import frontend.LoginScene.LoginScene;
+import frontend.SessionContext;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
@@ -59,8 +60,9 @@ public class StudentHomeScene {
      * Handles the logout process by navigating the user back to the login scene.
      */
     private void handleLogout() {
+        SessionContext.end(primaryStage, authManager); // End the session before leaving
         // Navigate back to the login scene
         LoginScene loginScene = new LoginScene(primaryStage, authManager); // You may need to pass the authManager
-        primaryStage.setScene(loginScene.createLoginScene()); // Switch back to the login scene
+        loginScene.showLoginScene(); // Switch back to the login scene
     }
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package frontend.LoginScene;
 
 import backend.AuthManager;
 import frontend.CreateAdminScene;
+import frontend.SceneNavigator;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
 
@@ -9,7 +10,8 @@ import javafx.stage.Stage;
  * <p> Title: LoginScene Class. </p>
  * 
  * <p> Description: A class responsible for creating and displaying the login scene. It checks whether any users exist, 
- * and redirects to the admin creation scene if no users are found, or the standard login scene otherwise. </p>
+ * and redirects to the admin creation scene if no users are found, or the standard login scene otherwise.
+ * The standard login scene is reused through the stage's {@link SceneNavigator} when it was shown before. </p>
  * 
  * @author Zeel Tejashkumar Shah
  * 
@@ -38,10 +40,21 @@ public class LoginScene {
      * @return The login scene based on the user data.
      */
     public Scene createLoginScene() {
-        if (authManager.getAllUsers().isEmpty()) {
+        if (authManager.getUserCount() == 0) {
             return new CreateAdminScene(primaryStage, authManager).createAdminScene();
         } else {
             return new StandardLoginScene(primaryStage, authManager).createLoginFields();
         }
     }
+
+    /**
+     * Shows the appropriate login scene on the stage, reusing the standard login scene if it is cached.
+     */
+    public void showLoginScene() {
+        if (authManager.getUserCount() == 0) {
+            primaryStage.setScene(new CreateAdminScene(primaryStage, authManager).createAdminScene());
+        } else {
+            new StandardLoginScene(primaryStage, authManager).showLoginFields();
+        }
+    }
 }
@@ -1,7 +1,9 @@
 package frontend.LoginScene;
 
+import backend.AsyncAuthManager;
 import backend.AuthManager;
 import frontend.ErrorScene;
+import javafx.application.Platform;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.VBox;
@@ -22,6 +24,7 @@ import javafx.stage.Stage;
 public class LoginWithInvitationCodeScene {
     private Stage primaryStage;
     private AuthManager authManager;
+    private AsyncAuthManager asyncAuthManager; // Checks invitation codes off the JavaFX thread
 
     /**
      * Constructor for the LoginWithInvitationCodeScene class.
@@ -32,6 +35,7 @@ public class LoginWithInvitationCodeScene {
     public LoginWithInvitationCodeScene(Stage primaryStage, AuthManager authManager) {
         this.primaryStage = primaryStage;
         this.authManager = authManager;
+        this.asyncAuthManager = new AsyncAuthManager(authManager, Platform::runLater);
     }
 
     /**
@@ -52,7 +56,7 @@ public class LoginWithInvitationCodeScene {
         invitationCodeLoginButton.setOnAction(e -> handleInvitationCodeLogin(invitationCodeField.getText()));
 
         // Return to the standard login scene
-        backToLoginButton.setOnAction(e -> primaryStage.setScene(new StandardLoginScene(primaryStage, authManager).createLoginFields()));
+        backToLoginButton.setOnAction(e -> new StandardLoginScene(primaryStage, authManager).showLoginFields());
 
         invitationVBox.getChildren().addAll(invitationCodeLabel, invitationCodeField, invitationCodeLoginButton, backToLoginButton);
         primaryStage.setTitle("Login with Invitation Code");
@@ -68,10 +72,12 @@ public class LoginWithInvitationCodeScene {
      * @param invitationCode The invitation code entered by the user.
      */
     private void handleInvitationCodeLogin(String invitationCode) {
-        if (authManager.isUserInvited(invitationCode)) {
+        asyncAuthManager.isUserInvitedAsync(invitationCode).whenComplete((invited, error) -> {
+            if (error == null && invited) {
                 primaryStage.setScene(new SetupPasswordWithInvitationCodeScene(invitationCode, authManager, primaryStage).createPasswordSetupScene());
-        } else {
-            new ErrorScene().showError("Invalid invitation code.");
-        }
+            } else {
+                new ErrorScene().showError("Invalid invitation code.");
+            }
+        });
     }
 }
@@ -1,7 +1,8 @@
 package frontend.LoginScene;
 
+import backend.AsyncAuthManager;
 import backend.AuthManager;
-import backend.ResetRequest;
+import javafx.application.Platform;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.VBox;
@@ -22,6 +23,7 @@ import javafx.stage.Stage;
 public class PasswordResetScene {
 	private Stage primaryStage;
     private AuthManager authManager;
+    private AsyncAuthManager asyncAuthManager; // Resets the password off the JavaFX thread
 
     /**
      * Constructor for the PasswordResetScene class.
@@ -31,6 +33,7 @@ public class PasswordResetScene {
      */
     public PasswordResetScene(Stage primaryStage, AuthManager authManager) {
         this.authManager = authManager;
+        this.asyncAuthManager = new AsyncAuthManager(authManager, Platform::runLater);
         this.primaryStage = primaryStage;
     }
 
@@ -58,7 +61,7 @@ public class PasswordResetScene {
         Button backToLoginButton = new Button("Back to Login");
 
         // Go back to the login scene
-        backToLoginButton.setOnAction(e -> primaryStage.setScene(new StandardLoginScene(primaryStage, authManager).createLoginFields()));
+        backToLoginButton.setOnAction(e -> new StandardLoginScene(primaryStage, authManager).showLoginFields());
 
         // Define the action when the "Submit" button is clicked
         submitButton.setOnAction(event -> {
@@ -67,22 +70,6 @@ public class PasswordResetScene {
             String newPassword = newPasswordField.getText();
             String confirmPassword = confirmPasswordField.getText();
 
-            ResetRequest request = authManager.findRequestByEmail(email);
-
-            // Check if the request is valid and not expired
-            if (request == null || request.isExpired()) {
-                Alert alert = new Alert(Alert.AlertType.ERROR, "Invalid or expired reset request.");
-                alert.showAndWait();
-                return;
-            }
-
-            // Verify if the OTP is correct
-            if (!otp.equals(request.getOneTimePassword())) {
-                Alert alert = new Alert(Alert.AlertType.ERROR, "Invalid OTP. Please try again.");
-                alert.showAndWait();
-                return;
-            }
-
             // Ensure the new password and confirm password match
             if (!newPassword.equals(confirmPassword)) {
                 Alert alert = new Alert(Alert.AlertType.ERROR, "Passwords do not match. Please try again.");
@@ -90,14 +77,32 @@ public class PasswordResetScene {
                 return;
             }
 
-            // If all checks pass, update the user's password and remove the reset request
-            authManager.updateUserPassword(email, newPassword); // Update the password in UserManager
-            authManager.removeRequest(request); // Remove the reset request after successful password reset
-
-            // Redirect the user back to the login page
-            Alert successAlert = new Alert(Alert.AlertType.INFORMATION, "Password reset successfully. Please log in with your new password.");
-            successAlert.showAndWait();
-            primaryStage.setScene(new LoginScene(primaryStage, authManager).createLoginScene());
+            submitButton.setDisable(true);
+            asyncAuthManager.call(manager -> {
+                // Change the password and use up the reset request in one step, so the OTP works only once
+                if (manager.resetPasswordWithOtp(email, otp, newPassword)) {
+                    return null;
+                }
+
+                // Check if the request is valid and not expired
+                if (manager.findRequestByEmail(email) == null) {
+                    return "Invalid or expired reset request.";
+                }
+                return "Invalid OTP. Please try again.";
+            }).whenComplete((errorMessage, error) -> {
+                submitButton.setDisable(false);
+                if (error != null || errorMessage != null) {
+                    Alert alert = new Alert(Alert.AlertType.ERROR,
+                            error != null ? "Password could not be reset. Please try again." : errorMessage);
+                    alert.showAndWait();
+                    return;
+                }
+
+                // Redirect the user back to the login page
+                Alert successAlert = new Alert(Alert.AlertType.INFORMATION, "Password reset successfully. Please log in with your new password.");
+                successAlert.showAndWait();
+                new LoginScene(primaryStage, authManager).showLoginScene();
+            });
         });
 
         // Layout
@@ -1,7 +1,9 @@
 package frontend.LoginScene;
 
-import backend.Invitation;
+import backend.AsyncAuthManager;
 import backend.AuthManager;
+import frontend.ErrorScene;
+import javafx.application.Platform;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
@@ -23,6 +25,7 @@ import javafx.stage.Stage;
 public class SetupPasswordWithInvitationCodeScene {
     private String invitationCode;
     private AuthManager userManager;
+    private AsyncAuthManager asyncUserManager; // Creates the user off the JavaFX thread
     private Stage primaryStage;
 
     /**
@@ -35,6 +38,7 @@ public class SetupPasswordWithInvitationCodeScene {
     public SetupPasswordWithInvitationCodeScene(String invitationCode, AuthManager userManager, Stage primaryStage) {
         this.invitationCode = invitationCode;
         this.userManager = userManager;
+        this.asyncUserManager = new AsyncAuthManager(userManager, Platform::runLater);
         this.primaryStage = primaryStage;
     }
 
@@ -59,13 +63,21 @@ public class SetupPasswordWithInvitationCodeScene {
             String confirmPassword = confirmPasswordField.getText();
 
             if (password.equals(confirmPassword)) {
-                Invitation invitation = userManager.getInvitationFromInvitationCode(invitationCode);
-                // Save the user to the UserManager
-                userManager.createUser(invitation.getUsername(), password, invitation.getRoles());
-                userManager.deleteInvitation(invitationCode);
-                
-                // Redirect to the login page
-                primaryStage.setScene(new LoginScene(primaryStage, userManager).createLoginScene());
+                submitButton.setDisable(true);
+                // Register the user and use up the invitation in one step, so the code works only once
+                asyncUserManager.redeemInvitationAsync(invitationCode, password).whenComplete((user, error) -> {
+                    submitButton.setDisable(false);
+                    if (error != null) {
+                        new ErrorScene().showError("Account could not be created. Please try again.");
+                        return;
+                    }
+                    if (user == null) {
+                        new ErrorScene().showError("This invitation is no longer valid. Please ask for a new one.");
+                        return;
+                    }
+                    // Redirect to the login page
+                    new LoginScene(primaryStage, userManager).showLoginScene();
+                });
             } else {
                 // Show error if passwords do not match
                 System.out.println("Passwords do not match. Please try again.");
@@ -1,10 +1,13 @@
 package frontend.LoginScene;
 
+import backend.AsyncAuthManager;
 import backend.AuthManager;
 import frontend.ErrorScene;
 import frontend.RoleSelectionScene;
+import frontend.SceneNavigator;
 import frontend.SetupScene;
 import backend.User;
+import javafx.application.Platform;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.VBox;
@@ -15,7 +18,8 @@ import javafx.stage.Stage;
  * 
  * <p> Description: A class that provides the standard login interface for users. 
  * It allows users to input their credentials, provides options for first-time users and password resets, 
- * and manages the login process, including redirection based on user setup completion. </p>
+ * and manages the login process, including redirection based on user setup completion.
+ * The scene is cached by the stage's {@link SceneNavigator} and cleared each time it is shown again. </p>
  * 
  * @author Zeel Tejashkumar Shah
  * 
@@ -25,6 +29,7 @@ import javafx.stage.Stage;
 public class StandardLoginScene {
     private Stage primaryStage;
     private AuthManager authManager;
+    private AsyncAuthManager asyncAuthManager; // Verifies passwords off the JavaFX thread
 
     /**
      * Constructor for the StandardLoginScene class.
@@ -35,6 +40,14 @@ public class StandardLoginScene {
     public StandardLoginScene(Stage primaryStage, AuthManager authManager) {
         this.primaryStage = primaryStage;
         this.authManager = authManager;
+        this.asyncAuthManager = new AsyncAuthManager(authManager, Platform::runLater);
+    }
+
+    /**
+     * Shows the standard login fields, reusing the cached scene if there is one.
+     */
+    public void showLoginFields() {
+        SceneNavigator.of(primaryStage).show(StandardLoginScene.class, this::createLoginFields);
     }
 
     /**
@@ -54,33 +67,49 @@ public class StandardLoginScene {
         Button passwordResetSceneButton = new Button("Forgot Password? Login with OTP");
 
         // Define the action when the "Login" button is clicked
-        loginButton.setOnAction(e -> handleLogin(usernameField.getText(), passwordField.getText()));
+        loginButton.setOnAction(e -> handleLogin(loginButton, usernameField.getText(), passwordField.getText()));
         invitationCodeSceneButton.setOnAction(e -> primaryStage.setScene(new LoginWithInvitationCodeScene(primaryStage, authManager).createInvitationCodeLoginScene()));
         passwordResetSceneButton.setOnAction(e -> primaryStage.setScene(new PasswordResetScene(primaryStage, authManager).createPasswordResetScene()));
 
         loginVBox.getChildren().addAll(usernameLabel, usernameField, passwordLabel, passwordField, loginButton, invitationCodeSceneButton, passwordResetSceneButton);
         primaryStage.setTitle("Login");
 
-        return new Scene(loginVBox, 300, 400);
+        Scene scene = new Scene(loginVBox, 300, 400);
+        SceneNavigator.setOnShow(scene, () -> {
+            usernameField.clear(); // Leave nothing of the last login behind
+            passwordField.clear();
+            primaryStage.setTitle("Login");
+        });
+        return scene;
     }
 
     /**
      * Handles the login process when the user attempts to log in with their credentials.
      * It checks the validity of the credentials and redirects the user based on their setup completion status.
      *
+     * @param loginButton The login button, disabled while the credentials are checked.
      * @param username The username input by the user.
      * @param password The password input by the user.
      */
-    private void handleLogin(String username, String password) {
-        User user = authManager.login(username, password);
-        if (user != null) {
-            if (!user.isSetupComplete()) {
-                primaryStage.setScene(new SetupScene(user, authManager, primaryStage).createSetupScene());
+    private void handleLogin(Button loginButton, String username, String password) {
+        loginButton.setDisable(true);
+        asyncAuthManager.loginAsync(username, password).whenComplete((user, error) -> {
+            loginButton.setDisable(false);
+            if (user != null) {
+                if (!user.isSetupComplete()) {
+                    primaryStage.setScene(new SetupScene(user, authManager, primaryStage).createSetupScene());
+                } else {
+                    new RoleSelectionScene(primaryStage, authManager).handleRoleSelection(user);
+                }
             } else {
-                new RoleSelectionScene(primaryStage, authManager).handleRoleSelection(user);
+                asyncAuthManager.isLoginLimitedAsync(username, null).whenComplete((limited, limitError) -> {
+                    if (Boolean.TRUE.equals(limited)) {
+                        new ErrorScene().showError("Too many failed attempts. Please wait a few minutes and try again.");
+                    } else {
+                        new ErrorScene().showError("Invalid credentials. Please try again.");
+                    }
+                });
             }
-        } else {
-            new ErrorScene().showError("Invalid credentials. Please try again.");
-        }
+        });
     }
 }
@@ -14,7 +14,8 @@ import java.util.Set;
  * 
  * <p> Description: This class manages the role selection process for a user with multiple roles. It displays a 
  * role selection scene if the user has more than one role and navigates to the appropriate home page based on 
- * the selected role. </p>
+ * the selected role. A session for the user and the selected role is started on the way, so later scenes
+ * do not need the password again. </p>
  * 
  * @author Zeel Tejashkumar Shah
  * 
@@ -94,10 +95,16 @@ public class RoleSelectionScene {
      * @param role The selected role of the user.
      */
     private void navigateToRoleHome(User user, Role role) {
+        Session session = authManager.startSession(user, role); // Later scenes check the token, not the password
+        if (session == null) {
+            new ErrorScene().showError("You can no longer log in with this role.");
+            return;
+        }
+        SessionContext.begin(primaryStage, session);
         switch (role) {
         case ADMIN:
             // Navigate to the Admin Home scene
-            primaryStage.setScene(new AdminHomeScene(primaryStage, authManager).createAdminHomeScene());
+            new AdminHomeScene(primaryStage, authManager).showAdminHomeScene();
             break;
         case STUDENT:
             // Navigate to the Student Home scene
@@ -0,0 +1,119 @@
+package frontend;
+
+import javafx.scene.Scene;
+import javafx.stage.Stage;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * <p> Title: SceneNavigator Class. </p>
+ *
+ * <p> Description: Switches the scenes of a stage and keeps the scenes it has built, so going back to a
+ * screen reuses its scene graph instead of creating every control again. Scenes are cached by a key, usually
+ * the class that builds them, and only the most recently shown ones are kept. A scene can register a hook
+ * with {@link #setOnShow(Scene, Runnable)} that runs whenever the cached scene is shown again, to reload its
+ * data and clear what the last visit left behind. </p>
+ *
+ * <p> The navigator of a stage is kept in the stage's properties, like the session token. Logging out clears
+ * it, so the next user never sees the screens of the last one. It must only be used on the JavaFX
+ * application thread. </p>
+ *
+ * @author Zeel Tejashkumar Shah
+ *
+ * @version 1.0 2024-10-17 Initial implementation
+ */
+
+public class SceneNavigator {
+    public static final int DEFAULT_CAPACITY = 8; // Enough for the admin screens and the login screen
+
+    private static final String NAVIGATOR_KEY = "scene.navigator"; // Stage property holding the navigator
+    private static final String ON_SHOW_KEY = "scene.onShow"; // Scene property holding the hook run on reuse
+
+    private Stage stage;
+    private Map<Object, Scene> scenes; // Built scenes by key, least recently shown first
+
+    /**
+     * Constructor for SceneNavigator.
+     *
+     * @param stage The stage whose scenes are switched.
+     * @param capacity The number of built scenes to keep.
+     */
+    private SceneNavigator(Stage stage, int capacity) {
+        this.stage = stage;
+        this.scenes = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Scene> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Get the navigator of a stage, creating it on first use.
+     *
+     * @param stage The stage whose scenes are switched.
+     * @return The stage's navigator.
+     */
+    public static SceneNavigator of(Stage stage) {
+        Object navigator = stage.getProperties().get(NAVIGATOR_KEY);
+        if (navigator == null) {
+            navigator = new SceneNavigator(stage, DEFAULT_CAPACITY);
+            stage.getProperties().put(NAVIGATOR_KEY, navigator);
+        }
+        return (SceneNavigator) navigator;
+    }
+
+    /**
+     * Show the scene cached under a key. If it was shown before, its hook runs to refresh it; otherwise it is
+     * built and cached.
+     *
+     * @param key The key of the scene, usually the class that builds it.
+     * @param builder Builds the scene when it is not cached.
+     */
+    public void show(Object key, Supplier<Scene> builder) {
+        Scene scene = scenes.get(key);
+        if (scene == null) {
+            scene = builder.get();
+            scenes.put(key, scene);
+        } else {
+            Object onShow = scene.getProperties().get(ON_SHOW_KEY);
+            if (onShow != null) {
+                ((Runnable) onShow).run();
+            }
+        }
+        stage.setScene(scene);
+    }
+
+    /**
+     * Register the hook run each time a cached scene is shown again. It is not run when the scene is first
+     * built, since the scene is fresh then.
+     *
+     * @param scene The scene.
+     * @param onShow The hook, which reloads the scene's data and resets its inputs.
+     */
+    public static void setOnShow(Scene scene, Runnable onShow) {
+        scene.getProperties().put(ON_SHOW_KEY, onShow);
+    }
+
+    /**
+     * Drop a cached scene, so it is built again the next time it is shown.
+     *
+     * @param key The key of the scene.
+     */
+    public void evict(Object key) {
+        scenes.remove(key);
+    }
+
+    /**
+     * Drop all cached scenes.
+     */
+    public void clear() {
+        scenes.clear();
+    }
+
+    public int size() {
+        return scenes.size(); // Returns the number of cached scenes
+    }
+}
@@ -0,0 +1,80 @@
+package frontend;
+
+import backend.AuthManager;
+import backend.Role;
+import backend.Session;
+import frontend.LoginScene.LoginScene;
+import javafx.stage.Stage;
+
+/**
+ * <p> Title: SessionContext Class. </p>
+ * 
+ * <p> Description: Remembers who is logged in on a stage. Once a user has logged in and picked a role, the
+ * token of their session is kept in the stage's properties, and scenes check the token instead of asking for
+ * the password again. A scene that needs a role calls {@link #require(Stage, AuthManager, Role)}, which sends
+ * the user back to the login scene if the session has expired or no longer grants that role. </p>
+ * 
+ * @author Zeel Tejashkumar Shah
+ * 
+ * @version 1.0 2024-10-17 Initial implementation
+ */
+
+public class SessionContext {
+    private static final String TOKEN_KEY = "session.token"; // Stage property holding the session token
+
+    /**
+     * Remember the session of the user who just logged in on a stage.
+     *
+     * @param stage The stage the user works in.
+     * @param session The session that was started.
+     */
+    public static void begin(Stage stage, Session session) {
+        stage.getProperties().put(TOKEN_KEY, session.getToken());
+    }
+
+    /**
+     * Get the live session of the stage's user.
+     *
+     * @param stage The stage the user works in.
+     * @param authManager The authentication manager that issued the session.
+     * @return The session, or null if nobody is logged in or the session has expired.
+     */
+    public static Session current(Stage stage, AuthManager authManager) {
+        Object token = stage.getProperties().get(TOKEN_KEY);
+        return token == null ? null : authManager.validateSession((String) token);
+    }
+
+    /**
+     * Check that the stage's user is logged in with a role. If not, the session is ended and the login scene
+     * is shown.
+     *
+     * @param stage The stage the user works in.
+     * @param authManager The authentication manager that issued the session.
+     * @param role The role the user must have selected.
+     * @return true if the user may continue.
+     */
+    public static boolean require(Stage stage, AuthManager authManager, Role role) {
+        Session session = current(stage, authManager);
+        if (session != null && session.getRole() == role) {
+            return true;
+        }
+        end(stage, authManager);
+        new ErrorScene().showError("Your session has expired. Please log in again.");
+        new LoginScene(stage, authManager).showLoginScene();
+        return false;
+    }
+
+    /**
+     * Log the stage's user out and forget the scenes built for them.
+     *
+     * @param stage The stage the user works in.
+     * @param authManager The authentication manager that issued the session.
+     */
+    public static void end(Stage stage, AuthManager authManager) {
+        Object token = stage.getProperties().remove(TOKEN_KEY);
+        if (token != null) {
+            authManager.endSession((String) token);
+        }
+        SceneNavigator.of(stage).clear(); // The next user starts from fresh screens
+    }
+}
@@ -1,6 +1,7 @@
 package frontend;
 
 import backend.*;
+import javafx.application.Platform;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.VBox;
@@ -22,6 +23,7 @@ import java.util.regex.*;
 public class SetupScene {
     private User user;
     private AuthManager authManager;
+    private AsyncAuthManager asyncAuthManager; // Runs the setup off the JavaFX thread
     private Stage primaryStage;
 
     /**
@@ -34,6 +36,7 @@ public class SetupScene {
     public SetupScene(User user, AuthManager authManager, Stage primaryStage) {
         this.user = user;
         this.authManager = authManager;
+        this.asyncAuthManager = new AsyncAuthManager(authManager, Platform::runLater);
         this.primaryStage = primaryStage;
     }
 
@@ -66,7 +69,7 @@ public class SetupScene {
                 completeSetupButton);
 
         // Action for the complete setup button
-        completeSetupButton.setOnAction(e -> handleCompleteSetup(firstNameField.getText(), 
+        completeSetupButton.setOnAction(e -> handleCompleteSetup(completeSetupButton, firstNameField.getText(), 
                 middleNameField.getText(), lastNameField.getText(), 
                 preferredNameField.getText(), emailField.getText()));
         primaryStage.setTitle("Account Setup");
@@ -77,13 +80,14 @@ public class SetupScene {
      * Handles the account setup process by validating the input fields and 
      * completing the setup through the authentication manager.
      *
+     * @param completeSetupButton The button, disabled while the setup runs.
      * @param firstName     The user's first name.
      * @param middleName    The user's middle name.
      * @param lastName      The user's last name.
      * @param preferredName The user's preferred name.
      * @param email         The user's email address.
      */
-    private void handleCompleteSetup(String firstName, String middleName, String lastName, 
+    private void handleCompleteSetup(Button completeSetupButton, String firstName, String middleName, String lastName, 
                                       String preferredName, String email) {
         // Perform validations
         String validationMessage = validateInputs(firstName, middleName, lastName, preferredName, email);
@@ -93,17 +97,23 @@ public class SetupScene {
             return; // Exit if validation fails
         }
 
-        // Call the user manager to complete account setup
-        boolean success = authManager.completeAccountSetup(user, firstName, middleName, lastName, preferredName, email);
-
-        if (success) {
-            Alert alert = new Alert(Alert.AlertType.INFORMATION, "Setup completed successfully!");
-            alert.showAndWait();
-            new RoleSelectionScene(primaryStage, authManager).handleRoleSelection(user); // Go to home scene after setup
-        } else {
-            Alert alert = new Alert(Alert.AlertType.ERROR, "Setup failed. Please try again.");
-            alert.showAndWait();
-        }
+        // Call the user manager to complete account setup in the background
+        completeSetupButton.setDisable(true);
+        asyncAuthManager.completeAccountSetupAsync(user, firstName, middleName, lastName, preferredName, email)
+                .whenComplete((success, error) -> {
+                    completeSetupButton.setDisable(false);
+                    if (error == null && success) {
+                        Alert alert = new Alert(Alert.AlertType.INFORMATION, "Setup completed successfully!");
+                        alert.showAndWait();
+                        new RoleSelectionScene(primaryStage, authManager).handleRoleSelection(user); // Go to home scene after setup
+                    } else if (error == null) {
+                        Alert alert = new Alert(Alert.AlertType.ERROR, "This email is already used by another account.");
+                        alert.showAndWait();
+                    } else {
+                        Alert alert = new Alert(Alert.AlertType.ERROR, "Setup failed. Please try again.");
+                        alert.showAndWait();
+                    }
+                });
     }
 
     /**